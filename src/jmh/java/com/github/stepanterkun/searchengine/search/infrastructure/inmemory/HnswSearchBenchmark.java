@@ -0,0 +1,83 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Latency of {@link HnswGraph#search} per {@code ef}, next to the exact scan it replaces.
+ * Recall per {@code ef} is checked in {@code HnswGraphTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HnswSearchBenchmark {
+
+    private static final int DIMENSIONS = 64;
+    private static final int QUERIES = 100;
+    private static final int K = 10;
+
+    @Param({"10000"})
+    public int docs;
+
+    @Param({"10", "32", "64", "128"})
+    public int ef;
+
+    private HnswGraph graph;
+    private List<float[]> queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        graph = new HnswGraph(16, 100);
+        for (long docId = 0; docId < docs; docId++) {
+            graph.insert(docId, randomVector(random));
+        }
+        queries = Stream.generate(() -> randomVector(random)).limit(QUERIES).toList();
+    }
+
+    @Benchmark
+    public List<HnswGraph.Neighbor> search() {
+        return graph.search(nextQuery(), K, ef);
+    }
+
+    @Benchmark
+    public List<HnswGraph.Neighbor> exactSearch() {
+        return graph.exactSearch(nextQuery(), K);
+    }
+
+    private float[] nextQuery() {
+        next = (next + 1) % QUERIES;
+        return queries.get(next);
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        double norm = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+}
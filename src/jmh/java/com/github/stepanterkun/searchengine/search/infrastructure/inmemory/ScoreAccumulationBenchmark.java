@@ -0,0 +1,77 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.IntBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Score accumulation of one term over heap postings: the scalar loop of
+ * {@link InMemorySearchIndex} against {@link ScoreAccumulator#vectorized()}.
+ * The vectorized side needs the vector profile as well:
+ * {@code mvn -Pvector,benchmark test-compile exec:exec -Dbenchmark=ScoreAccumulationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", ScoreAccumulator.VECTOR_MODULE})
+public class ScoreAccumulationBenchmark {
+
+    private static final double TITLE_BOOST = 3.0;
+    private static final double IDF = 1.7;
+
+    // postings of one term in one segment
+    @Param({"1000", "100000"})
+    public int postingsSize;
+
+    // every docGap-th document has the term: 1 is dense, larger gaps spread the scatter
+    @Param({"1", "8"})
+    public int docGap;
+
+    private Postings postings;
+    private double[] scores;
+    private ScoreAccumulator vectorized;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Postings.Builder builder = new Postings.Builder();
+        for (int i = 0; i < postingsSize; i++) {
+            builder.add(i * docGap, new TermStats(random.nextInt(3), 1 + random.nextInt(20)));
+        }
+        postings = new Postings(IntBuffer.wrap(builder.toArray()));
+        scores = new double[postingsSize * docGap];
+        vectorized = ScoreAccumulator.vectorized().orElse(null);
+    }
+
+    @Benchmark
+    public double[] scalar() {
+        // the heap path of InMemorySearchIndex.score without passages
+        for (int i = 0; i < postings.size(); i++) {
+            scores[postings.doc(i)] += postings.tf(i, TITLE_BOOST) * IDF;
+        }
+        return scores;
+    }
+
+    @Benchmark
+    public double[] vectorized() {
+        if (vectorized == null) {
+            throw new IllegalStateException("VectorizedScoring is not part of the build, add -Pvector");
+        }
+        vectorized.accumulate(postings, 0, postings.size(), scores, 0, TITLE_BOOST, IDF);
+        return scores;
+    }
+}
@@ -1,6 +1,8 @@
 package com.github.stepanterkun.searchengine.common.exception;
 
 import com.github.stepanterkun.searchengine.document.domain.model.DocumentNotFoundException;
+import com.github.stepanterkun.searchengine.search.domain.model.IndexCapacityExceededException;
+import com.github.stepanterkun.searchengine.search.domain.model.InvalidSearchRequestException;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
@@ -55,6 +57,36 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(body);
     }
 
+    @ExceptionHandler(InvalidSearchRequestException.class)
+    public ResponseEntity<ErrorResponseDto> handleInvalidSearchRequest(
+            InvalidSearchRequestException ex
+    ) {
+        log.warn("Invalid search request: {}", ex.getMessage());
+
+        ErrorResponseDto body = new ErrorResponseDto(
+                "INVALID_SEARCH_REQUEST",
+                ex.getMessage(),
+                Instant.now()
+        );
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
+    }
+
+    @ExceptionHandler(IndexCapacityExceededException.class)
+    public ResponseEntity<ErrorResponseDto> handleIndexCapacityExceeded(
+            IndexCapacityExceededException ex
+    ) {
+        log.warn("Document rejected by search index: {}", ex.getMessage());
+
+        ErrorResponseDto body = new ErrorResponseDto(
+                "INDEX_CAPACITY_EXCEEDED",
+                ex.getMessage(),
+                Instant.now()
+        );
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(body);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorResponseDto> handleValidation(
             MethodArgumentNotValidException ex
@@ -14,9 +14,11 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
@@ -50,22 +52,46 @@ public class DocumentController {
      *
      * @param ownerId   id of the owner (header {@code X-User-Id})
      * @param createDto document data
+     * @param refresh   make the document searchable before responding, otherwise it
+     *                  becomes searchable within the index refresh interval
      * @return created document
      */
     @PostMapping
     public ResponseEntity<DocumentDto> create(
             @RequestHeader("X-User-Id") @NotNull Long ownerId,
-            @RequestBody @Valid DocumentCreateDto createDto
+            @RequestBody @Valid DocumentCreateDto createDto,
+            @RequestParam(name = "refresh", defaultValue = "false") boolean refresh
     ) {
-        log.info("Create document: ownerId={}", ownerId);
+        log.info("Create document: ownerId={}, refresh={}", ownerId, refresh);
 
-        DocumentDto created = service.create(ownerId, createDto);
+        DocumentDto created = service.create(ownerId, createDto, refresh);
 
         return ResponseEntity
                        .status(HttpStatus.CREATED)
                        .body(created);
     }
 
+    /**
+     * Replaces title, content and metadata of a document of the given owner.
+     *
+     * @param updateDto new document data, same rules as for creation
+     * @param refresh   make the change searchable before responding
+     * @return updated document
+     */
+    @PutMapping("/{id}")
+    public ResponseEntity<DocumentDto> update(
+            @PathVariable("id") @NotNull Long id,
+            @RequestHeader("X-User-Id") @NotNull Long ownerId,
+            @RequestBody @Valid DocumentCreateDto updateDto,
+            @RequestParam(name = "refresh", defaultValue = "false") boolean refresh
+    ) throws DocumentNotFoundException {
+        log.info("Update document: id={}, ownerId={}, refresh={}", id, ownerId, refresh);
+
+        DocumentDto updated = service.update(id, ownerId, updateDto, refresh);
+
+        return ResponseEntity.ok(updated);
+    }
+
     /**
      * Returns all documents of the given owner.
      */
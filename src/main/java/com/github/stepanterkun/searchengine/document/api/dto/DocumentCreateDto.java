@@ -1,12 +1,13 @@
 package com.github.stepanterkun.searchengine.document.api.dto;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 
 /**
  * DTO for creating a new document.
  * <p>
- * Both fields are required and have length limits.
+ * Title and content are required and have length limits, metadata is optional.
  */
 public record DocumentCreateDto(
         @NotBlank(message = "Title must not be blank")
@@ -21,6 +22,13 @@ public record DocumentCreateDto(
                 max = 100_000,
                 message = "Content is too large: must be 100000 characters at most"
         )
-        String content
+        String content,
+
+        @Valid
+        DocumentMetadataDto metadata
 ) {
+
+    public DocumentCreateDto(String title, String content) {
+        this(title, content, null);
+    }
 }
@@ -0,0 +1,46 @@
+package com.github.stepanterkun.searchengine.document.api.dto;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Optional metadata of a document, all fields may be omitted.
+ * <p>
+ * Custom field names share one namespace: a name can be used either
+ * for a number or for a date, and must not clash with built-in fields.
+ */
+public record DocumentMetadataDto(
+        @Size(max = 50, message = "At most 50 tags are allowed")
+        Set<@NotBlank @Size(max = 100, message = "Tag must be 100 characters at most") String> tags,
+
+        @Size(max = 100, message = "Source must be 100 characters at most")
+        String source,
+
+        @Size(max = 20, message = "Language must be 20 characters at most")
+        String language,
+
+        Map<@Pattern(regexp = FIELD_NAME, message = "Invalid numeric field name") String, @NotNull Double> numbers,
+
+        Map<@Pattern(regexp = FIELD_NAME, message = "Invalid date field name") String, @NotNull Instant> dates
+) {
+
+    private static final String FIELD_NAME = "[a-zA-Z][a-zA-Z0-9_]{0,49}";
+
+    private static final Set<String> RESERVED_FIELDS = Set.of("tag", "source", "language", "status", "created", "updated");
+
+    @AssertTrue(message = "Custom field names must be unique and must not be tag, source, language, status, created or updated")
+    boolean isFieldNamesValid() {
+        Set<String> numberNames = numbers == null ? Set.of() : numbers.keySet();
+        Set<String> dateNames = dates == null ? Set.of() : dates.keySet();
+
+        return numberNames.stream().noneMatch(name -> dateNames.contains(name) || RESERVED_FIELDS.contains(name))
+               && dateNames.stream().noneMatch(RESERVED_FIELDS::contains);
+    }
+}
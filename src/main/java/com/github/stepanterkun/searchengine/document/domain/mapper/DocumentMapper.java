@@ -2,10 +2,14 @@ package com.github.stepanterkun.searchengine.document.domain.mapper;
 
 import com.github.stepanterkun.searchengine.document.api.dto.DocumentCreateDto;
 import com.github.stepanterkun.searchengine.document.api.dto.DocumentDto;
+import com.github.stepanterkun.searchengine.document.api.dto.DocumentMetadataDto;
 import com.github.stepanterkun.searchengine.document.domain.model.Document;
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentMetadata;
 import com.github.stepanterkun.searchengine.document.persistence.entity.DocumentEntity;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 
 /**
@@ -43,11 +47,42 @@ public class DocumentMapper {
             return null;
         }
         // create new domain document with NEW status
-        return Document.newDocument(
+        Document document = Document.newDocument(
                 createDto.title(),
                 createDto.content(),
                 ownerId
         );
+        document.setMetadata(toMetadata(createDto.metadata()));
+        return document;
+    }
+
+    /**
+     * Maps update DTO to a new version of the existing document: identity, owner, status,
+     * version and timestamps come from {@code existing}, title, content and metadata from the DTO.
+     */
+    public Document toDomain(DocumentCreateDto updateDto, Document existing) {
+        if (updateDto == null || existing == null) {
+            return null;
+        }
+        Document document = new Document(
+                existing.getId(),
+                updateDto.title(),
+                updateDto.content(),
+                existing.getOwnerId(),
+                existing.getStatus(),
+                existing.getVersion(),
+                existing.getUpdatedAt()
+        );
+        document.setCreatedAt(existing.getCreatedAt());
+        document.setMetadata(toMetadata(updateDto.metadata()));
+        return document;
+    }
+
+    public DocumentMetadata toMetadata(DocumentMetadataDto dto) {
+        if (dto == null) {
+            return DocumentMetadata.EMPTY;
+        }
+        return new DocumentMetadata(dto.tags(), dto.source(), dto.language(), dto.numbers(), dto.dates());
     }
 
     public Document toDomain(DocumentEntity entity) {
@@ -55,13 +90,27 @@ public class DocumentMapper {
             return null;
         }
 
-        return new Document(
+        Document document = new Document(
                 entity.getId(),
                 entity.getTitle(),
                 entity.getContent(),
                 entity.getOwnerId(),
-                entity.getStatus()
+                entity.getStatus(),
+                entity.getVersion(),
+                entity.getUpdatedAt()
         );
+        document.setCreatedAt(entity.getCreatedAt());
+        if (entity.getContentHash() != null) {
+            document.setContentHash(entity.getContentHash());
+        }
+        document.setMetadata(new DocumentMetadata(
+                entity.getTags(),
+                entity.getSource(),
+                entity.getLanguage(),
+                entity.getNumericFields(),
+                entity.getDateFields()
+        ));
+        return document;
     }
 
     public List<Document> toDomainList(List<DocumentEntity> entities) {
@@ -77,12 +126,24 @@ public class DocumentMapper {
         if (domain == null) {
             return null;
         }
-        return new DocumentEntity(
+        DocumentEntity entity = new DocumentEntity(
                 domain.getId(),
                 domain.getTitle(),
                 domain.getContent(),
                 domain.getOwnerId(),
-                domain.getStatus()
+                domain.getStatus(),
+                domain.getVersion(),
+                domain.getUpdatedAt()
         );
+        entity.setCreatedAt(domain.getCreatedAt());
+        entity.setContentHash(domain.getContentHash());
+
+        DocumentMetadata metadata = domain.getMetadata();
+        entity.setTags(new HashSet<>(metadata.tags()));
+        entity.setSource(metadata.source());
+        entity.setLanguage(metadata.language());
+        entity.setNumericFields(new HashMap<>(metadata.numbers()));
+        entity.setDateFields(new HashMap<>(metadata.dates()));
+        return entity;
     }
 }
@@ -1,5 +1,11 @@
 package com.github.stepanterkun.searchengine.document.domain.model;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+
 public class Document {
 
     private Long id;
@@ -8,6 +14,17 @@ public class Document {
     private Long ownerId;
     private DocumentStatus status;
 
+    // optimistic locking version, null for documents that were never saved
+    private Long version;
+    // creation and last modification time, set by persistence layer
+    private Instant createdAt;
+    private Instant updatedAt;
+
+    private DocumentMetadata metadata = DocumentMetadata.EMPTY;
+
+    // SHA-256 of title and content, computed on first use and reset when either changes
+    private String contentHash;
+
     public static Document newDocument(String title, String content, Long ownerId) {
         return new Document(null, title, content, ownerId, DocumentStatus.NEW);
     }
@@ -20,6 +37,18 @@ public class Document {
         this.status = status;
     }
 
+    public Document(Long id,
+                    String title,
+                    String content,
+                    Long ownerId,
+                    DocumentStatus status,
+                    Long version,
+                    Instant updatedAt) {
+        this(id, title, content, ownerId, status);
+        this.version = version;
+        this.updatedAt = updatedAt;
+    }
+
     public void markIndexing() {
         this.status = DocumentStatus.INDEXING;
     }
@@ -46,6 +75,7 @@ public class Document {
 
     public void setTitle(String title) {
         this.title = title;
+        this.contentHash = null;
     }
 
     public String getContent() {
@@ -54,6 +84,7 @@ public class Document {
 
     public void setContent(String content) {
         this.content = content;
+        this.contentHash = null;
     }
 
     public Long getOwnerId() {
@@ -71,4 +102,66 @@ public class Document {
     public void setStatus(DocumentStatus status) {
         this.status = status;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public DocumentMetadata getMetadata() {
+        return metadata;
+    }
+
+    public void setMetadata(DocumentMetadata metadata) {
+        this.metadata = metadata == null ? DocumentMetadata.EMPTY : metadata;
+    }
+
+    /**
+     * Hash of the text (title and content): documents with equal hashes are indexed the same way.
+     */
+    public String getContentHash() {
+        if (contentHash == null) {
+            contentHash = contentHash(title, content);
+        }
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Hex SHA-256 of title and content; a zero char separates them, so moving text
+     * from the end of the title to the start of the content changes the hash.
+     */
+    public static String contentHash(String title, String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(title).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(content).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
 }
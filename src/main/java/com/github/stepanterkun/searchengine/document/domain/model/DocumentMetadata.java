@@ -0,0 +1,31 @@
+package com.github.stepanterkun.searchengine.document.domain.model;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Typed metadata attached to a document, used for search filters.
+ *
+ * @param tags     free-form keywords
+ * @param source   where the document comes from, e.g. {@code web}
+ * @param language language code, e.g. {@code en}
+ * @param numbers  custom numeric fields, e.g. {@code size -> 1024}
+ * @param dates    custom date fields, e.g. {@code published -> 2024-01-01T00:00:00Z}
+ */
+public record DocumentMetadata(
+        Set<String> tags,
+        String source,
+        String language,
+        Map<String, Double> numbers,
+        Map<String, Instant> dates
+) {
+
+    public static final DocumentMetadata EMPTY = new DocumentMetadata(Set.of(), null, null, Map.of(), Map.of());
+
+    public DocumentMetadata {
+        tags = tags == null ? Set.of() : Set.copyOf(tags);
+        numbers = numbers == null ? Map.of() : Map.copyOf(numbers);
+        dates = dates == null ? Map.of() : Map.copyOf(dates);
+    }
+}
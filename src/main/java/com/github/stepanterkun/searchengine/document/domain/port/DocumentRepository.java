@@ -3,6 +3,7 @@ package com.github.stepanterkun.searchengine.document.domain.port;
 import com.github.stepanterkun.searchengine.document.domain.model.Document;
 import com.github.stepanterkun.searchengine.document.domain.model.DocumentNotFoundException;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +15,12 @@ public interface DocumentRepository {
 
     Document save(Document document);
 
+    /**
+     * Saves the document and writes it to the database right away, so that a concurrent
+     * modification is detected here and not only on commit.
+     */
+    Document saveAndFlush(Document document);
+
     /**
      * Finds a document by id and owner id.
      *
@@ -25,5 +32,34 @@ public interface DocumentRepository {
 
     void deleteDocument(Document doc);
 
-    List<Document> findAll();
+    /**
+     * Deletes all documents of the owner with bulk statements, without loading them.
+     *
+     * @return number of deleted documents
+     */
+    int deleteAllByOwnerId(Long ownerId);
+
+    /**
+     * Returns ids of all owners that have documents, so that all documents can be read
+     * one owner at a time with {@link #findAllByOwnerId}.
+     */
+    List<Long> findOwnerIds();
+
+    /**
+     * Finds documents created or modified after the given moment.
+     * Documents without a known modification time count as older than any moment.
+     */
+    List<Document> findAllModifiedSince(Instant since);
+
+    /**
+     * Returns ids of documents deleted after the given moment (from the deletion log).
+     */
+    List<Long> findIdsDeletedSince(Instant since);
+
+    /**
+     * Drops deletion log entries older than the given moment.
+     *
+     * @return number of removed entries
+     */
+    int purgeDeletionLogBefore(Instant before);
 }
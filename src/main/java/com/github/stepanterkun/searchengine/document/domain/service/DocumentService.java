@@ -7,12 +7,14 @@ import com.github.stepanterkun.searchengine.document.domain.model.Document;
 import com.github.stepanterkun.searchengine.document.domain.model.DocumentNotFoundException;
 import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
 import com.github.stepanterkun.searchengine.document.domain.port.DocumentRepository;
+import com.github.stepanterkun.searchengine.search.domain.model.IndexCapacityExceededException;
 import com.github.stepanterkun.searchengine.search.domain.port.SearchIndex;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.util.List;
 
 /**
@@ -38,18 +40,33 @@ public class DocumentService {
 
     /**
      * Creates a new document for the given owner and indexes it for search.
+     * The document becomes searchable within the index refresh interval.
      */
     @Transactional
     public DocumentDto create(Long ownerId,  DocumentCreateDto createDto) {
+        return create(ownerId, createDto, false);
+    }
+
+    /**
+     * Creates a new document for the given owner and indexes it for search.
+     *
+     * @param refresh make the document searchable before returning (read-your-writes)
+     */
+    @Transactional
+    public DocumentDto create(Long ownerId, DocumentCreateDto createDto, boolean refresh) {
         Document toSave = mapper.toDomain(createDto, ownerId);
         toSave.setStatus(DocumentStatus.INDEXING);
 
         Document savedIndexing = repository.save(toSave);
 
         try {
+            // the index keeps the status for facets, so give it the one the document has once indexed
+            savedIndexing.setStatus(DocumentStatus.READY);
             // index document content in memory
             searchIndex.index(savedIndexing);
-            savedIndexing.setStatus(DocumentStatus.READY);
+            if (refresh) {
+                searchIndex.refresh();
+            }
         } catch (Exception e) {
             log.error(
                     "Failed to index document: id={}, ownerId={}",
@@ -67,6 +84,54 @@ public class DocumentService {
         return mapper.toDto(savedReady);
     }
 
+    /**
+     * Replaces title, content and metadata of the document and re-indexes it.
+     * Only the text that changed is analyzed again; an update that changes nothing is not saved.
+     * If re-indexing fails, the new content is stored with status {@link DocumentStatus#FAILED}.
+     *
+     * @param refresh make the change searchable before returning (read-your-writes)
+     */
+    @Transactional
+    public DocumentDto update(Long id, Long ownerId, DocumentCreateDto updateDto, boolean refresh)
+            throws DocumentNotFoundException {
+        Document previous = repository.findByIdAndOwnerId(id, ownerId)
+                                      .orElseThrow(() -> new DocumentNotFoundException(id));
+        Document updated = mapper.toDomain(updateDto, previous);
+
+        if (previous.getContentHash().equals(updated.getContentHash())
+            && previous.getMetadata().equals(updated.getMetadata())
+            && previous.getStatus() == DocumentStatus.READY) {
+            log.debug("Document not changed: id={}, ownerId={}", id, ownerId);
+            return mapper.toDto(previous);
+        }
+
+        updated.setStatus(DocumentStatus.READY);
+        // the entity sets it again on flush, the index must not wait for that to sort by recency
+        updated.setUpdatedAt(Instant.now());
+        // flushed before the index sees the change: a concurrent update fails the version check here
+        // and rolls back, instead of after its text is already in the WAL
+        Document saved = repository.saveAndFlush(updated);
+
+        try {
+            searchIndex.update(previous, saved);
+            if (refresh) {
+                searchIndex.refresh();
+            }
+        } catch (IndexCapacityExceededException e) {
+            // the index rejected the change as a whole, so the row is rolled back as well
+            throw e;
+        } catch (Exception e) {
+            log.error("Failed to re-index document: id={}, ownerId={}", id, ownerId, e);
+
+            // not rethrown, so that the new content is stored as FAILED and can be re-indexed later
+            saved.setStatus(DocumentStatus.FAILED);
+            return mapper.toDto(repository.save(saved));
+        }
+
+        log.info("Document updated: id={}, ownerId={}", id, ownerId);
+        return mapper.toDto(saved);
+    }
+
     public List<DocumentDto> getAllForOwner(Long ownerId) {
         List<DocumentDto> dtoList = repository.findAllByOwnerId(ownerId)
                                             .stream()
@@ -107,20 +172,18 @@ public class DocumentService {
     public void deleteAllForOwner(Long ownerId) {
         log.debug("Deleting all documents: ownerId={}", ownerId);
 
-        List<Document> docs = repository.findAllByOwnerId(ownerId);
+        // one bulk statement instead of a delete per document
+        int deleted = repository.deleteAllByOwnerId(ownerId);
 
-        if (docs.isEmpty()) {
+        if (deleted == 0) {
             throw new DocumentNotFoundException(
                     "Cannot delete documents: User does not have any documents loaded"
             );
         }
 
-        // delete each document and keep search index in sync
-        for (Document doc : docs) {
-            repository.deleteDocument(doc);
-            searchIndex.remove(doc.getId());
-        }
+        // drops the owner's partition as a whole
+        searchIndex.removeOwner(ownerId);
 
-        log.info("All documents deleted: ownerId={}", ownerId);
+        log.info("All documents deleted: ownerId={}, count={}", ownerId, deleted);
     }
 }
@@ -0,0 +1,56 @@
+package com.github.stepanterkun.searchengine.document.persistence.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Tombstone of a deleted document.
+ * Lets the search index find out which documents were deleted while it was down.
+ */
+@Entity
+@Table(
+        name = "document_deletions",
+        indexes = @Index(name = "idx_document_deletions_deleted_at", columnList = "deletedAt")
+)
+public class DocumentDeletionEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long documentId;
+
+    @Column(nullable = false)
+    private Long ownerId;
+
+    @Column(nullable = false)
+    private Instant deletedAt;
+
+    protected DocumentDeletionEntity() {
+        // for JPA
+    }
+
+    public DocumentDeletionEntity(Long documentId, Long ownerId, Instant deletedAt) {
+        this.documentId = documentId;
+        this.ownerId = ownerId;
+        this.deletedAt = deletedAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public Long getOwnerId() {
+        return ownerId;
+    }
+
+    public Instant getDeletedAt() {
+        return deletedAt;
+    }
+}
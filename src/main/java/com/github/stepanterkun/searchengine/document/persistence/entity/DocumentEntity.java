@@ -1,10 +1,22 @@
 package com.github.stepanterkun.searchengine.document.persistence.entity;
 
+import com.github.stepanterkun.searchengine.document.domain.model.Document;
 import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 @Entity
-@Table(name = "documents")
+@Table(
+        name = "documents",
+        indexes = @Index(name = "idx_documents_updated_at", columnList = "updatedAt")
+)
 public class DocumentEntity {
 
     @Id
@@ -24,6 +36,50 @@ public class DocumentEntity {
     @Column(nullable = false, length = 50)
     private DocumentStatus status;
 
+    // rows from before the column existed get 0, a null version would make Spring Data treat them as new
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
+    // null for rows created before the column existed
+    @Column(updatable = false)
+    private Instant createdAt;
+
+    // Document#contentHash of title and content, lets the index skip unchanged text; null for old rows until updated
+    @Column(length = 64)
+    private String contentHash;
+
+    // used by the search index to catch up with changes made while it was down;
+    // null for rows created before the column existed until they are backfilled, counts as old
+    private Instant updatedAt;
+
+    // metadata: loaded eagerly (the index reads it outside of transactions), one extra select per collection
+    @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
+    @CollectionTable(name = "document_tags", joinColumns = @JoinColumn(name = "document_id"))
+    @Column(name = "tag", nullable = false, length = 100)
+    private Set<String> tags = new HashSet<>();
+
+    @Column(length = 100)
+    private String source;
+
+    @Column(length = 20)
+    private String language;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
+    @CollectionTable(name = "document_numeric_fields", joinColumns = @JoinColumn(name = "document_id"))
+    @MapKeyColumn(name = "field", length = 50)
+    @Column(name = "field_value", nullable = false)
+    private Map<String, Double> numericFields = new HashMap<>();
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
+    @CollectionTable(name = "document_date_fields", joinColumns = @JoinColumn(name = "document_id"))
+    @MapKeyColumn(name = "field", length = 50)
+    @Column(name = "field_value", nullable = false)
+    private Map<String, Instant> dateFields = new HashMap<>();
+
     protected DocumentEntity() {
         // for JPA
     }
@@ -40,6 +96,32 @@ public class DocumentEntity {
         this.status = status;
     }
 
+    public DocumentEntity(Long id,
+                          String title,
+                          String content,
+                          Long ownerId,
+                          DocumentStatus status,
+                          Long version,
+                          Instant updatedAt) {
+        this(id, title, content, ownerId, status);
+        this.version = version;
+        this.updatedAt = updatedAt;
+    }
+
+    @PrePersist
+    void onCreate() {
+        if (createdAt == null) {
+            createdAt = Instant.now();
+        }
+        touch();
+    }
+
+    @PreUpdate
+    void touch() {
+        this.updatedAt = Instant.now();
+        this.contentHash = Document.contentHash(title, content);
+    }
+
     public Long getId() {
         return id;
     }
@@ -79,4 +161,76 @@ public class DocumentEntity {
     public void setStatus(DocumentStatus status) {
         this.status = status;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public Set<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(Set<String> tags) {
+        this.tags = tags;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public void setLanguage(String language) {
+        this.language = language;
+    }
+
+    public Map<String, Double> getNumericFields() {
+        return numericFields;
+    }
+
+    public void setNumericFields(Map<String, Double> numericFields) {
+        this.numericFields = numericFields;
+    }
+
+    public Map<String, Instant> getDateFields() {
+        return dateFields;
+    }
+
+    public void setDateFields(Map<String, Instant> dateFields) {
+        this.dateFields = dateFields;
+    }
 }
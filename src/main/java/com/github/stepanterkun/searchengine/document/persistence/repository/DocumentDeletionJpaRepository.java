@@ -0,0 +1,31 @@
+package com.github.stepanterkun.searchengine.document.persistence.repository;
+
+import com.github.stepanterkun.searchengine.document.persistence.entity.DocumentDeletionEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface DocumentDeletionJpaRepository
+        extends JpaRepository<DocumentDeletionEntity, Long> {
+
+    @Query("select d.documentId from DocumentDeletionEntity d where d.deletedAt > :since")
+    List<Long> findDocumentIdsDeletedAfter(@Param("since") Instant since);
+
+    /**
+     * Writes a tombstone for every document of the owner, must run before the documents are deleted.
+     */
+    @Modifying
+    @Query("insert into DocumentDeletionEntity (documentId, ownerId, deletedAt) "
+           + "select d.id, d.ownerId, :deletedAt from DocumentEntity d where d.ownerId = :ownerId")
+    int insertTombstonesForOwner(@Param("ownerId") Long ownerId, @Param("deletedAt") Instant deletedAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from DocumentDeletionEntity d where d.deletedAt < :before")
+    int deleteAllDeletedBefore(@Param("before") Instant before);
+}
@@ -2,7 +2,12 @@ package com.github.stepanterkun.searchengine.document.persistence.repository;
 
 import com.github.stepanterkun.searchengine.document.persistence.entity.DocumentEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.Optional;
 import java.util.List;
 
@@ -16,7 +21,45 @@ public interface DocumentJpaRepository
 
     List<DocumentEntity> findAllByOwnerId(Long ownerId);
 
+    @Query("select distinct d.ownerId from DocumentEntity d")
+    List<Long> findDistinctOwnerIds();
+
     void deleteByIdAndOwnerId(Long id, Long ownerId);
 
+    // rows without updatedAt never match, they count as old
+    List<DocumentEntity> findAllByUpdatedAtAfter(Instant since);
+
+    /**
+     * Fills in the version and modification time of rows written before those columns existed;
+     * such rows get their creation time, or {@code unknown} if they lack that as well.
+     */
+    @Transactional
+    @Modifying
+    @Query("update DocumentEntity d set d.version = coalesce(d.version, 0), "
+           + "d.updatedAt = coalesce(d.updatedAt, d.createdAt, :unknown) "
+           + "where d.version is null or d.updatedAt is null")
+    int backfillLegacyRows(@Param("unknown") Instant unknown);
+
+    // bulk deletes skip JPA cascades, element collections of the owner's documents go first
+    @Modifying
+    @Query(value = "delete from document_tags where document_id in (select id from documents where owner_id = :ownerId)",
+           nativeQuery = true)
+    void deleteTagsByOwnerId(@Param("ownerId") Long ownerId);
+
+    @Modifying
+    @Query(value = "delete from document_numeric_fields where document_id in "
+                   + "(select id from documents where owner_id = :ownerId)",
+           nativeQuery = true)
+    void deleteNumericFieldsByOwnerId(@Param("ownerId") Long ownerId);
+
+    @Modifying
+    @Query(value = "delete from document_date_fields where document_id in "
+                   + "(select id from documents where owner_id = :ownerId)",
+           nativeQuery = true)
+    void deleteDateFieldsByOwnerId(@Param("ownerId") Long ownerId);
+
+    @Modifying
+    @Query("delete from DocumentEntity d where d.ownerId = :ownerId")
+    int deleteAllByOwnerIdInBulk(@Param("ownerId") Long ownerId);
 
 }
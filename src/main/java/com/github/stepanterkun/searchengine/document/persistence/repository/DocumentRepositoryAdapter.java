@@ -4,10 +4,19 @@ import com.github.stepanterkun.searchengine.document.domain.mapper.DocumentMappe
 import com.github.stepanterkun.searchengine.document.domain.model.Document;
 import com.github.stepanterkun.searchengine.document.domain.model.DocumentNotFoundException;
 import com.github.stepanterkun.searchengine.document.domain.port.DocumentRepository;
+import com.github.stepanterkun.searchengine.document.persistence.entity.DocumentDeletionEntity;
 import com.github.stepanterkun.searchengine.document.persistence.entity.DocumentEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,13 +26,35 @@ import java.util.Optional;
 @Repository
 public class DocumentRepositoryAdapter implements DocumentRepository {
 
+    private static final Logger log = LoggerFactory.getLogger(DocumentRepositoryAdapter.class);
+
     private final DocumentJpaRepository jpaRepository;
+    private final DocumentDeletionJpaRepository deletionJpaRepository;
     private final DocumentMapper mapper;
+    // the deletion log is only read by the catch-up of a search index restored from local storage
+    private final boolean writeTombstones;
 
     public DocumentRepositoryAdapter(DocumentJpaRepository jpaRepository,
-                                     DocumentMapper mapper) {
+                                     DocumentDeletionJpaRepository deletionJpaRepository,
+                                     DocumentMapper mapper,
+                                     @Value("${search.index.persistence.enabled:false}") boolean writeTombstones) {
         this.jpaRepository = jpaRepository;
+        this.deletionJpaRepository = deletionJpaRepository;
         this.mapper = mapper;
+        this.writeTombstones = writeTombstones;
+    }
+
+    /**
+     * Backfills rows from before the version and modification time columns, before they are saved again:
+     * ddl-auto adds those columns with nulls (or the column default) to existing rows.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void backfillLegacyRows() {
+        int backfilled = jpaRepository.backfillLegacyRows(Instant.EPOCH);
+        if (backfilled > 0) {
+            log.info("Backfilled version and modification time of {} legacy documents", backfilled);
+        }
     }
 
     @Override
@@ -33,6 +64,13 @@ public class DocumentRepositoryAdapter implements DocumentRepository {
         return mapper.toDomain(saved);
     }
 
+    @Override
+    public Document saveAndFlush(Document document) {
+        DocumentEntity entity = mapper.toEntity(document);
+        DocumentEntity saved = jpaRepository.saveAndFlush(entity);
+        return mapper.toDomain(saved);
+    }
+
     @Override
     public Optional<Document> findByIdAndOwnerId(Long id, Long ownerId) throws DocumentNotFoundException {
         // map JPA entity to domain document
@@ -54,13 +92,45 @@ public class DocumentRepositoryAdapter implements DocumentRepository {
 
         try {
             jpaRepository.deleteByIdAndOwnerId(doc.getId(), doc.getOwnerId());
+            if (writeTombstones) {
+                // tombstone for the search index catch-up on startup
+                deletionJpaRepository.save(new DocumentDeletionEntity(doc.getId(), doc.getOwnerId(), Instant.now()));
+            }
         } catch (EmptyResultDataAccessException ignored) {
             // nothing to delete
         }
     }
 
     @Override
-    public List<Document> findAll() {
-        return mapper.toDomainList(jpaRepository.findAll());
+    public int deleteAllByOwnerId(Long ownerId) {
+        if (writeTombstones) {
+            // tombstones are copied from the rows about to be deleted
+            deletionJpaRepository.insertTombstonesForOwner(ownerId, Instant.now());
+        }
+
+        jpaRepository.deleteTagsByOwnerId(ownerId);
+        jpaRepository.deleteNumericFieldsByOwnerId(ownerId);
+        jpaRepository.deleteDateFieldsByOwnerId(ownerId);
+        return jpaRepository.deleteAllByOwnerIdInBulk(ownerId);
+    }
+
+    @Override
+    public List<Long> findOwnerIds() {
+        return jpaRepository.findDistinctOwnerIds();
+    }
+
+    @Override
+    public List<Document> findAllModifiedSince(Instant since) {
+        return mapper.toDomainList(jpaRepository.findAllByUpdatedAtAfter(since));
+    }
+
+    @Override
+    public List<Long> findIdsDeletedSince(Instant since) {
+        return deletionJpaRepository.findDocumentIdsDeletedAfter(since);
+    }
+
+    @Override
+    public int purgeDeletionLogBefore(Instant before) {
+        return deletionJpaRepository.deleteAllDeletedBefore(before);
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,9 @@
 package com.github.stepanterkun.searchengine.search.api.controller;
 
+import com.github.stepanterkun.searchengine.search.api.dto.DuplicateClustersDto;
 import com.github.stepanterkun.searchengine.search.api.dto.SearchResultDto;
+import com.github.stepanterkun.searchengine.search.api.dto.SimilarDocumentsDto;
+import com.github.stepanterkun.searchengine.search.api.dto.SuggestResultDto;
 import com.github.stepanterkun.searchengine.search.domain.service.SearchService;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
@@ -9,16 +12,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 /**
  * REST controller for searching documents of the current user.
  */
 @RestController
-@RequestMapping("/documents/search")
+@RequestMapping("/documents")
 public class SearchController {
 
     private static final Logger log = LoggerFactory.getLogger(SearchController.class);
@@ -31,17 +37,66 @@ public class SearchController {
 
     /**
      * Searches all documents of the given owner by text query.
+     * <p>
+     * {@code filter} clauses (e.g. {@code filter=tag=java&filter=updated>=now-7d}) narrow down the results,
+     * {@code facet=status} adds hit counts per document status to the result,
+     * {@code sort=recent} returns the most recently updated documents first,
+     * {@code collapse=true} shows only the best ranked document of every group of near-duplicates.
      */
-    @GetMapping("/all")
+    @GetMapping("/search/all")
     public ResponseEntity<SearchResultDto> searchAllDocuments(
             @RequestHeader("X-User-Id") @NotNull Long ownerId,
             @RequestParam("query") @NotNull String query,
             @RequestParam(name = "page", required = false) Integer page,
-            @RequestParam(name = "size", required = false) Integer size
+            @RequestParam(name = "size", required = false) Integer size,
+            @RequestParam(name = "filter", required = false) List<String> filters,
+            @RequestParam(name = "facet", required = false) List<String> facets,
+            @RequestParam(name = "sort", required = false) String sort,
+            @RequestParam(name = "collapse", defaultValue = "false") boolean collapse
     ) {
-        log.info("Search documents: ownerId={}, query='{}'", ownerId, query);
+        log.info("Search documents: ownerId={}, query='{}', filters={}, facets={}, sort={}, collapse={}",
+                ownerId, query, filters, facets, sort, collapse);
 
-        SearchResultDto result = service.searchAllDocumentsByQuery(ownerId, query, page, size);
+        SearchResultDto result = service.searchAllDocumentsByQuery(ownerId, query, page, size, filters, facets, sort,
+                collapse);
         return ResponseEntity.ok(result);
     }
+
+    /**
+     * Type-ahead suggestions for the given prefix, e.g. {@code prefix=java spr}.
+     */
+    @GetMapping("/search/suggest")
+    public ResponseEntity<SuggestResultDto> suggest(
+            @RequestHeader("X-User-Id") @NotNull Long ownerId,
+            @RequestParam("prefix") @NotNull String prefix,
+            @RequestParam(name = "limit", required = false) Integer limit
+    ) {
+        log.debug("Suggest: ownerId={}, prefix='{}'", ownerId, prefix);
+
+        return ResponseEntity.ok(service.suggest(ownerId, prefix, limit));
+    }
+
+    /**
+     * Groups of near-duplicate documents of the current user, e.g. the same file uploaded several times.
+     */
+    @GetMapping("/search/duplicates")
+    public ResponseEntity<DuplicateClustersDto> duplicates(@RequestHeader("X-User-Id") @NotNull Long ownerId) {
+        log.info("Duplicate clusters: ownerId={}", ownerId);
+
+        return ResponseEntity.ok(service.findDuplicateClusters(ownerId));
+    }
+
+    /**
+     * Documents of the current user that are most similar to the given one ("more like this").
+     */
+    @GetMapping("/{id}/similar")
+    public ResponseEntity<SimilarDocumentsDto> similar(
+            @RequestHeader("X-User-Id") @NotNull Long ownerId,
+            @PathVariable("id") @NotNull Long documentId,
+            @RequestParam(name = "limit", required = false) Integer limit
+    ) {
+        log.info("Similar documents: ownerId={}, documentId={}", ownerId, documentId);
+
+        return ResponseEntity.ok(service.similar(ownerId, documentId, limit));
+    }
 }
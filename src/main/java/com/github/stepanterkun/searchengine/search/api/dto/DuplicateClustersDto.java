@@ -0,0 +1,11 @@
+package com.github.stepanterkun.searchengine.search.api.dto;
+
+import java.util.List;
+
+/**
+ * DTO for returning groups of near-duplicate documents.
+ */
+public record DuplicateClustersDto(
+        List<List<Long>> clusters // document ids, ascending
+        ) {
+}
@@ -3,6 +3,7 @@ package com.github.stepanterkun.searchengine.search.api.dto;
 import com.github.stepanterkun.searchengine.search.domain.model.DocumentSummary;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * DTO for returning search results.
@@ -15,6 +16,7 @@ public record SearchResultDto(
         int totalPages,
         boolean hasPrevious,
         boolean hasNext,
-        List<DocumentSummary> documentSummaries
+        List<DocumentSummary> documentSummaries,
+        Map<String, Map<String, Long>> facets // facet field -> value -> hits, empty unless requested
         ) {
 }
@@ -0,0 +1,14 @@
+package com.github.stepanterkun.searchengine.search.api.dto;
+
+import com.github.stepanterkun.searchengine.search.domain.model.DocumentSummary;
+
+import java.util.List;
+
+/**
+ * DTO for returning documents similar to a given one.
+ */
+public record SimilarDocumentsDto(
+        Long documentId,
+        List<DocumentSummary> documentSummaries // most similar first
+        ) {
+}
@@ -0,0 +1,12 @@
+package com.github.stepanterkun.searchengine.search.api.dto;
+
+import java.util.List;
+
+/**
+ * DTO for returning type-ahead suggestions.
+ */
+public record SuggestResultDto(
+        String prefix,
+        List<String> suggestions // most common first
+        ) {
+}
@@ -6,12 +6,15 @@ import java.util.List;
 
 /**
  * Short summary of a document shown in search results.
+ * {@code bestPassage} is the passage of a large document that matched best,
+ * {@code null} if the document is short enough to be a single passage.
  */
 public record DocumentSummary(
         Long documentId,
         String documentTitle,
         DocumentStatus documentStatus,
         double relevanceScore,
-        List<WordContextSnippet> wordSnippets
+        List<WordContextSnippet> wordSnippets,
+        String bestPassage
 ) {
 }
@@ -0,0 +1,12 @@
+package com.github.stepanterkun.searchengine.search.domain.model;
+
+/**
+ * The index has no room for more documents within its memory budget.
+ * Nothing was indexed; the write can be retried once documents are deleted or memory is reclaimed.
+ */
+public class IndexCapacityExceededException extends RuntimeException {
+
+    public IndexCapacityExceededException(String message) {
+        super(message);
+    }
+}
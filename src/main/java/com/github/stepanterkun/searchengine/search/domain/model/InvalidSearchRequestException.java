@@ -0,0 +1,11 @@
+package com.github.stepanterkun.searchengine.search.domain.model;
+
+/**
+ * Search request that the index cannot execute, e.g. an unknown facet field.
+ */
+public class InvalidSearchRequestException extends RuntimeException {
+
+    public InvalidSearchRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.stepanterkun.searchengine.search.domain.model;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One filter clause of a search, e.g. {@code tag=java}, {@code size>1024}
+ * or {@code published>=2024-01-01}.
+ * <p>
+ * Keyword fields ({@code tag}, {@code source}, {@code language}, {@code status})
+ * support {@code =} and {@code !=}; custom numeric and date fields support all operators.
+ */
+public record SearchFilter(
+        String field,
+        Operator operator,
+        String value
+) {
+
+    private static final Pattern CLAUSE = Pattern.compile("^\\s*([a-zA-Z][a-zA-Z0-9_]*)\\s*(!=|>=|<=|=|>|<)\\s*(.+?)\\s*$");
+
+    public enum Operator {
+        EQ("="), NE("!="), GT(">"), GE(">="), LT("<"), LE("<=");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        static Operator of(String symbol) {
+            for (Operator operator : values()) {
+                if (operator.symbol.equals(symbol)) {
+                    return operator;
+                }
+            }
+            throw new InvalidSearchRequestException("Unknown filter operator: " + symbol);
+        }
+
+        /**
+         * Applies the operator to the result of {@code Double.compare(actual, expected)}.
+         */
+        public boolean test(int comparison) {
+            return switch (this) {
+                case EQ -> comparison == 0;
+                case NE -> comparison != 0;
+                case GT -> comparison > 0;
+                case GE -> comparison >= 0;
+                case LT -> comparison < 0;
+                case LE -> comparison <= 0;
+            };
+        }
+    }
+
+    /**
+     * Parses a clause in the form {@code <field><operator><value>}.
+     *
+     * @throws InvalidSearchRequestException if the clause is malformed
+     */
+    public static SearchFilter parse(String clause) {
+        Matcher matcher = CLAUSE.matcher(clause == null ? "" : clause);
+        if (!matcher.matches()) {
+            throw new InvalidSearchRequestException("Invalid filter: '" + clause + "', expected e.g. tag=java or size>100");
+        }
+
+        return new SearchFilter(matcher.group(1), Operator.of(matcher.group(2)), matcher.group(3));
+    }
+}
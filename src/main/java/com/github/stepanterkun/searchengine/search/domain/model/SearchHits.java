@@ -0,0 +1,17 @@
+package com.github.stepanterkun.searchengine.search.domain.model;
+
+import org.springframework.data.domain.Page;
+
+import java.util.Map;
+
+/**
+ * One page of search results plus facet counts over all matching documents.
+ *
+ * @param page   requested page of results
+ * @param facets facet field -> field value -> number of matching documents
+ */
+public record SearchHits(
+        Page<DocumentSummary> page,
+        Map<String, Map<String, Long>> facets
+) {
+}
@@ -0,0 +1,40 @@
+package com.github.stepanterkun.searchengine.search.domain.model;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Full-text query with optional filters, facets and sort order.
+ *
+ * @param text    free text query
+ * @param filters clauses every returned document must satisfy
+ * @param facets  fields to count matching documents by, e.g. {@code status}
+ * @param sort    order of the results, relevance by default
+ * @param collapseDuplicates keep only the best ranked document of every group of near-duplicates
+ */
+public record SearchQuery(
+        String text,
+        List<SearchFilter> filters,
+        Set<String> facets,
+        SearchSort sort,
+        boolean collapseDuplicates
+) {
+
+    public SearchQuery {
+        filters = filters == null ? List.of() : List.copyOf(filters);
+        facets = facets == null ? Set.of() : Set.copyOf(facets);
+        sort = sort == null ? SearchSort.RELEVANCE : sort;
+    }
+
+    public SearchQuery(String text, List<SearchFilter> filters, Set<String> facets, SearchSort sort) {
+        this(text, filters, facets, sort, false);
+    }
+
+    public SearchQuery(String text, List<SearchFilter> filters, Set<String> facets) {
+        this(text, filters, facets, SearchSort.RELEVANCE);
+    }
+
+    public static SearchQuery of(String text) {
+        return new SearchQuery(text, List.of(), Set.of());
+    }
+}
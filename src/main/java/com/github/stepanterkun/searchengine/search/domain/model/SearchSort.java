@@ -0,0 +1,35 @@
+package com.github.stepanterkun.searchengine.search.domain.model;
+
+import java.util.Locale;
+
+/**
+ * Order of search results.
+ */
+public enum SearchSort {
+
+    /**
+     * Most relevant first.
+     */
+    RELEVANCE,
+
+    /**
+     * Most recently updated first, every document matching a query term counts as a hit.
+     */
+    RECENT;
+
+    /**
+     * @return {@link #RELEVANCE} for a missing value
+     * @throws InvalidSearchRequestException if the value is not a known sort
+     */
+    public static SearchSort parse(String value) {
+        if (value == null || value.isBlank()) {
+            return RELEVANCE;
+        }
+
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidSearchRequestException("Unsupported sort: " + value);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.github.stepanterkun.searchengine.search.domain.port;
 
 import com.github.stepanterkun.searchengine.document.domain.model.Document;
 import com.github.stepanterkun.searchengine.search.domain.model.DocumentSummary;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchHits;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchQuery;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -20,12 +22,33 @@ public interface SearchIndex {
      */
     void index(Document document);
 
+    /**
+     * Re-index a document after an edit. Same result as {@link #index(Document)} with the updated
+     * document, but only the text that differs from {@code previous} is analyzed again.
+     *
+     * @param previous the document as it was before the edit, i.e. as it was last indexed
+     */
+    void update(Document previous, Document updated);
+
     /**
      * Remove document from the index.
      * Called on document delete.
      */
     void remove(Long documentId);
 
+    /**
+     * Remove all documents of the owner from the index at once.
+     * Called on bulk delete, the cost does not depend on the number of documents.
+     */
+    void removeOwner(Long ownerId);
+
+    /**
+     * Makes all changes indexed so far visible to searches.
+     * Indexing is near-real-time: without this call changes become visible
+     * within the configured refresh interval.
+     */
+    void refresh();
+
     /**
      * Search documents of a specific owner by text query.
      *
@@ -34,5 +57,42 @@ public interface SearchIndex {
      * @param pageable pagination information (zero-based page index and page size)
      * @return page of document summaries ordered by relevance
      */
-    Page<DocumentSummary> search(Long ownerId, String query, Pageable pageable);
+    default Page<DocumentSummary> search(Long ownerId, String query, Pageable pageable) {
+        return search(ownerId, SearchQuery.of(query), pageable).page();
+    }
+
+    /**
+     * Same as {@link #search(Long, String, Pageable)}, additionally applies the query filters
+     * and counts all matching documents per value of the requested facet fields.
+     * Implementations only provide this one, the plain text search delegates to it.
+     *
+     * @throws com.github.stepanterkun.searchengine.search.domain.model.InvalidSearchRequestException
+     *         if a filter or facet is not supported
+     */
+    SearchHits search(Long ownerId, SearchQuery query, Pageable pageable);
+
+    /**
+     * "More like this": documents of the owner most similar to the given one, built from the
+     * terms stored for it in the index. The document itself is not part of the result.
+     *
+     * @throws com.github.stepanterkun.searchengine.document.domain.model.DocumentNotFoundException
+     *         if the owner has no such document in the index
+     */
+    List<DocumentSummary> similar(Long ownerId, Long documentId, int limit);
+
+    /**
+     * Type-ahead suggestions: completes the last word of the prefix with terms from titles
+     * and contents of the owner's documents, most common first.
+     *
+     * @param limit maximum number of suggestions, the index may return fewer
+     * @return prefix completions including the words typed before the last one
+     */
+    List<String> suggest(Long ownerId, String prefix, int limit);
+
+    /**
+     * Groups of near-duplicate documents of the owner (mostly the same text with small edits).
+     *
+     * @return document ids of every group with at least two documents
+     */
+    List<List<Long>> duplicateClusters(Long ownerId);
 }
@@ -1,7 +1,14 @@
 package com.github.stepanterkun.searchengine.search.domain.service;
 
+import com.github.stepanterkun.searchengine.search.api.dto.DuplicateClustersDto;
 import com.github.stepanterkun.searchengine.search.api.dto.SearchResultDto;
+import com.github.stepanterkun.searchengine.search.api.dto.SimilarDocumentsDto;
+import com.github.stepanterkun.searchengine.search.api.dto.SuggestResultDto;
 import com.github.stepanterkun.searchengine.search.domain.model.DocumentSummary;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchFilter;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchHits;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchQuery;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchSort;
 import com.github.stepanterkun.searchengine.search.domain.port.SearchIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,6 +17,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashSet;
 import java.util.List;
 
 /**
@@ -23,6 +31,12 @@ public class SearchService {
     private static final int PAGE_DEFAULT = 1;
     private static final int SIZE_DEFAULT = 20;
 
+    private static final int SIMILAR_LIMIT_DEFAULT = 10;
+    private static final int SIMILAR_LIMIT_MAX = 50;
+
+    private static final int SUGGEST_LIMIT_DEFAULT = 5;
+    private static final int SUGGEST_LIMIT_MAX = 10;
+
     private final SearchIndex searchIndex;
 
     public SearchService(SearchIndex searchIndex) {
@@ -33,14 +47,35 @@ public class SearchService {
      * Searches all documents of a given owner by the query string.
      */
     public SearchResultDto searchAllDocumentsByQuery(Long ownerId, String query, Integer pageNumber, Integer pageSize) {
-        log.debug("Search started: ownerId={}, originalQuery='{}', pageNumber={}, pageSize={}",
-                ownerId, query, pageNumber, pageSize);
+        return searchAllDocumentsByQuery(ownerId, query, pageNumber, pageSize, List.of(), List.of(), null, false);
+    }
+
+    /**
+     * Searches all documents of a given owner by the query string, keeps only documents
+     * matching all filter clauses (e.g. {@code tag=java}) and counts the matches per value
+     * of the requested facet fields. {@code sort=recent} orders the results by last update instead of relevance,
+     * {@code collapse} hides near-duplicates of better ranked results.
+     */
+    public SearchResultDto searchAllDocumentsByQuery(Long ownerId, String query, Integer pageNumber, Integer pageSize,
+                                                     List<String> filters, List<String> facets, String sort,
+                                                     boolean collapse) {
+        log.debug("Search started: ownerId={}, originalQuery='{}', pageNumber={}, pageSize={}, filters={}, facets={}, sort={}, collapse={}",
+                ownerId, query, pageNumber, pageSize, filters, facets, sort, collapse);
 
         pageNumber = (pageNumber == null || pageNumber < 1) ? PAGE_DEFAULT : pageNumber;
         pageSize = (pageSize == null || pageSize < 1) ? SIZE_DEFAULT : pageSize;
 
+        SearchQuery searchQuery = new SearchQuery(
+                query,
+                filters == null ? List.of() : filters.stream().map(SearchFilter::parse).toList(),
+                facets == null ? null : new LinkedHashSet<>(facets),
+                SearchSort.parse(sort),
+                collapse
+        );
+
         Pageable pageable = PageRequest.of(pageNumber - 1, pageSize);
-        Page<DocumentSummary> page = searchIndex.search(ownerId, query, pageable);
+        SearchHits hits = searchIndex.search(ownerId, searchQuery, pageable);
+        Page<DocumentSummary> page = hits.page();
 
         long totalElements = page.getTotalElements();
         int totalPages = page.getTotalPages();
@@ -54,14 +89,16 @@ public class SearchService {
                     0,
                     false,
                     false,
-                    List.of()
+                    List.of(),
+                    hits.facets()
             );
         }
 
         if (pageNumber > totalPages) {
             pageNumber = totalPages;
             pageable = PageRequest.of(pageNumber - 1, pageSize);
-            page = searchIndex.search(ownerId, query, pageable);
+            hits = searchIndex.search(ownerId, searchQuery, pageable);
+            page = hits.page();
         }
 
         boolean hasPrevious = page.hasPrevious();
@@ -77,7 +114,42 @@ public class SearchService {
                 totalPages,
                 hasPrevious,
                 hasNext,
-                pageContent
+                pageContent,
+                hits.facets()
         );
     }
+
+    /**
+     * Finds documents of the owner that are most similar to the given one.
+     */
+    public SimilarDocumentsDto similar(Long ownerId, Long documentId, Integer limit) {
+        limit = (limit == null || limit < 1) ? SIMILAR_LIMIT_DEFAULT : Math.min(limit, SIMILAR_LIMIT_MAX);
+
+        List<DocumentSummary> similar = searchIndex.similar(ownerId, documentId, limit);
+        log.debug("Similar documents: ownerId={}, documentId={}, found={}", ownerId, documentId, similar.size());
+
+        return new SimilarDocumentsDto(documentId, similar);
+    }
+
+    /**
+     * Suggests completions of the last word of the prefix, e.g. {@code "java spr"} -> {@code "java spring"}.
+     */
+    public SuggestResultDto suggest(Long ownerId, String prefix, Integer limit) {
+        limit = (limit == null || limit < 1) ? SUGGEST_LIMIT_DEFAULT : Math.min(limit, SUGGEST_LIMIT_MAX);
+
+        List<String> suggestions = searchIndex.suggest(ownerId, prefix, limit);
+        log.debug("Suggest: ownerId={}, prefix='{}', suggestions={}", ownerId, prefix, suggestions.size());
+
+        return new SuggestResultDto(prefix, suggestions);
+    }
+
+    /**
+     * Groups of near-duplicate documents of the owner.
+     */
+    public DuplicateClustersDto findDuplicateClusters(Long ownerId) {
+        List<List<Long>> clusters = searchIndex.duplicateClusters(ownerId);
+        log.debug("Duplicate clusters: ownerId={}, clusters={}", ownerId, clusters.size());
+
+        return new DuplicateClustersDto(clusters);
+    }
 }
@@ -0,0 +1,143 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Local files holding the documents of evicted (cold) owner partitions, one file per owner.
+ * <p>
+ * The files only live as long as the process: the snapshot and the database stay the source
+ * of truth, so files left from a previous run are deleted on startup. Files are written
+ * to a temporary name and renamed, so a reader never sees a half-written one.
+ * <p>
+ * Layout: {@code [int magic][int count][documents...][long crc32]}.
+ */
+final class ColdPartitionStore {
+
+    private static final int MAGIC = 0x53434f4c; // "SCOL"
+
+    private static final String PREFIX = "owner-";
+    private static final String SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String DISCARDED_SUFFIX = ".discarded";
+    private static final String LINKED_SUFFIX = ".linked";
+
+    private final Path directory;
+
+    ColdPartitionStore(Path directory) {
+        this.directory = directory;
+    }
+
+    void write(Long ownerId, Collection<IndexedDocument> documents) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(PREFIX + ownerId + TEMP_SUFFIX);
+
+        try (BufferedOutputStream raw = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(raw, crc));
+
+            out.writeInt(MAGIC);
+            out.writeInt(documents.size());
+            for (IndexedDocument doc : documents) {
+                IndexCodec.writeDocument(out, doc);
+            }
+            out.flush();
+
+            new DataOutputStream(raw).writeLong(crc.getValue());
+        }
+
+        // no fsync: after a crash the files are thrown away anyway
+        Files.move(temp, file(ownerId), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    List<IndexedDocument> read(Long ownerId) throws IOException {
+        return read(file(ownerId));
+    }
+
+    void delete(Long ownerId) throws IOException {
+        Files.deleteIfExists(file(ownerId));
+    }
+
+    /**
+     * Moves the owner's file out of the way in constant time, so a new file for the same
+     * owner can be written before the old one is read and deleted.
+     *
+     * @return the moved file
+     */
+    Path discard(Long ownerId, long sequence) throws IOException {
+        Path discarded = directory.resolve(PREFIX + ownerId + "-" + sequence + DISCARDED_SUFFIX);
+        Files.move(file(ownerId), discarded, StandardCopyOption.ATOMIC_MOVE);
+        return discarded;
+    }
+
+    /**
+     * Gives the owner's file a second name in constant time where the file system has hard
+     * links (copies it otherwise), so it can still be read after the owner was loaded,
+     * discarded or evicted again. The caller deletes the returned file.
+     */
+    Path link(Long ownerId, long sequence) throws IOException {
+        Path linked = directory.resolve(PREFIX + ownerId + "-" + sequence + LINKED_SUFFIX);
+        try {
+            Files.createLink(linked, file(ownerId));
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(file(ownerId), linked, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return linked;
+    }
+
+    /**
+     * Deletes all files, also ones left from a previous run.
+     */
+    void clear() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().startsWith(PREFIX)).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    static List<IndexedDocument> read(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(
+                new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file)), crc))) {
+
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a cold index partition: " + file);
+            }
+
+            int count = in.readInt();
+            List<IndexedDocument> documents = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                documents.add(IndexCodec.readDocument(in));
+            }
+
+            long expectedCrc = crc.getValue();
+            if (in.readLong() != expectedCrc) {
+                throw new IOException("Cold index partition checksum mismatch: " + file);
+            }
+            return documents;
+        }
+    }
+
+    private Path file(Long ownerId) {
+        return directory.resolve(PREFIX + ownerId + SUFFIX);
+    }
+}
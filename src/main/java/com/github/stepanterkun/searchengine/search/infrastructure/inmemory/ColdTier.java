@@ -0,0 +1,149 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owners whose partition was evicted from memory: only their documents are kept, in a
+ * {@link ColdPartitionStore} file per owner, and their segments are built again on first use.
+ * <p>
+ * Which owners are cold is changed by the index under its refreshLock only;
+ * {@link #contains} and {@link #size} can be called without it.
+ */
+final class ColdTier {
+
+    private static final Logger log = LoggerFactory.getLogger(ColdTier.class);
+
+    private final ColdPartitionStore store;
+    private final Set<Long> owners = ConcurrentHashMap.newKeySet();
+    // names of discarded and linked files
+    private final AtomicLong fileSequence = new AtomicLong();
+
+    ColdTier(Path directory) {
+        this.store = new ColdPartitionStore(directory);
+    }
+
+    boolean contains(Long ownerId) {
+        return owners.contains(ownerId);
+    }
+
+    int size() {
+        return owners.size();
+    }
+
+    /**
+     * Writes the owner's documents; the owner only counts as cold once {@link #add} is called.
+     */
+    void write(Long ownerId, Collection<IndexedDocument> documents) throws IOException {
+        store.write(ownerId, documents);
+    }
+
+    void add(Long ownerId) {
+        owners.add(ownerId);
+    }
+
+    /**
+     * Deletes a file written for an owner that did not move to the tier after all.
+     */
+    void delete(Long ownerId) throws IOException {
+        store.delete(ownerId);
+    }
+
+    /**
+     * Takes the owner out of the tier and reads its documents. If they cannot be read
+     * the owner stays cold.
+     *
+     * @return null if the owner is not cold
+     */
+    List<IndexedDocument> load(Long ownerId) throws IOException {
+        if (!owners.remove(ownerId)) {
+            return null;
+        }
+
+        List<IndexedDocument> documents;
+        try {
+            documents = store.read(ownerId);
+        } catch (IOException e) {
+            owners.add(ownerId);
+            throw e;
+        }
+
+        try {
+            store.delete(ownerId);
+        } catch (IOException e) {
+            // overwritten on the next eviction, wiped on the next start
+            log.warn("Failed to delete cold index partition: ownerId={}", ownerId, e);
+        }
+        return documents;
+    }
+
+    /**
+     * Takes the owner out of the tier in constant time, its file is moved out of the way
+     * to be read and deleted later.
+     *
+     * @return the moved file, null if the owner is not cold or the file could not be moved
+     */
+    Path discard(Long ownerId) {
+        if (!owners.remove(ownerId)) {
+            return null;
+        }
+
+        try {
+            return store.discard(ownerId, fileSequence.incrementAndGet());
+        } catch (IOException e) {
+            log.warn("Failed to discard cold index partition: ownerId={}", ownerId, e);
+            return null;
+        }
+    }
+
+    /**
+     * Second names for the files of all cold owners, see {@link ColdPartitionStore#link}.
+     * Delete them with {@link #deleteLinks}.
+     */
+    List<Path> link() throws IOException {
+        List<Path> files = new ArrayList<>(owners.size());
+        try {
+            for (Long ownerId : owners) {
+                files.add(store.link(ownerId, fileSequence.incrementAndGet()));
+            }
+        } catch (IOException e) {
+            deleteLinks(files);
+            throw e;
+        }
+        return files;
+    }
+
+    static void deleteLinks(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // wiped on the next start
+                log.warn("Failed to delete linked cold index partition: {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * Forgets all cold owners and deletes all files, also ones left from a previous run.
+     */
+    void clear() {
+        owners.clear();
+        try {
+            store.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to clear cold index partitions", e);
+        }
+    }
+}
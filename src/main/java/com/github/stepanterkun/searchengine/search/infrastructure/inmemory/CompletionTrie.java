@@ -0,0 +1,209 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Weighted terms of one owner for type-ahead suggestions.
+ * <p>
+ * Every node caches the {@link #TOP_K} best completions of its subtree, so a lookup
+ * only walks the prefix and copies the cached list: its cost depends on the prefix
+ * length, not on the size of the vocabulary.
+ * <p>
+ * Weights change incrementally. A changed term fixes the caches on its own path only:
+ * a higher weight is merged into them, a lower one makes the affected nodes recompute
+ * their cache from their children, bottom-up.
+ * <p>
+ * Thread-safe: updates take the write lock, lookups the read lock.
+ */
+final class CompletionTrie {
+
+    static final int TOP_K = 10;
+
+    private record Completion(String term, long weight) {
+    }
+
+    private static final Completion[] NONE = new Completion[0];
+
+    // heaviest first, ties alphabetically
+    private static final Comparator<Completion> BEST_FIRST =
+            Comparator.comparingLong(Completion::weight).reversed().thenComparing(Completion::term);
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        // term ending at this node and its weight, null and 0 if no term ends here
+        private String term;
+        private long weight;
+        private Completion[] top = NONE;
+    }
+
+    private final Node root = new Node();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Adds {@code delta} (may be negative) to the weight of the term.
+     * A term whose weight drops to zero or below is removed.
+     */
+    void update(String term, long delta) {
+        if (term.isEmpty() || delta == 0) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            Node[] path = new Node[term.length() + 1];
+            path[0] = root;
+            for (int i = 0; i < term.length(); i++) {
+                Node child = path[i].children.get(term.charAt(i));
+                if (child == null) {
+                    if (delta < 0) {
+                        return; // unknown term
+                    }
+                    child = new Node();
+                    path[i].children.put(term.charAt(i), child);
+                }
+                path[i + 1] = child;
+            }
+
+            Node leaf = path[term.length()];
+            long weight = Math.max(0, leaf.weight + delta);
+            leaf.weight = weight;
+            leaf.term = weight > 0 ? term : null;
+            Completion completion = new Completion(term, weight);
+
+            for (int depth = term.length(); depth >= 0; depth--) {
+                Node node = path[depth];
+                if (delta > 0) {
+                    promote(node, completion);
+                } else if (contains(node.top, term)) {
+                    recompute(node);
+                }
+
+                // drop nodes that no longer lead to any term
+                if (depth > 0 && node.weight == 0 && node.children.isEmpty()) {
+                    path[depth - 1].children.remove(term.charAt(depth - 1));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return up to {@code limit} (at most {@link #TOP_K}) terms starting with the prefix, heaviest first
+     */
+    List<String> complete(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = node.children.get(prefix.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+
+            int count = Math.min(limit, node.top.length);
+            List<String> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(node.top[i].term());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Completes the last word of what the user typed so far: {@code "java spr"} gives
+     * {@code "java spring"}. Words are matched case-insensitively.
+     *
+     * @return up to {@code limit} completions with the words typed before the last one in front,
+     *         empty if the prefix ends with a non-word character
+     */
+    List<String> suggest(String prefix, int limit) {
+        String normalized = prefix.toLowerCase().stripLeading();
+        int lastWordStart = normalized.length();
+        while (lastWordStart > 0 && isWordChar(normalized.charAt(lastWordStart - 1))) {
+            lastWordStart--;
+        }
+
+        String lastWord = normalized.substring(lastWordStart);
+        if (lastWord.isEmpty()) {
+            return List.of();
+        }
+        String head = normalized.substring(0, lastWordStart);
+
+        return complete(lastWord, limit).stream()
+                                        .map(term -> head + term)
+                                        .toList();
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            root.children.clear();
+            root.term = null;
+            root.weight = 0;
+            root.top = NONE;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // the term got heavier: replace its old entry, if any, and keep the best TOP_K
+    // same word characters as the \W+ split used by the analyzer
+    private static boolean isWordChar(char c) {
+        return c == '_' || (c < 128 && Character.isLetterOrDigit(c));
+    }
+
+    private static void promote(Node node, Completion completion) {
+        Completion[] top = node.top;
+        if (top.length == TOP_K && !contains(top, completion.term())
+            && BEST_FIRST.compare(completion, top[TOP_K - 1]) > 0) {
+            return;
+        }
+
+        List<Completion> candidates = new ArrayList<>(top.length + 1);
+        for (Completion existing : top) {
+            if (!existing.term().equals(completion.term())) {
+                candidates.add(existing);
+            }
+        }
+        candidates.add(completion);
+        node.top = best(candidates);
+    }
+
+    // the term got lighter or disappeared: something from below may take its place
+    private static void recompute(Node node) {
+        List<Completion> candidates = new ArrayList<>();
+        if (node.weight > 0) {
+            candidates.add(new Completion(node.term, node.weight));
+        }
+
+        for (Node child : node.children.values()) {
+            candidates.addAll(Arrays.asList(child.top));
+        }
+        node.top = best(candidates);
+    }
+
+    private static Completion[] best(List<Completion> candidates) {
+        candidates.sort(BEST_FIRST);
+        return candidates.subList(0, Math.min(TOP_K, candidates.size())).toArray(NONE);
+    }
+
+    private static boolean contains(Completion[] top, String term) {
+        for (Completion completion : top) {
+            if (completion.term().equals(term)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+/**
+ * Mutable fixed-size bitset of local doc ids, used per query to collect candidates
+ * of one segment before filters are applied.
+ */
+final class DocBitSet {
+
+    private final long[] words;
+
+    DocBitSet(int size) {
+        this.words = new long[(size + 63) >>> 6];
+    }
+
+    void set(int doc) {
+        words[doc >>> 6] |= 1L << doc;
+    }
+
+    void clear(int doc) {
+        words[doc >>> 6] &= ~(1L << doc);
+    }
+
+    boolean get(int doc) {
+        return (words[doc >>> 6] & (1L << doc)) != 0;
+    }
+
+    /**
+     * Keeps only docs that are also in {@code other}, both sets must have the same size.
+     */
+    void and(DocBitSet other) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= other.words[i];
+        }
+    }
+
+    /**
+     * Removes docs that are in {@code other}, both sets must have the same size.
+     */
+    void andNot(DocBitSet other) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= ~other.words[i];
+        }
+    }
+
+    /**
+     * Keeps only docs that are also in {@code filter}.
+     */
+    void and(RoaringDocIdSet filter) {
+        filter.andInto(words);
+    }
+
+    /**
+     * Removes docs that are in {@code excluded}.
+     */
+    void andNot(RoaringDocIdSet excluded) {
+        excluded.andNotInto(words);
+    }
+
+    /**
+     * @return the first set bit at or after {@code from}, or {@code -1} if there is none
+     */
+    int nextSetBit(int from) {
+        int w = from >>> 6;
+        if (w >= words.length) {
+            return -1;
+        }
+
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+}
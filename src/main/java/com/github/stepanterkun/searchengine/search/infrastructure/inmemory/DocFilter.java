@@ -0,0 +1,215 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
+import com.github.stepanterkun.searchengine.search.domain.model.InvalidSearchRequestException;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchFilter;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchFilter.Operator;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Search filters compiled once per query and applied to the candidates of every segment.
+ * <p>
+ * Keyword fields are looked up in the postings of their {@code field:value} term,
+ * numeric fields (including {@code created} and {@code updated}) are resolved to doc id sets
+ * through the sorted points of {@link NumericField}, status is read from the segment column.
+ * A document without a numeric field only matches {@code !=} clauses on it.
+ */
+final class DocFilter {
+
+    static final Set<String> KEYWORD_FIELDS = Set.of("tag", "source", "language");
+    static final String STATUS_FIELD = "status";
+
+    // now, now-7d, now+12h, now-30m
+    private static final Pattern RELATIVE_TIME = Pattern.compile("now(?:([+-])(\\d{1,9})([dhm]))?");
+
+    static final DocFilter NONE = new DocFilter(List.of());
+
+    private interface Clause {
+        void apply(Segment segment, DocBitSet candidates);
+    }
+
+    private final List<Clause> clauses;
+
+    private DocFilter(List<Clause> clauses) {
+        this.clauses = clauses;
+    }
+
+    /**
+     * @throws InvalidSearchRequestException if a clause uses an operator or value its field does not support
+     */
+    static DocFilter compile(List<SearchFilter> filters) {
+        if (filters.isEmpty()) {
+            return NONE;
+        }
+
+        List<Clause> clauses = new ArrayList<>(filters.size());
+        for (SearchFilter filter : filters) {
+            clauses.add(compile(filter));
+        }
+        return new DocFilter(clauses);
+    }
+
+    boolean isEmpty() {
+        return clauses.isEmpty();
+    }
+
+    /**
+     * Removes candidates of the segment that do not match every clause.
+     */
+    void apply(Segment segment, DocBitSet candidates) {
+        for (Clause clause : clauses) {
+            clause.apply(segment, candidates);
+        }
+    }
+
+    /**
+     * Term under which a keyword metadata value is indexed.
+     */
+    static String keywordTerm(String field, String value) {
+        return field + ":" + value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Clause compile(SearchFilter filter) {
+        String field = filter.field().toLowerCase(Locale.ROOT);
+        Operator operator = filter.operator();
+
+        if (KEYWORD_FIELDS.contains(field) || STATUS_FIELD.equals(field)) {
+            if (operator != Operator.EQ && operator != Operator.NE) {
+                throw new InvalidSearchRequestException("Field '" + field + "' supports only = and !=");
+            }
+        }
+
+        if (KEYWORD_FIELDS.contains(field)) {
+            return keywordClause(keywordTerm(field, filter.value()), operator == Operator.EQ);
+        }
+
+        if (STATUS_FIELD.equals(field)) {
+            int status = parseStatus(filter.value()).ordinal();
+            boolean equal = operator == Operator.EQ;
+            return matching((segment, local) -> (segment.status(local) == status) == equal);
+        }
+
+        // custom field names are case-sensitive, see DocumentMetadataDto
+        return rangeClause(filter.field(), operator, parseNumber(filter.value()));
+    }
+
+    private static Clause rangeClause(String field, Operator operator, double value) {
+        // = and != look up the single value [value, value]
+        double lower = operator == Operator.LT || operator == Operator.LE ? Double.NEGATIVE_INFINITY : value;
+        double upper = operator == Operator.GT || operator == Operator.GE ? Double.POSITIVE_INFINITY : value;
+        boolean lowerInclusive = operator != Operator.GT;
+        boolean upperInclusive = operator != Operator.LT;
+
+        return (segment, candidates) -> {
+            NumericField values = segment.numericField(field);
+            if (values == null) {
+                if (operator != Operator.NE) {
+                    candidates.and(new DocBitSet(segment.size()));
+                }
+                return;
+            }
+
+            DocBitSet docs = new DocBitSet(segment.size());
+            values.collectRange(lower, lowerInclusive, upper, upperInclusive, docs);
+
+            // != keeps documents without the field, = and ranges keep only documents with a value in range
+            if (operator == Operator.NE) {
+                candidates.andNot(docs);
+            } else {
+                candidates.and(docs);
+            }
+        };
+    }
+
+    private static Clause keywordClause(String term, boolean equal) {
+        return (segment, candidates) -> {
+            Postings postings = segment.postings(term);
+            if (postings == null) {
+                if (equal) {
+                    candidates.and(new DocBitSet(segment.size()));
+                }
+                return;
+            }
+
+            DocBitSet docs = new DocBitSet(segment.size());
+            for (int i = 0; i < postings.size(); i++) {
+                docs.set(postings.doc(i));
+            }
+
+            if (equal) {
+                candidates.and(docs);
+            } else {
+                candidates.andNot(docs);
+            }
+        };
+    }
+
+    private interface DocPredicate {
+        boolean test(Segment segment, int localId);
+    }
+
+    private static Clause matching(DocPredicate predicate) {
+        return (segment, candidates) -> {
+            for (int local = candidates.nextSetBit(0); local >= 0; local = candidates.nextSetBit(local + 1)) {
+                if (!predicate.test(segment, local)) {
+                    candidates.clear(local);
+                }
+            }
+        };
+    }
+
+    private static DocumentStatus parseStatus(String value) {
+        try {
+            return DocumentStatus.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidSearchRequestException("Unknown status: " + value);
+        }
+    }
+
+    // plain numbers, relative times (now-7d), dates (start of day UTC) and instants,
+    // times are compared as epoch millis
+    private static double parseNumber(String value) {
+        Matcher relative = RELATIVE_TIME.matcher(value);
+        if (relative.matches()) {
+            Instant now = Instant.now();
+            if (relative.group(1) == null) {
+                return now.toEpochMilli();
+            }
+            Duration offset = switch (relative.group(3)) {
+                case "d" -> Duration.ofDays(Long.parseLong(relative.group(2)));
+                case "h" -> Duration.ofHours(Long.parseLong(relative.group(2)));
+                default -> Duration.ofMinutes(Long.parseLong(relative.group(2)));
+            };
+            return (relative.group(1).equals("-") ? now.minus(offset) : now.plus(offset)).toEpochMilli();
+        }
+
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ignored) {
+            // not a number, maybe a date
+        }
+
+        try {
+            return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+            // not a date, maybe an instant
+        }
+
+        try {
+            return Instant.parse(value).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new InvalidSearchRequestException("Invalid filter value: '" + value + "', expected a number or a date");
+        }
+    }
+}
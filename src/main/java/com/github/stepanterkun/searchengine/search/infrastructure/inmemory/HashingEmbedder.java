@@ -0,0 +1,98 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process text embedding without a model: every term is split into character
+ * trigrams (plus the whole term) which are hashed into a fixed number of dimensions
+ * with a random sign ("feature hashing"). The result is L2-normalized, so the dot
+ * product of two vectors is their cosine similarity.
+ * <p>
+ * Terms sharing most of their trigrams ({@code index}, {@code indexing}, {@code indexes})
+ * end up close to each other, which keyword matching alone misses.
+ */
+final class HashingEmbedder {
+
+    private static final int NGRAM = 3;
+
+    private final int dimensions;
+
+    HashingEmbedder(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Embeds an analyzed document, terms are weighted by {@code 1 + log(tf)}.
+     */
+    float[] embed(IndexedDocument doc, double titleBoost) {
+        float[] vector = new float[dimensions];
+        for (Map.Entry<String, TermStats> entry : doc.terms().entrySet()) {
+            TermStats stats = entry.getValue();
+            double tf = stats.contentFreq() + titleBoost * stats.titleFreq();
+            // keyword metadata terms (tag:java) have no frequencies
+            if (tf > 0) {
+                addTerm(vector, entry.getKey(), (float) (1 + Math.log(tf)));
+            }
+        }
+        return normalize(vector);
+    }
+
+    /**
+     * Embeds query tokens with equal weights.
+     */
+    float[] embed(List<String> tokens) {
+        float[] vector = new float[dimensions];
+        for (String token : tokens) {
+            addTerm(vector, token, 1f);
+        }
+        return normalize(vector);
+    }
+
+    private void addTerm(float[] vector, String term, float weight) {
+        addFeature(vector, term.hashCode(), weight);
+
+        // "<" and ">" mark word boundaries, so prefixes and suffixes get their own trigrams
+        String padded = "<" + term + ">";
+        for (int i = 0; i + NGRAM <= padded.length(); i++) {
+            addFeature(vector, padded.substring(i, i + NGRAM).hashCode() * 31 + 7, weight);
+        }
+    }
+
+    private void addFeature(float[] vector, int hash, float weight) {
+        int mixed = mix(hash);
+        int index = Math.floorMod(mixed, dimensions);
+        // an independent bit decides the sign, so collisions cancel out on average
+        vector[index] += (mixed & 0x8000_0000) == 0 ? weight : -weight;
+    }
+
+    // murmur3 finalizer, spreads String.hashCode over all bits
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85eb_ca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2_ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            return vector;
+        }
+
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.nio.IntBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link Segment} that keeps postings and documents as regular Java objects.
+ */
+final class HeapSegment extends Segment {
+
+    // local id -> analyzed document, source for merges and snapshots
+    private final IndexedDocument[] documents;
+
+    // approximate heap cost of a dictionary entry besides the term chars and posting ints:
+    // hash map node, String, Postings and IntBuffer headers
+    private static final int TERM_OVERHEAD_BYTES = 128;
+
+    // term -> postings
+    private final Map<String, Postings> postings;
+
+    private final long postingsBytes;
+
+    private HeapSegment(IndexedDocument[] documents, Map<String, Postings.Builder> builders,
+                        Impacts.Options impacts, Map<String, Postings> postings, long postingsBytes) {
+        super(documents, builders, impacts);
+        this.documents = documents;
+        this.postings = postings;
+        this.postingsBytes = postingsBytes;
+    }
+
+    static HeapSegment build(Collection<IndexedDocument> docs, Impacts.Options impacts) {
+        IndexedDocument[] sorted = sortedUnique(docs);
+        Map<String, Postings.Builder> builders = invert(sorted);
+
+        Map<String, Postings> postings = new HashMap<>(builders.size() * 2);
+        long postingsBytes = 0;
+        for (Map.Entry<String, Postings.Builder> entry : builders.entrySet()) {
+            int[] data = entry.getValue().toArray();
+            postings.put(entry.getKey(), new Postings(IntBuffer.wrap(data)));
+            postingsBytes += TERM_OVERHEAD_BYTES + 2L * entry.getKey().length() + (long) data.length * Integer.BYTES;
+        }
+
+        return new HeapSegment(sorted, builders, impacts, postings, postingsBytes);
+    }
+
+    @Override
+    long sizeInBytes() {
+        return columnBytes() + postingsBytes;
+    }
+
+    @Override
+    IndexedDocument document(int localId) {
+        return documents[localId];
+    }
+
+    @Override
+    Postings postings(String term) {
+        return postings.get(term);
+    }
+}
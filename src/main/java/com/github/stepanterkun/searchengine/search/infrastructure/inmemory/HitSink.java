@@ -0,0 +1,10 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+/**
+ * Receives the hits of a shard.
+ */
+@FunctionalInterface
+interface HitSink {
+
+    void collect(ScoredDoc hit);
+}
@@ -0,0 +1,62 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Top hits of a query plus what is needed about all of them: their number and status counts.
+ */
+record Hits(List<ScoredDoc> top, int total, long[] statusCounts) {
+
+    static Hits sortedByScore(List<ScoredDoc> hits) {
+        hits.sort(ScoredDoc.BEST_FIRST);
+
+        long[] statusCounts = new long[DocumentStatus.values().length];
+        for (ScoredDoc hit : hits) {
+            if (hit.status() >= 0) {
+                statusCounts[hit.status()]++;
+            }
+        }
+        return new Hits(hits, hits.size(), statusCounts);
+    }
+
+    /**
+     * K-way merge of the top hits of shards, keeps the {@code limit} best; totals and status counts add up.
+     */
+    static Hits merge(List<Hits> shards, int limit) {
+        record Cursor(int shard, int position, ScoredDoc hit) {
+        }
+
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Comparator.comparing(Cursor::hit, ScoredDoc.BEST_FIRST));
+        int total = 0;
+        long[] statusCounts = new long[DocumentStatus.values().length];
+
+        for (int i = 0; i < shards.size(); i++) {
+            Hits shard = shards.get(i);
+            total += shard.total();
+            for (int status = 0; status < statusCounts.length; status++) {
+                statusCounts[status] += shard.statusCounts()[status];
+            }
+            if (!shard.top().isEmpty()) {
+                heads.add(new Cursor(i, 0, shard.top().get(0)));
+            }
+        }
+
+        List<ScoredDoc> merged = new ArrayList<>();
+        while (merged.size() < limit && !heads.isEmpty()) {
+            Cursor head = heads.poll();
+            merged.add(head.hit());
+
+            List<ScoredDoc> top = shards.get(head.shard()).top();
+            int next = head.position() + 1;
+            if (next < top.size()) {
+                heads.add(new Cursor(head.shard(), next, top.get(next)));
+            }
+        }
+        return new Hits(merged, total, statusCounts);
+    }
+}
@@ -0,0 +1,386 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hierarchical navigable small world graph (Malkov and Yashunin) over the document
+ * vectors of one owner, for approximate nearest-neighbour search by cosine similarity.
+ * Vectors must be L2-normalized.
+ * <p>
+ * Inserts are incremental. Deletes only mark the node: it still routes searches but is
+ * never returned. When more than half of the nodes are deleted the graph is rebuilt from
+ * the live ones, so deleted nodes never dominate the work of a search.
+ * <p>
+ * Thread-safe: updates take the write lock, searches the read lock.
+ */
+final class HnswGraph {
+
+    /**
+     * Search result, {@code similarity} is the dot product of the vectors.
+     */
+    record Neighbor(long docId, float similarity) {
+    }
+
+    // rebuild when this share of the nodes is deleted
+    private static final double MAX_DELETED_RATIO = 0.5;
+    private static final int MIN_NODES_TO_COMPACT = 64;
+
+    private record Candidate(int node, float similarity) {
+    }
+
+    private static final Comparator<Candidate> CLOSEST_FIRST =
+            Comparator.comparingDouble(Candidate::similarity).reversed();
+    private static final Comparator<Candidate> FARTHEST_FIRST =
+            Comparator.comparingDouble(Candidate::similarity);
+
+    private static final class Node {
+        private final long docId;
+        private final float[] vector;
+        // level -> ids of neighbour nodes, the first neighbourCounts[level] entries are used
+        private final int[][] neighbours;
+        private final int[] neighbourCounts;
+        private boolean deleted;
+
+        private Node(long docId, float[] vector, int level, int m) {
+            this.docId = docId;
+            this.vector = vector;
+            this.neighbours = new int[level + 1][];
+            this.neighbourCounts = new int[level + 1];
+            for (int l = 0; l <= level; l++) {
+                neighbours[l] = new int[maxConnections(l, m)];
+            }
+        }
+
+        private int level() {
+            return neighbours.length - 1;
+        }
+    }
+
+    private final int m;
+    private final int efConstruction;
+    private final double levelFactor;
+    private final Random random = new Random(42);
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<Long, Integer> nodeByDoc = new HashMap<>();
+    private int entryPoint = -1;
+    private int deletedCount;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param m              neighbours per node on the upper levels, twice as many on level 0
+     * @param efConstruction candidate list size while inserting, higher means better graph and slower inserts
+     */
+    HnswGraph(int m, int efConstruction) {
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.levelFactor = 1 / Math.log(m);
+    }
+
+    /**
+     * Adds the document vector, replacing a previous vector of the same document.
+     */
+    void insert(long docId, float[] vector) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(docId);
+            insertLocked(docId, vector);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long docId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(docId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of live documents.
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return nodeByDoc.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Approximate {@code k} nearest live documents, most similar first.
+     *
+     * @param ef candidate list size, at least {@code k}; higher means better recall and slower search
+     */
+    List<Neighbor> search(float[] query, int k, int ef) {
+        lock.readLock().lock();
+        try {
+            if (nodeByDoc.isEmpty()) {
+                return List.of();
+            }
+
+            int entry = entryPoint;
+            for (int level = nodes.get(entry).level(); level > 0; level--) {
+                entry = greedyClosest(query, entry, level);
+            }
+
+            // deleted nodes take places in the candidate list, make room for them
+            int effectiveEf = (int) Math.ceil(Math.max(ef, k) * (double) nodes.size() / nodeByDoc.size());
+            List<Candidate> candidates = searchLevel(query, entry, effectiveEf, 0);
+
+            List<Neighbor> result = new ArrayList<>(k);
+            for (Candidate candidate : candidates) {
+                Node node = nodes.get(candidate.node());
+                if (!node.deleted) {
+                    result.add(new Neighbor(node.docId, candidate.similarity()));
+                    if (result.size() == k) {
+                        break;
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Exact {@code k} nearest live documents by scanning all of them, the baseline for recall.
+     */
+    List<Neighbor> exactSearch(float[] query, int k) {
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Candidate> best = new PriorityQueue<>(FARTHEST_FIRST);
+            for (int id : nodeByDoc.values()) {
+                best.add(new Candidate(id, similarity(query, nodes.get(id).vector)));
+                if (best.size() > k) {
+                    best.poll();
+                }
+            }
+
+            List<Candidate> sorted = new ArrayList<>(best);
+            sorted.sort(CLOSEST_FIRST);
+            return sorted.stream()
+                         .map(c -> new Neighbor(nodes.get(c.node()).docId, c.similarity()))
+                         .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insertLocked(long docId, float[] vector) {
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelFactor);
+        int id = nodes.size();
+        Node node = new Node(docId, vector, level, m);
+        nodes.add(node);
+        nodeByDoc.put(docId, id);
+
+        if (entryPoint < 0) {
+            entryPoint = id;
+            return;
+        }
+
+        int entry = entryPoint;
+        int topLevel = nodes.get(entryPoint).level();
+        for (int l = topLevel; l > level; l--) {
+            entry = greedyClosest(vector, entry, l);
+        }
+
+        for (int l = Math.min(level, topLevel); l >= 0; l--) {
+            List<Candidate> candidates = searchLevel(vector, entry, efConstruction, l);
+            for (Candidate neighbour : selectNeighbours(candidates, maxConnections(l, m))) {
+                addConnection(id, neighbour.node(), l);
+                addConnection(neighbour.node(), id, l);
+            }
+            entry = candidates.get(0).node();
+        }
+
+        if (level > topLevel) {
+            entryPoint = id;
+        }
+    }
+
+    private void removeLocked(long docId) {
+        Integer id = nodeByDoc.remove(docId);
+        if (id == null) {
+            return;
+        }
+
+        nodes.get(id).deleted = true;
+        deletedCount++;
+
+        if (nodes.size() >= MIN_NODES_TO_COMPACT && deletedCount > MAX_DELETED_RATIO * nodes.size()) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        List<Node> live = nodes.stream().filter(node -> !node.deleted).toList();
+
+        nodes.clear();
+        nodeByDoc.clear();
+        entryPoint = -1;
+        deletedCount = 0;
+
+        live.forEach(node -> insertLocked(node.docId, node.vector));
+    }
+
+    // walks to the most similar neighbour until there is none better
+    private int greedyClosest(float[] query, int entry, int level) {
+        int current = entry;
+        float best = similarity(query, nodes.get(current).vector);
+
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            Node node = nodes.get(current);
+            for (int i = 0; i < node.neighbourCounts[level]; i++) {
+                int neighbour = node.neighbours[level][i];
+                float s = similarity(query, nodes.get(neighbour).vector);
+                if (s > best) {
+                    best = s;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search on one level.
+     *
+     * @return up to {@code ef} closest nodes found, closest first, deleted ones included
+     */
+    private List<Candidate> searchLevel(float[] query, int entry, int ef, int level) {
+        BitSet visited = new BitSet(nodes.size());
+        PriorityQueue<Candidate> toVisit = new PriorityQueue<>(CLOSEST_FIRST);
+        // worst found so far on top, so it can be replaced
+        PriorityQueue<Candidate> found = new PriorityQueue<>(FARTHEST_FIRST);
+
+        Candidate start = new Candidate(entry, similarity(query, nodes.get(entry).vector));
+        visited.set(entry);
+        toVisit.add(start);
+        found.add(start);
+
+        while (!toVisit.isEmpty()) {
+            Candidate current = toVisit.poll();
+            if (found.size() >= ef && current.similarity() < found.peek().similarity()) {
+                break; // everything left is farther than the worst result
+            }
+
+            Node node = nodes.get(current.node());
+            for (int i = 0; i < node.neighbourCounts[level]; i++) {
+                int neighbour = node.neighbours[level][i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+
+                float s = similarity(query, nodes.get(neighbour).vector);
+                if (found.size() < ef || s > found.peek().similarity()) {
+                    Candidate candidate = new Candidate(neighbour, s);
+                    toVisit.add(candidate);
+                    found.add(candidate);
+                    if (found.size() > ef) {
+                        found.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> result = new ArrayList<>(found);
+        result.sort(CLOSEST_FIRST);
+        return result;
+    }
+
+    /**
+     * Neighbour selection heuristic: a candidate is skipped if it is closer to an already
+     * selected neighbour than to the base node, which keeps links pointing in different
+     * directions. Skipped candidates fill the remaining places.
+     *
+     * @param candidates similarities are to the base node, closest first
+     */
+    private List<Candidate> selectNeighbours(List<Candidate> candidates, int max) {
+        List<Candidate> selected = new ArrayList<>(max);
+        List<Candidate> skipped = new ArrayList<>();
+
+        for (Candidate candidate : candidates) {
+            if (selected.size() == max) {
+                break;
+            }
+
+            float[] vector = nodes.get(candidate.node()).vector;
+            boolean diverse = true;
+            for (Candidate chosen : selected) {
+                if (similarity(vector, nodes.get(chosen.node()).vector) > candidate.similarity()) {
+                    diverse = false;
+                    break;
+                }
+            }
+
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                skipped.add(candidate);
+            }
+        }
+
+        for (int i = 0; i < skipped.size() && selected.size() < max; i++) {
+            selected.add(skipped.get(i));
+        }
+        return selected;
+    }
+
+    private void addConnection(int from, int to, int level) {
+        Node node = nodes.get(from);
+        int[] links = node.neighbours[level];
+        int count = node.neighbourCounts[level];
+
+        if (count < links.length) {
+            links[count] = to;
+            node.neighbourCounts[level]++;
+            return;
+        }
+
+        // full: keep the best of the current links plus the new one
+        List<Candidate> candidates = new ArrayList<>(count + 1);
+        for (int i = 0; i < count; i++) {
+            candidates.add(new Candidate(links[i], similarity(node.vector, nodes.get(links[i]).vector)));
+        }
+        candidates.add(new Candidate(to, similarity(node.vector, nodes.get(to).vector)));
+        candidates.sort(CLOSEST_FIRST);
+
+        List<Candidate> kept = selectNeighbours(candidates, links.length);
+        for (int i = 0; i < kept.size(); i++) {
+            links[i] = kept.get(i).node();
+        }
+        node.neighbourCounts[level] = kept.size();
+    }
+
+    private static int maxConnections(int level, int m) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    static float similarity(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
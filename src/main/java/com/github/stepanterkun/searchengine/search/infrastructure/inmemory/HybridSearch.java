@@ -0,0 +1,135 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Semantic half of hybrid search: an HNSW graph of document vectors per owner and the fusion
+ * of its nearest neighbours with the keyword hits of a query.
+ * <p>
+ * Vectors are derived from the analyzed documents, so restore and catch-up rebuild the graphs
+ * together with the partitions. Graphs are updated under the refreshLock of the index.
+ */
+final class HybridSearch {
+
+    // reciprocal rank fusion constant, damps the difference between the very first ranks
+    static final int RRF_K = 60;
+
+    private final HashingEmbedder embedder;
+    private final SearchIndexProperties.Vector settings;
+
+    // ownerId -> HNSW graph of the owner's document vectors
+    private final Map<Long, HnswGraph> graphs = new ConcurrentHashMap<>();
+
+    HybridSearch(SearchIndexProperties.Vector settings) {
+        this.settings = settings;
+        this.embedder = new HashingEmbedder(settings.getDimensions());
+    }
+
+    /**
+     * @return graph of the owner's documents, {@code null} if the owner has none
+     */
+    HnswGraph graph(Long ownerId) {
+        return graphs.get(ownerId);
+    }
+
+    /**
+     * Keyword hits fused with the nearest neighbours of the query vector by reciprocal rank fusion:
+     * a document scores {@code sum(1 / (RRF_K + rank))} over the lists it appears in. Ranks fuse
+     * well where raw TF-IDF and cosine scores, being on different scales, would not.
+     *
+     * @param keyword keyword hits of the query in any order
+     */
+    Hits fuse(PartitionView view, HnswGraph graph, List<String> tokens, DocFilter filter, List<ScoredDoc> keyword) {
+        List<ScoredDoc> ranked = new ArrayList<>(keyword);
+        ranked.sort(Comparator.comparingDouble(ScoredDoc::score).reversed()
+                              .thenComparingLong(ScoredDoc::docId));
+
+        List<ScoredDoc> semantic = nearest(view, graph, embedder.embed(tokens), filter);
+
+        Map<Long, ScoredDoc> fused = new HashMap<>();
+        for (List<ScoredDoc> ranking : List.of(ranked, semantic)) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                ScoredDoc hit = ranking.get(rank);
+                fused.merge(hit.docId(),
+                        new ScoredDoc(hit.docId(), 1.0 / (RRF_K + rank + 1), hit.status(), hit.passage()),
+                        (a, b) -> new ScoredDoc(a.docId(), a.score() + b.score(), a.status(),
+                                a.passage() != null ? a.passage() : b.passage()));
+            }
+        }
+
+        return Hits.sortedByScore(new ArrayList<>(fused.values()));
+    }
+
+    /**
+     * Nearest neighbours of the query vector that are live in the view and pass the filter,
+     * most similar first, scored by cosine similarity.
+     */
+    private List<ScoredDoc> nearest(PartitionView view, HnswGraph graph, float[] queryVector, DocFilter filter) {
+        record Located(int segment, int localId, float similarity) {
+        }
+
+        List<PartitionView.LiveSegment> segments = view.segments();
+        DocBitSet[] candidates = new DocBitSet[segments.size()];
+        List<Located> located = new ArrayList<>();
+
+        // the graph may be a refresh ahead of or behind the view, the view decides what is live
+        for (HnswGraph.Neighbor neighbour : graph.search(queryVector, settings.getCandidates(),
+                                                         settings.getEfSearch())) {
+            if (neighbour.similarity() < settings.getMinSimilarity()) {
+                break;
+            }
+
+            for (int s = 0; s < segments.size(); s++) {
+                PartitionView.LiveSegment live = segments.get(s);
+                int localId = live.segment().localId(neighbour.docId());
+                if (localId >= 0 && live.liveDocs().isLive(localId)) {
+                    if (candidates[s] == null) {
+                        candidates[s] = new DocBitSet(live.segment().size());
+                    }
+                    candidates[s].set(localId);
+                    located.add(new Located(s, localId, neighbour.similarity()));
+                    break;
+                }
+            }
+        }
+
+        for (int s = 0; s < segments.size(); s++) {
+            if (candidates[s] != null) {
+                filter.apply(segments.get(s).segment(), candidates[s]);
+            }
+        }
+
+        List<ScoredDoc> result = new ArrayList<>(located.size());
+        for (Located doc : located) {
+            if (candidates[doc.segment()].get(doc.localId())) {
+                Segment segment = segments.get(doc.segment()).segment();
+                result.add(new ScoredDoc(segment.docId(doc.localId()), doc.similarity(), segment.status(doc.localId())));
+            }
+        }
+        return result;
+    }
+
+    // added documents are expected to be only those whose text changed
+    void update(Long ownerId, List<IndexedDocument> added, List<Long> removed) {
+        HnswGraph graph = graphs.computeIfAbsent(
+                ownerId,
+                o -> new HnswGraph(settings.getM(), settings.getEfConstruction())
+        );
+
+        removed.forEach(graph::remove);
+        added.forEach(doc -> graph.insert(doc.id(), embedder.embed(doc, TermStats.TITLE_BOOST)));
+    }
+
+    void remove(Long ownerId) {
+        graphs.remove(ownerId);
+    }
+
+    void clear() {
+        graphs.clear();
+    }
+}
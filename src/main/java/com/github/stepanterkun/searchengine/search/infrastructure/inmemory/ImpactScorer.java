@@ -0,0 +1,305 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scores segments built with {@link Impacts}, one slice at a time. The score of a document is
+ * {@code quantum * sum(unit * impact)} over the query terms, where {@code unit} is the query
+ * weight times the impact scale in whole quanta. Sums of integers do not depend on the order
+ * they are added in, so reading postings best first gives the same scores as reading them by doc id.
+ * <p>
+ * If the sink keeps only the top hits, the whole segment is scored and every matching document
+ * scores at least the minimum score, postings are read by descending impact and reading stops
+ * as soon as the documents not seen yet cannot reach the top hits (score-at-a-time, Anh and Moffat).
+ * The documents seen get their exact score, the rest is only counted. Before that the champion
+ * lists of frequent terms are tried, see {@link #scoreChampions}.
+ */
+final class ImpactScorer {
+
+    // impact scores are counted in quanta of the largest query weight divided by this
+    private static final double IMPACT_QUANTA = 1 << 20;
+    // postings read best first before checking whether the top hits are settled, doubles after every check
+    private static final long IMPACT_CHECK_POSTINGS = 1024;
+
+    // hits scoring less are dropped
+    private final double minScore;
+    // segments whose top hits were found without reading all their postings
+    private final AtomicLong earlyTerminatedSegments = new AtomicLong();
+    // segments whose top hits were found among the champion lists alone
+    private final AtomicLong championSegments = new AtomicLong();
+
+    ImpactScorer(double minScore) {
+        this.minScore = minScore;
+    }
+
+    long earlyTerminatedSegments() {
+        return earlyTerminatedSegments.get();
+    }
+
+    long championSegments() {
+        return championSegments.get();
+    }
+
+    /**
+     * Scores local ids {@code [from, to)} of the segment, hands every hit scoring at least
+     * the minimum score to the sink.
+     */
+    void score(PartitionView.LiveSegment live, int from, int to, Map<String, Double> weights, DocFilter filter,
+               HitSink sink) {
+        Segment segment = live.segment();
+
+        double maxWeight = 0;
+        for (double weight : weights.values()) {
+            maxWeight = Math.max(maxWeight, Math.abs(weight));
+        }
+        double quantum = maxWeight / IMPACT_QUANTA;
+
+        int termCount = 0;
+        Postings[] postings = new Postings[weights.size()];
+        Impacts[] impacts = new Impacts[weights.size()];
+        long[] units = new long[weights.size()];
+        // smallest possible score of a matching document, in quanta
+        long lowestSum = Long.MAX_VALUE;
+
+        for (Map.Entry<String, Double> term : weights.entrySet()) {
+            Postings termPostings = segment.postings(term.getKey());
+            if (termPostings == null) continue;
+
+            Impacts termImpacts = segment.impacts(term.getKey());
+            long unit = Math.round(term.getValue() * termImpacts.scale() / quantum);
+            postings[termCount] = termPostings;
+            impacts[termCount] = termImpacts;
+            units[termCount] = term.getValue() > 0 ? Math.max(1, unit) : unit;
+            int lowestImpact = termImpacts.impact(termImpacts.position(termImpacts.size() - 1));
+            lowestSum = Math.min(lowestSum, units[termCount] * lowestImpact);
+            termCount++;
+        }
+        if (termCount == 0) return;
+
+        // ranks by impact only make sense for the whole segment, passages add scores the impacts do not know
+        if (sink instanceof TopHitsCollector top && top.limit() > 0 && top.limit() < Integer.MAX_VALUE
+            && from == 0 && to == segment.size()
+            && !segment.hasPassages() && quantum * lowestSum >= minScore) {
+            // the documents that count, so that deleted and filtered ones take no place in the top hits
+            DocBitSet matched = new DocBitSet(segment.size());
+            for (int t = 0; t < termCount; t++) {
+                for (int i = 0; i < postings[t].size(); i++) {
+                    matched.set(postings[t].doc(i));
+                }
+            }
+            matched.andNot(live.liveDocs().deleted());
+            filter.apply(segment, matched);
+
+            if (scoreChampions(segment, matched, postings, impacts, units, termCount, quantum, top)) {
+                championSegments.incrementAndGet();
+            } else if (scoreBestFirst(segment, matched, postings, impacts, units, termCount, quantum, top)) {
+                earlyTerminatedSegments.incrementAndGet();
+            }
+            return;
+        }
+
+        // local id - slice.from -> score in quanta
+        long[] sums = new long[to - from];
+        DocBitSet matched = new DocBitSet(segment.size());
+        for (int t = 0; t < termCount; t++) {
+            Postings termPostings = postings[t];
+            int size = termPostings.size();
+            for (int i = termPostings.firstAtLeast(from); i < size; i++) {
+                int doc = termPostings.doc(i);
+                if (doc >= to) break;
+
+                sums[doc - from] += units[t] * impacts[t].impact(i);
+                matched.set(doc);
+            }
+        }
+
+        matched.andNot(live.liveDocs().deleted());
+        filter.apply(segment, matched);
+
+        for (int local = matched.nextSetBit(from); local >= 0; local = matched.nextSetBit(local + 1)) {
+            Passages passages = segment.passages(local);
+            Passages.Span passage = passages == null ? null : passages.best(weights);
+            double score = quantum * sums[local - from] + (passage == null ? 0.0 : passage.score());
+
+            if (score >= minScore) {
+                sink.collect(new ScoredDoc(segment.docId(local), score, segment.status(local), passage));
+            }
+        }
+    }
+
+    /**
+     * Reads the postings of the whole segment a block of equal impact at a time, always the block
+     * adding the most to a score next. Every {@link #IMPACT_CHECK_POSTINGS} postings, doubling,
+     * it checks whether the scores left to read could still lift a document not seen yet
+     * above the {@code limit}-th partial score.
+     *
+     * @return whether reading stopped before the end of the postings
+     */
+    private boolean scoreBestFirst(Segment segment, DocBitSet matched, Postings[] postings, Impacts[] impacts,
+                                   long[] units, int termCount, double quantum, TopHitsCollector top) {
+        int limit = top.limit();
+
+        // local id -> partial score in quanta
+        long[] sums = new long[segment.size()];
+        // local ids with a partial score, in the order they were first seen
+        int[] seen = new int[Math.max(16, limit)];
+        int seenCount = 0;
+
+        // term -> rank of its next posting by impact
+        int[] ranks = new int[termCount];
+        long read = 0;
+        long nextCheck = IMPACT_CHECK_POSTINGS;
+        boolean stopped = false;
+
+        while (!stopped) {
+            int best = -1;
+            long bestContribution = 0;
+            for (int t = 0; t < termCount; t++) {
+                if (ranks[t] < impacts[t].size()) {
+                    long contribution = units[t] * impacts[t].impact(impacts[t].position(ranks[t]));
+                    if (contribution > bestContribution) {
+                        best = t;
+                        bestContribution = contribution;
+                    }
+                }
+            }
+            if (best < 0) {
+                break; // everything read, the partial scores are the exact ones
+            }
+
+            Impacts blockImpacts = impacts[best];
+            int impact = blockImpacts.impact(blockImpacts.position(ranks[best]));
+            for (; ranks[best] < blockImpacts.size(); ranks[best]++) {
+                int position = blockImpacts.position(ranks[best]);
+                if (blockImpacts.impact(position) != impact) break;
+
+                int doc = postings[best].doc(position);
+                read++;
+                if (!matched.get(doc)) continue;
+
+                if (sums[doc] == 0) {
+                    if (seenCount == seen.length) {
+                        seen = Arrays.copyOf(seen, seenCount * 2);
+                    }
+                    seen[seenCount++] = doc;
+                }
+                sums[doc] += bestContribution;
+            }
+
+            if (read < nextCheck || seenCount < limit) continue;
+            nextCheck = read * 2;
+
+            // most a document not seen yet can still get
+            long remaining = 0;
+            for (int t = 0; t < termCount; t++) {
+                if (ranks[t] < impacts[t].size()) {
+                    remaining += units[t] * impacts[t].impact(impacts[t].position(ranks[t]));
+                }
+            }
+
+            long[] partial = new long[seenCount];
+            for (int i = 0; i < seenCount; i++) {
+                partial[i] = sums[seen[i]];
+            }
+            Arrays.sort(partial);
+            // partial scores only grow, so the limit-th exact score is at least this
+            stopped = remaining < partial[seenCount - limit];
+        }
+
+        // exact scores of the documents seen, the rest of the matching ones is only counted
+        for (int i = 0; i < seenCount; i++) {
+            int doc = seen[i];
+            long sum = stopped ? impactSum(doc, postings, impacts, units, termCount) : sums[doc];
+            top.collect(new ScoredDoc(segment.docId(doc), quantum * sum, segment.status(doc), null));
+            matched.clear(doc);
+        }
+        countRest(segment, matched, top);
+        return stopped;
+    }
+
+    /**
+     * Looks for the top hits among the champion lists only: the documents in the champion list
+     * of a frequent term or in the postings of a rare one get their exact score. Any other
+     * document gets at most the best impact outside of the champion lists of its terms, so the
+     * hits found are the top ones if the {@code limit}-th of them scores above that.
+     *
+     * @return false if the segment has no champion lists for the query, they hold fewer than
+     * {@code limit} hits or the hits cannot be proven the top ones; nothing is handed to the sink then
+     */
+    private boolean scoreChampions(Segment segment, DocBitSet matched, Postings[] postings, Impacts[] impacts,
+                                   long[] units, int termCount, double quantum, TopHitsCollector top) {
+        int limit = top.limit();
+
+        // most a document outside of the candidates can get, in quanta
+        long rest = 0;
+        boolean hasChampions = false;
+        for (int t = 0; t < termCount; t++) {
+            if (impacts[t].champions() != null) {
+                hasChampions = true;
+                rest += units[t] * impacts[t].restMaxImpact();
+            }
+        }
+        if (!hasChampions) {
+            return false;
+        }
+
+        DocBitSet candidates = new DocBitSet(segment.size());
+        int[] docs = new int[Math.max(16, limit)];
+        int count = 0;
+        for (int t = 0; t < termCount; t++) {
+            int[] champions = impacts[t].champions();
+            int size = champions == null ? postings[t].size() : champions.length;
+            for (int i = 0; i < size; i++) {
+                int doc = postings[t].doc(champions == null ? i : champions[i]);
+                if (!matched.get(doc) || candidates.get(doc)) continue;
+
+                if (count == docs.length) {
+                    docs = Arrays.copyOf(docs, count * 2);
+                }
+                docs[count++] = doc;
+                candidates.set(doc);
+            }
+        }
+        if (count < limit) {
+            return false;
+        }
+
+        long[] sums = new long[count];
+        for (int i = 0; i < count; i++) {
+            sums[i] = impactSum(docs[i], postings, impacts, units, termCount);
+        }
+        long[] sorted = sums.clone();
+        Arrays.sort(sorted);
+        if (sorted[count - limit] <= rest) {
+            return false;
+        }
+
+        for (int i = 0; i < count; i++) {
+            top.collect(new ScoredDoc(segment.docId(docs[i]), quantum * sums[i], segment.status(docs[i]), null));
+            matched.clear(docs[i]);
+        }
+        countRest(segment, matched, top);
+        return true;
+    }
+
+    // matching documents left out of the hits are only counted
+    private static void countRest(Segment segment, DocBitSet matched, TopHitsCollector top) {
+        for (int local = matched.nextSetBit(0); local >= 0; local = matched.nextSetBit(local + 1)) {
+            top.count(segment.status(local));
+        }
+    }
+
+    // score of one document in quanta, looked up term by term
+    private static long impactSum(int doc, Postings[] postings, Impacts[] impacts, long[] units, int termCount) {
+        long sum = 0;
+        for (int t = 0; t < termCount; t++) {
+            int position = postings[t].indexOf(doc);
+            if (position >= 0) {
+                sum += units[t] * impacts[t].impact(position);
+            }
+        }
+        return sum;
+    }
+}
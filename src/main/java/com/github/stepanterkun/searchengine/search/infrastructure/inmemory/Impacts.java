@@ -0,0 +1,155 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed score contributions of the postings of one term inside a {@link Segment}.
+ * <p>
+ * The weight of a posting, {@code contentFreq + TITLE_BOOST * titleFreq} (title only for
+ * documents ranked by passage), is quantized to an unsigned byte relative to the heaviest
+ * posting of the term: {@code weight ~ impact * scale}. Every matching posting gets at least 1.
+ * A query multiplies the impact by {@code idf * scale}, a single constant per term.
+ * <p>
+ * Posting positions are also kept sorted by descending impact, so the postings of a term
+ * can be visited best first and evaluation can stop early.
+ * <p>
+ * A term in many documents also gets a champion list: the positions of its best postings,
+ * in doc id order. Any posting outside of it has an impact of at most {@link #restMaxImpact()}.
+ */
+final class Impacts {
+
+    static final int MAX_IMPACT = 255;
+
+    /**
+     * @param championMinDocFreq terms in at least this many documents of the segment get a champion list
+     * @param championListSize   postings in a champion list
+     */
+    record Options(int championMinDocFreq, int championListSize) {
+    }
+
+    // posting position -> quantized weight, unsigned
+    private final byte[] impacts;
+
+    // weight of impact 1
+    private final float scale;
+
+    // posting positions by descending impact, ascending position within one impact
+    private final int[] order;
+
+    // positions of the best postings by ascending position, null if the term has no champion list
+    private final int[] champions;
+
+    private Impacts(byte[] impacts, float scale, int[] order, int[] champions) {
+        this.impacts = impacts;
+        this.scale = scale;
+        this.order = order;
+        this.champions = champions;
+    }
+
+    /**
+     * @param passages local id -> passages of the segment's documents, null if no document has any
+     */
+    static Impacts of(Postings.Builder postings, Passages[] passages, double titleBoost, Options options) {
+        int size = postings.size();
+        double[] weights = new double[size];
+        double max = 0;
+        for (int i = 0; i < size; i++) {
+            boolean byPassage = passages != null && passages[postings.doc(i)] != null;
+            weights[i] = byPassage
+                    ? titleBoost * postings.titleFreq(i)
+                    : postings.contentFreq(i) + titleBoost * postings.titleFreq(i);
+            max = Math.max(max, weights[i]);
+        }
+
+        float scale = max == 0 ? 1f : (float) (max / MAX_IMPACT);
+        byte[] impacts = new byte[size];
+        // impact -> postings with it, for the counting sort below
+        int[] counts = new int[MAX_IMPACT + 1];
+        for (int i = 0; i < size; i++) {
+            int impact = weights[i] == 0 ? 0 : (int) Math.max(1, Math.min(MAX_IMPACT, Math.round(weights[i] / scale)));
+            impacts[i] = (byte) impact;
+            counts[impact]++;
+        }
+
+        // impact -> first place in the order, best first
+        int[] starts = new int[MAX_IMPACT + 1];
+        for (int impact = MAX_IMPACT - 1; impact >= 0; impact--) {
+            starts[impact] = starts[impact + 1] + counts[impact + 1];
+        }
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[starts[impacts[i] & 0xFF]++] = i;
+        }
+
+        int[] champions = null;
+        if (size >= options.championMinDocFreq() && size > options.championListSize()) {
+            int length = championLength(impacts, order, options.championListSize());
+            champions = Arrays.copyOf(order, length);
+            Arrays.sort(champions);
+        }
+
+        return new Impacts(impacts, scale, order, champions);
+    }
+
+    // cuts the list between two impacts if it can, a rest starting with the impact of the last
+    // champion would tie with it; goes on up to twice the size to finish that impact, else back to its start
+    private static int championLength(byte[] impacts, int[] order, int size) {
+        int last = impacts[order[size - 1]];
+        int end = size;
+        while (end < order.length && end < 2 * size && impacts[order[end]] == last) {
+            end++;
+        }
+        if (end == order.length || impacts[order[end]] != last) {
+            return end;
+        }
+
+        int start = size - 1;
+        while (start > 0 && impacts[order[start - 1]] == last) {
+            start--;
+        }
+        return start > 0 ? start : size;
+    }
+
+    /**
+     * @return quantized weight of the posting at this position, 0..{@link #MAX_IMPACT}
+     */
+    int impact(int position) {
+        return impacts[position] & 0xFF;
+    }
+
+    float scale() {
+        return scale;
+    }
+
+    /**
+     * @return position of the {@code rank}-th posting by descending impact
+     */
+    int position(int rank) {
+        return order[rank];
+    }
+
+    int size() {
+        return impacts.length;
+    }
+
+    /**
+     * @return positions of the best postings in ascending order, or {@code null} if the term has no champion list
+     */
+    int[] champions() {
+        return champions;
+    }
+
+    /**
+     * @return highest impact of a posting outside of the champion list, only if there is one
+     */
+    int restMaxImpact() {
+        return impact(order[champions.length]);
+    }
+
+    /**
+     * Rough heap footprint, used for memory accounting.
+     */
+    long sizeInBytes() {
+        return (long) impacts.length * (1 + Integer.BYTES) + (champions == null ? 0 : (long) champions.length * Integer.BYTES);
+    }
+}
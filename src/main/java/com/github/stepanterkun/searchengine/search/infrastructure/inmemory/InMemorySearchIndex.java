@@ -1,10 +1,16 @@
 package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
 
 import com.github.stepanterkun.searchengine.document.domain.model.Document;
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentMetadata;
 import com.github.stepanterkun.searchengine.document.domain.model.DocumentNotFoundException;
 import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
 import com.github.stepanterkun.searchengine.document.domain.port.DocumentRepository;
 import com.github.stepanterkun.searchengine.search.domain.model.DocumentSummary;
+import com.github.stepanterkun.searchengine.search.domain.model.IndexCapacityExceededException;
+import com.github.stepanterkun.searchengine.search.domain.model.InvalidSearchRequestException;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchHits;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchQuery;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchSort;
 import com.github.stepanterkun.searchengine.search.domain.model.WordContextSnippet;
 import com.github.stepanterkun.searchengine.search.domain.port.SearchIndex;
 import org.slf4j.Logger;
@@ -15,18 +21,51 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.stereotype.Component;
 
+import jakarta.annotation.PreDestroy;
 import org.springframework.data.domain.Pageable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 import static java.util.stream.Collectors.toList;
 
 /**
  * In-memory implementation of {@link SearchIndex} using inverted index.
+ * <p>
+ * Indexing is near-real-time: changes are buffered and published to searches
+ * together on every refresh ({@code search.index.refresh-interval}), or right away
+ * when the interval is zero. {@link #refresh()} publishes them on demand.
  */
 @Component
 public class InMemorySearchIndex implements SearchIndex {
@@ -35,201 +74,1631 @@ public class InMemorySearchIndex implements SearchIndex {
 
     // do not show documents with relevance score below MIN_SCORE
     private static final double MIN_SCORE = 0.1;
-    private static final double TITLE_BOOST = 3.0;
+
+    private static final double TITLE_BOOST = TermStats.TITLE_BOOST;
+
+    // documents of a dropped owner forgotten per refreshLock acquisition
+    private static final int RECLAIM_CHUNK = 1024;
+
+    // HashMap never shrinks its table: copy the owner lookup once it holds this share of its peak size
+    private static final int OWNERS_SHRINK_FACTOR = 4;
+    private static final int OWNERS_MIN_SHRINK_SIZE = 4096;
+
+    // the only facet field so far, values are DocumentStatus names
+    private static final String STATUS_FACET = "status";
+
+    // timestamps indexed as numeric fields (epoch millis), usable in filters like any other number
+    private static final String CREATED_FIELD = "created";
+    static final String UPDATED_FIELD = "updated";
+
+    /**
+     * A change written to the WAL, buffered only once its record is durable.
+     *
+     * @param doc new version of the document, null for a removal
+     */
+    private record LoggedChange(Long documentId, IndexedDocument doc, CompletableFuture<Void> durable) {
+    }
+
+    // local ids [from, to) of one segment of a view, the unit of a shard
+    private record Slice(int segment, int from, int to) {
+    }
 
     private final DocumentRepository repository;
+    private final SearchIndexProperties.Persistence persistence;
+    private final IndexStorage storage;
+
+    // ownerId -> owner's partition; searches read its current immutable view without locks
+    private final Map<Long, OwnerPartition> partitions = new ConcurrentHashMap<>();
+
+    // documentId -> ownerId, needed by remove(); guarded by refreshLock
+    private Map<Long, Long> owners = new HashMap<>();
+    // largest size of owners since it was last copied; guarded by refreshLock
+    private int ownersPeak;
+
+    // changes not yet visible to searches; guarded by writeLock
+    private PendingChanges pending = new PendingChanges();
+
+    // changes written to the WAL and not buffered yet, in WAL order; guarded by writeLock
+    private final Deque<LoggedChange> logged = new ArrayDeque<>();
 
-    // term -> (documentId -> TermStats(title and content frequencies) )
-    private final Map<String, Map<Long, TermStats>> index = new ConcurrentHashMap<>();
+    // changes taken by a refresh that are not visible in the partitions yet; guarded by writeLock
+    private PendingChanges inFlight;
 
-    // documentId -> ownerId
-    private final Map<Long, Long> owners = new ConcurrentHashMap<>();
+    // analyzed text by content hash, shared between identical documents
+    private final SharedTextCache textCache = new SharedTextCache();
 
-    public InMemorySearchIndex(DocumentRepository documentRepository) {
+    // serializes writers so that WAL order matches the order changes are buffered
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // serializes publication of changes into partitions; taken before writeLock
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private final Duration refreshInterval;
+    private final int refreshMaxBufferedChanges;
+    private final ScheduledExecutorService refreshScheduler;
+
+    // null unless search.index.off-heap.enabled
+    private final PostingsArena arena;
+    private final Function<Collection<IndexedDocument>, Segment> segmentBuilder;
+    private final AtomicBoolean arenaFullLogged = new AtomicBoolean();
+
+    // null unless search.index.vector.enabled
+    private final HybridSearch hybridSearch;
+
+    // ownerId -> LSH index of the owner's MinHash signatures; updated under refreshLock
+    private final Map<Long, DuplicateIndex> duplicates = new ConcurrentHashMap<>();
+    private final double duplicateThreshold;
+
+    // only one snapshot at a time
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+    private final ExecutorService snapshotExecutor;
+
+    // frees memory in the background: partitions dropped by removeOwner(), LRU eviction
+    private final ExecutorService reclaimExecutor = Executors.newSingleThreadExecutor(daemonThread("index-reclaim"));
+
+    // rewrites fragmented segments on a schedule and when a write hits the memory budget
+    private final IndexCompactor compactor;
+
+    // size of the published partition views, budget of search.index.memory
+    private final IndexMemory memory;
+
+    // owners whose partition is evicted; null unless search.index.tiering.enabled
+    private final ColdTier coldTier;
+    private final PartitionEvictor evictor;
+
+    // scores the shards of large queries; null if search.index.parallel.shards is 1 or less
+    private final ForkJoinPool searchPool;
+    private final long parallelMinPostings;
+
+    // vectorized score accumulation; null unless enabled, built with the vector profile and the module is present
+    private final ScoreAccumulator vectorScoring;
+
+    // segments are built with Impacts, see ImpactScorer; null if search.index.impacts is off
+    private final Impacts.Options impactOptions;
+    private final ImpactScorer impactScorer = new ImpactScorer(MIN_SCORE);
+
+    public InMemorySearchIndex(DocumentRepository documentRepository, SearchIndexProperties properties) {
         this.repository = documentRepository;
+        this.persistence = properties.getPersistence();
+        this.storage = IndexStorage.create(persistence);
+        this.snapshotExecutor = storage.isEnabled()
+                                        ? Executors.newSingleThreadExecutor(daemonThread("index-snapshot"))
+                                        : null;
+
+        this.refreshInterval = properties.getRefreshInterval();
+        this.refreshMaxBufferedChanges = properties.getRefreshMaxBufferedChanges();
+        this.refreshScheduler = refreshInterval.isZero()
+                                        ? null
+                                        : Executors.newSingleThreadScheduledExecutor(daemonThread("index-refresh"));
+
+        if (refreshScheduler != null) {
+            long millis = refreshInterval.toMillis();
+            refreshScheduler.scheduleWithFixedDelay(this::scheduledRefresh, millis, millis, TimeUnit.MILLISECONDS);
+        }
+
+        SearchIndexProperties.OffHeap offHeap = properties.getOffHeap();
+        this.arena = offHeap.isEnabled() ? new PostingsArena(offHeap.getMaxSize().toBytes()) : null;
+        SearchIndexProperties.ImpactScoring impacts = properties.getImpacts();
+        this.impactOptions = impacts.isEnabled()
+                                     ? new Impacts.Options(impacts.getChampionMinDocFreq(), impacts.getChampionListSize())
+                                     : null;
+        this.segmentBuilder = arena == null ? docs -> Segment.build(docs, impactOptions) : this::buildOffHeapSegment;
+
+        this.duplicateThreshold = properties.getDuplicates().getSimilarityThreshold();
+
+        this.hybridSearch = properties.getVector().isEnabled() ? new HybridSearch(properties.getVector()) : null;
+
+        this.memory = new IndexMemory(properties.getMemory());
+
+        SearchIndexProperties.Tiering tiering = properties.getTiering();
+        this.coldTier = tiering.isEnabled() ? new ColdTier(tiering.getDirectory()) : null;
+        this.evictor = coldTier == null
+                               ? null
+                               : new PartitionEvictor(coldTier, tiering, memory, partitions, refreshLock,
+                                       reclaimExecutor, this::dropOwner);
+
+        this.vectorScoring = properties.isVectorizedScoring() ? ScoreAccumulator.vectorized().orElse(null) : null;
+        if (properties.isVectorizedScoring() && vectorScoring == null) {
+            log.warn("Vectorized scoring needs a build with the vector profile and the JVM started with "
+                     + "--add-modules {}, using the scalar loop", ScoreAccumulator.VECTOR_MODULE);
+        }
+
+        SearchIndexProperties.Parallel parallel = properties.getParallel();
+        this.parallelMinPostings = parallel.getMinPostings();
+        this.searchPool = parallel.getShards() > 1
+                                  ? new ForkJoinPool(parallel.getShards(), InMemorySearchIndex::searchThread, null, false)
+                                  : null;
+
+        this.compactor = new IndexCompactor(properties.getCompaction(), partitions, refreshLock, memory,
+                this::shrinkOwners);
     }
 
-    private static final class TermStats {
-        private int titleFreq;
-        private int contentFreq;
+    /**
+     * Build index on application startup.
+     * <p>
+     * With persistence enabled the index is restored from the last snapshot plus
+     * the write-ahead log, then only documents changed or deleted since the snapshot
+     * high-water mark are re-read from the database. Otherwise (or if there is no
+     * usable snapshot) all documents are read from the database, one owner at a time.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndexOnStartup() {
+        Instant startedAt = Instant.now();
+        clearColdTier();
+        Optional<Instant> restoredMark = restoreFromStorage();
+
+        if (restoredMark.isPresent() && canCatchUpFrom(restoredMark.get(), startedAt)) {
+            log.info("Index restored from local storage: residentDocuments={}, coldOwners={}, highWaterMark={}",
+                    documentCount(), coldOwnerCount(), restoredMark.get());
+            catchUp(restoredMark.get().minus(persistence.getCatchUpOverlap()));
+        } else {
+            log.info("Indexing all documents in database on startup");
+
+            clear();
+
+            // one owner at a time: with tiering only one owner's rows are ever on the heap
+            for (Long ownerId : repository.findOwnerIds()) {
+                List<IndexedDocument> ownerDocs = repository.findAllByOwnerId(ownerId)
+                                                            .stream()
+                                                            .filter(doc -> doc.getStatus() != DocumentStatus.FAILED)
+                                                            .map(this::analyze)
+                                                            .toList();
+
+                // one segment per owner instead of one per document
+                loadInitial(ownerDocs);
+            }
+        }
 
-        void incTitle() {
-            titleFreq++;
+        if (storage.isEnabled()) {
+            // purges the deletion log as well
+            takeSnapshot();
+        } else {
+            // left from runs with persistence enabled, nothing reads them now
+            int purged = repository.purgeDeletionLogBefore(startedAt);
+            log.debug("Purged {} deletion log entries", purged);
         }
+    }
 
-        void incContent() {
-            contentFreq++;
+    private Optional<Instant> restoreFromStorage() {
+        if (!storage.isEnabled()) {
+            return Optional.empty();
         }
 
-        /**
-         * Calculates term frequency (TF) with an extra boost for the title.
-         */
-        double tf(double titleBoost) {
-            return contentFreq + titleBoost * titleFreq;
+        try {
+            return storage.restore(
+                    this::loadInitial,
+                    this::applyIndex,
+                    this::applyRemove,
+                    this::applyRemoveOwner
+            );
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to restore index from local storage, rebuilding from database", e);
+            clear();
+            try {
+                storage.reset();
+            } catch (IOException resetError) {
+                throw new UncheckedIOException("Failed to reset index write-ahead log", resetError);
+            }
+            return Optional.empty();
         }
     }
 
+    // deletions older than the retention are already purged from the log, catch-up would miss them
+    private boolean canCatchUpFrom(Instant highWaterMark, Instant now) {
+        Instant oldestUsable = now.minus(persistence.getDeletionLogRetention());
+        return highWaterMark.minus(persistence.getCatchUpOverlap()).isAfter(oldestUsable);
+    }
 
     /**
-     * Build indexContent for all documents on application startup.
+     * Applies database changes made after {@code since}: deletions from the deletion log
+     * and documents with a newer modification time. Re-applying a change is harmless.
      */
-    @EventListener(ApplicationReadyEvent.class)
-    public void buildIndexOnStartup() {
-        log.info("Indexing all documents in database on startup");
+    private void catchUp(Instant since) {
+        List<Long> deletedIds = new ArrayList<>(repository.findIdsDeletedSince(since));
+        List<IndexedDocument> changed = new ArrayList<>();
+
+        List<Document> modified = repository.findAllModifiedSince(since);
+        for (Document doc : modified) {
+            if (doc.getStatus() == DocumentStatus.FAILED) {
+                deletedIds.add(doc.getId());
+            } else {
+                changed.add(analyze(doc));
+            }
+        }
 
-        List<Document> allDocs = repository.findAll();
+        applyBatch(changed, deletedIds);
 
-        allDocs.stream()
-                .filter(doc -> doc.getStatus() != DocumentStatus.FAILED)
-                .forEach(this::index);
+        log.info("Index caught up with database: since={}, modified={}, deleted={}",
+                since, modified.size(), deletedIds.size());
+    }
+
+    /**
+     * Writes a snapshot of the whole index and truncates the write-ahead log behind it.
+     */
+    void takeSnapshot() {
+        if (!storage.isEnabled()) {
+            return;
+        }
+
+        snapshotLock.lock();
+        try {
+            long lsn;
+            Instant highWaterMark;
+            PartitionSnapshot copy;
+
+            refreshLock.lock();
+            try {
+                PendingChanges changes;
+
+                // block writers only for the time needed to cut the WAL and take the buffer
+                writeLock.lock();
+                try {
+                    // a logged change is covered by the LSN below, so it has to be in the copied state
+                    bufferLogged();
+                    lsn = storage.beginSnapshot();
+                    // every change made so far went through index()/remove(), so the views will reflect it
+                    highWaterMark = Instant.now();
+                    changes = takePending();
+                } finally {
+                    writeLock.unlock();
+                }
+
+                try {
+                    applyBatch(changes.added(), changes.removed());
+                } finally {
+                    finishPending();
+                }
+                // cold files are deleted when their owner is loaded, so link them before letting go of the lock
+                List<Path> coldFiles = coldTier == null ? List.of() : coldTier.link();
+                copy = new PartitionSnapshot(partitions.values().stream().map(OwnerPartition::acquire).toList(),
+                        coldFiles);
+            } finally {
+                refreshLock.unlock();
+            }
+
+            int documents;
+            try (copy) {
+                documents = storage.completeSnapshot(lsn, highWaterMark, copy);
+            }
+            log.info("Index snapshot written: lsn={}, documents={}", lsn, documents);
+            purgeDeletionLog(highWaterMark);
+        } catch (IOException e) {
+            log.error("Failed to write index snapshot", e);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    // catch-up from this snapshot on does not reach further back than the retention, see canCatchUpFrom
+    private void purgeDeletionLog(Instant highWaterMark) {
+        try {
+            int purged = repository.purgeDeletionLogBefore(highWaterMark.minus(persistence.getDeletionLogRetention()));
+            log.debug("Purged {} old deletion log entries", purged);
+        } catch (RuntimeException e) {
+            // retried after the next snapshot
+            log.warn("Failed to purge deletion log", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (refreshScheduler != null) {
+            refreshScheduler.shutdown();
+        }
+        reclaimExecutor.shutdown();
+        compactor.close();
+        if (searchPool != null) {
+            searchPool.shutdown();
+        }
+
+        if (!storage.isEnabled()) {
+            refresh();
+            return;
+        }
+
+        snapshotExecutor.shutdown();
+        // publishes buffered changes as well
+        takeSnapshot();
+        storage.close();
     }
 
     @Override
-    public Page<DocumentSummary> search(Long ownerId, String query, Pageable pageable) {
-        log.debug("Search documents: ownerId={}, originalQuery={}", ownerId, query);
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            PendingChanges changes;
+
+            writeLock.lock();
+            try {
+                changes = takePending();
+            } finally {
+                writeLock.unlock();
+            }
 
-        // docId -> total score (sum of term frequencies)
-        Map<Long, Double> scores = new HashMap<>();
+            try {
+                if (!changes.isEmpty()) {
+                    applyBatch(changes.added(), changes.removed());
+                }
+            } finally {
+                finishPending();
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
 
-        String normalizedQuery = query == null ? "" : query.trim();
-        if (normalizedQuery.isEmpty()) { return Page.empty(); }
+    /**
+     * One compaction run, see {@link IndexCompactor#compact()}.
+     *
+     * @return estimated bytes freed by this run
+     */
+    long compact() {
+        return compactor.compact();
+    }
 
-        String[] rawTokens = normalizedQuery.split("\\W+");
+    /**
+     * Estimated bytes freed by all compactions since startup.
+     */
+    long reclaimedBytes() {
+        return compactor.reclaimedBytes();
+    }
 
-        List<String> tokens = Arrays.stream(rawTokens)
-                                      .map(String::toLowerCase)
-                                      .filter(t -> !t.isBlank())
-                                      .distinct()
-                                      .toList();
+    // HashMap never gives back its table, copy the owner lookup once it is far below its peak size
+    private void shrinkOwners() {
+        refreshLock.lock();
+        try {
+            if (ownersPeak >= OWNERS_MIN_SHRINK_SIZE && owners.size() * OWNERS_SHRINK_FACTOR < ownersPeak) {
+                owners = new HashMap<>(owners);
+                ownersPeak = owners.size();
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
 
-        for (String token : tokens) {
-            if (token.isBlank()) continue;
+    /**
+     * Segments whose top hits were found without reading all of their postings, since startup.
+     */
+    long earlyTerminatedSegments() {
+        return impactScorer.earlyTerminatedSegments();
+    }
 
-            Map<Long, TermStats> docsIdsAndOccurrences = index.get(token);
-            if (docsIdsAndOccurrences == null) continue;
+    /**
+     * Segments whose top hits were found among the champion lists alone, since startup.
+     */
+    long championSegments() {
+        return impactScorer.championSegments();
+    }
 
-            double idf = computeIdf(token);
+    // estimated memory of changes waiting for a refresh, must be called under writeLock
+    private long pendingBytes() {
+        return pending.estimatedBytes() + (inFlight == null ? 0 : inFlight.estimatedBytes());
+    }
 
-            for (Map.Entry<Long, TermStats> entry : docsIdsAndOccurrences.entrySet()) {
-                Long docId = entry.getKey();
-                Long owner = owners.get(docId);
-                if (owner == null || !owner.equals(ownerId)) continue;
+    /**
+     * Admission control for writes, see {@link IndexMemory#admit}. Must be called under writeLock.
+     * Restore and catch-up on startup bypass this: they only bring back what was accepted before.
+     *
+     * @throws IndexCapacityExceededException if the document does not fit into the memory budget
+     */
+    private void checkMemoryBudget(IndexedDocument doc, IndexedDocument replaced) {
+        try {
+            memory.admit(doc, replaced, pendingBytes());
+        } catch (IndexCapacityExceededException e) {
+            // deleted documents may still hold memory that compaction can give back
+            compactor.request();
+            throw e;
+        }
+    }
 
-                TermStats stats = entry.getValue();
-                double tf = stats.tf(TITLE_BOOST);
-                double termScore = tf * idf;
+    private void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            // keep the schedule alive, the changes stay in the WAL and are retried on the next start
+            log.error("Failed to refresh search index", e);
+        }
+    }
+
+    // must be called under writeLock
+    private PendingChanges takePending() {
+        PendingChanges changes = pending;
+        pending = new PendingChanges();
+        inFlight = changes;
+        return changes;
+    }
+
+    // the taken changes are visible in the partitions now
+    private void finishPending() {
+        writeLock.lock();
+        try {
+            inFlight = null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
 
-                scores.merge(docId, termScore, Double::sum);
+    /**
+     * Version of the document searches will see once everything indexed so far is refreshed,
+     * null if there is none. Must be called under writeLock.
+     */
+    private IndexedDocument latestVersion(Long documentId, Long ownerId) {
+        // logged changes are newer than buffered ones
+        for (Iterator<LoggedChange> newest = logged.descendingIterator(); newest.hasNext(); ) {
+            LoggedChange change = newest.next();
+            if (change.documentId().equals(documentId)) {
+                return change.doc();
             }
         }
 
-        List<Long> filteredDocIds = scores.entrySet()
-                                            .stream()
-                                            .filter(entry -> entry.getValue() >= MIN_SCORE)
-                                            .map(Map.Entry::getKey)
-                                            .toList();
+        // buffered changes are newer than taken ones, taken ones newer than the partitions
+        for (PendingChanges changes : inFlight == null ? List.of(pending) : List.of(pending, inFlight)) {
+            IndexedDocument doc = changes.get(documentId);
+            if (doc != null) {
+                return doc;
+            }
+            if (changes.isRemoved(documentId)) {
+                return null;
+            }
+        }
 
-        int totalElements = filteredDocIds.size(); // this is the number of docs that match the query
+        // a cold owner counts as unknown: loading needs refreshLock, which must not be taken after writeLock
+        OwnerPartition partition = partitions.get(ownerId);
+        if (partition == null) {
+            return null;
+        }
+        PartitionView view = partition.acquire();
+        try {
+            return view.document(documentId);
+        } finally {
+            view.release();
+        }
+    }
 
-        int start = Math.min(pageable.getPageNumber() * pageable.getPageSize(), filteredDocIds.size());
-        int end = Math.min((pageable.getPageNumber() + 1) * pageable.getPageSize(), filteredDocIds.size());
+    @Override
+    public SearchHits search(Long ownerId, SearchQuery query, Pageable pageable) {
+        log.debug("Search documents: ownerId={}, query={}", ownerId, query);
 
-        List<Long> pagedDocIds = filteredDocIds.subList(start, end);
+        Set<String> facets = query.facets();
+        for (String facet : facets) {
+            if (!STATUS_FACET.equals(facet)) {
+                throw new InvalidSearchRequestException("Unsupported facet: " + facet);
+            }
+        }
 
-        List<DocumentSummary> documentSummaries = pagedDocIds.stream()
-                                    .map(id -> {
-                                        Document doc = repository
-                                            .findByIdAndOwnerId(id, ownerId)
-                                            .orElseThrow(() -> new DocumentNotFoundException(id));
+        // validates the filters even if nothing can match
+        DocFilter filter = DocFilter.compile(query.filters());
+
+        String normalizedQuery = query.text() == null ? "" : query.text().trim();
+        if (normalizedQuery.isEmpty()) { return new SearchHits(Page.empty(), countFacets(null, facets)); }
+
+        OwnerPartition partition = partition(ownerId);
+        if (partition == null) { return new SearchHits(Page.empty(pageable), countFacets(null, facets)); }
+
+        List<String> tokens = tokenizeQuery(normalizedQuery);
+        int limit = (pageable.getPageNumber() + 1) * pageable.getPageSize();
+
+        // one immutable view for the whole query: N, df and postings come from the same moment
+        HnswGraph graph = hybridSearch == null ? null : hybridSearch.graph(ownerId);
+        PartitionView view = partition.acquire();
+        Hits hits;
+        try {
+            if (query.sort() == SearchSort.RECENT) {
+                // collapsing may drop any of the hits, so all of them are needed
+                hits = RecentHits.collect(view, queryWeights(view, uniformBoosts(tokens)), filter,
+                        query.collapseDuplicates() ? Integer.MAX_VALUE : limit);
+            } else if (graph != null) {
+                hits = hybridSearch.fuse(view, graph, tokens, filter, score(view, uniformBoosts(tokens), filter));
+            } else {
+                hits = topHits(view, uniformBoosts(tokens), filter,
+                        query.collapseDuplicates() ? Integer.MAX_VALUE : limit);
+            }
+        } finally {
+            view.release();
+        }
 
-                                            return new DocumentSummary(
-                                                    id,
-                                                    doc.getTitle(),
-                                                    doc.getStatus(),
-                                                    scores.get(id),
-                                                    buildWordSnippets(doc, tokens)
-                                            );
-                                    })
+        if (query.collapseDuplicates()) {
+            hits = collapse(hits, duplicates.get(ownerId));
+        }
+
+        int totalElements = hits.total(); // this is the number of docs that match the query
+
+        int start = Math.min(pageable.getPageNumber() * pageable.getPageSize(), hits.top().size());
+        int end = Math.min(limit, hits.top().size());
+
+        List<DocumentSummary> documentSummaries = hits.top().subList(start, end)
+                                    .stream()
+                                    .map(hit -> toSummary(hit, ownerId, tokens))
                                     .toList();
 
-        return new PageImpl<>(documentSummaries, pageable, totalElements);
+        return new SearchHits(
+                new PageImpl<>(documentSummaries, pageable, totalElements),
+                countFacets(hits.statusCounts(), facets)
+        );
+    }
+
+    /**
+     * Keeps only the best ranked document of every group of near-duplicates among the hits;
+     * total and status counts then refer to the collapsed hits.
+     */
+    private static Hits collapse(Hits hits, DuplicateIndex index) {
+        if (index == null) {
+            return hits;
+        }
+
+        List<ScoredDoc> kept = new ArrayList<>(hits.top().size());
+        Set<Long> hidden = new HashSet<>();
+        long[] statusCounts = new long[DocumentStatus.values().length];
+
+        for (ScoredDoc hit : hits.top()) {
+            if (hidden.contains(hit.docId())) {
+                continue;
+            }
+
+            kept.add(hit);
+            hidden.addAll(index.duplicatesOf(hit.docId()));
+            if (hit.status() >= 0) {
+                statusCounts[hit.status()]++;
+            }
+        }
+        return new Hits(kept, kept.size(), statusCounts);
+    }
+
+    @Override
+    public List<List<Long>> duplicateClusters(Long ownerId) {
+        // loads a cold owner, which rebuilds its LSH index
+        partition(ownerId);
+        DuplicateIndex index = duplicates.get(ownerId);
+        return index == null ? List.of() : index.clusters();
+    }
+
+    @Override
+    public List<DocumentSummary> similar(Long ownerId, Long documentId, int limit) {
+        log.debug("Similar documents: ownerId={}, documentId={}", ownerId, documentId);
+
+        OwnerPartition partition = partition(ownerId);
+        if (partition == null) {
+            throw new DocumentNotFoundException(documentId);
+        }
+
+        Map<String, Double> terms;
+        List<ScoredDoc> hits;
+        PartitionView view = partition.acquire();
+        try {
+            // the stored term vector, the database is not involved
+            IndexedDocument source = view.document(documentId);
+            if (source == null) {
+                throw new DocumentNotFoundException(documentId);
+            }
+
+            terms = MoreLikeThis.terms(view, source);
+            hits = score(view, terms, DocFilter.NONE);
+        } finally {
+            view.release();
+        }
+
+        hits.removeIf(hit -> hit.docId() == documentId);
+        hits.sort(Comparator.comparingDouble(ScoredDoc::score).reversed()
+                            .thenComparingLong(ScoredDoc::docId));
+
+        // snippets for the strongest terms only, the whole term vector would flood the summary
+        List<String> snippetTerms = terms.keySet().stream().limit(3).toList();
+        return hits.subList(0, Math.min(limit, hits.size()))
+                   .stream()
+                   .map(hit -> toSummary(hit, ownerId, snippetTerms))
+                   .toList();
+    }
+
+    private DocumentSummary toSummary(ScoredDoc hit, Long ownerId, List<String> tokens) {
+        Long id = hit.docId();
+        Document doc = repository
+                .findByIdAndOwnerId(id, ownerId)
+                .orElseThrow(() -> new DocumentNotFoundException(id));
+
+        Passages.Span passage = passageOf(hit, doc);
+        return new DocumentSummary(
+                id,
+                doc.getTitle(),
+                doc.getStatus(),
+                hit.score(),
+                buildWordSnippets(doc, tokens, passage),
+                passage == null ? null : doc.getContent().substring(passage.start(), passage.end()).trim()
+        );
+    }
+
+    // the passage was found in the indexed text, the stored one may have changed since
+    private static Passages.Span passageOf(ScoredDoc hit, Document doc) {
+        Passages.Span passage = hit.passage();
+        String content = doc.getContent();
+        if (passage == null || content == null || passage.end() > content.length()) {
+            return null;
+        }
+        return passage;
+    }
+
+    // status counts were captured from the status column while collecting the hits, null if nothing matched
+    private static Map<String, Map<String, Long>> countFacets(long[] counts, Set<String> facets) {
+        if (!facets.contains(STATUS_FACET)) {
+            return Map.of();
+        }
+
+        Map<String, Long> statusCounts = new LinkedHashMap<>();
+        for (DocumentStatus status : DocumentStatus.values()) {
+            statusCounts.put(status.name(), counts == null ? 0L : counts[status.ordinal()]);
+        }
+        return Map.of(STATUS_FACET, statusCounts);
+    }
+
+    private static Map<String, Double> uniformBoosts(List<String> tokens) {
+        Map<String, Double> boosts = new LinkedHashMap<>();
+        tokens.forEach(token -> boosts.put(token, 1.0));
+        return boosts;
+    }
+
+    private static List<String> tokenizeQuery(String normalizedQuery) {
+        String[] rawTokens = normalizedQuery.split("\\W+");
+
+        return Arrays.stream(rawTokens)
+                       .map(String::toLowerCase)
+                       .filter(t -> !t.isBlank())
+                       .distinct()
+                       .toList();
+    }
+
+    /**
+     * Scores live documents of the view that pass the filter,
+     * returns those with score at least {@link #MIN_SCORE} in no particular order.
+     * <p>
+     * Content of a large document counts only with its best passage, so a long text
+     * mentioning the terms here and there does not outrank a short one about them.
+     *
+     * @param termBoosts query terms with their weight in the query, 1.0 for plain text queries
+     */
+    private List<ScoredDoc> score(PartitionView view, Map<String, Double> termBoosts, DocFilter filter) {
+        List<PartitionView.LiveSegment> segments = view.segments();
+        Map<String, Double> weights = queryWeights(view, termBoosts);
+
+        List<ScoredDoc> hits = new ArrayList<>();
+        for (List<ScoredDoc> shardHits : scatter(shards(segments, weights), shard -> {
+            List<ScoredDoc> collected = new ArrayList<>();
+            scoreShard(segments, shard, weights, filter, collected::add);
+            return collected;
+        })) {
+            hits.addAll(shardHits);
+        }
+        return hits;
+    }
+
+    /**
+     * Same as {@link #score} but keeps only the {@code limit} best hits, while counting all of them.
+     * Every shard collects its own top hits, the sorted shard lists are then merged.
+     */
+    private Hits topHits(PartitionView view, Map<String, Double> termBoosts, DocFilter filter, int limit) {
+        List<PartitionView.LiveSegment> segments = view.segments();
+        Map<String, Double> weights = queryWeights(view, termBoosts);
+
+        List<Hits> shardHits = scatter(shards(segments, weights), shard -> {
+            TopHitsCollector collector = new TopHitsCollector(limit);
+            scoreShard(segments, shard, weights, filter, collector);
+            return collector.hits();
+        });
+        return shardHits.size() == 1 ? shardHits.get(0) : Hits.merge(shardHits, limit);
+    }
+
+    // query term -> idf times its boost, terms that cannot change the ranking are left out
+    private Map<String, Double> queryWeights(PartitionView view, Map<String, Double> termBoosts) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        termBoosts.forEach((term, boost) -> {
+            double weight = view.idf(term) * boost;
+            if (weight != 0.0) {
+                weights.put(term, weight);
+            }
+        });
+        return weights;
+    }
+
+    /**
+     * Splits the view into doc id range shards of about the same number of documents.
+     * A single shard of whole segments if parallel search is off or the query touches
+     * too few postings to be worth splitting.
+     */
+    private List<List<Slice>> shards(List<PartitionView.LiveSegment> segments, Map<String, Double> weights) {
+        List<Slice> whole = new ArrayList<>(segments.size());
+        long docs = 0;
+        for (int s = 0; s < segments.size(); s++) {
+            int size = segments.get(s).segment().size();
+            whole.add(new Slice(s, 0, size));
+            docs += size;
+        }
+        if (searchPool == null) {
+            return List.of(whole);
+        }
+
+        long postings = 0;
+        for (String term : weights.keySet()) {
+            for (PartitionView.LiveSegment live : segments) {
+                Postings termPostings = live.segment().postings(term);
+                postings += termPostings == null ? 0 : termPostings.size();
+            }
+        }
+        if (postings < parallelMinPostings) {
+            return List.of(whole);
+        }
+
+        // a shard may end in the middle of one segment and go on in the next one
+        int shardCount = searchPool.getParallelism();
+        long perShard = Math.max(1, (docs + shardCount - 1) / shardCount);
+        List<List<Slice>> shards = new ArrayList<>(shardCount);
+        List<Slice> current = new ArrayList<>();
+        long room = perShard;
+
+        for (int s = 0; s < segments.size(); s++) {
+            int size = segments.get(s).segment().size();
+            for (int from = 0; from < size; ) {
+                int to = (int) Math.min(size, from + room);
+                current.add(new Slice(s, from, to));
+                room -= to - from;
+                from = to;
+
+                if (room == 0) {
+                    shards.add(current);
+                    current = new ArrayList<>();
+                    room = perShard;
+                }
+            }
+        }
+        if (!current.isEmpty()) {
+            shards.add(current);
+        }
+        return shards;
+    }
+
+    /**
+     * Runs the work for every shard, on the search pool if there is more than one,
+     * and returns the results in shard order.
+     */
+    private <T> List<T> scatter(List<List<Slice>> shards, Function<List<Slice>, T> work) {
+        if (shards.size() == 1) {
+            return List.of(work.apply(shards.get(0)));
+        }
+
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(shards.size());
+        for (List<Slice> shard : shards) {
+            tasks.add(searchPool.submit(() -> work.apply(shard)));
+        }
+
+        // the caller releases the view afterwards, so every task has to finish, failed or not
+        tasks.forEach(ForkJoinTask::quietlyJoin);
+
+        List<T> results = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<T> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    /**
+     * Scores the documents of one shard, hands every hit with score at least {@link #MIN_SCORE} to the sink.
+     */
+    private void scoreShard(List<PartitionView.LiveSegment> segments, List<Slice> shard,
+                            Map<String, Double> weights, DocFilter filter, HitSink sink) {
+        for (Slice slice : shard) {
+            PartitionView.LiveSegment live = segments.get(slice.segment());
+            Segment segment = live.segment();
+
+            if (segment.hasImpacts()) {
+                impactScorer.score(live, slice.from(), slice.to(), weights, filter, sink);
+                continue;
+            }
+
+            // local id - slice.from -> total score, allocated only if the slice contains a query term
+            double[] scores = null;
+            // local ids that matched at least one term
+            DocBitSet matched = null;
+
+            for (Map.Entry<String, Double> term : weights.entrySet()) {
+                Postings postings = segment.postings(term.getKey());
+                if (postings == null) continue;
+
+                int size = postings.size();
+                int i = postings.firstAtLeast(slice.from());
+                if (i == size || postings.doc(i) >= slice.to()) continue;
+
+                if (scores == null) {
+                    scores = new double[slice.to() - slice.from()];
+                    matched = new DocBitSet(segment.size());
+                }
+                double idf = term.getValue();
+
+                // passages change the weight per document, such segments take the scalar loop
+                if (vectorScoring != null && postings.array() != null && !segment.hasPassages()) {
+                    int end = slice.to() == segment.size() ? size : postings.firstAtLeast(slice.to());
+                    vectorScoring.accumulate(postings, i, end, scores, slice.from(), TITLE_BOOST, idf);
+                    for (; i < end; i++) {
+                        matched.set(postings.doc(i));
+                    }
+                    continue;
+                }
+
+                for (; i < size; i++) {
+                    int doc = postings.doc(i);
+                    if (doc >= slice.to()) break;
+
+                    // large documents: title only, the content is scored by passage below
+                    scores[doc - slice.from()] += (segment.passages(doc) == null
+                            ? postings.tf(i, TITLE_BOOST)
+                            : TITLE_BOOST * postings.titleFreq(i)) * idf;
+                    matched.set(doc);
+                }
+            }
+            if (scores == null) continue;
+
+            // deleted docs are dropped word by word instead of one lookup per posting
+            matched.andNot(live.liveDocs().deleted());
+            filter.apply(segment, matched);
+
+            for (int local = matched.nextSetBit(slice.from()); local >= 0; local = matched.nextSetBit(local + 1)) {
+                Passages passages = segment.passages(local);
+                Passages.Span passage = passages == null ? null : passages.best(weights);
+                double score = scores[local - slice.from()] + (passage == null ? 0.0 : passage.score());
+
+                if (score >= MIN_SCORE) {
+                    sink.collect(new ScoredDoc(segment.docId(local), score, segment.status(local), passage));
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<String> suggest(Long ownerId, String prefix, int limit) {
+        OwnerPartition partition = partition(ownerId);
+        if (partition == null || prefix == null || limit < 1) {
+            return List.of();
+        }
+        return partition.suggestions().suggest(prefix, limit);
     }
 
     @Override
     public void index(Document document) {
         log.debug("Indexing document: id={}, ownerId={}", document.getId(), document.getOwnerId());
 
+        write(document, null);
+    }
+
+    @Override
+    public void update(Document previous, Document updated) {
+        log.debug("Updating document: id={}, ownerId={}", updated.getId(), updated.getOwnerId());
+
+        write(updated, previous);
+    }
+
+    /**
+     * @param previous version the caller replaces, lets the analysis diff against it; null if unknown
+     */
+    private void write(Document document, Document previous) {
+        IndexedDocument current;
+        writeLock.lock();
+        try {
+            current = latestVersion(document.getId(), document.getOwnerId());
+        } finally {
+            writeLock.unlock();
+        }
+
+        // tokenizes outside the lock
+        IndexedDocument indexed = analyze(document, current, previous);
+
+        CompletableFuture<Void> durable;
+        int buffered;
+        writeLock.lock();
+        try {
+            // nothing the index keeps has changed: no WAL record, no postings
+            IndexedDocument latest = latestVersion(indexed.id(), indexed.ownerId());
+            if (indexed.equals(latest)) {
+                log.debug("Document unchanged, skipped re-indexing: id={}", indexed.id());
+                return;
+            }
+            checkMemoryBudget(indexed, latest);
+
+            durable = storage.logIndex(indexed);
+            logged.add(new LoggedChange(indexed.id(), indexed, durable));
+        } finally {
+            writeLock.unlock();
+        }
+
+        // wait for fsync outside the lock, so concurrent writers share one group commit
+        try {
+            IndexWriteAheadLog.awaitDurable(durable);
+        } finally {
+            buffered = bufferDurable();
+        }
+        refreshIfNeeded(buffered);
+        scheduleSnapshotIfDue();
+    }
+
+    @Override
+    public void remove(Long documentId) {
+        log.debug("Remove document from indexContent: id={}", documentId);
+
+        if (documentId == null) {
+            return;
+        }
+
+        CompletableFuture<Void> durable;
+        int buffered;
+        writeLock.lock();
+        try {
+            durable = storage.logRemove(documentId);
+            logged.add(new LoggedChange(documentId, null, durable));
+        } finally {
+            writeLock.unlock();
+        }
+
+        try {
+            IndexWriteAheadLog.awaitDurable(durable);
+        } finally {
+            buffered = bufferDurable();
+        }
+        refreshIfNeeded(buffered);
+        scheduleSnapshotIfDue();
+    }
+
+    @Override
+    public void removeOwner(Long ownerId) {
+        log.debug("Remove all documents of owner from index: ownerId={}", ownerId);
+
+        if (ownerId == null) {
+            return;
+        }
+
+        OwnerPartition dropped;
+        Path discardedColdFile;
+        refreshLock.lock();
+        try {
+            writeLock.lock();
+            try {
+                CompletableFuture<Void> durable = storage.logRemoveOwner(ownerId);
+                // the partition is dropped right away, not on a refresh, so its record has to be durable
+                // first; waiting under the locks keeps later writes of the owner behind it
+                bufferLogged();
+                IndexWriteAheadLog.awaitDurable(durable);
+
+                // no refresh runs while we hold refreshLock, so nothing of the owner is in flight
+                pending.removeOwner(ownerId);
+                dropped = dropOwner(ownerId);
+                discardedColdFile = coldTier == null ? null : coldTier.discard(ownerId);
+            } finally {
+                writeLock.unlock();
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+
+        if (dropped != null) {
+            reclaimLater(() -> reclaim(dropped));
+        }
+        if (discardedColdFile != null) {
+            reclaimLater(() -> reclaimCold(ownerId, discardedColdFile));
+        }
+        scheduleSnapshotIfDue();
+    }
+
+    /**
+     * Buffers logged changes whose WAL record is durable, in WAL order. A change whose record
+     * failed is dropped, its writer gets the error.
+     *
+     * @return number of buffered changes
+     */
+    private int bufferDurable() {
+        writeLock.lock();
+        try {
+            // the WAL completes records in order, so a change still waiting holds back only later ones
+            while (!logged.isEmpty() && logged.peek().durable().isDone()) {
+                LoggedChange change = logged.poll();
+                if (change.durable().isCompletedExceptionally()) {
+                    continue;
+                }
+
+                if (change.doc() == null) {
+                    pending.remove(change.documentId());
+                } else {
+                    pending.index(change.doc());
+                }
+            }
+            return pending.size();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every logged change is durable or failed and buffers it. Caller holds writeLock.
+     */
+    private void bufferLogged() {
+        for (LoggedChange change : logged) {
+            change.durable().handle((ok, failure) -> null).join();
+        }
+        bufferDurable();
+    }
+
+    private IndexedDocument analyze(Document document) {
+        return analyze(document, null, null);
+    }
+
+    /**
+     * @param current  indexed version of the document, if any; its analysis is reused when the text did not change
+     * @param previous version of the document the caller replaces, if known; only the text changed since is analyzed
+     */
+    private IndexedDocument analyze(Document document, IndexedDocument current, Document previous) {
         Long docId = document.getId();
         if (docId == null) {
             throw new IllegalArgumentException("Cannot index document with null id");
         }
 
-        owners.put(docId, document.getOwnerId());
-        removeFromIndexOnly(docId);
-
         String title = document.getTitle();
         if (title == null || title.isBlank()) {
             throw new IllegalStateException("Cannot index document because of empty title.");
         }
-        String[] titleTokens = title.toLowerCase().split("\\W+");
 
         String content = document.getContent();
         if (content == null || content.isBlank()) {
             throw new IllegalStateException("Cannot index document because of empty content.");
         }
+
+        // same text as indexed before (this document or another one) -> no tokenization
+        String textHash = document.getContentHash();
+        SharedTextCache.AnalyzedText text = reusableText(current, textHash);
+        if (text == null) {
+            text = textCache.get(textHash);
+        }
+        if (text == null && previous != null) {
+            text = analyzeChange(current, previous, title, content);
+        }
+        if (text == null) {
+            text = analyzeText(title, content);
+        }
+        text = textCache.share(textHash, text);
+
+        // keyword metadata -> "field:value" terms; text tokens never contain ':' so they cannot clash
+        DocumentMetadata metadata = document.getMetadata() == null ? DocumentMetadata.EMPTY : document.getMetadata();
+        Map<String, TermStats> keywords = new HashMap<>();
+        TermStats keyword = new TermStats(0, 0);
+        metadata.tags().forEach(tag -> keywords.put(DocFilter.keywordTerm("tag", tag), keyword));
+        if (metadata.source() != null) {
+            keywords.put(DocFilter.keywordTerm("source", metadata.source()), keyword);
+        }
+        if (metadata.language() != null) {
+            keywords.put(DocFilter.keywordTerm("language", metadata.language()), keyword);
+        }
+
+        // without keywords the terms map is the shared one
+        Map<String, TermStats> terms = text.terms();
+        if (!keywords.isEmpty()) {
+            keywords.putAll(terms);
+            terms = Map.copyOf(keywords);
+        }
+
+        Map<String, Double> numbers = new HashMap<>(metadata.numbers());
+        metadata.dates().forEach((field, date) -> numbers.put(field, (double) date.toEpochMilli()));
+        if (document.getCreatedAt() != null) {
+            numbers.put(CREATED_FIELD, (double) document.getCreatedAt().toEpochMilli());
+        }
+        if (document.getUpdatedAt() != null) {
+            numbers.put(UPDATED_FIELD, (double) document.getUpdatedAt().toEpochMilli());
+        }
+
+        return new IndexedDocument(docId, document.getOwnerId(), document.getStatus(),
+                terms, Map.copyOf(numbers), text.minHash(), textHash, text.passages());
+    }
+
+    // the text of the indexed version is the same: its terms without the keyword ones are the analysis
+    private static SharedTextCache.AnalyzedText reusableText(IndexedDocument current, String textHash) {
+        if (current == null || !textHash.equals(current.textHash())) {
+            return null;
+        }
+
+        Map<String, TermStats> terms = current.terms();
+        if (terms.keySet().stream().anyMatch(term -> term.indexOf(':') >= 0)) {
+            Map<String, TermStats> textTerms = new HashMap<>(terms);
+            textTerms.keySet().removeIf(term -> term.indexOf(':') >= 0);
+            terms = Map.copyOf(textTerms);
+        }
+        return new SharedTextCache.AnalyzedText(terms, current.minHash(), current.passages());
+    }
+
+    /**
+     * Analysis of the new text derived from the indexed one: only the title (if changed) and the lines
+     * that were removed or added are tokenized, their counts are subtracted from or added to the
+     * indexed term frequencies. Tokens never span lines, so counts of unchanged lines stay exact.
+     *
+     * @return null if the indexed version is not the one the change was made to
+     */
+    private static SharedTextCache.AnalyzedText analyzeChange(IndexedDocument current, Document previous,
+                                                              String title, String content) {
+        if (current == null || current.textHash().isEmpty() || !current.textHash().equals(previous.getContentHash())
+            || previous.getTitle() == null || previous.getContent() == null) {
+            return null;
+        }
+
+        // term -> [titleFreq, contentFreq]
+        Map<String, int[]> counts = new HashMap<>(current.terms().size() * 2);
+        current.terms().forEach((term, stats) -> {
+            if (term.indexOf(':') < 0) {
+                counts.put(term, new int[]{stats.titleFreq(), stats.contentFreq()});
+            }
+        });
+
+        if (!title.equals(previous.getTitle())) {
+            countTokens(counts, previous.getTitle(), 0, -1);
+            countTokens(counts, title, 0, 1);
+        }
+
+        // line -> added minus removed occurrences; moved or unchanged lines cancel out
+        Map<String, Integer> changedLines = new HashMap<>();
+        previous.getContent().lines().forEach(line -> changedLines.merge(line, -1, Integer::sum));
+        content.lines().forEach(line -> changedLines.merge(line, 1, Integer::sum));
+        changedLines.forEach((line, delta) -> {
+            if (delta != 0) {
+                countTokens(counts, line, 1, delta);
+            }
+        });
+
+        Map<String, TermStats> terms = new HashMap<>(counts.size() * 2);
+        counts.forEach((term, freqs) -> {
+            if (freqs[0] > 0 || freqs[1] > 0) {
+                terms.put(term, new TermStats(freqs[0], freqs[1]));
+            }
+        });
+
+        // shingles and passages span lines, so they still need the whole word sequence
+        return new SharedTextCache.AnalyzedText(Map.copyOf(terms), MinHash.signature(words(content)),
+                Passages.of(content));
+    }
+
+    private static void countTokens(Map<String, int[]> counts, String text, int field, int delta) {
+        for (String token : text.toLowerCase().split("\\W+")) {
+            if (!token.isBlank()) {
+                counts.computeIfAbsent(token, t -> new int[2])[field] += delta;
+            }
+        }
+    }
+
+    private static List<String> words(String content) {
+        String[] tokens = content.toLowerCase().split("\\W+");
+        List<String> words = new ArrayList<>(tokens.length);
+        for (String token : tokens) {
+            if (!token.isBlank()) {
+                words.add(token);
+            }
+        }
+        return words;
+    }
+
+    private static SharedTextCache.AnalyzedText analyzeText(String title, String content) {
+        String[] titleTokens = title.toLowerCase().split("\\W+");
         String[] contentTokens = content.toLowerCase().split("\\W+");
 
+        // term -> [titleFreq, contentFreq]
+        Map<String, int[]> counts = new HashMap<>();
+
         for (String titleToken : titleTokens) {
             if (titleToken.isBlank()) {
                 continue;
             }
-
-            index
-                    .computeIfAbsent(titleToken, t -> new ConcurrentHashMap<>())
-                    .computeIfAbsent(docId, id -> new TermStats())
-                    .incTitle();
+            counts.computeIfAbsent(titleToken, t -> new int[2])[0]++;
         }
 
+        // shingles come from the content only, so "Copy of ..." titles do not hide duplicates
+        List<String> words = new ArrayList<>(contentTokens.length);
         for (String contentToken : contentTokens) {
             if (contentToken.isBlank()) {
                 continue;
             }
+            counts.computeIfAbsent(contentToken, t -> new int[2])[1]++;
+            words.add(contentToken);
+        }
+
+        Map<String, TermStats> terms = new HashMap<>(counts.size() * 2);
+        counts.forEach((term, freqs) -> terms.put(term, new TermStats(freqs[0], freqs[1])));
+
+        return new SharedTextCache.AnalyzedText(Map.copyOf(terms), MinHash.signature(words), Passages.of(content));
+    }
+
+    private void applyIndex(IndexedDocument doc) {
+        applyBatch(List.of(doc), List.of());
+    }
+
+    private void applyRemove(long documentId) {
+        applyBatch(List.of(), List.of(documentId));
+    }
+
+    private void applyRemoveOwner(long ownerId) {
+        OwnerPartition dropped;
+        Path discardedColdFile;
+        refreshLock.lock();
+        try {
+            dropped = dropOwner(ownerId);
+            discardedColdFile = coldTier == null ? null : coldTier.discard(ownerId);
+        } finally {
+            refreshLock.unlock();
+        }
+
+        if (dropped != null) {
+            reclaim(dropped);
+        }
+        if (discardedColdFile != null) {
+            reclaimCold(ownerId, discardedColdFile);
+        }
+    }
+
+    // unpublishes everything of the owner in constant time, must be called under refreshLock
+    private OwnerPartition dropOwner(Long ownerId) {
+        if (hybridSearch != null) {
+            hybridSearch.remove(ownerId);
+        }
+        duplicates.remove(ownerId);
+
+        OwnerPartition dropped = partitions.remove(ownerId);
+        if (dropped != null) {
+            memory.add(-dropped.view().sizeInBytes());
+        }
+        return dropped;
+    }
+
+    private void reclaimLater(Runnable task) {
+        try {
+            reclaimExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // shutting down, nobody waits for the memory anyway
+            task.run();
+        }
+    }
+
+    /**
+     * Frees a partition dropped by {@link #removeOwner}: releases its segments (searches still
+     * holding its view keep them until they finish) and forgets its documents in {@link #owners},
+     * one chunk per refreshLock acquisition so that refreshes are not held up.
+     */
+    private void reclaim(OwnerPartition dropped) {
+        List<Long> documentIds;
+        PartitionView view = dropped.acquire();
+        try {
+            documentIds = view.documents().stream().map(IndexedDocument::id).toList();
+        } finally {
+            view.release();
+        }
+        dropped.close();
+
+        forgetOwners(dropped.ownerId(), documentIds);
+    }
+
+    // same as reclaim() for an owner that was cold when it was removed
+    private void reclaimCold(Long ownerId, Path discardedFile) {
+        try {
+            List<Long> documentIds = ColdPartitionStore.read(discardedFile).stream().map(IndexedDocument::id).toList();
+            Files.delete(discardedFile);
+            forgetOwners(ownerId, documentIds);
+        } catch (IOException e) {
+            log.warn("Failed to clean up cold index partition: ownerId={}, file={}", ownerId, discardedFile, e);
+        }
+    }
+
+    private void forgetOwners(Long ownerId, List<Long> documentIds) {
+        for (int from = 0; from < documentIds.size(); from += RECLAIM_CHUNK) {
+            refreshLock.lock();
+            try {
+                // the owner may have indexed documents again in the meantime
+                OwnerPartition current = partitions.get(ownerId);
+                for (Long documentId : documentIds.subList(from, Math.min(from + RECLAIM_CHUNK, documentIds.size()))) {
+                    if (current == null || current.view().document(documentId) == null) {
+                        owners.remove(documentId, ownerId);
+                    }
+                }
+            } finally {
+                refreshLock.unlock();
+            }
+        }
+    }
 
-            index
-                    .computeIfAbsent(contentToken, t -> new ConcurrentHashMap<>())
-                    .computeIfAbsent(docId, id -> new TermStats())
-                    .incContent();
+    /**
+     * Partition to read for the owner, built from the cold tier first if it was evicted.
+     *
+     * @return null if the owner has no documents
+     */
+    private OwnerPartition partition(Long ownerId) {
+        OwnerPartition partition = partitions.get(ownerId);
+        if (partition == null && isCold(ownerId)) {
+            refreshLock.lock();
+            try {
+                ensureLoaded(ownerId);
+                partition = partitions.get(ownerId);
+            } finally {
+                refreshLock.unlock();
+            }
         }
+
+        if (partition != null) {
+            partition.touch();
+        }
+        return partition;
     }
 
-    @Override
-    public void remove(Long documentId) {
-        log.debug("Remove document from indexContent: id={}", documentId);
+    /**
+     * Number of owners whose partition is in the cold tier.
+     */
+    int coldOwnerCount() {
+        return coldTier == null ? 0 : coldTier.size();
+    }
 
-        if (documentId == null) {
+    private boolean isCold(Long ownerId) {
+        return coldTier != null && coldTier.contains(ownerId);
+    }
+
+    // brings a cold owner back into memory, must be called under refreshLock
+    private void ensureLoaded(Long ownerId) {
+        if (coldTier == null) {
             return;
         }
 
-        // remove owner mapping
-        owners.remove(documentId);
-        // remove document from all term maps
-        removeFromIndexOnly(documentId);
+        List<IndexedDocument> docs;
+        try {
+            docs = coldTier.load(ownerId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load cold index partition: ownerId=" + ownerId, e);
+        }
+        if (docs == null) {
+            return;
+        }
+
+        applyBatch(docs, List.of());
+        log.debug("Cold index partition loaded: ownerId={}, documents={}", ownerId, docs.size());
+    }
+
+    /**
+     * Adds the documents read on startup. With tiering they go straight to the cold tier,
+     * so only owners that are used later are ever built.
+     */
+    private void loadInitial(List<IndexedDocument> docs) {
+        if (coldTier == null) {
+            applyBatch(docs, List.of());
+            return;
+        }
+
+        Map<Long, List<IndexedDocument>> byOwner = new HashMap<>();
+        docs.forEach(doc -> byOwner.computeIfAbsent(doc.ownerId(), o -> new ArrayList<>()).add(doc));
+
+        refreshLock.lock();
+        try {
+            for (Map.Entry<Long, List<IndexedDocument>> entry : byOwner.entrySet()) {
+                Long ownerId = entry.getKey();
+                if (partitions.containsKey(ownerId) || coldTier.contains(ownerId)) {
+                    applyBatch(entry.getValue(), List.of());
+                    continue;
+                }
+
+                coldTier.write(ownerId, entry.getValue());
+                coldTier.add(ownerId);
+                entry.getValue().forEach(doc -> owners.put(doc.id(), ownerId));
+            }
+            ownersPeak = Math.max(ownersPeak, owners.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write cold index partition", e);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void clearColdTier() {
+        if (coldTier != null) {
+            coldTier.clear();
+        }
+    }
+
+    private void refreshIfNeeded(int buffered) {
+        if (refreshScheduler == null || buffered >= refreshMaxBufferedChanges) {
+            refresh();
+        }
+    }
+
+    /**
+     * Applies removals, then additions, publishing one new view per affected owner.
+     */
+    private void applyBatch(Collection<IndexedDocument> added, Collection<Long> removed) {
+        refreshLock.lock();
+        try {
+            Map<Long, List<IndexedDocument>> addedByOwner = new HashMap<>();
+            Map<Long, List<Long>> removedByOwner = new HashMap<>();
+
+            for (Long documentId : removed) {
+                Long owner = owners.remove(documentId);
+                if (owner != null) {
+                    removedByOwner.computeIfAbsent(owner, o -> new ArrayList<>()).add(documentId);
+                }
+            }
+
+            for (IndexedDocument doc : added) {
+                Long previousOwner = owners.put(doc.id(), doc.ownerId());
+                if (previousOwner != null && !previousOwner.equals(doc.ownerId())) {
+                    removedByOwner.computeIfAbsent(previousOwner, o -> new ArrayList<>()).add(doc.id());
+                }
+                addedByOwner.computeIfAbsent(doc.ownerId(), o -> new ArrayList<>()).add(doc);
+            }
+            ownersPeak = Math.max(ownersPeak, owners.size());
+
+            Set<Long> affectedOwners = new HashSet<>(addedByOwner.keySet());
+            affectedOwners.addAll(removedByOwner.keySet());
+
+            for (Long owner : affectedOwners) {
+                // a cold owner is built first, so the changes apply on top of its documents
+                ensureLoaded(owner);
+                OwnerPartition partition = partitions.computeIfAbsent(
+                        owner,
+                        o -> new OwnerPartition(o, segmentBuilder)
+                );
+                List<IndexedDocument> ownerAdded = addedByOwner.getOrDefault(owner, List.of());
+                List<Long> ownerRemoved = removedByOwner.getOrDefault(owner, List.of());
+                List<IndexedDocument> textChanged = withChangedText(partition.view(), ownerAdded, ownerRemoved);
+
+                long sizeBefore = partition.view().sizeInBytes();
+                partition.apply(ownerAdded, ownerRemoved);
+                memory.add(partition.view().sizeInBytes() - sizeBefore);
+
+                if (partition.view().isEmpty()) {
+                    partitions.remove(owner);
+                    partition.close();
+                    if (hybridSearch != null) {
+                        hybridSearch.remove(owner);
+                    }
+                    duplicates.remove(owner);
+                    continue;
+                }
+
+                // signatures and vectors depend on the text only
+                DuplicateIndex duplicateIndex = duplicates.computeIfAbsent(owner, o -> new DuplicateIndex(duplicateThreshold));
+                ownerRemoved.forEach(duplicateIndex::remove);
+                textChanged.forEach(doc -> duplicateIndex.add(doc.id(), doc.minHash()));
+
+                if (hybridSearch != null) {
+                    hybridSearch.update(owner, textChanged, ownerRemoved);
+                }
+            }
+
+            if (evictor != null) {
+                evictor.evictIfNeeded();
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void clear() {
+        refreshLock.lock();
+        writeLock.lock();
+        try {
+            partitions.values().forEach(OwnerPartition::close);
+            partitions.clear();
+            memory.clear();
+            if (hybridSearch != null) {
+                hybridSearch.clear();
+            }
+            duplicates.clear();
+            owners.clear();
+            ownersPeak = 0;
+            clearColdTier();
+            pending = new PendingChanges();
+            inFlight = null;
+            textCache.clear();
+        } finally {
+            writeLock.unlock();
+            refreshLock.unlock();
+        }
     }
 
-    private void removeFromIndexOnly(Long documentId) {
-        // iterate over all terms and remove this document id
-        for (Map<Long, TermStats> docsAndOccurrences : index.values()) {
-            docsAndOccurrences.remove(documentId);
+    // added documents that are new to the view or whose text differs from the version they replace
+    private static List<IndexedDocument> withChangedText(PartitionView view, List<IndexedDocument> added,
+                                                         List<Long> removed) {
+        Set<Long> removedIds = new HashSet<>(removed);
+        List<IndexedDocument> changed = new ArrayList<>(added.size());
+
+        for (IndexedDocument doc : added) {
+            IndexedDocument replaced = removedIds.contains(doc.id()) ? null : view.document(doc.id());
+            if (replaced == null || doc.textHash().isEmpty() || !doc.textHash().equals(replaced.textHash())) {
+                changed.add(doc);
+            }
         }
+        return changed;
     }
 
-    private List<WordContextSnippet> buildWordSnippets(Document doc, List<String> queryTokens) {
+    private Segment buildOffHeapSegment(Collection<IndexedDocument> docs) {
+        Segment segment = OffHeapSegment.build(docs, arena, impactOptions);
+        if (segment != null) {
+            return segment;
+        }
+
+        // keep indexing on the heap rather than failing writes
+        if (arenaFullLogged.compareAndSet(false, true)) {
+            log.warn("Off-heap index arena is full (reserved={} bytes), new segments are kept on the heap",
+                    arena.reservedBytes());
+        }
+        return Segment.build(docs, impactOptions);
+    }
+
+    private int documentCount() {
+        return partitions.values().stream().mapToInt(p -> p.view().docCount()).sum();
+    }
+
+    private void scheduleSnapshotIfDue() {
+        if (!storage.snapshotDue() || !snapshotScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            snapshotExecutor.execute(() -> {
+                try {
+                    takeSnapshot();
+                } finally {
+                    snapshotScheduled.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down, the final snapshot is taken in close()
+            snapshotScheduled.set(false);
+        }
+    }
+
+    private static ThreadFactory daemonThread(String name) {
+        return daemonThread(name, Thread.NORM_PRIORITY);
+    }
+
+    // fork-join workers are daemon threads already
+    private static ForkJoinWorkerThread searchThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("index-search-" + thread.getPoolIndex());
+        return thread;
+    }
+
+    static ThreadFactory daemonThread(String name, int priority) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        };
+    }
+
+    /**
+     * @param passage best passage of a large document, null to look for the terms in the whole content
+     */
+    private List<WordContextSnippet> buildWordSnippets(Document doc, List<String> queryTokens, Passages.Span passage) {
         String content = doc.getContent();
         if (content == null || content.isBlank()) {
             return List.of();
         }
 
-        String lowerContent = content.toLowerCase();
+        // only the passage is searched, so the work does not grow with the document
+        int from = passage == null ? 0 : passage.start();
+        int to = passage == null ? content.length() : passage.end();
+        String lowerContent = content.substring(from, to).toLowerCase();
 
         // take unique non-blank tokens from query
         List<String> uniqueTokens = queryTokens.stream()
@@ -250,10 +1719,11 @@ public class InMemorySearchIndex implements SearchIndex {
             int fromIndex = 0;
 
             while (snippets.size() < maxSnippetsPerWord) {
-                int idx = lowerContent.indexOf(lowerToken, fromIndex);
-                if (idx == -1) {
+                int found = lowerContent.indexOf(lowerToken, fromIndex);
+                if (found == -1) {
                     break;
                 }
+                int idx = from + found;
 
                 int roughStart = Math.max(0, idx - contextSize);
                 int roughEnd = Math.min(content.length(), idx + lowerToken.length() + contextSize);
@@ -281,7 +1751,7 @@ public class InMemorySearchIndex implements SearchIndex {
                 snippets.add(snippet);
 
                 // move search window forward to find next occurrence
-                fromIndex = idx + lowerToken.length();
+                fromIndex = found + lowerToken.length();
             }
 
             if (!snippets.isEmpty()) {
@@ -322,34 +1792,4 @@ public class InMemorySearchIndex implements SearchIndex {
         // no sentence boundary in range -> keep rough end
         return roughEnd;
     }
-
-    /**
-     * Calculates a smoothed IDF value for the given token.
-     * <p>
-     * IDF reflects how rare a term is across all indexed documents.
-     * If there is only one document in the index, we return 1.0 so that
-     * plain TF remains the main ranking signal.
-     * <p>
-     * Formula (with smoothing): log((N + 1) / (df + 1))
-     *   N  — total number of documents in the index
-     *   df — number of documents containing the token
-     */
-    private double computeIdf(String token) {
-        int totalDocs = owners.size();
-        if (totalDocs <= 1) {
-            // not enough data for meaningful IDF – fall back to plain TF
-            return 1.0;
-        }
-
-        Map<Long, TermStats> docsWithToken = index.get(token);
-        int df = (docsWithToken == null) ? 0 : docsWithToken.size();
-
-        if (df == 0) {
-            // token never occurs: it shouldn't affect scoring
-            return 0.0;
-        }
-
-        // smoothed IDF: log((N + 1) / (df + 1))
-        return Math.log((double) (totalDocs + 1) / (df + 1));
-    }
 }
@@ -0,0 +1,131 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary encoding of {@link IndexedDocument} shared by the write-ahead log and snapshots.
+ */
+final class IndexCodec {
+
+    private IndexCodec() {
+    }
+
+    static void writeDocument(DataOutput out, IndexedDocument doc) throws IOException {
+        out.writeLong(doc.id());
+        out.writeLong(doc.ownerId());
+        out.writeByte(doc.status() == null ? -1 : doc.status().ordinal());
+        out.writeInt(doc.terms().size());
+
+        for (Map.Entry<String, TermStats> entry : doc.terms().entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeInt(entry.getValue().titleFreq());
+            out.writeInt(entry.getValue().contentFreq());
+        }
+
+        out.writeInt(doc.numbers().size());
+        for (Map.Entry<String, Double> entry : doc.numbers().entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeDouble(entry.getValue());
+        }
+
+        out.writeInt(doc.minHash().length);
+        for (int hash : doc.minHash()) {
+            out.writeInt(hash);
+        }
+        writeString(out, doc.textHash());
+        writePassages(out, doc.passages());
+    }
+
+    static IndexedDocument readDocument(DataInput in) throws IOException {
+        long id = in.readLong();
+        long ownerId = in.readLong();
+        byte status = in.readByte();
+        int termCount = in.readInt();
+
+        Map<String, TermStats> terms = new HashMap<>(termCount * 2);
+        for (int i = 0; i < termCount; i++) {
+            String term = readString(in);
+            int titleFreq = in.readInt();
+            int contentFreq = in.readInt();
+            terms.put(term, new TermStats(titleFreq, contentFreq));
+        }
+
+        int numberCount = in.readInt();
+        Map<String, Double> numbers = new HashMap<>(numberCount * 2);
+        for (int i = 0; i < numberCount; i++) {
+            String field = readString(in);
+            numbers.put(field, in.readDouble());
+        }
+
+        int[] minHash = new int[in.readInt()];
+        for (int i = 0; i < minHash.length; i++) {
+            minHash[i] = in.readInt();
+        }
+
+        String textHash = readString(in);
+        Passages passages = readPassages(in);
+
+        return new IndexedDocument(id, ownerId, status < 0 ? null : DocumentStatus.values()[status],
+                Map.copyOf(terms), Map.copyOf(numbers), minHash, textHash, passages);
+    }
+
+    // [int blockStartCount][int...][int termCount]([string term][int pairCount][int...])*
+    private static void writePassages(DataOutput out, Passages passages) throws IOException {
+        out.writeInt(passages.blockStarts().length);
+        for (int start : passages.blockStarts()) {
+            out.writeInt(start);
+        }
+
+        out.writeInt(passages.blocks().size());
+        for (Map.Entry<String, int[]> entry : passages.blocks().entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeInt(entry.getValue().length);
+            for (int value : entry.getValue()) {
+                out.writeInt(value);
+            }
+        }
+    }
+
+    private static Passages readPassages(DataInput in) throws IOException {
+        int[] blockStarts = new int[in.readInt()];
+        for (int i = 0; i < blockStarts.length; i++) {
+            blockStarts[i] = in.readInt();
+        }
+
+        int termCount = in.readInt();
+        if (blockStarts.length == 0 && termCount == 0) {
+            return Passages.NONE;
+        }
+
+        Map<String, int[]> blocks = new HashMap<>(termCount * 2);
+        for (int i = 0; i < termCount; i++) {
+            String term = readString(in);
+            int[] pairs = new int[in.readInt()];
+            for (int j = 0; j < pairs.length; j++) {
+                pairs[j] = in.readInt();
+            }
+            blocks.put(term, pairs);
+        }
+        return new Passages(blockStarts, Map.copyOf(blocks));
+    }
+
+    // DataOutput#writeUTF is limited to 64KB, a single token from a large document may be longer
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Compaction of the owner partitions of the index: runs every {@code search.index.compaction.interval}
+ * and on request, e.g. when a write was rejected for lack of memory.
+ * <p>
+ * Every partition is compacted under its own refreshLock acquisition, searches are never blocked.
+ */
+final class IndexCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexCompactor.class);
+
+    private final SearchIndexProperties.Compaction settings;
+    private final Map<Long, OwnerPartition> partitions;
+    private final ReentrantLock refreshLock;
+    private final IndexMemory memory;
+    // housekeeping of the index after every run, takes the refreshLock itself
+    private final Runnable afterRun;
+
+    // null if search.index.compaction.interval is zero
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong compactedDocuments = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+    private final AtomicBoolean requested = new AtomicBoolean();
+
+    IndexCompactor(SearchIndexProperties.Compaction settings, Map<Long, OwnerPartition> partitions,
+                   ReentrantLock refreshLock, IndexMemory memory, Runnable afterRun) {
+        this.settings = settings;
+        this.partitions = partitions;
+        this.refreshLock = refreshLock;
+        this.memory = memory;
+        this.afterRun = afterRun;
+
+        Duration interval = settings.getInterval();
+        // lowest priority, so a running compaction yields the CPU to searches and writes
+        this.scheduler = interval.isZero()
+                                 ? null
+                                 : Executors.newSingleThreadScheduledExecutor(
+                                         InMemorySearchIndex.daemonThread("index-compaction", Thread.MIN_PRIORITY));
+
+        if (scheduler != null) {
+            long millis = interval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::scheduledRun, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * One compaction run: rewrites fragmented segments of the owner partitions, copying at
+     * most {@code maxDocumentsPerRun} documents (each partition gets what the ones before it
+     * left of the budget), then runs the housekeeping of the index.
+     *
+     * @return estimated bytes freed by this run
+     */
+    long compact() {
+        int budget = settings.getMaxDocumentsPerRun();
+        int partitionCount = 0;
+        int documents = 0;
+        long reclaimed = 0;
+
+        for (Long ownerId : List.copyOf(partitions.keySet())) {
+            if (documents >= budget) {
+                break;
+            }
+
+            refreshLock.lock();
+            try {
+                OwnerPartition partition = partitions.get(ownerId);
+                if (partition == null) {
+                    continue; // removed in the meantime
+                }
+
+                long sizeBefore = partition.view().sizeInBytes();
+                OwnerPartition.Compaction compaction =
+                        partition.compact(settings.getMinDeletedRatio(), budget - documents);
+                memory.add(partition.view().sizeInBytes() - sizeBefore);
+                if (compaction.segments() > 0) {
+                    partitionCount++;
+                    documents += compaction.documents();
+                    reclaimed += compaction.reclaimedBytes();
+                }
+            } finally {
+                refreshLock.unlock();
+            }
+        }
+
+        afterRun.run();
+
+        if (partitionCount > 0) {
+            long totalReclaimed = reclaimedBytes.addAndGet(reclaimed);
+            long totalDocuments = compactedDocuments.addAndGet(documents);
+            log.info("Index compacted: partitions={}, documents={}, reclaimedBytes={}, "
+                     + "totalDocuments={}, totalReclaimedBytes={}",
+                    partitionCount, documents, reclaimed, totalDocuments, totalReclaimed);
+        }
+        return reclaimed;
+    }
+
+    /**
+     * Estimated bytes freed by all compactions since startup.
+     */
+    long reclaimedBytes() {
+        return reclaimedBytes.get();
+    }
+
+    // runs a compaction now instead of waiting for the interval, at most one queued at a time
+    void request() {
+        if (scheduler == null || !requested.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            scheduler.execute(this::scheduledRun);
+        } catch (RejectedExecutionException e) {
+            requested.set(false);
+        }
+    }
+
+    void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    private void scheduledRun() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            // keep the schedule alive, the partitions are unchanged
+            log.error("Failed to compact search index", e);
+        } finally {
+            requested.set(false);
+        }
+    }
+}
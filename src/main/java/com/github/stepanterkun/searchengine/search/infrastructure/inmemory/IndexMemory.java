@@ -0,0 +1,88 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import com.github.stepanterkun.searchengine.search.domain.model.IndexCapacityExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory accounting of the index: the estimated size of the published partition views
+ * and admission control of writes against {@code search.index.memory.budget}.
+ * <p>
+ * Sizes are estimates, see {@link IndexedDocument#estimatedBytes()} and
+ * {@link PartitionView#sizeInBytes()}. Changes waiting for a refresh are not tracked here,
+ * the index passes them to {@link #admit}.
+ */
+final class IndexMemory {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexMemory.class);
+
+    // estimated size of all published partition views; updated under refreshLock of the index
+    private final AtomicLong residentBytes = new AtomicLong();
+
+    // zero unless search.index.memory.budget is set
+    private final long budget;
+    private final long warnThreshold;
+    private final AtomicBoolean warned = new AtomicBoolean();
+
+    IndexMemory(SearchIndexProperties.Memory settings) {
+        this.budget = settings.getBudget().toBytes();
+        this.warnThreshold = (long) (budget * settings.getWarnRatio());
+    }
+
+    /**
+     * @return memory budget in bytes, zero if there is none
+     */
+    long budget() {
+        return budget;
+    }
+
+    /**
+     * Estimated size of the published partition views.
+     */
+    long resident() {
+        return residentBytes.get();
+    }
+
+    // a partition view was published, dropped or resized by this many bytes
+    void add(long bytes) {
+        residentBytes.addAndGet(bytes);
+    }
+
+    void clear() {
+        residentBytes.set(0);
+    }
+
+    /**
+     * Admission control for writes. A document that does not make the index bigger is always
+     * accepted, so edits and deletes keep working on a full index. Logs a warning once the index
+     * crosses the warn ratio of the budget, and again only after it went below it.
+     *
+     * @param replaced     the version of the document it replaces, {@code null} for a new one
+     * @param pendingBytes estimated size of the changes waiting for a refresh
+     * @throws IndexCapacityExceededException if the document does not fit into the memory budget
+     */
+    void admit(IndexedDocument doc, IndexedDocument replaced, long pendingBytes) {
+        if (budget == 0) {
+            return;
+        }
+
+        long growth = doc.estimatedBytes() - (replaced == null ? 0 : replaced.estimatedBytes());
+        long used = residentBytes.get() + pendingBytes;
+
+        if (growth > 0 && used + growth > budget) {
+            throw new IndexCapacityExceededException(
+                    "Search index memory budget exceeded: used=" + used + " bytes, budget=" + budget
+                    + " bytes. Delete documents or retry later"
+            );
+        }
+
+        if (used + growth < warnThreshold) {
+            warned.set(false);
+        } else if (warned.compareAndSet(false, true)) {
+            log.warn("Search index is close to its memory budget: used={} bytes, budget={} bytes", used, budget);
+        }
+    }
+}
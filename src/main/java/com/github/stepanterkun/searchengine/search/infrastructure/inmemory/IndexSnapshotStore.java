@@ -0,0 +1,191 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Stores point-in-time snapshots of all indexed documents on local disk.
+ * <p>
+ * A snapshot is written to a temporary file, fsync-ed and atomically renamed,
+ * so a crash never leaves a half-written snapshot behind. The directory is fsync-ed
+ * after the rename, so the new snapshot is durable before the WAL behind it is truncated.
+ * <p>
+ * Documents are written and read one owner at a time, so neither side needs the whole
+ * index on the heap.
+ * <p>
+ * Layout: {@code [int magic][int version][long lsn][long highWaterMark]}, then per owner
+ * {@code [int count][documents...]}, then {@code [int -1][long crc32]}.
+ */
+final class IndexSnapshotStore {
+
+    private static final int MAGIC = 0x53494458; // "SIDX"
+    // an unsupported version makes the index rebuild from the database
+    private static final int FORMAT_VERSION = 8;
+    private static final int END_OF_OWNERS = -1;
+
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String TEMP_FILE = "snapshot.tmp";
+
+    private final Path directory;
+
+    /**
+     * @param lsn           last WAL record included in the snapshot
+     * @param highWaterMark every database change made before this moment is reflected in the snapshot
+     */
+    record Snapshot(long lsn, Instant highWaterMark) {
+    }
+
+    /**
+     * Hands all documents of the index to {@code out}, one owner per call.
+     */
+    @FunctionalInterface
+    interface Source {
+        void writeTo(OwnerWriter out) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface OwnerWriter {
+        void write(Collection<IndexedDocument> documents) throws IOException;
+    }
+
+    IndexSnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Reads the last snapshot, handing its documents to {@code onOwner} one owner at a time.
+     * The checksum is only verified at the end, so on an exception the caller has to throw
+     * away whatever it got so far.
+     */
+    Optional<Snapshot> read(Consumer<List<IndexedDocument>> onOwner) throws IOException {
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+
+        CRC32 crc = new CRC32();
+        try (CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file)), crc);
+             DataInputStream in = new DataInputStream(checked)) {
+
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an index snapshot: " + file);
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported index snapshot version " + version + ": " + file);
+            }
+
+            long lsn = in.readLong();
+            Instant highWaterMark = Instant.ofEpochMilli(in.readLong());
+            for (int count = in.readInt(); count != END_OF_OWNERS; count = in.readInt()) {
+                List<IndexedDocument> documents = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    documents.add(IndexCodec.readDocument(in));
+                }
+                onOwner.accept(documents);
+            }
+
+            // reading the trailer updates the checksum too, so take the value first
+            long expectedCrc = crc.getValue();
+            if (in.readLong() != expectedCrc) {
+                throw new IOException("Index snapshot checksum mismatch: " + file);
+            }
+
+            return Optional.of(new Snapshot(lsn, highWaterMark));
+        }
+    }
+
+    /**
+     * @return number of documents written
+     */
+    int write(long lsn, Instant highWaterMark, Source source) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(TEMP_FILE);
+        int written;
+
+        try (FileChannel channel = FileChannel.open(
+                temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            OutputStream raw = new BufferedOutputStream(Channels.newOutputStream(channel));
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(raw, crc));
+
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(lsn);
+            out.writeLong(highWaterMark.toEpochMilli());
+            BlockWriter blocks = new BlockWriter(out);
+            source.writeTo(blocks);
+            out.writeInt(END_OF_OWNERS);
+            written = blocks.written;
+            out.flush();
+
+            // checksum itself is not part of the checked content
+            new DataOutputStream(raw).writeLong(crc.getValue());
+            raw.flush();
+            channel.force(true);
+        }
+
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // the rename is only an entry in the directory, without this it can be lost on power loss
+        // while the truncation of the WAL survives
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        }
+        return written;
+    }
+
+    /**
+     * Deletes the last snapshot, the next {@link #read} finds none.
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(directory.resolve(SNAPSHOT_FILE));
+    }
+
+    // one [count][documents...] block per owner
+    private static final class BlockWriter implements OwnerWriter {
+
+        private final DataOutputStream out;
+        private int written;
+
+        private BlockWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(Collection<IndexedDocument> documents) throws IOException {
+            if (documents.isEmpty()) {
+                return;
+            }
+            out.writeInt(documents.size());
+            for (IndexedDocument doc : documents) {
+                IndexCodec.writeDocument(out, doc);
+            }
+            written += documents.size();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Durable copy of the in-memory index: last snapshot plus write-ahead log on top of it.
+ * <p>
+ * When persistence is disabled every operation is a no-op and the index
+ * is rebuilt from the database on startup.
+ */
+final class IndexStorage implements Closeable {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final IndexSnapshotStore snapshots;
+    private final IndexWriteAheadLog wal;
+    private final int snapshotAfterRecords;
+
+    // LSN covered by the last written snapshot
+    private final AtomicLong snapshotLsn = new AtomicLong();
+
+    private IndexStorage(IndexSnapshotStore snapshots, IndexWriteAheadLog wal, int snapshotAfterRecords) {
+        this.snapshots = snapshots;
+        this.wal = wal;
+        this.snapshotAfterRecords = snapshotAfterRecords;
+    }
+
+    static IndexStorage create(SearchIndexProperties.Persistence properties) {
+        if (!properties.isEnabled()) {
+            // deletions are not logged for catch-up while persistence is off, so a snapshot left
+            // from an earlier run would bring deleted documents back once it is turned on again
+            try {
+                new IndexSnapshotStore(properties.getDirectory()).delete();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to delete stale index snapshot", e);
+            }
+            return new IndexStorage(null, null, 0);
+        }
+
+        return new IndexStorage(
+                new IndexSnapshotStore(properties.getDirectory()),
+                new IndexWriteAheadLog(properties.getDirectory()),
+                properties.getSnapshotAfterRecords()
+        );
+    }
+
+    boolean isEnabled() {
+        return wal != null;
+    }
+
+    /**
+     * Loads the last snapshot (handed over one owner per batch) and replays the WAL on top of it,
+     * then opens the WAL for writing.
+     *
+     * @return high-water mark of the restored snapshot, or empty if there is no snapshot
+     *         and the index has to be built from the database
+     */
+    Optional<Instant> restore(Consumer<List<IndexedDocument>> onSnapshot,
+                              Consumer<IndexedDocument> onIndex,
+                              LongConsumer onRemove,
+                              LongConsumer onRemoveOwner) throws IOException {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+
+        Optional<IndexSnapshotStore.Snapshot> snapshot = snapshots.read(onSnapshot);
+        if (snapshot.isEmpty()) {
+            reset();
+            return Optional.empty();
+        }
+
+        long lsn = snapshot.get().lsn();
+        wal.replay(lsn, onIndex, onRemove, onRemoveOwner);
+        snapshotLsn.set(lsn);
+
+        wal.start();
+        return Optional.of(snapshot.get().highWaterMark());
+    }
+
+    /**
+     * Drops WAL segments left from a previous run and opens the WAL for writing.
+     * Used when the index is rebuilt from the database instead of restored.
+     */
+    void reset() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+
+        wal.deleteOldSegments();
+        wal.start();
+    }
+
+    CompletableFuture<Void> logIndex(IndexedDocument doc) {
+        return isEnabled() ? wal.appendIndex(doc) : DONE;
+    }
+
+    CompletableFuture<Void> logRemove(Long documentId) {
+        return isEnabled() ? wal.appendRemove(documentId) : DONE;
+    }
+
+    CompletableFuture<Void> logRemoveOwner(Long ownerId) {
+        return isEnabled() ? wal.appendRemoveOwner(ownerId) : DONE;
+    }
+
+    boolean snapshotDue() {
+        return isEnabled() && wal.lastLsn() - snapshotLsn.get() >= snapshotAfterRecords;
+    }
+
+    /**
+     * Starts a new WAL segment. Must be called while index writers are blocked,
+     * the returned LSN then matches the state the caller copies for the snapshot.
+     */
+    long beginSnapshot() throws IOException {
+        return wal.rotate();
+    }
+
+    /**
+     * Writes the snapshot and truncates the WAL segments it covers.
+     *
+     * @return number of documents written
+     */
+    int completeSnapshot(long lsn, Instant highWaterMark, IndexSnapshotStore.Source documents) throws IOException {
+        int written = snapshots.write(lsn, highWaterMark, documents);
+        // the snapshot is durable once written, including its directory entry
+        wal.deleteOldSegments();
+        snapshotLsn.set(lsn);
+        return written;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (isEnabled()) {
+            wal.close();
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of index mutations.
+ * <p>
+ * Writers enqueue records and wait for a single flusher thread which writes
+ * and fsync-s everything that is queued at that moment. Records that arrive
+ * while a flush is in progress go into the next one, so concurrent writers
+ * share one fsync (group commit).
+ * <p>
+ * The log is split into segment files {@code wal-<firstLsn>.log}. A new segment
+ * is started on every snapshot, older segments are deleted once the snapshot is durable.
+ * <p>
+ * A batch that fails to flush is cut off the segment again, so records appended after it
+ * are not hidden behind a torn one on replay.
+ * <p>
+ * Record layout: {@code [int payloadLength][int crc32][payload]},
+ * payload: {@code [byte op][long lsn][document | long documentId | long ownerId]}.
+ */
+final class IndexWriteAheadLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexWriteAheadLog.class);
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final byte OP_INDEX = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_REMOVE_OWNER = 3;
+
+    /**
+     * Opens a segment file for writing; tests swap it to inject write failures.
+     */
+    @FunctionalInterface
+    interface SegmentOpener {
+        FileChannel open(Path segment) throws IOException;
+    }
+
+    private final Path directory;
+    private final SegmentOpener opener;
+    private final BlockingQueue<PendingRecord> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong lastLsn = new AtomicLong();
+    private final Object fileLock = new Object();
+
+    private FileChannel channel; // guarded by fileLock
+    private Path currentSegment; // guarded by fileLock
+    private Thread flusher;
+    private volatile boolean closed;
+
+    private record PendingRecord(long lsn, byte[] bytes, CompletableFuture<Void> done) {
+    }
+
+    IndexWriteAheadLog(Path directory) {
+        this(directory, segment -> FileChannel.open(
+                segment,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+        ));
+    }
+
+    IndexWriteAheadLog(Path directory, SegmentOpener opener) {
+        this.directory = directory;
+        this.opener = opener;
+    }
+
+    /**
+     * Replays all records with LSN greater than {@code afterLsn} in log order.
+     * A torn or corrupted record ends the segment it belongs to (crash in the middle of a write).
+     */
+    void replay(long afterLsn, Consumer<IndexedDocument> onIndex, LongConsumer onRemove,
+                LongConsumer onRemoveOwner) throws IOException {
+        lastLsn.set(Math.max(lastLsn.get(), afterLsn));
+
+        for (Path segment : listSegments()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+                while (true) {
+                    byte[] payload = readRecord(in, segment);
+                    if (payload == null) {
+                        break;
+                    }
+
+                    DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                    byte op = record.readByte();
+                    long lsn = record.readLong();
+                    lastLsn.accumulateAndGet(lsn, Math::max);
+
+                    if (lsn <= afterLsn) {
+                        continue;
+                    }
+
+                    if (op == OP_INDEX) {
+                        onIndex.accept(IndexCodec.readDocument(record));
+                    } else if (op == OP_REMOVE) {
+                        onRemove.accept(record.readLong());
+                    } else if (op == OP_REMOVE_OWNER) {
+                        onRemoveOwner.accept(record.readLong());
+                    } else {
+                        log.warn("Unknown WAL operation {} in {}, skipping rest of segment", op, segment);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens a fresh segment for appending and starts the flusher thread.
+     * Must be called after {@link #replay} so that LSNs continue the existing sequence.
+     */
+    void start() throws IOException {
+        synchronized (fileLock) {
+            openSegment();
+        }
+
+        flusher = new Thread(this::flushLoop, "index-wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    CompletableFuture<Void> appendIndex(IndexedDocument doc) {
+        return append(OP_INDEX, out -> IndexCodec.writeDocument(out, doc));
+    }
+
+    CompletableFuture<Void> appendRemove(Long documentId) {
+        return append(OP_REMOVE, out -> out.writeLong(documentId));
+    }
+
+    CompletableFuture<Void> appendRemoveOwner(Long ownerId) {
+        return append(OP_REMOVE_OWNER, out -> out.writeLong(ownerId));
+    }
+
+    long lastLsn() {
+        return lastLsn.get();
+    }
+
+    /**
+     * Starts a new segment. Every record with LSN up to the returned value
+     * lives in an older segment or is still queued (and will be skipped on replay
+     * once a snapshot with that LSN exists).
+     */
+    long rotate() throws IOException {
+        synchronized (fileLock) {
+            long lsn = lastLsn.get();
+            channel.close();
+            openSegment();
+            return lsn;
+        }
+    }
+
+    /**
+     * Deletes all segments except the one currently written to.
+     */
+    void deleteOldSegments() throws IOException {
+        Path current;
+        synchronized (fileLock) {
+            current = currentSegment;
+        }
+
+        for (Path segment : listSegments()) {
+            if (!segment.equals(current)) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+
+        if (flusher != null) {
+            try {
+                flusher.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (fileLock) {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    private CompletableFuture<Void> append(byte op, RecordWriter body) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IOException("Write-ahead log is closed"));
+        }
+
+        long lsn = lastLsn.incrementAndGet();
+
+        try {
+            ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+            DataOutputStream payload = new DataOutputStream(payloadBytes);
+            payload.writeByte(op);
+            payload.writeLong(lsn);
+            body.write(payload);
+
+            byte[] bytes = frame(payloadBytes.toByteArray());
+            PendingRecord record = new PendingRecord(lsn, bytes, new CompletableFuture<>());
+            queue.add(record);
+            return record.done();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingRecord> batch = new ArrayList<>();
+
+        while (!closed || !queue.isEmpty()) {
+            try {
+                PendingRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                // everything queued while the previous fsync was running goes into this one
+                queue.drainTo(batch);
+
+                flush(batch);
+                batch.forEach(record -> record.done().complete(null));
+            } catch (IOException e) {
+                log.error("Failed to flush {} WAL records", batch.size(), e);
+                batch.forEach(record -> record.done().completeExceptionally(e));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingRecord> batch) throws IOException {
+        ByteBuffer[] buffers = batch.stream()
+                                       .map(record -> ByteBuffer.wrap(record.bytes()))
+                                       .toArray(ByteBuffer[]::new);
+
+        synchronized (fileLock) {
+            if (!channel.isOpen()) {
+                openSegment(); // a previous failure could not start one
+            }
+
+            long start = channel.position();
+            try {
+                long remaining = batch.stream().mapToLong(record -> record.bytes().length).sum();
+                while (remaining > 0) {
+                    remaining -= channel.write(buffers);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                discardFailedBatch(start);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Cuts whatever part of a failed batch was written, replay would stop at it and lose every
+     * later record. If even that fails, later records go into a new segment instead.
+     */
+    private void discardFailedBatch(long start) {
+        try {
+            channel.truncate(start);
+            channel.position(start);
+            channel.force(false);
+        } catch (IOException e) {
+            log.warn("Failed to cut a failed WAL batch off {}, starting a new segment", currentSegment, e);
+            try {
+                channel.close();
+                openSegment();
+            } catch (IOException rotateFailure) {
+                // the next flush tries again
+                log.error("Failed to start a new WAL segment", rotateFailure);
+            }
+        }
+    }
+
+    private void openSegment() throws IOException {
+        Files.createDirectories(directory);
+        currentSegment = directory.resolve(SEGMENT_PREFIX + (lastLsn.get() + 1) + SEGMENT_SUFFIX);
+        // a segment with the same name can only contain a torn first record, so it is safe to overwrite
+        channel = opener.open(currentSegment);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                           String name = path.getFileName().toString();
+                           return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                       })
+                       .sorted(Comparator.comparingLong(IndexWriteAheadLog::segmentStartLsn))
+                       .toList();
+        }
+    }
+
+    private static long segmentStartLsn(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static byte[] frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer framed = ByteBuffer.allocate(Integer.BYTES * 2 + payload.length);
+        framed.putInt(payload.length);
+        framed.putInt((int) crc.getValue());
+        framed.put(payload);
+        return framed.array();
+    }
+
+    /**
+     * Reads one framed record, returns {@code null} at the end of the segment or on a torn record.
+     */
+    private static byte[] readRecord(DataInputStream in, Path segment) throws IOException {
+        try {
+            int length = in.readInt();
+            int expectedCrc = in.readInt();
+            if (length < 0) {
+                log.warn("Corrupted WAL record length in {}, ignoring the rest of segment", segment);
+                return null;
+            }
+
+            byte[] payload = readExactly(in, length);
+            if (payload == null) {
+                log.warn("Torn WAL record at the end of {}, ignoring it", segment);
+                return null;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != expectedCrc) {
+                log.warn("WAL record checksum mismatch in {}, ignoring the rest of segment", segment);
+                return null;
+            }
+            return payload;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static byte[] readExactly(InputStream in, int length) throws IOException {
+        byte[] bytes = in.readNBytes(length);
+        return bytes.length == length ? bytes : null;
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    static void awaitDurable(CompletableFuture<Void> pending) {
+        try {
+            pending.join();
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw new UncheckedIOException("Failed to write index mutation to the write-ahead log", io);
+            }
+            throw e;
+        }
+    }
+}
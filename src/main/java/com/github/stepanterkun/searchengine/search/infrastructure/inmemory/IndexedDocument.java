@@ -0,0 +1,81 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Analyzed form of a document as it is kept by the index:
+ * owner, status, per-term frequencies for title and content and numeric metadata values.
+ * <p>
+ * Keyword metadata (tags, source, language) is indexed as terms with a field prefix,
+ * e.g. {@code tag:java}, with zero frequencies so it never affects scores.
+ * Dates are kept as numbers of epoch milliseconds. {@code minHash} is the {@link MinHash}
+ * signature of the text for near-duplicate detection, empty if not computed. {@code textHash}
+ * is the content hash of the title and content the terms come from, empty if unknown.
+ * {@code passages} splits the content of a large document for passage ranking,
+ * {@link Passages#NONE} for documents that fit into one passage.
+ * <p>
+ * This is also the unit written to the write-ahead log and to snapshots,
+ * so restoring the index never needs to tokenize documents again.
+ */
+record IndexedDocument(
+        Long id,
+        Long ownerId,
+        DocumentStatus status,
+        Map<String, TermStats> terms,
+        Map<String, Double> numbers,
+        int[] minHash,
+        String textHash,
+        Passages passages
+) {
+
+    IndexedDocument(Long id, Long ownerId, DocumentStatus status, Map<String, TermStats> terms) {
+        this(id, ownerId, status, terms, Map.of(), new int[0], "", Passages.NONE);
+    }
+
+    // rough heap cost of a term entry besides its chars: map node, String and TermStats headers
+    private static final int TERM_OVERHEAD_BYTES = 96;
+    private static final int NUMBER_ENTRY_BYTES = 96;
+    private static final int BASE_BYTES = 128;
+
+    /**
+     * Rough heap footprint of the analyzed document, used for memory accounting.
+     */
+    long estimatedBytes() {
+        long bytes = BASE_BYTES + (long) minHash.length * Integer.BYTES + 2L * textHash.length();
+        for (String term : terms.keySet()) {
+            bytes += TERM_OVERHEAD_BYTES + 2L * term.length();
+        }
+        return bytes + (long) numbers.size() * NUMBER_ENTRY_BYTES + passages.estimatedBytes();
+    }
+
+    // records compare arrays by reference, the signature is compared by content
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof IndexedDocument other
+               && Objects.equals(id, other.id)
+               && Objects.equals(ownerId, other.ownerId)
+               && status == other.status
+               && terms.equals(other.terms)
+               && numbers.equals(other.numbers)
+               && Arrays.equals(minHash, other.minHash)
+               && textHash.equals(other.textHash)
+               && passages.equals(other.passages);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, ownerId, status, terms, numbers, textHash, passages) * 31 + Arrays.hashCode(minHash);
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedDocument[id=" + id + ", ownerId=" + ownerId + ", status=" + status
+               + ", terms=" + terms + ", numbers=" + numbers + ", minHash=" + minHash.length + " hashes, textHash=" + textHash
+               + ", passages=" + passages.blockCount() + " blocks]";
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+/**
+ * Immutable set of live (not deleted) local doc ids of a {@link Segment}.
+ * Deleting returns a new instance, so published views never change.
+ * <p>
+ * Stored as the compressed set of deleted ids: most segments have few or no
+ * deletions, and a delete copies only the touched chunks instead of the whole set.
+ */
+final class LiveDocs {
+
+    private final RoaringDocIdSet deleted;
+    private final int size;
+
+    private LiveDocs(RoaringDocIdSet deleted, int size) {
+        this.deleted = deleted;
+        this.size = size;
+    }
+
+    static LiveDocs all(int size) {
+        return new LiveDocs(RoaringDocIdSet.EMPTY, size);
+    }
+
+    boolean isLive(int localId) {
+        return !deleted.contains(localId);
+    }
+
+    /**
+     * Deleted local ids, to be removed from query candidates with {@link DocBitSet#andNot}.
+     */
+    RoaringDocIdSet deleted() {
+        return deleted;
+    }
+
+    int liveCount() {
+        return size - deleted.cardinality();
+    }
+
+    int deletedCount() {
+        return deleted.cardinality();
+    }
+
+    boolean hasDeletions() {
+        return !deleted.isEmpty();
+    }
+
+    /**
+     * Returns a copy with the given local ids deleted (already deleted ids are ignored).
+     */
+    LiveDocs delete(int[] localIds) {
+        return new LiveDocs(deleted.with(localIds), size);
+    }
+}
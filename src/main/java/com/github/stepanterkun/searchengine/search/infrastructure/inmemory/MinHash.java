@@ -0,0 +1,90 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MinHash signatures of documents: for each of {@link #SIGNATURE_SIZE} hash functions the
+ * minimum hash over the document's shingles (runs of {@link #SHINGLE} consecutive words).
+ * The share of equal positions in two signatures estimates the Jaccard similarity of
+ * their shingle sets, i.e. how much text the documents have in common.
+ * <p>
+ * Signatures are persisted with the document, so the hash functions must never change.
+ */
+final class MinHash {
+
+    static final int SIGNATURE_SIZE = 128;
+
+    // shorter documents are a single shingle of all their words
+    private static final int SHINGLE = 3;
+
+    private static final int[] NONE = new int[0];
+
+    // fixed seeds: signatures of the same text must match across restarts
+    private static final long[] SEEDS = new long[SIGNATURE_SIZE];
+
+    static {
+        long state = 0x5eed_5eedL;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            state += 0x9e37_79b9_7f4a_7c15L;
+            SEEDS[i] = mix(state);
+        }
+    }
+
+    private MinHash() {
+    }
+
+    /**
+     * @param words document words in order
+     * @return signature, empty if there are no words
+     */
+    static int[] signature(List<String> words) {
+        if (words.isEmpty()) {
+            return NONE;
+        }
+
+        int[] signature = new int[SIGNATURE_SIZE];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+
+        int shingles = Math.max(1, words.size() - SHINGLE + 1);
+        for (int start = 0; start < shingles; start++) {
+            long shingle = 0;
+            for (int i = start; i < Math.min(start + SHINGLE, words.size()); i++) {
+                shingle = shingle * 31 + words.get(i).hashCode();
+            }
+
+            for (int h = 0; h < SIGNATURE_SIZE; h++) {
+                // upper bits of the mixed value, the lower ones are less random
+                int hash = (int) (mix(shingle ^ SEEDS[h]) >>> 33);
+                if (hash < signature[h]) {
+                    signature[h] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Estimated Jaccard similarity of the documents, 0 if either has no signature.
+     */
+    static double similarity(int[] a, int[] b) {
+        if (a.length != SIGNATURE_SIZE || b.length != SIGNATURE_SIZE) {
+            return 0;
+        }
+
+        int equal = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / SIGNATURE_SIZE;
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58_476d_1ce4_e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d0_49bb_1331_11ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query of a "more like this" search: the terms that describe a document best, taken from
+ * the term vector stored for it in the index, so the database is not involved.
+ */
+final class MoreLikeThis {
+
+    // a query uses at most this many terms of the source document
+    static final int MAX_TERMS = 25;
+
+    private MoreLikeThis() {
+    }
+
+    /**
+     * Picks the {@link #MAX_TERMS} terms that describe the document best by tf-idf
+     * and boosts each relative to the best one. Terms no other document contains are skipped,
+     * they cannot match anything.
+     *
+     * @return term boosts, strongest term first
+     */
+    static Map<String, Double> terms(PartitionView view, IndexedDocument source) {
+        record WeightedTerm(String term, double weight) {
+        }
+
+        List<WeightedTerm> candidates = new ArrayList<>();
+        for (Map.Entry<String, TermStats> entry : source.terms().entrySet()) {
+            String term = entry.getKey();
+            // keyword metadata terms (tag:java) have no frequencies
+            if (term.indexOf(':') >= 0 || view.docFreq(term) <= 1) {
+                continue;
+            }
+
+            TermStats stats = entry.getValue();
+            double tf = stats.contentFreq() + TermStats.TITLE_BOOST * stats.titleFreq();
+            candidates.add(new WeightedTerm(term, tf * view.idf(term)));
+        }
+
+        candidates.sort(Comparator.comparingDouble(WeightedTerm::weight).reversed()
+                                  .thenComparing(WeightedTerm::term));
+
+        Map<String, Double> boosts = new LinkedHashMap<>();
+        for (WeightedTerm candidate : candidates.subList(0, Math.min(MAX_TERMS, candidates.size()))) {
+            if (candidate.weight() > 0) {
+                boosts.put(candidate.term(), candidate.weight() / candidates.get(0).weight());
+            }
+        }
+        return boosts;
+    }
+}
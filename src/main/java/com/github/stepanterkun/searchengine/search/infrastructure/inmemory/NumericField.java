@@ -0,0 +1,99 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Values of one numeric field within a {@link Segment}, stored twice:
+ * <ul>
+ *     <li>doc values: local id -> value, for sorting and per-document checks;</li>
+ *     <li>points: (value, local id) pairs sorted by value, so a range is found with
+ *         two binary searches and resolved to a doc id set without touching other documents.</li>
+ * </ul>
+ * Documents without the field have {@code NaN} as doc value and no point.
+ */
+final class NumericField {
+
+    // local id -> value, NaN if missing
+    private final double[] values;
+
+    // points sorted by value, ties by local id
+    private final double[] pointValues;
+    private final int[] pointDocs;
+
+    private NumericField(double[] values, double[] pointValues, int[] pointDocs) {
+        this.values = values;
+        this.pointValues = pointValues;
+        this.pointDocs = pointDocs;
+    }
+
+    static NumericField of(double[] values) {
+        Integer[] order = IntStream.range(0, values.length)
+                                   .filter(localId -> !Double.isNaN(values[localId]))
+                                   .boxed()
+                                   .toArray(Integer[]::new);
+        // stable sort, so equal values stay in local id order
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        double[] pointValues = new double[order.length];
+        int[] pointDocs = new int[order.length];
+        for (int p = 0; p < order.length; p++) {
+            pointDocs[p] = order[p];
+            pointValues[p] = values[order[p]];
+        }
+
+        return new NumericField(values, pointValues, pointDocs);
+    }
+
+    /**
+     * @return value of the document, or {@code NaN} if it does not have one
+     */
+    double get(int localId) {
+        return values[localId];
+    }
+
+    // number of documents with a value
+    int pointCount() {
+        return pointDocs.length;
+    }
+
+    /**
+     * Sets the bits of all documents with a value within the range.
+     */
+    void collectRange(double lower, boolean lowerInclusive, double upper, boolean upperInclusive, DocBitSet into) {
+        int from = lowerInclusive ? firstAtLeast(lower) : firstGreaterThan(lower);
+        int to = upperInclusive ? firstGreaterThan(upper) : firstAtLeast(upper);
+
+        for (int p = from; p < to; p++) {
+            into.set(pointDocs[p]);
+        }
+    }
+
+    private int firstAtLeast(double value) {
+        int low = 0;
+        int high = pointValues.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Double.compare(pointValues[mid], value) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int firstGreaterThan(double value) {
+        int low = 0;
+        int high = pointValues.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Double.compare(pointValues[mid], value) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,216 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * {@link Segment} that keeps the term dictionary, postings and documents in one
+ * slab of a {@link PostingsArena}. The only heap objects per segment are the slab
+ * handle and the doc id and status columns.
+ * <p>
+ * Slab layout (all offsets are absolute byte offsets within the slab):
+ * <pre>
+ * term table  [int termOffset][int termLength][int postingsOffset][int postingsCount] per term,
+ *             sorted by unsigned UTF-8 bytes of the term
+ * term bytes  UTF-8
+ * postings    [int doc]... [int titleFreq]... [int contentFreq]... per term, see {@link Postings}
+ * doc table   [int docOffset][int docLength] per local id
+ * doc bytes   documents encoded with {@link IndexCodec}
+ * </pre>
+ */
+final class OffHeapSegment extends Segment {
+
+    private static final int TERM_ENTRY_BYTES = 4 * Integer.BYTES;
+    private static final int POSTING_BYTES = 3 * Integer.BYTES;
+    private static final int DOC_ENTRY_BYTES = 2 * Integer.BYTES;
+
+    private final PostingsArena arena;
+    private final ByteBuffer slab;
+    private final int termCount;
+    private final int docTableOffset;
+
+    private OffHeapSegment(IndexedDocument[] sorted, Map<String, Postings.Builder> builders, Impacts.Options impacts,
+                           PostingsArena arena, ByteBuffer slab, int termCount, int docTableOffset) {
+        super(sorted, builders, impacts);
+        this.arena = arena;
+        this.slab = slab;
+        this.termCount = termCount;
+        this.docTableOffset = docTableOffset;
+    }
+
+    /**
+     * Builds a segment in the arena. If a document id occurs more than once the last occurrence wins.
+     *
+     * @return the segment, or {@code null} if the arena has no room for it
+     */
+    static OffHeapSegment build(Collection<IndexedDocument> docs, PostingsArena arena) {
+        return build(docs, arena, null);
+    }
+
+    /**
+     * Same as {@link #build(Collection, PostingsArena)}, with {@link Impacts} (kept on the heap) unless {@code impacts} is null.
+     */
+    static OffHeapSegment build(Collection<IndexedDocument> docs, PostingsArena arena, Impacts.Options impacts) {
+        IndexedDocument[] sorted = sortedUnique(docs);
+        Map<String, Postings.Builder> builders = invert(sorted);
+
+        byte[][] terms = builders.keySet()
+                                 .stream()
+                                 .map(term -> term.getBytes(StandardCharsets.UTF_8))
+                                 .sorted(Arrays::compareUnsigned)
+                                 .toArray(byte[][]::new);
+
+        int[][] postings = new int[terms.length][];
+        long termBytes = 0;
+        long postingInts = 0;
+        for (int i = 0; i < terms.length; i++) {
+            postings[i] = builders.get(new String(terms[i], StandardCharsets.UTF_8)).toArray();
+            termBytes += terms[i].length;
+            postingInts += postings[i].length;
+        }
+
+        byte[][] encodedDocs = new byte[sorted.length][];
+        long docBytes = 0;
+        for (int localId = 0; localId < sorted.length; localId++) {
+            encodedDocs[localId] = encode(sorted[localId]);
+            docBytes += encodedDocs[localId].length;
+        }
+
+        long termTableOffset = 0;
+        long termBytesOffset = termTableOffset + (long) terms.length * TERM_ENTRY_BYTES;
+        // keep int columns aligned
+        long postingsOffset = align(termBytesOffset + termBytes);
+        long docTableOffset = postingsOffset + postingInts * Integer.BYTES;
+        long docBytesOffset = docTableOffset + (long) sorted.length * DOC_ENTRY_BYTES;
+        long totalBytes = docBytesOffset + docBytes;
+
+        if (totalBytes > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        ByteBuffer slab = arena.allocate((int) totalBytes);
+        if (slab == null) {
+            return null;
+        }
+
+        int termAt = (int) termBytesOffset;
+        int postingAt = (int) postingsOffset;
+        for (int i = 0; i < terms.length; i++) {
+            int entry = (int) termTableOffset + i * TERM_ENTRY_BYTES;
+            slab.putInt(entry, termAt);
+            slab.putInt(entry + 4, terms[i].length);
+            slab.putInt(entry + 8, postingAt);
+            slab.putInt(entry + 12, postings[i].length / 3);
+
+            slab.put(termAt, terms[i]);
+            termAt += terms[i].length;
+
+            for (int value : postings[i]) {
+                slab.putInt(postingAt, value);
+                postingAt += Integer.BYTES;
+            }
+        }
+
+        int docAt = (int) docBytesOffset;
+        for (int localId = 0; localId < sorted.length; localId++) {
+            int entry = (int) docTableOffset + localId * DOC_ENTRY_BYTES;
+            slab.putInt(entry, docAt);
+            slab.putInt(entry + 4, encodedDocs[localId].length);
+
+            slab.put(docAt, encodedDocs[localId]);
+            docAt += encodedDocs[localId].length;
+        }
+
+        return new OffHeapSegment(sorted, builders, impacts, arena, slab, terms.length, (int) docTableOffset);
+    }
+
+    @Override
+    IndexedDocument document(int localId) {
+        int entry = docTableOffset + localId * DOC_ENTRY_BYTES;
+        byte[] bytes = new byte[slab.getInt(entry + 4)];
+        slab.get(slab.getInt(entry), bytes);
+
+        try {
+            return IndexCodec.readDocument(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupted off-heap segment", e);
+        }
+    }
+
+    @Override
+    Postings postings(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareTerm(mid, key);
+
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                int entry = mid * TERM_ENTRY_BYTES;
+                int offset = slab.getInt(entry + 8);
+                int count = slab.getInt(entry + 12);
+                // slice() resets the byte order
+                return new Postings(slab.slice(offset, count * POSTING_BYTES)
+                                        .order(ByteOrder.nativeOrder())
+                                        .asIntBuffer());
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    long sizeInBytes() {
+        return columnBytes() + slab.capacity();
+    }
+
+    @Override
+    protected void free() {
+        arena.release(slab);
+    }
+
+    private int compareTerm(int index, byte[] key) {
+        int entry = index * TERM_ENTRY_BYTES;
+        int offset = slab.getInt(entry);
+        int length = slab.getInt(entry + 4);
+
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(slab.get(offset + i) & 0xFF, key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private static byte[] encode(IndexedDocument doc) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            IndexCodec.writeDocument(new DataOutputStream(bytes), doc);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long align(long offset) {
+        return (offset + Integer.BYTES - 1) & -Integer.BYTES;
+    }
+}
@@ -0,0 +1,327 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Index of a single owner. Every search is scoped to one owner, so this is
+ * the unit of publication: readers take {@link #view()} and never block.
+ * <p>
+ * Writers (serialized by the caller) add a new segment with the changed documents,
+ * mark older copies as deleted and atomically publish the resulting view.
+ * Small segments are merged so that their number stays logarithmic in the owner size.
+ * <p>
+ * Readers that run concurrently with writers should use {@link #acquire()} and release
+ * the view when done, so that segments they read are not freed underneath them.
+ * <p>
+ * The partition also keeps the owner's {@link CompletionTrie} for suggestions in sync
+ * with the documents it contains.
+ */
+final class OwnerPartition {
+
+    // merge when this many segments of the same size level exist
+    static final int MERGE_FACTOR = 10;
+
+    // rewrite a segment when more than this share of its documents is deleted
+    private static final double MAX_DELETED_RATIO = 0.5;
+
+    // suggestion weight a document adds to a term it has in the title / in the content
+    private static final long TITLE_SUGGESTION_WEIGHT = 3;
+    private static final long CONTENT_SUGGESTION_WEIGHT = 1;
+
+    // shorter terms are not worth suggesting
+    private static final int MIN_SUGGESTION_LENGTH = 2;
+
+    /**
+     * Outcome of {@link #compact}: rewritten segments, live documents copied into the new
+     * segment and memory freed once readers of the old view are done.
+     */
+    record Compaction(int segments, int documents, long reclaimedBytes) {
+
+        static final Compaction NONE = new Compaction(0, 0, 0);
+    }
+
+    private final Long ownerId;
+    private final Function<Collection<IndexedDocument>, Segment> segmentBuilder;
+    private volatile PartitionView view = new PartitionView(0, List.of());
+    private final CompletionTrie suggestions = new CompletionTrie();
+
+    // System.nanoTime() of the last search, for LRU eviction
+    private volatile long lastAccess = System.nanoTime();
+
+    OwnerPartition(Long ownerId) {
+        this(ownerId, Segment::build);
+    }
+
+    OwnerPartition(Long ownerId, Function<Collection<IndexedDocument>, Segment> segmentBuilder) {
+        this.ownerId = ownerId;
+        this.segmentBuilder = segmentBuilder;
+    }
+
+    Long ownerId() {
+        return ownerId;
+    }
+
+    PartitionView view() {
+        return view;
+    }
+
+    CompletionTrie suggestions() {
+        return suggestions;
+    }
+
+    void touch() {
+        lastAccess = System.nanoTime();
+    }
+
+    long lastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * Current view with an extra reference, must be {@link PartitionView#release() released} by the caller.
+     */
+    PartitionView acquire() {
+        while (true) {
+            PartitionView current = view;
+            if (current.tryAcquire()) {
+                return current;
+            }
+            // a newer view was published and the old one fully released in between
+        }
+    }
+
+    /**
+     * Drops all documents. Readers holding an acquired view can still finish with it.
+     */
+    void close() {
+        publish(new PartitionView(view.version() + 1, List.of()));
+        suggestions.clear();
+    }
+
+    /**
+     * Applies one batch of changes and publishes a new view.
+     * Must be called by one writer at a time.
+     *
+     * @param added   documents to add or replace
+     * @param removed ids of documents to delete
+     */
+    void apply(Collection<IndexedDocument> added, Collection<Long> removed) {
+        Set<Long> toDelete = new HashSet<>(removed);
+        added.forEach(doc -> toDelete.add(doc.id()));
+
+        PartitionView current = view;
+        List<PartitionView.LiveSegment> next = new ArrayList<>(current.segments().size() + 1);
+        // segments built by this call, they hold the builder reference until the new view takes its own
+        List<Segment> created = new ArrayList<>();
+        // term -> change of its suggestion weight
+        Map<String, Long> weightChanges = new HashMap<>();
+
+        for (PartitionView.LiveSegment live : current.segments()) {
+            PartitionView.LiveSegment updated = deleteFrom(live, toDelete, weightChanges);
+            if (updated.liveDocs().liveCount() > 0) {
+                next.add(updated);
+            }
+        }
+
+        if (!added.isEmpty()) {
+            next.add(PartitionView.LiveSegment.of(build(added, created)));
+        }
+
+        publish(new PartitionView(current.version() + 1, merge(next, created)));
+        // segments merged away before they were ever published are freed here
+        created.forEach(Segment::release);
+
+        added.forEach(doc -> addSuggestionWeights(doc, 1, weightChanges));
+        weightChanges.forEach(suggestions::update);
+    }
+
+    /**
+     * Background counterpart of the merge policy in {@link #apply}: rewrites, into one segment,
+     * every segment with at least {@code minDeletedRatio} deleted documents plus all small
+     * (level 0) segments if there are several of them. Terms only deleted documents had are
+     * dropped from the dictionary on the way. Searches see the same documents before and after.
+     * Must be called by the writer, like {@link #apply}.
+     * <p>
+     * At most {@code maxDocuments} live documents are copied: the most fragmented segments are
+     * chosen first and choosing stops at the first one that no longer fits, the rest waits
+     * for the next call.
+     */
+    Compaction compact(double minDeletedRatio, int maxDocuments) {
+        PartitionView current = view;
+
+        List<PartitionView.LiveSegment> small = new ArrayList<>();
+        List<PartitionView.LiveSegment> fragmented = new ArrayList<>();
+        for (PartitionView.LiveSegment live : current.segments()) {
+            if (level(live) == 0) {
+                small.add(live);
+            } else if (live.liveDocs().deletedCount() > 0 && deletedRatio(live) >= minDeletedRatio) {
+                fragmented.add(live);
+            }
+        }
+        // most deleted share first: they free the most per copied document
+        fragmented.sort(Comparator.comparingDouble(OwnerPartition::deletedRatio).reversed());
+
+        List<PartitionView.LiveSegment> toRewrite = new ArrayList<>();
+        int documents = take(fragmented, maxDocuments, toRewrite);
+
+        List<PartitionView.LiveSegment> smallToRewrite = new ArrayList<>();
+        take(small, maxDocuments - documents, smallToRewrite);
+        // a single small segment is only worth rewriting if it has deleted documents
+        if (smallToRewrite.size() > 1
+            || smallToRewrite.size() == 1 && smallToRewrite.get(0).liveDocs().deletedCount() > 0) {
+            toRewrite.addAll(smallToRewrite);
+        }
+        if (toRewrite.isEmpty()) {
+            return Compaction.NONE;
+        }
+
+        List<Segment> created = new ArrayList<>();
+        PartitionView.LiveSegment rewritten = rewrite(toRewrite, created);
+
+        List<PartitionView.LiveSegment> next = new ArrayList<>(current.segments());
+        next.removeAll(toRewrite);
+        next.add(rewritten);
+
+        long oldBytes = toRewrite.stream().mapToLong(live -> live.segment().sizeInBytes()).sum();
+        long reclaimed = oldBytes - rewritten.segment().sizeInBytes();
+
+        publish(new PartitionView(current.version() + 1, next));
+        created.forEach(Segment::release);
+
+        return new Compaction(toRewrite.size(), rewritten.segment().size(), reclaimed);
+    }
+
+    private static double deletedRatio(PartitionView.LiveSegment live) {
+        return (double) live.liveDocs().deletedCount() / live.segment().size();
+    }
+
+    // candidates -> chosen, in order, until the next one would copy more than maxDocuments
+    private static int take(List<PartitionView.LiveSegment> candidates, int maxDocuments,
+                            List<PartitionView.LiveSegment> chosen) {
+        int documents = 0;
+        for (PartitionView.LiveSegment live : candidates) {
+            int liveCount = live.liveDocs().liveCount();
+            if (documents + liveCount > maxDocuments) {
+                break;
+            }
+            chosen.add(live);
+            documents += liveCount;
+        }
+        return documents;
+    }
+
+    private static void addSuggestionWeights(IndexedDocument doc, int sign, Map<String, Long> weightChanges) {
+        for (Map.Entry<String, TermStats> entry : doc.terms().entrySet()) {
+            String term = entry.getKey();
+            // keyword metadata terms (tag:java) are not text
+            if (term.length() < MIN_SUGGESTION_LENGTH || term.indexOf(':') >= 0) {
+                continue;
+            }
+
+            long weight = (entry.getValue().titleFreq() > 0 ? TITLE_SUGGESTION_WEIGHT : 0)
+                          + (entry.getValue().contentFreq() > 0 ? CONTENT_SUGGESTION_WEIGHT : 0);
+            if (weight > 0) {
+                weightChanges.merge(term, sign * weight, Long::sum);
+            }
+        }
+    }
+
+    private void publish(PartitionView next) {
+        PartitionView previous = view;
+        view = next;
+        previous.release();
+    }
+
+    private Segment build(Collection<IndexedDocument> docs, List<Segment> created) {
+        Segment segment = segmentBuilder.apply(docs);
+        created.add(segment);
+        return segment;
+    }
+
+    private static PartitionView.LiveSegment deleteFrom(PartitionView.LiveSegment live, Set<Long> docIds,
+                                                        Map<String, Long> weightChanges) {
+        if (docIds.isEmpty()) {
+            return live;
+        }
+
+        int[] localIds = docIds.stream()
+                               .mapToInt(id -> live.segment().localId(id))
+                               .filter(localId -> localId >= 0 && live.liveDocs().isLive(localId))
+                               .toArray();
+
+        if (localIds.length == 0) {
+            return live;
+        }
+
+        for (int localId : localIds) {
+            addSuggestionWeights(live.segment().document(localId), -1, weightChanges);
+        }
+
+        return new PartitionView.LiveSegment(live.segment(), live.liveDocs().delete(localIds));
+    }
+
+    /**
+     * Log-structured merge policy: segments are grouped by size level
+     * ({@code floor(log_MERGE_FACTOR(liveDocs))}) and a full level is merged into one segment.
+     * Segments with too many deleted documents are rewritten.
+     */
+    private List<PartitionView.LiveSegment> merge(List<PartitionView.LiveSegment> segments, List<Segment> created) {
+        List<PartitionView.LiveSegment> result = new ArrayList<>(segments.size());
+
+        for (PartitionView.LiveSegment live : segments) {
+            LiveDocs liveDocs = live.liveDocs();
+            boolean tooManyDeleted = liveDocs.deletedCount() > MAX_DELETED_RATIO * live.segment().size();
+            result.add(tooManyDeleted ? rewrite(List.of(live), created) : live);
+        }
+
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+
+            for (int level = 0; level < 10 && !merged; level++) {
+                List<PartitionView.LiveSegment> sameLevel = new ArrayList<>();
+                for (PartitionView.LiveSegment live : result) {
+                    if (level(live) == level) {
+                        sameLevel.add(live);
+                    }
+                }
+
+                if (sameLevel.size() >= MERGE_FACTOR) {
+                    result.removeAll(sameLevel);
+                    result.add(rewrite(sameLevel, created));
+                    merged = true;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static int level(PartitionView.LiveSegment live) {
+        int level = 0;
+        for (long n = live.liveDocs().liveCount(); n >= MERGE_FACTOR; n /= MERGE_FACTOR) {
+            level++;
+        }
+        return level;
+    }
+
+    private PartitionView.LiveSegment rewrite(List<PartitionView.LiveSegment> segments, List<Segment> created) {
+        List<IndexedDocument> docs = new ArrayList<>();
+        for (PartitionView.LiveSegment live : segments) {
+            for (int localId = 0; localId < live.segment().size(); localId++) {
+                if (live.liveDocs().isLive(localId)) {
+                    docs.add(live.segment().document(localId));
+                }
+            }
+        }
+        return PartitionView.LiveSegment.of(build(docs, created));
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * LRU eviction of owner partitions to the {@link ColdTier}: once the published views grow above
+ * {@code evictAboveRatio} of the memory budget, the least recently searched partitions are
+ * written to disk and dropped until the index is below {@code evictToRatio} of it.
+ * <p>
+ * Evictions run on the reclaim executor of the index, one at a time.
+ */
+final class PartitionEvictor {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionEvictor.class);
+
+    private final ColdTier coldTier;
+    private final IndexMemory memory;
+    private final long evictAboveBytes;
+    private final long evictToBytes;
+
+    private final Map<Long, OwnerPartition> partitions;
+    private final ReentrantLock refreshLock;
+    private final Executor executor;
+    // unpublishes everything of the owner, called under refreshLock
+    private final Consumer<Long> dropOwner;
+
+    private final AtomicBoolean requested = new AtomicBoolean();
+
+    PartitionEvictor(ColdTier coldTier, SearchIndexProperties.Tiering settings, IndexMemory memory,
+                     Map<Long, OwnerPartition> partitions, ReentrantLock refreshLock, Executor executor,
+                     Consumer<Long> dropOwner) {
+        this.coldTier = coldTier;
+        this.memory = memory;
+        // without a budget partitions are still loaded lazily, just never evicted
+        this.evictAboveBytes = memory.budget() == 0
+                                       ? Long.MAX_VALUE
+                                       : (long) (memory.budget() * settings.getEvictAboveRatio());
+        this.evictToBytes = (long) (memory.budget() * settings.getEvictToRatio());
+        this.partitions = partitions;
+        this.refreshLock = refreshLock;
+        this.executor = executor;
+        this.dropOwner = dropOwner;
+    }
+
+    // schedules an eviction if the index grew above the threshold, at most one queued at a time
+    void evictIfNeeded() {
+        if (memory.resident() <= evictAboveBytes || !requested.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    evictLeastRecentlyUsed();
+                } catch (RuntimeException e) {
+                    log.error("Failed to evict index partitions", e);
+                } finally {
+                    requested.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            requested.set(false);
+        }
+    }
+
+    /**
+     * Moves the least recently searched partitions to the cold tier until the index is below
+     * {@code evictToRatio} of the memory budget.
+     *
+     * @return number of partitions evicted
+     */
+    int evictLeastRecentlyUsed() {
+        List<OwnerPartition> leastRecentFirst = partitions.values()
+                                                          .stream()
+                                                          .sorted(Comparator.comparingLong(OwnerPartition::lastAccess))
+                                                          .toList();
+
+        int evicted = 0;
+        for (OwnerPartition partition : leastRecentFirst) {
+            if (memory.resident() <= evictToBytes) {
+                break;
+            }
+            if (evict(partition)) {
+                evicted++;
+            }
+        }
+
+        if (evicted > 0) {
+            log.info("Evicted {} index partitions to the cold tier: residentBytes={}, coldOwners={}",
+                    evicted, memory.resident(), coldTier.size());
+        }
+        return evicted;
+    }
+
+    /**
+     * Writes the partition to the cold tier outside of the locks, then drops it unless it
+     * changed in the meantime. Runs on the reclaim thread only, so evictions never overlap.
+     */
+    private boolean evict(OwnerPartition partition) {
+        Long ownerId = partition.ownerId();
+        PartitionView view = partition.acquire();
+        try {
+            coldTier.write(ownerId, view.documents());
+        } catch (IOException e) {
+            log.warn("Failed to evict index partition: ownerId={}", ownerId, e);
+            return false;
+        } finally {
+            view.release();
+        }
+
+        refreshLock.lock();
+        try {
+            if (partitions.get(ownerId) != partition || partition.view() != view) {
+                coldTier.delete(ownerId);
+                return false; // written to or removed meanwhile, stays as it is
+            }
+
+            dropOwner.accept(ownerId);
+            coldTier.add(ownerId);
+        } catch (IOException e) {
+            log.warn("Failed to delete stale cold index partition: ownerId={}", ownerId, e);
+            return false;
+        } finally {
+            refreshLock.unlock();
+        }
+
+        partition.close();
+        return true;
+    }
+}
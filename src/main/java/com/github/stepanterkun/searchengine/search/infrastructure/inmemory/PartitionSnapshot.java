@@ -0,0 +1,44 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * All documents of the index at one point, to be written by {@link IndexStorage#completeSnapshot}:
+ * the acquired views of the resident partitions plus linked files of the cold ones, both taken
+ * under the index refreshLock. The copy itself runs without the lock, one owner at a time, so
+ * besides the resident partitions only the cold owner being copied is on the heap.
+ * <p>
+ * Closing releases the views and deletes the linked files.
+ */
+final class PartitionSnapshot implements IndexSnapshotStore.Source, AutoCloseable {
+
+    private final List<PartitionView> views;
+    private final List<Path> coldFiles;
+
+    /**
+     * @param views     acquired views, released on {@link #close}
+     * @param coldFiles files from {@link ColdTier#link}, deleted on {@link #close}
+     */
+    PartitionSnapshot(List<PartitionView> views, List<Path> coldFiles) {
+        this.views = views;
+        this.coldFiles = coldFiles;
+    }
+
+    @Override
+    public void writeTo(IndexSnapshotStore.OwnerWriter out) throws IOException {
+        for (PartitionView view : views) {
+            out.write(view.documents());
+        }
+        for (Path file : coldFiles) {
+            out.write(ColdPartitionStore.read(file));
+        }
+    }
+
+    @Override
+    public void close() {
+        views.forEach(PartitionView::release);
+        ColdTier.deleteLinks(coldFiles);
+    }
+}
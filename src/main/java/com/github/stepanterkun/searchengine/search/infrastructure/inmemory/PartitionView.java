@@ -0,0 +1,195 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable, versioned state of one owner's index.
+ * <p>
+ * Writers never modify a published view, they publish a new one instead.
+ * A search reads a single view from start to end, so it needs no locks and
+ * sees every document either fully old or fully new, with document count and
+ * document frequencies taken from the same moment.
+ * <p>
+ * A view keeps its segments alive: the owning partition holds one reference and
+ * readers that may outlive the publication of a newer view take another one
+ * with {@link #tryAcquire()}.
+ */
+final class PartitionView {
+
+    /**
+     * Segment together with its deletions as of this view.
+     */
+    record LiveSegment(Segment segment, LiveDocs liveDocs) {
+
+        static LiveSegment of(Segment segment) {
+            return new LiveSegment(segment, LiveDocs.all(segment.size()));
+        }
+    }
+
+    private final long version;
+    private final List<LiveSegment> segments;
+    private final int docCount;
+    private final long sizeInBytes;
+
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    PartitionView(long version, List<LiveSegment> segments) {
+        this.version = version;
+        this.segments = List.copyOf(segments);
+        this.docCount = segments.stream().mapToInt(s -> s.liveDocs().liveCount()).sum();
+        this.sizeInBytes = segments.stream().mapToLong(s -> s.segment().sizeInBytes()).sum();
+
+        this.segments.forEach(live -> live.segment().retain());
+    }
+
+    /**
+     * @return {@code false} if the view was already released by everyone and must not be read
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = refs.get();
+            if (current == 0) {
+                return false;
+            }
+            if (refs.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        if (refs.decrementAndGet() == 0) {
+            segments.forEach(live -> live.segment().release());
+        }
+    }
+
+    long version() {
+        return version;
+    }
+
+    List<LiveSegment> segments() {
+        return segments;
+    }
+
+    /**
+     * Number of live documents in this view.
+     */
+    int docCount() {
+        return docCount;
+    }
+
+    /**
+     * Estimated memory held by the segments of this view, deleted documents included.
+     */
+    long sizeInBytes() {
+        return sizeInBytes;
+    }
+
+    boolean isEmpty() {
+        return docCount == 0;
+    }
+
+    /**
+     * Number of live documents containing the term.
+     */
+    int docFreq(String term) {
+        int df = 0;
+
+        for (LiveSegment live : segments) {
+            Postings postings = live.segment().postings(term);
+            if (postings == null) {
+                continue;
+            }
+
+            df += postings.size() - countDeleted(postings, live.liveDocs().deleted());
+        }
+
+        return df;
+    }
+
+    /**
+     * Calculates a smoothed IDF value for the given token.
+     * <p>
+     * IDF reflects how rare a term is across the owner's documents.
+     * If the owner has only one document, we return 1.0 so that
+     * plain TF remains the main ranking signal.
+     * <p>
+     * Formula (with smoothing): log((N + 1) / (df + 1))
+     *   N  — number of documents of the owner
+     *   df — number of the owner's documents containing the token
+     */
+    double idf(String token) {
+        int totalDocs = docCount;
+        if (totalDocs <= 1) {
+            // not enough data for meaningful IDF – fall back to plain TF
+            return 1.0;
+        }
+
+        int df = docFreq(token);
+
+        if (df == 0) {
+            // token never occurs: it shouldn't affect scoring
+            return 0.0;
+        }
+
+        // smoothed IDF: log((N + 1) / (df + 1))
+        return Math.log((double) (totalDocs + 1) / (df + 1));
+    }
+
+    // walks whichever side is smaller: the postings or the deleted set
+    private static int countDeleted(Postings postings, RoaringDocIdSet deleted) {
+        if (deleted.isEmpty()) {
+            return 0;
+        }
+
+        if (deleted.cardinality() < postings.size()) {
+            int[] found = new int[1];
+            deleted.forEach(doc -> {
+                if (postings.indexOf(doc) >= 0) {
+                    found[0]++;
+                }
+            });
+            return found[0];
+        }
+
+        int count = 0;
+        for (int i = 0; i < postings.size(); i++) {
+            if (deleted.contains(postings.doc(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the live version of the document, or {@code null} if this view does not contain it
+     */
+    IndexedDocument document(long docId) {
+        for (LiveSegment live : segments) {
+            int localId = live.segment().localId(docId);
+            if (localId >= 0 && live.liveDocs().isLive(localId)) {
+                return live.segment().document(localId);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * All live documents of this view.
+     */
+    List<IndexedDocument> documents() {
+        List<IndexedDocument> result = new ArrayList<>(docCount);
+
+        for (LiveSegment live : segments) {
+            for (int localId = 0; localId < live.segment().size(); localId++) {
+                if (live.liveDocs().isLive(localId)) {
+                    result.add(live.segment().document(localId));
+                }
+            }
+        }
+
+        return result;
+    }
+}
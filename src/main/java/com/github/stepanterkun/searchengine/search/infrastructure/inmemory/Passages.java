@@ -0,0 +1,177 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Content of a large document split into overlapping passages, so it can be ranked
+ * by its best matching part instead of by term counts over the whole text.
+ * <p>
+ * The content is cut into blocks of {@link #BLOCK_WORDS} words, a passage is two adjacent
+ * blocks: passage {@code p} covers blocks {@code p} and {@code p + 1}, so every passage
+ * overlaps half of the next one. Per term only the blocks it occurs in are kept, as
+ * {@code [block, contentFreq]} pairs, plus the char offset where every block starts.
+ * <p>
+ * Content that fits into a single passage gets {@link #NONE}: the document itself is the passage.
+ */
+final class Passages {
+
+    static final int BLOCK_WORDS = 64;
+
+    static final Passages NONE = new Passages(new int[0], Map.of());
+
+    // same tokens as splitting the text on \W+
+    private static final Pattern WORD = Pattern.compile("\\w+");
+
+    // rough heap cost of a term entry besides its pairs: map node and int[] header, the String is shared
+    private static final int TERM_OVERHEAD_BYTES = 64;
+
+    /**
+     * Char range {@code [start, end)} of a passage within the content and its score.
+     */
+    record Span(int start, int end, double score) {
+    }
+
+    // block -> char offset of its first word, the last entry is the end of the last word
+    private final int[] blockStarts;
+
+    // term -> [block, contentFreq] pairs by ascending block
+    private final Map<String, int[]> blocks;
+
+    Passages(int[] blockStarts, Map<String, int[]> blocks) {
+        this.blockStarts = blockStarts;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Splits the content, {@link #NONE} if it has no more than two blocks of words.
+     */
+    static Passages of(String content) {
+        // term -> block -> freq, blocks come in ascending order
+        Map<String, int[]> counts = new HashMap<>();
+        int[] starts = new int[16];
+        int blockCount = 0;
+        int words = 0;
+        int end = 0;
+
+        Matcher matcher = WORD.matcher(content);
+        while (matcher.find()) {
+            if (words % BLOCK_WORDS == 0) {
+                if (blockCount + 1 == starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                }
+                starts[blockCount++] = matcher.start();
+            }
+            int block = blockCount - 1;
+
+            String term = matcher.group().toLowerCase();
+            int[] pairs = counts.get(term);
+            if (pairs == null) {
+                counts.put(term, new int[]{block, 1});
+            } else if (pairs[pairs.length - 2] == block) {
+                pairs[pairs.length - 1]++;
+            } else {
+                pairs = Arrays.copyOf(pairs, pairs.length + 2);
+                pairs[pairs.length - 2] = block;
+                pairs[pairs.length - 1] = 1;
+                counts.put(term, pairs);
+            }
+
+            words++;
+            end = matcher.end();
+        }
+
+        if (blockCount <= 2) {
+            return NONE;
+        }
+        starts[blockCount] = end;
+        return new Passages(Arrays.copyOf(starts, blockCount + 1), Map.copyOf(counts));
+    }
+
+    boolean isEmpty() {
+        return blockStarts.length == 0;
+    }
+
+    int blockCount() {
+        return Math.max(0, blockStarts.length - 1);
+    }
+
+    /**
+     * Best passage for weighted terms, scored {@code sum(weight * contentFreq)} over the terms in it.
+     * The work depends on the occurrences of the given terms and the number of blocks,
+     * not on the length of the text.
+     *
+     * @return the best passage, the first one on ties; {@code null} if there are no passages
+     */
+    Span best(Map<String, Double> weights) {
+        int blockCount = blockCount();
+        if (blockCount == 0) {
+            return null;
+        }
+
+        double[] blockScores = new double[blockCount];
+        for (Map.Entry<String, Double> weight : weights.entrySet()) {
+            int[] pairs = blocks.get(weight.getKey());
+            if (pairs == null) continue;
+
+            for (int i = 0; i < pairs.length; i += 2) {
+                blockScores[pairs[i]] += pairs[i + 1] * weight.getValue();
+            }
+        }
+
+        int best = 0;
+        double bestScore = blockScores[0] + blockScores[1];
+        for (int p = 1; p + 1 < blockCount; p++) {
+            double score = blockScores[p] + blockScores[p + 1];
+            if (score > bestScore) {
+                best = p;
+                bestScore = score;
+            }
+        }
+        return new Span(blockStarts[best], blockStarts[best + 2], bestScore);
+    }
+
+    /**
+     * Rough heap footprint, used for memory accounting.
+     */
+    long estimatedBytes() {
+        long bytes = (long) blockStarts.length * Integer.BYTES;
+        for (int[] pairs : blocks.values()) {
+            bytes += TERM_OVERHEAD_BYTES + (long) pairs.length * Integer.BYTES;
+        }
+        return bytes;
+    }
+
+    int[] blockStarts() {
+        return blockStarts;
+    }
+
+    Map<String, int[]> blocks() {
+        return blocks;
+    }
+
+    // compared by content, the arrays would otherwise compare by reference
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Passages other)
+            || !Arrays.equals(blockStarts, other.blockStarts)
+            || !blocks.keySet().equals(other.blocks.keySet())) {
+            return false;
+        }
+        for (Map.Entry<String, int[]> entry : blocks.entrySet()) {
+            if (!Arrays.equals(entry.getValue(), other.blocks.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(blockStarts) * 31 + blocks.keySet().hashCode();
+    }
+}
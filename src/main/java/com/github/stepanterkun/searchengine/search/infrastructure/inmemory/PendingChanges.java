@@ -0,0 +1,79 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index changes accepted but not yet visible to searches.
+ * On refresh removals are applied first, then additions, which gives
+ * the same result as applying the changes one by one.
+ */
+final class PendingChanges {
+
+    // documentId -> latest analyzed version
+    private final Map<Long, IndexedDocument> added = new LinkedHashMap<>();
+    private final Set<Long> removed = new LinkedHashSet<>();
+
+    // estimated heap held by the buffered documents
+    private long estimatedBytes;
+
+    void index(IndexedDocument doc) {
+        IndexedDocument replaced = added.put(doc.id(), doc);
+        estimatedBytes += doc.estimatedBytes() - (replaced == null ? 0 : replaced.estimatedBytes());
+    }
+
+    void remove(Long documentId) {
+        IndexedDocument replaced = added.remove(documentId);
+        if (replaced != null) {
+            estimatedBytes -= replaced.estimatedBytes();
+        }
+        removed.add(documentId);
+    }
+
+    /**
+     * Drops buffered versions of the owner's documents, buffered removals are kept.
+     */
+    void removeOwner(Long ownerId) {
+        added.values().removeIf(doc -> {
+            if (!doc.ownerId().equals(ownerId)) {
+                return false;
+            }
+            estimatedBytes -= doc.estimatedBytes();
+            return true;
+        });
+    }
+
+    /**
+     * @return buffered version of the document, null if it was not indexed since the last refresh
+     */
+    IndexedDocument get(Long documentId) {
+        return added.get(documentId);
+    }
+
+    boolean isRemoved(Long documentId) {
+        return removed.contains(documentId) && !added.containsKey(documentId);
+    }
+
+    Collection<IndexedDocument> added() {
+        return added.values();
+    }
+
+    Collection<Long> removed() {
+        return removed;
+    }
+
+    long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    int size() {
+        return added.size() + removed.size();
+    }
+
+    boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+}
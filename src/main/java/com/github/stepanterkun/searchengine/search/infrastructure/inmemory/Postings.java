@@ -0,0 +1,148 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Postings of one term inside a {@link Segment}: local doc ids in ascending order
+ * with title and content frequencies.
+ * <p>
+ * Stored as three columns {@code [docs...][titleFreqs...][contentFreqs...]}, either in a heap
+ * array or in a slice of an off-heap segment. Columns keep the values of one kind next to
+ * each other, so a block of postings can be loaded into vector registers as it is.
+ */
+final class Postings {
+
+    private static final int COLUMNS = 3;
+
+    private final IntBuffer data;
+    private final int size;
+
+    Postings(IntBuffer data) {
+        this.data = data;
+        this.size = data.limit() / COLUMNS;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int doc(int i) {
+        return data.get(i);
+    }
+
+    int titleFreq(int i) {
+        return data.get(size + i);
+    }
+
+    int contentFreq(int i) {
+        return data.get(2 * size + i);
+    }
+
+    /**
+     * @return backing heap array of the columns, or {@code null} for off-heap postings
+     */
+    int[] array() {
+        return data.hasArray() ? data.array() : null;
+    }
+
+    /**
+     * @return index of {@code doc(0)} in {@link #array()}; titleFreq and contentFreq columns follow after
+     *         {@link #size()} and twice {@link #size()} values
+     */
+    int arrayOffset() {
+        return data.arrayOffset() + data.position();
+    }
+
+    /**
+     * @return position of the doc in these postings, or {@code -1} if it is not there
+     */
+    int indexOf(int doc) {
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midDoc = doc(mid);
+            if (midDoc < doc) {
+                low = mid + 1;
+            } else if (midDoc > doc) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return position of the first posting with a doc id at least {@code doc}, {@link #size()} if there is none
+     */
+    int firstAtLeast(int doc) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (doc(mid) < doc) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Calculates term frequency (TF) of the i-th posting with an extra boost for the title.
+     */
+    double tf(int i, double titleBoost) {
+        return contentFreq(i) + titleBoost * titleFreq(i);
+    }
+
+    /**
+     * Collects postings of one term while a segment is being built, docs must come in ascending order.
+     */
+    static final class Builder {
+        // interleaved [doc, titleFreq, contentFreq] while collecting
+        private int[] data = new int[4 * COLUMNS];
+        private int length;
+
+        int size() {
+            return length / COLUMNS;
+        }
+
+        int doc(int i) {
+            return data[i * COLUMNS];
+        }
+
+        int titleFreq(int i) {
+            return data[i * COLUMNS + 1];
+        }
+
+        int contentFreq(int i) {
+            return data[i * COLUMNS + 2];
+        }
+
+        void add(int localId, TermStats stats) {
+            if (length == data.length) {
+                data = Arrays.copyOf(data, length * 2);
+            }
+            data[length++] = localId;
+            data[length++] = stats.titleFreq();
+            data[length++] = stats.contentFreq();
+        }
+
+        /**
+         * @return the columns, as {@link Postings} reads them
+         */
+        int[] toArray() {
+            int count = length / COLUMNS;
+            int[] columns = new int[length];
+            for (int i = 0; i < count; i++) {
+                columns[i] = data[i * COLUMNS];
+                columns[count + i] = data[i * COLUMNS + 1];
+                columns[2 * count + i] = data[i * COLUMNS + 2];
+            }
+            return columns;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Pool of direct (off-heap) buffers for {@link OffHeapSegment}s.
+ * <p>
+ * Buffers are handed out in power-of-two slabs. A released slab goes back to the pool
+ * and is reused by the next segment of the same size class, so merges mostly recycle
+ * memory instead of allocating it. Reserved memory (in use + pooled) never exceeds
+ * the configured maximum: pooled slabs are dropped first, then allocation fails.
+ */
+final class PostingsArena {
+
+    private static final int MIN_SLAB_SIZE = 64 * 1024;
+    private static final int MAX_SLAB_SIZE = 1 << 30;
+
+    private final long maxBytes;
+
+    // slab size -> pooled slabs
+    private final Map<Integer, ArrayDeque<ByteBuffer>> pool = new TreeMap<>();
+
+    private long reservedBytes;
+    private long usedBytes;
+
+    PostingsArena(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return cleared slab with at least {@code size} bytes in native byte order,
+     *         or {@code null} if it does not fit into the arena
+     */
+    synchronized ByteBuffer allocate(int size) {
+        if (size > MAX_SLAB_SIZE) {
+            return null;
+        }
+
+        int slabSize = Math.max(MIN_SLAB_SIZE, Integer.highestOneBit(Math.max(size - 1, 1)) << 1);
+
+        ArrayDeque<ByteBuffer> pooled = pool.get(slabSize);
+        if (pooled != null && !pooled.isEmpty()) {
+            usedBytes += slabSize;
+            return pooled.pop().clear();
+        }
+
+        if (!reserve(slabSize)) {
+            return null;
+        }
+
+        usedBytes += slabSize;
+        return ByteBuffer.allocateDirect(slabSize).order(ByteOrder.nativeOrder());
+    }
+
+    synchronized void release(ByteBuffer slab) {
+        usedBytes -= slab.capacity();
+        pool.computeIfAbsent(slab.capacity(), s -> new ArrayDeque<>()).push(slab);
+    }
+
+    /**
+     * Off-heap memory held by the arena, including pooled slabs.
+     */
+    synchronized long reservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * Off-heap memory currently used by segments.
+     */
+    synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    private boolean reserve(int slabSize) {
+        // make room by dropping pooled slabs of other sizes, the GC frees their memory
+        Iterator<ArrayDeque<ByteBuffer>> classes = pool.values().iterator();
+        while (reservedBytes + slabSize > maxBytes && classes.hasNext()) {
+            ArrayDeque<ByteBuffer> pooled = classes.next();
+            while (reservedBytes + slabSize > maxBytes && !pooled.isEmpty()) {
+                reservedBytes -= pooled.pop().capacity();
+            }
+        }
+
+        if (reservedBytes + slabSize > maxBytes) {
+            return false;
+        }
+
+        reservedBytes += slabSize;
+        return true;
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Hits of a search sorted by recency ({@code sort=recent}): matching documents ordered by
+ * the {@code updated} doc values instead of their score, so only the documents kept for
+ * the page need to be scored.
+ */
+final class RecentHits {
+
+    // match collected for sort=recent, scored only if it ends up on the requested page
+    private record RecentDoc(int segment, int localId, long docId, double updated) {
+    }
+
+    // most recently updated first, documents without timestamp last, ties by id
+    private static final Comparator<RecentDoc> RECENT_FIRST =
+            Comparator.comparingDouble((RecentDoc d) -> Double.isNaN(d.updated()) ? Double.NEGATIVE_INFINITY : d.updated())
+                      .reversed()
+                      .thenComparingLong(RecentDoc::docId);
+
+    private RecentHits() {
+    }
+
+    /**
+     * Collects live documents of the view that contain a query term and pass the filter,
+     * keeps the {@code limit} most recently updated ones and scores only those.
+     *
+     * @param weights query terms with their idf times boost, terms with zero weight left out
+     */
+    static Hits collect(PartitionView view, Map<String, Double> weights, DocFilter filter, int limit) {
+        List<PartitionView.LiveSegment> segments = view.segments();
+
+        DocBitSet[] matched = new DocBitSet[segments.size()];
+        for (String token : weights.keySet()) {
+            for (int s = 0; s < segments.size(); s++) {
+                Postings postings = segments.get(s).segment().postings(token);
+                if (postings == null) continue;
+
+                if (matched[s] == null) {
+                    matched[s] = new DocBitSet(segments.get(s).segment().size());
+                }
+                for (int i = 0; i < postings.size(); i++) {
+                    matched[s].set(postings.doc(i));
+                }
+            }
+        }
+
+        int total = 0;
+        long[] statusCounts = new long[DocumentStatus.values().length];
+        // least recent of the kept docs on top, so it is the one to drop
+        PriorityQueue<RecentDoc> top = new PriorityQueue<>(RECENT_FIRST.reversed());
+
+        for (int s = 0; s < segments.size(); s++) {
+            DocBitSet candidates = matched[s];
+            if (candidates == null) continue;
+
+            candidates.andNot(segments.get(s).liveDocs().deleted());
+            Segment segment = segments.get(s).segment();
+            filter.apply(segment, candidates);
+
+            for (int local = candidates.nextSetBit(0); local >= 0; local = candidates.nextSetBit(local + 1)) {
+                total++;
+                if (segment.status(local) >= 0) {
+                    statusCounts[segment.status(local)]++;
+                }
+
+                RecentDoc doc = new RecentDoc(s, local, segment.docId(local),
+                        segment.number(InMemorySearchIndex.UPDATED_FIELD, local));
+                if (top.size() < limit) {
+                    top.add(doc);
+                } else if (limit > 0 && RECENT_FIRST.compare(doc, top.peek()) < 0) {
+                    top.poll();
+                    top.add(doc);
+                }
+            }
+        }
+
+        List<ScoredDoc> hits = new ArrayList<>(top.size());
+        top.stream()
+           .sorted(RECENT_FIRST)
+           .forEach(doc -> hits.add(scoreOne(segments.get(doc.segment()).segment(), doc.localId(), weights)));
+
+        return new Hits(hits, total, statusCounts);
+    }
+
+    // same scoring as a relevance search, for a single document
+    private static ScoredDoc scoreOne(Segment segment, int localId, Map<String, Double> weights) {
+        Passages passages = segment.passages(localId);
+        double score = 0.0;
+        for (Map.Entry<String, Double> entry : weights.entrySet()) {
+            Postings postings = segment.postings(entry.getKey());
+            int i = postings == null ? -1 : postings.indexOf(localId);
+            if (i >= 0) {
+                double tf = passages == null
+                        ? postings.tf(i, TermStats.TITLE_BOOST)
+                        : TermStats.TITLE_BOOST * postings.titleFreq(i);
+                score += tf * entry.getValue();
+            }
+        }
+
+        Passages.Span passage = passages == null ? null : passages.best(weights);
+        if (passage != null) {
+            score += passage.score();
+        }
+        return new ScoredDoc(segment.docId(localId), score, segment.status(localId), passage);
+    }
+}
@@ -0,0 +1,291 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable compressed set of local doc ids, Roaring style.
+ * <p>
+ * Ids are split into chunks of 2^16 by their high 16 bits. A chunk with at most
+ * {@value #ARRAY_MAX} ids is a sorted {@code char[]}, a denser one is a 1024-word bitmap.
+ * Adding ids rebuilds only the touched chunks, the rest is shared with the original set.
+ * Combining with a {@link DocBitSet} works a whole word (or array chunk) at a time.
+ */
+final class RoaringDocIdSet {
+
+    static final RoaringDocIdSet EMPTY = new RoaringDocIdSet(new char[0], new Container[0], 0);
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int CHUNK_WORDS = 1 << 10; // 2^16 bits
+
+    // sorted high 16 bits -> container with the low 16 bits
+    private final char[] keys;
+    private final Container[] containers;
+    private final int cardinality;
+
+    private RoaringDocIdSet(char[] keys, Container[] containers, int cardinality) {
+        this.keys = keys;
+        this.containers = containers;
+        this.cardinality = cardinality;
+    }
+
+    static RoaringDocIdSet of(int... docs) {
+        return EMPTY.with(docs);
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    boolean contains(int doc) {
+        int index = Arrays.binarySearch(keys, (char) (doc >>> 16));
+        return index >= 0 && containers[index].contains((char) doc);
+    }
+
+    /**
+     * Returns a set with the given ids added (in any order, duplicates allowed).
+     */
+    RoaringDocIdSet with(int... docs) {
+        if (docs.length == 0) {
+            return this;
+        }
+
+        int[] sorted = docs.clone();
+        Arrays.sort(sorted);
+
+        char[] newKeys = new char[keys.length + countChunks(sorted)];
+        Container[] newContainers = new Container[newKeys.length];
+        int size = 0;
+        int newCardinality = 0;
+
+        int existing = 0;
+        int from = 0;
+        while (existing < keys.length || from < sorted.length) {
+            int key = from < sorted.length ? sorted[from] >>> 16 : Integer.MAX_VALUE;
+
+            if (existing < keys.length && keys[existing] < key) {
+                // untouched chunk, shared with this set
+                newKeys[size] = keys[existing];
+                newContainers[size] = containers[existing];
+                newCardinality += containers[existing].cardinality();
+                size++;
+                existing++;
+                continue;
+            }
+
+            int to = from;
+            while (to < sorted.length && sorted[to] >>> 16 == key) {
+                to++;
+            }
+
+            Container base = existing < keys.length && keys[existing] == key ? containers[existing++] : null;
+            Container merged = Container.union(base, sorted, from, to);
+
+            newKeys[size] = (char) key;
+            newContainers[size] = merged;
+            newCardinality += merged.cardinality();
+            size++;
+            from = to;
+        }
+
+        return new RoaringDocIdSet(
+                Arrays.copyOf(newKeys, size),
+                Arrays.copyOf(newContainers, size),
+                newCardinality
+        );
+    }
+
+    void forEach(IntConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    /**
+     * Clears the bits of this set in {@code words} (a dense bitset).
+     */
+    void andNotInto(long[] words) {
+        for (int i = 0; i < keys.length; i++) {
+            int firstWord = keys[i] * CHUNK_WORDS;
+            if (firstWord >= words.length) {
+                return;
+            }
+            containers[i].andNotInto(words, firstWord);
+        }
+    }
+
+    /**
+     * Clears the bits of {@code words} (a dense bitset) that are not in this set.
+     */
+    void andInto(long[] words) {
+        int next = 0;
+        for (int i = 0; i < keys.length && next < words.length; i++) {
+            int firstWord = keys[i] * CHUNK_WORDS;
+            Arrays.fill(words, next, Math.min(firstWord, words.length), 0L);
+            if (firstWord >= words.length) {
+                return;
+            }
+            containers[i].andInto(words, firstWord);
+            next = firstWord + CHUNK_WORDS;
+        }
+        if (next < words.length) {
+            Arrays.fill(words, next, words.length, 0L);
+        }
+    }
+
+    private static int countChunks(int[] sorted) {
+        int chunks = 0;
+        int previous = -1;
+        for (int doc : sorted) {
+            if (doc >>> 16 != previous) {
+                previous = doc >>> 16;
+                chunks++;
+            }
+        }
+        return chunks;
+    }
+
+    private abstract static class Container {
+
+        abstract int cardinality();
+
+        abstract boolean contains(char low);
+
+        abstract void forEach(int base, IntConsumer action);
+
+        abstract void andNotInto(long[] words, int firstWord);
+
+        abstract void andInto(long[] words, int firstWord);
+
+        /**
+         * Union of {@code base} (may be {@code null}) with {@code sorted[from..to)}, all from one chunk.
+         */
+        static Container union(Container base, int[] sorted, int from, int to) {
+            long[] bits = new long[CHUNK_WORDS];
+            if (base != null) {
+                base.forEach(0, low -> bits[low >>> 6] |= 1L << low);
+            }
+            for (int i = from; i < to; i++) {
+                int low = sorted[i] & 0xFFFF;
+                bits[low >>> 6] |= 1L << low;
+            }
+
+            int cardinality = 0;
+            for (long word : bits) {
+                cardinality += Long.bitCount(word);
+            }
+
+            if (cardinality > ARRAY_MAX) {
+                return new BitmapContainer(bits, cardinality);
+            }
+
+            char[] values = new char[cardinality];
+            int size = 0;
+            for (int w = 0; w < bits.length; w++) {
+                for (long word = bits[w]; word != 0; word &= word - 1) {
+                    values[size++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return new ArrayContainer(values);
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+        private final char[] values;
+
+        ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, low) >= 0;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (char value : values) {
+                action.accept(base + value);
+            }
+        }
+
+        @Override
+        void andNotInto(long[] words, int firstWord) {
+            for (char value : values) {
+                int word = firstWord + (value >>> 6);
+                if (word >= words.length) {
+                    return;
+                }
+                words[word] &= ~(1L << value);
+            }
+        }
+
+        @Override
+        void andInto(long[] words, int firstWord) {
+            int end = Math.min(firstWord + CHUNK_WORDS, words.length);
+            int index = 0;
+            for (int word = firstWord; word < end; word++) {
+                long mask = 0L;
+                int wordInChunk = word - firstWord;
+                while (index < values.length && values[index] >>> 6 == wordInChunk) {
+                    mask |= 1L << values[index++];
+                }
+                words[word] &= mask;
+            }
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] bits;
+        private final int cardinality;
+
+        BitmapContainer(long[] bits, int cardinality) {
+            this.bits = bits;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (bits[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int w = 0; w < bits.length; w++) {
+                for (long word = bits[w]; word != 0; word &= word - 1) {
+                    action.accept(base + (w << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+        }
+
+        @Override
+        void andNotInto(long[] words, int firstWord) {
+            int end = Math.min(firstWord + CHUNK_WORDS, words.length);
+            for (int word = firstWord; word < end; word++) {
+                words[word] &= ~bits[word - firstWord];
+            }
+        }
+
+        @Override
+        void andInto(long[] words, int firstWord) {
+            int end = Math.min(firstWord + CHUNK_WORDS, words.length);
+            for (int word = firstWord; word < end; word++) {
+                words[word] &= bits[word - firstWord];
+            }
+        }
+    }
+}
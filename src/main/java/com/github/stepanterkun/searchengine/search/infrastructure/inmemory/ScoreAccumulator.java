@@ -0,0 +1,39 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.util.Optional;
+
+/**
+ * Adds {@code (contentFreq + titleBoost * titleFreq) * idf} of a range of heap postings to the
+ * scores of their documents; same result as the scalar loop in {@link InMemorySearchIndex}.
+ * <p>
+ * The only implementation is {@code VectorizedScoring}, built from {@code src/vector/java} with
+ * the {@code vector} Maven profile only: it needs the incubating {@code jdk.incubator.vector}
+ * module, which would otherwise make every build warn. It is therefore loaded by name.
+ */
+interface ScoreAccumulator {
+
+    String VECTOR_MODULE = "jdk.incubator.vector";
+
+    /**
+     * @param postings heap postings, {@link Postings#array()} must not be null
+     */
+    void accumulate(Postings postings, int from, int to, double[] scores, int base, double titleBoost, double idf);
+
+    /**
+     * @return the vectorized implementation, or empty if it is not part of the build
+     *         or the JVM was started without {@code --add-modules jdk.incubator.vector}
+     */
+    static Optional<ScoreAccumulator> vectorized() {
+        // without the module the class fails to load, so check first
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return Optional.empty();
+        }
+
+        try {
+            Class<?> type = Class.forName(ScoreAccumulator.class.getPackageName() + ".VectorizedScoring");
+            return Optional.of((ScoreAccumulator) type.getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+}
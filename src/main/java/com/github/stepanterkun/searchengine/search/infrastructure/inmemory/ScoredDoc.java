@@ -0,0 +1,20 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.util.Comparator;
+
+/**
+ * A matching document with its score.
+ *
+ * @param status  ordinal of the document status, negative if unknown
+ * @param passage best passage of a large document, null if the whole document is the passage
+ */
+record ScoredDoc(long docId, double score, int status, Passages.Span passage) {
+
+    // most relevant first, ties by id to keep pages stable
+    static final Comparator<ScoredDoc> BEST_FIRST =
+            Comparator.comparingDouble(ScoredDoc::score).reversed().thenComparingLong(ScoredDoc::docId);
+
+    ScoredDoc(long docId, double score, int status) {
+        this(docId, score, status, null);
+    }
+}
@@ -0,0 +1,488 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of the in-memory search index ({@code search.index.*}).
+ */
+@ConfigurationProperties(prefix = "search.index")
+public class SearchIndexProperties {
+
+    // how often buffered changes are published to searches; zero publishes every change immediately
+    private Duration refreshInterval = Duration.ZERO;
+
+    // refresh early when this many changes are waiting, bounds the buffer size
+    private int refreshMaxBufferedChanges = 10_000;
+
+    // accumulate scores with the jdk.incubator.vector API; takes effect only in a build with the vector
+    // profile and a JVM started with --add-modules jdk.incubator.vector, otherwise the scalar loop is used
+    private boolean vectorizedScoring = false;
+
+    private final Persistence persistence = new Persistence();
+
+    private final OffHeap offHeap = new OffHeap();
+
+    private final Vector vector = new Vector();
+
+    private final Duplicates duplicates = new Duplicates();
+
+    private final Compaction compaction = new Compaction();
+
+    private final Memory memory = new Memory();
+
+    private final Tiering tiering = new Tiering();
+
+    private final Parallel parallel = new Parallel();
+
+    private final ImpactScoring impacts = new ImpactScoring();
+
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(Duration refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public int getRefreshMaxBufferedChanges() {
+        return refreshMaxBufferedChanges;
+    }
+
+    public void setRefreshMaxBufferedChanges(int refreshMaxBufferedChanges) {
+        this.refreshMaxBufferedChanges = refreshMaxBufferedChanges;
+    }
+
+    public boolean isVectorizedScoring() {
+        return vectorizedScoring;
+    }
+
+    public void setVectorizedScoring(boolean vectorizedScoring) {
+        this.vectorizedScoring = vectorizedScoring;
+    }
+
+    public Persistence getPersistence() {
+        return persistence;
+    }
+
+    public OffHeap getOffHeap() {
+        return offHeap;
+    }
+
+    public Vector getVector() {
+        return vector;
+    }
+
+    public Duplicates getDuplicates() {
+        return duplicates;
+    }
+
+    public Compaction getCompaction() {
+        return compaction;
+    }
+
+    public Memory getMemory() {
+        return memory;
+    }
+
+    public Tiering getTiering() {
+        return tiering;
+    }
+
+    public Parallel getParallel() {
+        return parallel;
+    }
+
+    public ImpactScoring getImpacts() {
+        return impacts;
+    }
+
+    /**
+     * Snapshot + write-ahead log on local disk ({@code search.index.persistence.*}).
+     * Disabled by default: the index is then rebuilt from the database on every startup.
+     */
+    public static class Persistence {
+
+        private boolean enabled = false;
+
+        // directory for snapshot and WAL segments
+        private Path directory = Path.of("data", "index");
+
+        // take a new snapshot (and truncate WAL) after this many logged mutations
+        private int snapshotAfterRecords = 10_000;
+
+        // on startup re-read documents changed since (snapshot high-water mark - overlap),
+        // covers transactions that were still in flight when the snapshot was taken
+        private Duration catchUpOverlap = Duration.ofMinutes(1);
+
+        // after every snapshot, deletion log entries older than this before it are purged;
+        // older snapshots are not used for catch-up
+        private Duration deletionLogRetention = Duration.ofDays(7);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Path getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(Path directory) {
+            this.directory = directory;
+        }
+
+        public int getSnapshotAfterRecords() {
+            return snapshotAfterRecords;
+        }
+
+        public void setSnapshotAfterRecords(int snapshotAfterRecords) {
+            this.snapshotAfterRecords = snapshotAfterRecords;
+        }
+
+        public Duration getCatchUpOverlap() {
+            return catchUpOverlap;
+        }
+
+        public void setCatchUpOverlap(Duration catchUpOverlap) {
+            this.catchUpOverlap = catchUpOverlap;
+        }
+
+        public Duration getDeletionLogRetention() {
+            return deletionLogRetention;
+        }
+
+        public void setDeletionLogRetention(Duration deletionLogRetention) {
+            this.deletionLogRetention = deletionLogRetention;
+        }
+    }
+
+    /**
+     * Keeps segment postings, term dictionaries and documents in direct memory
+     * instead of the Java heap ({@code search.index.off-heap.*}).
+     * Disabled by default.
+     */
+    public static class OffHeap {
+
+        private boolean enabled = false;
+
+        // upper bound of direct memory used by the index; when reached, new segments stay on the heap
+        private DataSize maxSize = DataSize.ofGigabytes(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    /**
+     * Dense-vector retrieval fused with keyword scores ({@code search.index.vector.*}).
+     * Disabled by default.
+     */
+    public static class Vector {
+
+        private boolean enabled = false;
+
+        // size of the hashed n-gram embedding
+        private int dimensions = 256;
+
+        // HNSW links per node (twice as many on the bottom level)
+        private int m = 16;
+
+        // HNSW candidate list sizes while inserting and while searching
+        private int efConstruction = 100;
+        private int efSearch = 64;
+
+        // nearest neighbours fetched per query, fused with the keyword hits
+        private int candidates = 100;
+
+        // neighbours less similar than this are not considered matches
+        private double minSimilarity = 0.3;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getDimensions() {
+            return dimensions;
+        }
+
+        public void setDimensions(int dimensions) {
+            this.dimensions = dimensions;
+        }
+
+        public int getM() {
+            return m;
+        }
+
+        public void setM(int m) {
+            this.m = m;
+        }
+
+        public int getEfConstruction() {
+            return efConstruction;
+        }
+
+        public void setEfConstruction(int efConstruction) {
+            this.efConstruction = efConstruction;
+        }
+
+        public int getEfSearch() {
+            return efSearch;
+        }
+
+        public void setEfSearch(int efSearch) {
+            this.efSearch = efSearch;
+        }
+
+        public int getCandidates() {
+            return candidates;
+        }
+
+        public void setCandidates(int candidates) {
+            this.candidates = candidates;
+        }
+
+        public double getMinSimilarity() {
+            return minSimilarity;
+        }
+
+        public void setMinSimilarity(double minSimilarity) {
+            this.minSimilarity = minSimilarity;
+        }
+    }
+
+    /**
+     * Near-duplicate detection ({@code search.index.duplicates.*}).
+     */
+    public static class Duplicates {
+
+        // minimum estimated Jaccard similarity of word shingles; LSH finds pairs below ~0.7 less reliably
+        private double similarityThreshold = 0.8;
+
+        public double getSimilarityThreshold() {
+            return similarityThreshold;
+        }
+
+        public void setSimilarityThreshold(double similarityThreshold) {
+            this.similarityThreshold = similarityThreshold;
+        }
+    }
+
+    /**
+     * Background compaction of owner partitions ({@code search.index.compaction.*}).
+     */
+    public static class Compaction {
+
+        // pause between runs; zero disables background compaction
+        private Duration interval = Duration.ofMinutes(10);
+
+        // rewrite a segment once this share of its documents is deleted
+        // (writes rewrite it only above half, see OwnerPartition)
+        private double minDeletedRatio = 0.2;
+
+        // a run copies at most this many documents, the rest waits for the next run
+        // (a segment with more live documents is left to the merges on write)
+        private int maxDocumentsPerRun = 100_000;
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+
+        public double getMinDeletedRatio() {
+            return minDeletedRatio;
+        }
+
+        public void setMinDeletedRatio(double minDeletedRatio) {
+            this.minDeletedRatio = minDeletedRatio;
+        }
+
+        public int getMaxDocumentsPerRun() {
+            return maxDocumentsPerRun;
+        }
+
+        public void setMaxDocumentsPerRun(int maxDocumentsPerRun) {
+            this.maxDocumentsPerRun = maxDocumentsPerRun;
+        }
+    }
+
+    /**
+     * Memory budget of the index ({@code search.index.memory.*}).
+     * Covers the estimated size of all segments (dictionary, postings, doc columns) and
+     * of the changes waiting for a refresh.
+     */
+    public static class Memory {
+
+        // new documents are rejected while they would push the index above this; zero means no budget
+        private DataSize budget = DataSize.ofBytes(0);
+
+        // share of the budget at which a warning is logged
+        private double warnRatio = 0.9;
+
+        public DataSize getBudget() {
+            return budget;
+        }
+
+        public void setBudget(DataSize budget) {
+            this.budget = budget;
+        }
+
+        public double getWarnRatio() {
+            return warnRatio;
+        }
+
+        public void setWarnRatio(double warnRatio) {
+            this.warnRatio = warnRatio;
+        }
+    }
+
+    /**
+     * Cold tier for idle owners ({@code search.index.tiering.*}).
+     * When enabled, owner partitions are built on their first use instead of on startup, and the
+     * least recently used ones are moved to local files when the index nears its memory budget.
+     */
+    public static class Tiering {
+
+        private boolean enabled = false;
+
+        // files of evicted partitions, wiped on startup
+        private Path directory = Path.of("data", "index-cold");
+
+        // start evicting above this share of the memory budget ...
+        private double evictAboveRatio = 0.8;
+
+        // ... and stop once below this one
+        private double evictToRatio = 0.6;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Path getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(Path directory) {
+            this.directory = directory;
+        }
+
+        public double getEvictAboveRatio() {
+            return evictAboveRatio;
+        }
+
+        public void setEvictAboveRatio(double evictAboveRatio) {
+            this.evictAboveRatio = evictAboveRatio;
+        }
+
+        public double getEvictToRatio() {
+            return evictToRatio;
+        }
+
+        public void setEvictToRatio(double evictToRatio) {
+            this.evictToRatio = evictToRatio;
+        }
+    }
+
+    /**
+     * Parallel search inside one owner partition ({@code search.index.parallel.*}).
+     * A large query is split into doc id range shards that are scored on a dedicated
+     * fork-join pool, every shard keeps its own top hits and the shards are merged.
+     */
+    public static class Parallel {
+
+        // shards (and pool threads) per query; 1 or less keeps every query sequential
+        private int shards = Runtime.getRuntime().availableProcessors();
+
+        // queries touching fewer postings than this run sequentially, splitting would cost more than it saves
+        private long minPostings = 100_000;
+
+        public int getShards() {
+            return shards;
+        }
+
+        public void setShards(int shards) {
+            this.shards = shards;
+        }
+
+        public long getMinPostings() {
+            return minPostings;
+        }
+
+        public void setMinPostings(long minPostings) {
+            this.minPostings = minPostings;
+        }
+    }
+
+    /**
+     * Impact-ordered scoring ({@code search.index.impacts.*}). Every posting also keeps its
+     * weight quantized to a byte, queries add up those instead of computing term frequencies,
+     * and a page of top hits stops reading postings once the rest cannot change it.
+     * Ranking is slightly coarser than exact scoring.
+     * <p>
+     * Terms in many documents of a segment also get a champion list of their best postings:
+     * a query tries to find its top hits among those first and reads all postings only if that fails.
+     */
+    public static class ImpactScoring {
+
+        private boolean enabled = false;
+
+        // terms in at least this many documents of a segment get a champion list
+        private int championMinDocFreq = 10_000;
+
+        // postings in a champion list; longer lists fail less often and cost more when they are used
+        private int championListSize = 1_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getChampionMinDocFreq() {
+            return championMinDocFreq;
+        }
+
+        public void setChampionMinDocFreq(int championMinDocFreq) {
+            this.championMinDocFreq = championMinDocFreq;
+        }
+
+        public int getChampionListSize() {
+            return championListSize;
+        }
+
+        public void setChampionListSize(int championListSize) {
+            this.championListSize = championListSize;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable chunk of an owner's index: inverted postings plus the analyzed
+ * documents they were built from.
+ * <p>
+ * Documents get dense local ids {@code 0..size-1} in ascending order of their
+ * external id, so the external id can be mapped back with a binary search.
+ * Deletions are not stored here, see {@link LiveDocs}.
+ * <p>
+ * Segments are reference counted: the builder holds the first reference and every
+ * {@link PartitionView} containing the segment holds one more. Memory that is not
+ * managed by the GC is freed when the last reference is released.
+ */
+abstract class Segment {
+
+    // local id -> document id (ascending)
+    private final long[] docIds;
+
+    // local id -> DocumentStatus ordinal, -1 if unknown
+    private final byte[] statuses;
+
+    // numeric field -> doc values and sorted points
+    private final Map<String, NumericField> numbers;
+
+    // local id -> passages of large documents, kept on the heap for scoring; null if no document has any
+    private final Passages[] passages;
+    private final long passagesBytes;
+
+    // term -> impacts of its postings, kept on the heap; null unless built with impacts
+    private final Map<String, Impacts> impacts;
+    private final long impactsBytes;
+
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    protected Segment(IndexedDocument[] sorted) {
+        this(sorted, null, null);
+    }
+
+    /**
+     * @param postings postings of the segment to precompute {@link Impacts} from
+     * @param impacts  how to build the impacts, null for none
+     */
+    protected Segment(IndexedDocument[] sorted, Map<String, Postings.Builder> postings, Impacts.Options impacts) {
+        this.docIds = new long[sorted.length];
+        this.statuses = new byte[sorted.length];
+
+        // numeric field -> local id -> value, NaN if the document has no such field
+        Map<String, double[]> columns = new HashMap<>();
+        Passages[] passages = null;
+        long passagesBytes = 0;
+
+        for (int localId = 0; localId < sorted.length; localId++) {
+            docIds[localId] = sorted[localId].id();
+            if (!sorted[localId].passages().isEmpty()) {
+                if (passages == null) {
+                    passages = new Passages[sorted.length];
+                }
+                passages[localId] = sorted[localId].passages();
+                passagesBytes += Integer.BYTES + passages[localId].estimatedBytes();
+            }
+            statuses[localId] = (byte) (sorted[localId].status() == null ? -1 : sorted[localId].status().ordinal());
+
+            for (Map.Entry<String, Double> entry : sorted[localId].numbers().entrySet()) {
+                columns.computeIfAbsent(entry.getKey(), field -> {
+                    double[] column = new double[sorted.length];
+                    Arrays.fill(column, Double.NaN);
+                    return column;
+                })[localId] = entry.getValue();
+            }
+        }
+
+        this.numbers = new HashMap<>(columns.size() * 2);
+        columns.forEach((field, column) -> numbers.put(field, NumericField.of(column)));
+        this.passages = passages;
+        this.passagesBytes = passagesBytes;
+
+        if (impacts == null) {
+            this.impacts = null;
+            this.impactsBytes = 0;
+        } else {
+            Map<String, Impacts> termImpacts = new HashMap<>(postings.size() * 2);
+            long bytes = 0;
+            for (Map.Entry<String, Postings.Builder> entry : postings.entrySet()) {
+                Impacts termImpact = Impacts.of(entry.getValue(), passages, TermStats.TITLE_BOOST, impacts);
+                termImpacts.put(entry.getKey(), termImpact);
+                bytes += termImpact.sizeInBytes();
+            }
+            this.impacts = termImpacts;
+            this.impactsBytes = bytes;
+        }
+    }
+
+    /**
+     * Builds a heap segment, with {@link Impacts} for every term unless {@code impacts} is null.
+     */
+    static Segment build(Collection<IndexedDocument> docs, Impacts.Options impacts) {
+        return HeapSegment.build(docs, impacts);
+    }
+
+    /**
+     * Builds a heap segment from the given documents. If a document id occurs more than once
+     * the last occurrence wins.
+     */
+    static Segment build(Collection<IndexedDocument> docs) {
+        return HeapSegment.build(docs, null);
+    }
+
+    final int size() {
+        return docIds.length;
+    }
+
+    final long docId(int localId) {
+        return docIds[localId];
+    }
+
+    /**
+     * @return {@link com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus} ordinal
+     *         the document was indexed with, or {@code -1} if unknown
+     */
+    final int status(int localId) {
+        return statuses[localId];
+    }
+
+    /**
+     * @return value of the numeric field, or {@code NaN} if the document does not have it
+     */
+    final double number(String field, int localId) {
+        NumericField column = numbers.get(field);
+        return column == null ? Double.NaN : column.get(localId);
+    }
+
+    /**
+     * @return values of the numeric field, or {@code null} if no document of this segment has it
+     */
+    final NumericField numericField(String field) {
+        return numbers.get(field);
+    }
+
+    /**
+     * @return local id of the document, or {@code -1} if this segment does not contain it
+     */
+    final int localId(long docId) {
+        int localId = Arrays.binarySearch(docIds, docId);
+        return localId >= 0 ? localId : -1;
+    }
+
+    /**
+     * @return passages of the document, or {@code null} if it fits into a single passage
+     */
+    final Passages passages(int localId) {
+        return passages == null ? null : passages[localId];
+    }
+
+    /**
+     * @return impacts of the term's postings, or {@code null} if the segment has none or no document contains it
+     */
+    final Impacts impacts(String term) {
+        return impacts == null ? null : impacts.get(term);
+    }
+
+    final boolean hasImpacts() {
+        return impacts != null;
+    }
+
+    final boolean hasPassages() {
+        return passages != null;
+    }
+
+    abstract IndexedDocument document(int localId);
+
+    /**
+     * Rough memory footprint of the segment, heap and off-heap, without the documents'
+     * analyzed terms which are shared with other structures.
+     */
+    abstract long sizeInBytes();
+
+    // doc id and status columns, doc values and points of the numeric fields, passages and impacts
+    protected final long columnBytes() {
+        long bytes = (long) docIds.length * (Long.BYTES + 1);
+        for (NumericField field : numbers.values()) {
+            bytes += (long) docIds.length * Double.BYTES + field.pointCount() * (long) (Double.BYTES + Integer.BYTES);
+        }
+        return bytes + passagesBytes + impactsBytes;
+    }
+
+    /**
+     * @return postings of the term, or {@code null} if no document of this segment contains it
+     */
+    abstract Postings postings(String term);
+
+    final void retain() {
+        refs.incrementAndGet();
+    }
+
+    final void release() {
+        if (refs.decrementAndGet() == 0) {
+            free();
+        }
+    }
+
+    /**
+     * Called once, when the last reference is released.
+     */
+    protected void free() {
+    }
+
+    /**
+     * Removes duplicate ids (last occurrence wins) and sorts the documents by id.
+     */
+    static IndexedDocument[] sortedUnique(Collection<IndexedDocument> docs) {
+        Map<Long, IndexedDocument> unique = new LinkedHashMap<>();
+        for (IndexedDocument doc : docs) {
+            unique.put(doc.id(), doc);
+        }
+
+        return unique.values()
+                       .stream()
+                       .sorted(Comparator.comparing(IndexedDocument::id))
+                       .toArray(IndexedDocument[]::new);
+    }
+
+    // term -> postings of the sorted documents
+    static Map<String, Postings.Builder> invert(IndexedDocument[] sorted) {
+        Map<String, Postings.Builder> builders = new HashMap<>();
+
+        for (int localId = 0; localId < sorted.length; localId++) {
+            for (Map.Entry<String, TermStats> entry : sorted[localId].terms().entrySet()) {
+                builders.computeIfAbsent(entry.getKey(), t -> new Postings.Builder())
+                        .add(localId, entry.getValue());
+            }
+        }
+
+        return builders;
+    }
+}
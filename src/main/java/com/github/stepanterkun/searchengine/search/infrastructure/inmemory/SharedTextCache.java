@@ -0,0 +1,83 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Analyzed text of indexed documents by content hash. A document with the same title and
+ * content as one indexed before reuses its terms and signature instead of tokenizing again,
+ * and identical bodies share one terms map instead of one copy per document.
+ * <p>
+ * The terms maps are weakly referenced: once no indexed document uses a text any more,
+ * the garbage collector drops it and the entry goes away on a later access.
+ */
+final class SharedTextCache {
+
+    /**
+     * Analysis of a title and content, without keyword metadata terms.
+     */
+    record AnalyzedText(Map<String, TermStats> terms, int[] minHash, Passages passages) {
+
+        AnalyzedText(Map<String, TermStats> terms, int[] minHash) {
+            this(terms, minHash, Passages.NONE);
+        }
+    }
+
+    private static final class Entry extends WeakReference<Map<String, TermStats>> {
+        private final String hash;
+        private final int[] minHash;
+        private final Passages passages;
+
+        private Entry(String hash, AnalyzedText text, ReferenceQueue<Map<String, TermStats>> queue) {
+            super(text.terms(), queue);
+            this.hash = hash;
+            this.minHash = text.minHash();
+            this.passages = text.passages();
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Map<String, TermStats>> collected = new ReferenceQueue<>();
+
+    /**
+     * @return the text analyzed under this hash, null if unknown or no longer used
+     */
+    AnalyzedText get(String hash) {
+        expunge();
+
+        Entry entry = entries.get(hash);
+        Map<String, TermStats> terms = entry == null ? null : entry.get();
+        return terms == null ? null : new AnalyzedText(terms, entry.minHash, entry.passages);
+    }
+
+    /**
+     * @return the shared text: the one already cached under the hash if it is still used, otherwise this one
+     */
+    AnalyzedText share(String hash, AnalyzedText text) {
+        AnalyzedText existing = get(hash);
+        if (existing != null) {
+            return existing;
+        }
+
+        entries.put(hash, new Entry(hash, text, collected));
+        return text;
+    }
+
+    int size() {
+        expunge();
+        return entries.size();
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    private void expunge() {
+        for (Object ref = collected.poll(); ref != null; ref = collected.poll()) {
+            Entry entry = (Entry) ref;
+            entries.remove(entry.hash, entry);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+/**
+ * Frequencies of a single term inside one document.
+ */
+record TermStats(int titleFreq, int contentFreq) {
+
+    // a title occurrence weighs as much as this many content occurrences
+    static final double TITLE_BOOST = 3.0;
+
+    /**
+     * Calculates term frequency (TF) with an extra boost for the title.
+     */
+    double tf(double titleBoost) {
+        return contentFreq + titleBoost * titleFreq;
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the {@code limit} best hits of a shard and counts all of them. Only this sink lets
+ * impact-ordered scoring skip documents, since it needs nothing but their count.
+ */
+final class TopHitsCollector implements HitSink {
+
+    private final int limit;
+    // worst kept hit on top, so it is the one to drop
+    private final PriorityQueue<ScoredDoc> top = new PriorityQueue<>(ScoredDoc.BEST_FIRST.reversed());
+    private final long[] statusCounts = new long[DocumentStatus.values().length];
+    private int total;
+
+    TopHitsCollector(int limit) {
+        this.limit = limit;
+    }
+
+    @Override
+    public void collect(ScoredDoc hit) {
+        count(hit.status());
+
+        if (top.size() < limit) {
+            top.add(hit);
+        } else if (limit > 0 && ScoredDoc.BEST_FIRST.compare(hit, top.peek()) < 0) {
+            top.poll();
+            top.add(hit);
+        }
+    }
+
+    // a matching document that certainly is not among the hits kept
+    void count(int status) {
+        total++;
+        if (status >= 0) {
+            statusCounts[status]++;
+        }
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    Hits hits() {
+        List<ScoredDoc> sorted = new ArrayList<>(top);
+        sorted.sort(ScoredDoc.BEST_FIRST);
+        return new Hits(sorted, total, statusCounts);
+    }
+}
@@ -123,9 +123,9 @@ class DocumentControllerTest {
         DocumentCreateDto createDto = new DocumentCreateDto("Title", "Content");
         DocumentDto expected = new DocumentDto(10L, "Title", DocumentStatus.NEW);
 
-        when(service.create(ownerId, createDto)).thenReturn(expected);
+        when(service.create(ownerId, createDto, false)).thenReturn(expected);
 
-        ResponseEntity<DocumentDto> response = controller.create(ownerId, createDto);
+        ResponseEntity<DocumentDto> response = controller.create(ownerId, createDto, false);
 
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
         assertThat(response.getBody())
@@ -137,7 +137,7 @@ class DocumentControllerTest {
         ArgumentCaptor<Long> ownerIdCaptor = ArgumentCaptor.forClass(Long.class);
         ArgumentCaptor<DocumentCreateDto> dtoCaptor = ArgumentCaptor.forClass(DocumentCreateDto.class);
 
-        verify(service).create(ownerIdCaptor.capture(), dtoCaptor.capture());
+        verify(service).create(ownerIdCaptor.capture(), dtoCaptor.capture(), eq(false));
 
         assertThat(ownerIdCaptor.getValue())
                 .isNotNull()
@@ -150,4 +150,21 @@ class DocumentControllerTest {
 
         verifyNoMoreInteractions(service);
     }
-}
\ No newline at end of file
+    @Test
+    void update_shouldReturnOkAndBody() {
+        Long ownerId = 42L;
+
+        DocumentCreateDto updateDto = new DocumentCreateDto("Title", "Content");
+        DocumentDto expected = new DocumentDto(10L, "Title", DocumentStatus.READY);
+
+        when(service.update(10L, ownerId, updateDto, true)).thenReturn(expected);
+
+        ResponseEntity<DocumentDto> response = controller.update(10L, ownerId, updateDto, true);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(expected);
+
+        verify(service).update(10L, ownerId, updateDto, true);
+        verifyNoMoreInteractions(service);
+    }
+}
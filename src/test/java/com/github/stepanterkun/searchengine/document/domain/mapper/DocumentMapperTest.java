@@ -2,12 +2,17 @@ package com.github.stepanterkun.searchengine.document.domain.mapper;
 
 import com.github.stepanterkun.searchengine.document.api.dto.DocumentCreateDto;
 import com.github.stepanterkun.searchengine.document.api.dto.DocumentDto;
+import com.github.stepanterkun.searchengine.document.api.dto.DocumentMetadataDto;
 import com.github.stepanterkun.searchengine.document.domain.model.Document;
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentMetadata;
 import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
 import com.github.stepanterkun.searchengine.document.persistence.entity.DocumentEntity; // поправь пакет, если нужно
 import org.junit.jupiter.api.Test;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -98,6 +103,21 @@ class DocumentMapperTest {
         assertEquals(domain.getContent(), result.getContent());
         assertEquals(domain.getOwnerId(), result.getOwnerId());
         assertEquals(domain.getStatus(),  result.getStatus());
+        assertEquals(Document.contentHash("title", "content"), result.getContentHash());
+    }
+
+    @Test
+    void contentHash_shouldFollowTitleAndContent() {
+        Document document = new Document(1L, "title", "content", 42L, DocumentStatus.NEW);
+        String hash = document.getContentHash();
+
+        assertEquals(64, hash.length());
+        assertEquals(hash, mapper.toDomain(mapper.toEntity(document)).getContentHash());
+        // the separator keeps the boundary between title and content
+        assertNotEquals(hash, Document.contentHash("titlec", "ontent"));
+
+        document.setContent("other content");
+        assertNotEquals(hash, document.getContentHash());
     }
 
     @Test
@@ -163,4 +183,26 @@ class DocumentMapperTest {
         assertNotNull(result);
         assertTrue(result.isEmpty());
     }
+
+    @Test
+    void metadata_shouldSurviveCreateDtoToEntityAndBack() {
+        DocumentMetadataDto metadataDto = new DocumentMetadataDto(
+                Set.of("java", "spring"),
+                "web",
+                "en",
+                Map.of("size", 1024.0),
+                Map.of("published", Instant.parse("2024-01-01T00:00:00Z"))
+        );
+        Document domain = mapper.toDomain(new DocumentCreateDto("title", "content", metadataDto), 42L);
+
+        Document restored = mapper.toDomain(mapper.toEntity(domain));
+
+        assertThat(restored.getMetadata()).isEqualTo(new DocumentMetadata(
+                Set.of("java", "spring"),
+                "web",
+                "en",
+                Map.of("size", 1024.0),
+                Map.of("published", Instant.parse("2024-01-01T00:00:00Z"))
+        ));
+    }
 }
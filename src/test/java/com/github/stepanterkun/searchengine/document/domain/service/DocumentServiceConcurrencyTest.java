@@ -0,0 +1,89 @@
+package com.github.stepanterkun.searchengine.document.domain.service;
+
+import com.github.stepanterkun.searchengine.document.api.dto.DocumentCreateDto;
+import com.github.stepanterkun.searchengine.document.domain.mapper.DocumentMapper;
+import com.github.stepanterkun.searchengine.document.domain.model.Document;
+import com.github.stepanterkun.searchengine.document.domain.port.DocumentRepository;
+import com.github.stepanterkun.searchengine.search.domain.model.DocumentSummary;
+import com.github.stepanterkun.searchengine.search.domain.port.SearchIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class DocumentServiceConcurrencyTest {
+
+    private static final Long OWNER_ID = 9001L;
+
+    @Autowired
+    private DocumentService service;
+
+    @Autowired
+    private DocumentRepository repository;
+
+    @Autowired
+    private DocumentMapper mapper;
+
+    @Autowired
+    private SearchIndex searchIndex;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        service.deleteAllForOwner(OWNER_ID);
+    }
+
+    @Test
+    void update_whenConcurrentUpdateWins_shouldLeaveIndexMatchingStoredRow() {
+        Long id = service.create(OWNER_ID, new DocumentCreateDto("Fruit", "apple"), true).id();
+
+        // the losing update reads the row, then the winning one commits before the loser saves
+        DocumentRepository racingRepository = mock(DocumentRepository.class, delegatesTo(repository));
+        doAnswer(invocation -> {
+            Object previous = repository.findByIdAndOwnerId(id, OWNER_ID);
+            CompletableFuture.runAsync(
+                    () -> service.update(id, OWNER_ID, new DocumentCreateDto("Fruit", "banana"), true)
+            ).join();
+            return previous;
+        }).when(racingRepository).findByIdAndOwnerId(any(), any());
+        DocumentService losingService = new DocumentService(racingRepository, mapper, searchIndex);
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        assertThatThrownBy(() -> transaction.execute(
+                status -> losingService.update(id, OWNER_ID, new DocumentCreateDto("Fruit", "cherry"), true)
+        )).isInstanceOf(OptimisticLockingFailureException.class);
+
+        Document stored = repository.findByIdAndOwnerId(id, OWNER_ID).orElseThrow();
+        assertThat(stored.getContent()).isEqualTo("banana");
+
+        searchIndex.refresh();
+        assertThat(searchIds("banana")).containsExactly(id);
+        assertThat(searchIds("cherry")).isEmpty();
+        assertThat(searchIds("apple")).isEmpty();
+    }
+
+    private List<Long> searchIds(String query) {
+        return searchIndex.search(OWNER_ID, query, PageRequest.of(0, 10))
+                          .map(DocumentSummary::documentId)
+                          .getContent();
+    }
+}
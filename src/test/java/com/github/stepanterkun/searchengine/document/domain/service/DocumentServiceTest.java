@@ -7,6 +7,7 @@ import com.github.stepanterkun.searchengine.document.domain.model.Document;
 import com.github.stepanterkun.searchengine.document.domain.model.DocumentNotFoundException;
 import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
 import com.github.stepanterkun.searchengine.document.domain.port.DocumentRepository;
+import com.github.stepanterkun.searchengine.search.domain.model.IndexCapacityExceededException;
 import com.github.stepanterkun.searchengine.search.domain.port.SearchIndex;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -213,4 +214,133 @@ class DocumentServiceTest {
         verifyNoMoreInteractions(repository);
         verifyNoInteractions(mapper, searchIndex);
     }
+
+    @Test
+    void update_shouldSaveNewVersionAndReindexAgainstPrevious() {
+        Long id = 1L;
+        Long ownerId = 42L;
+        DocumentCreateDto updateDto = new DocumentCreateDto("New title", "New content");
+
+        Document previous = new Document(id, "Old title", "Old content", ownerId, DocumentStatus.READY);
+        Document updated = new Document(id, "New title", "New content", ownerId, DocumentStatus.READY);
+        Document saved = new Document(id, "New title", "New content", ownerId, DocumentStatus.READY);
+        DocumentDto expecting = new DocumentDto(id, "New title", DocumentStatus.READY);
+
+        when(repository.findByIdAndOwnerId(id, ownerId)).thenReturn(Optional.of(previous));
+        when(mapper.toDomain(updateDto, previous)).thenReturn(updated);
+        when(repository.saveAndFlush(updated)).thenReturn(saved);
+        when(mapper.toDto(saved)).thenReturn(expecting);
+
+        DocumentDto result = service.update(id, ownerId, updateDto, true);
+
+        assertThat(result).isEqualTo(expecting);
+        assertThat(updated.getUpdatedAt()).isNotNull();
+
+        verify(searchIndex).update(previous, saved);
+        verify(searchIndex).refresh();
+        verifyNoMoreInteractions(searchIndex);
+    }
+
+    @Test
+    void update_whenReindexFails_shouldStoreFailedStatusWithoutThrowing() {
+        Long id = 1L;
+        Long ownerId = 42L;
+        DocumentCreateDto updateDto = new DocumentCreateDto("New title", "New content");
+
+        Document previous = new Document(id, "Old title", "Old content", ownerId, DocumentStatus.READY);
+        Document updated = new Document(id, "New title", "New content", ownerId, DocumentStatus.READY);
+        Document saved = new Document(id, "New title", "New content", ownerId, DocumentStatus.READY);
+        DocumentDto expecting = new DocumentDto(id, "New title", DocumentStatus.FAILED);
+
+        when(repository.findByIdAndOwnerId(id, ownerId)).thenReturn(Optional.of(previous));
+        when(mapper.toDomain(updateDto, previous)).thenReturn(updated);
+        when(repository.saveAndFlush(updated)).thenReturn(saved);
+        doThrow(new IllegalStateException("index failure")).when(searchIndex).update(previous, saved);
+        when(repository.save(saved)).thenReturn(saved);
+        when(mapper.toDto(saved)).thenReturn(expecting);
+
+        assertThat(service.update(id, ownerId, updateDto, false)).isEqualTo(expecting);
+
+        assertThat(saved.getStatus()).isEqualTo(DocumentStatus.FAILED);
+        verify(repository).save(saved);
+    }
+
+    @Test
+    void update_whenIndexIsFull_shouldRethrowWithoutStoringFailedStatus() {
+        Long id = 1L;
+        Long ownerId = 42L;
+        DocumentCreateDto updateDto = new DocumentCreateDto("New title", "New content");
+
+        Document previous = new Document(id, "Old title", "Old content", ownerId, DocumentStatus.READY);
+        Document updated = new Document(id, "New title", "New content", ownerId, DocumentStatus.READY);
+        Document saved = new Document(id, "New title", "New content", ownerId, DocumentStatus.READY);
+
+        when(repository.findByIdAndOwnerId(id, ownerId)).thenReturn(Optional.of(previous));
+        when(mapper.toDomain(updateDto, previous)).thenReturn(updated);
+        when(repository.saveAndFlush(updated)).thenReturn(saved);
+        doThrow(new IndexCapacityExceededException("full")).when(searchIndex).update(previous, saved);
+
+        assertThrows(IndexCapacityExceededException.class,
+                     () -> service.update(id, ownerId, updateDto, false));
+
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void update_whenNothingChanged_shouldNotSaveOrReindex() {
+        Long id = 1L;
+        Long ownerId = 42L;
+        DocumentCreateDto updateDto = new DocumentCreateDto("Title", "Content");
+
+        Document previous = new Document(id, "Title", "Content", ownerId, DocumentStatus.READY);
+        Document updated = new Document(id, "Title", "Content", ownerId, DocumentStatus.READY);
+        DocumentDto expecting = new DocumentDto(id, "Title", DocumentStatus.READY);
+
+        when(repository.findByIdAndOwnerId(id, ownerId)).thenReturn(Optional.of(previous));
+        when(mapper.toDomain(updateDto, previous)).thenReturn(updated);
+        when(mapper.toDto(previous)).thenReturn(expecting);
+
+        assertThat(service.update(id, ownerId, updateDto, false)).isEqualTo(expecting);
+
+        verify(repository, never()).save(any());
+        verify(repository, never()).saveAndFlush(any());
+        verifyNoInteractions(searchIndex);
+    }
+
+    @Test
+    void update_whenDocumentNotFound_shouldThrowDocumentNotFoundException() {
+        when(repository.findByIdAndOwnerId(1L, 42L)).thenReturn(Optional.empty());
+
+        assertThrows(
+                DocumentNotFoundException.class,
+                () -> service.update(1L, 42L, new DocumentCreateDto("Title", "Content"), false)
+        );
+
+        verifyNoInteractions(mapper, searchIndex);
+    }
+
+    @Test
+    void deleteAllForOwner_shouldDeleteInBulkAndDropOwnerFromIndex() {
+        Long ownerId = 42L;
+
+        when(repository.deleteAllByOwnerId(ownerId)).thenReturn(3);
+
+        service.deleteAllForOwner(ownerId);
+
+        verify(repository).deleteAllByOwnerId(ownerId);
+        verifyNoMoreInteractions(repository);
+        verify(searchIndex).removeOwner(ownerId);
+        verifyNoMoreInteractions(searchIndex);
+    }
+
+    @Test
+    void deleteAllForOwner_whenNoDocuments_shouldThrowDocumentNotFoundException() {
+        Long ownerId = 42L;
+
+        when(repository.deleteAllByOwnerId(ownerId)).thenReturn(0);
+
+        assertThrows(DocumentNotFoundException.class, () -> service.deleteAllForOwner(ownerId));
+
+        verifyNoInteractions(searchIndex);
+    }
 }
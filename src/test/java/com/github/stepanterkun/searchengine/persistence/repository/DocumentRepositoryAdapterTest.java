@@ -2,23 +2,32 @@ package com.github.stepanterkun.searchengine.persistence.repository;
 
 import com.github.stepanterkun.searchengine.document.domain.mapper.DocumentMapper;
 import com.github.stepanterkun.searchengine.document.domain.model.Document;
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentMetadata;
 import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
 import com.github.stepanterkun.searchengine.document.domain.port.DocumentRepository;
 import com.github.stepanterkun.searchengine.document.persistence.entity.DocumentEntity;
+import com.github.stepanterkun.searchengine.document.persistence.repository.DocumentDeletionJpaRepository;
+import com.github.stepanterkun.searchengine.document.persistence.repository.DocumentJpaRepository;
 import com.github.stepanterkun.searchengine.document.persistence.repository.DocumentRepositoryAdapter;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
-@DataJpaTest
+@DataJpaTest(properties = "search.index.persistence.enabled=true")
 @ActiveProfiles("test")
 @Import({DocumentRepositoryAdapter.class, DocumentMapper.class, DocumentEntity.class})
 class DocumentRepositoryAdapterTest {
@@ -29,6 +38,21 @@ class DocumentRepositoryAdapterTest {
     @Autowired
     private TestEntityManager em;   // used to prepare test data directly in db
 
+    @Autowired
+    private DocumentJpaRepository jpaRepository;
+
+    @Autowired
+    private DocumentDeletionJpaRepository deletionJpaRepository;
+
+    @Autowired
+    private DocumentMapper mapper;
+
+    @Autowired
+    private DocumentRepositoryAdapter adapter;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
     @Test
     void save_shouldSaveToDbAndReturnWithId() {
         Long ownerId = 100L;
@@ -165,4 +189,99 @@ class DocumentRepositoryAdapterTest {
 
         assertThat(result).isEmpty();
     }
+
+    @Test
+    void deleteDocument_shouldWriteTombstoneToDeletionLog() {
+        Instant before = Instant.now().minusSeconds(1);
+        Document saved = repository.save(Document.newDocument("Title", "Content", 42L));
+
+        repository.deleteDocument(saved);
+        em.flush();
+
+        assertThat(repository.findByIdAndOwnerId(saved.getId(), 42L)).isEmpty();
+        assertThat(repository.findIdsDeletedSince(before)).containsExactly(saved.getId());
+        assertThat(repository.findIdsDeletedSince(Instant.now().plusSeconds(60))).isEmpty();
+    }
+
+    @Test
+    void deleteAllByOwnerId_shouldDeleteOnlyOwnerDocumentsAndWriteTombstones() {
+        Instant before = Instant.now().minusSeconds(1);
+        Document tagged = Document.newDocument("Title", "Content", 42L);
+        tagged.setMetadata(new DocumentMetadata(Set.of("java"), "web", "en", Map.of("rating", 4.5),
+                Map.of("published", Instant.now())));
+        Document first = repository.save(tagged);
+        Document second = repository.save(Document.newDocument("Title 2", "Content 2", 42L));
+        Document other = repository.save(Document.newDocument("Other", "Content", 7L));
+        em.flush();
+        em.clear();
+
+        int deleted = repository.deleteAllByOwnerId(42L);
+
+        assertThat(deleted).isEqualTo(2);
+        assertThat(repository.findAllByOwnerId(42L)).isEmpty();
+        assertThat(repository.findAllByOwnerId(7L))
+                .extracting(Document::getId)
+                .containsExactly(other.getId());
+        assertThat(repository.findIdsDeletedSince(before)).containsExactlyInAnyOrder(first.getId(), second.getId());
+    }
+
+    @Test
+    void delete_whenIndexPersistenceIsDisabled_shouldNotWriteTombstones() {
+        DocumentRepository withoutTombstones =
+                new DocumentRepositoryAdapter(jpaRepository, deletionJpaRepository, mapper, false);
+        Instant before = Instant.now().minusSeconds(1);
+        Document single = withoutTombstones.save(Document.newDocument("Title", "Content", 42L));
+        withoutTombstones.save(Document.newDocument("Other", "Content", 7L));
+        em.flush();
+
+        withoutTombstones.deleteDocument(single);
+        assertThat(withoutTombstones.deleteAllByOwnerId(7L)).isEqualTo(1);
+        em.flush();
+
+        assertThat(withoutTombstones.findAllByOwnerId(42L)).isEmpty();
+        assertThat(withoutTombstones.findIdsDeletedSince(before)).isEmpty();
+    }
+
+    @Test
+    void backfillLegacyRows_shouldLetRowsFromBeforeVersioningBeUpdated() {
+        Long ownerId = 7001L;
+        Instant createdAt = Instant.parse("2024-01-01T00:00:00Z");
+        // written before the version and updated_at columns existed: the column default and null
+        jdbc.update("insert into documents (title, content, owner_id, status, created_at) values (?, ?, ?, ?, ?)",
+                "Legacy", "Legacy content", ownerId, DocumentStatus.READY.name(), Timestamp.from(createdAt));
+
+        assertThat(repository.findAllModifiedSince(Instant.EPOCH)).noneMatch(doc -> doc.getOwnerId().equals(ownerId));
+
+        adapter.backfillLegacyRows();
+
+        Document legacy = repository.findAllByOwnerId(ownerId).get(0);
+        assertThat(legacy.getVersion()).isZero();
+        assertThat(legacy.getUpdatedAt()).isEqualTo(createdAt);
+
+        // an update, not an insert of a "new" entity
+        legacy.setTitle("Legacy, edited");
+        Document saved = repository.save(legacy);
+        em.flush();
+        em.clear();
+
+        assertThat(saved.getId()).isEqualTo(legacy.getId());
+        assertThat(repository.findAllByOwnerId(ownerId))
+                .extracting(Document::getTitle, Document::getVersion)
+                .containsExactly(tuple("Legacy, edited", 1L));
+    }
+
+    @Test
+    void findAllModifiedSince_shouldReturnOnlyRecentlyChangedDocuments() {
+        DocumentEntity entity = new DocumentEntity(null, "Title", "Content", 42L, DocumentStatus.READY);
+        em.persist(entity);
+        em.flush();
+
+        assertThat(entity.getVersion()).isNotNull();
+        assertThat(entity.getUpdatedAt()).isNotNull();
+
+        assertThat(repository.findAllModifiedSince(entity.getUpdatedAt().minusSeconds(1)))
+                .extracting(Document::getId)
+                .containsExactly(entity.getId());
+        assertThat(repository.findAllModifiedSince(entity.getUpdatedAt().plusSeconds(1))).isEmpty();
+    }
 }
@@ -1,8 +1,16 @@
 package com.github.stepanterkun.searchengine.search.infrastructure.domain.service;
 
 import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
+import com.github.stepanterkun.searchengine.search.api.dto.DuplicateClustersDto;
 import com.github.stepanterkun.searchengine.search.api.dto.SearchResultDto;
+import com.github.stepanterkun.searchengine.search.api.dto.SimilarDocumentsDto;
+import com.github.stepanterkun.searchengine.search.api.dto.SuggestResultDto;
 import com.github.stepanterkun.searchengine.search.domain.model.DocumentSummary;
+import com.github.stepanterkun.searchengine.search.domain.model.InvalidSearchRequestException;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchFilter;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchHits;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchQuery;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchSort;
 import com.github.stepanterkun.searchengine.search.domain.port.SearchIndex;
 import com.github.stepanterkun.searchengine.search.domain.service.SearchService;
 import org.junit.jupiter.api.Test;
@@ -17,9 +25,12 @@ import org.springframework.data.domain.Pageable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -47,7 +58,8 @@ public class SearchServiceTest {
                 "Title - " + id,
                 DocumentStatus.READY,
                 ThreadLocalRandom.current().nextDouble(0, 10),
-                List.of()
+                List.of(),
+                null
         );
     }
 
@@ -55,6 +67,7 @@ public class SearchServiceTest {
     void searchAllDocumentsByQuery_shouldReturnCorrectPageMetadataAndContent() {
         Long ownerId = 42L;
         String query = "java";
+        SearchQuery searchQuery = SearchQuery.of(query);
 
         List<DocumentSummary> all = generateSummaries(12); // ids 1..12
 
@@ -67,7 +80,7 @@ public class SearchServiceTest {
         List<DocumentSummary> pageContent = all.subList(5, 10);
         Page<DocumentSummary> page = new PageImpl<>(pageContent, pageable, all.size());
 
-        when(searchIndex.search(ownerId, query, pageable)).thenReturn(page);
+        when(searchIndex.search(ownerId, searchQuery, pageable)).thenReturn(new SearchHits(page, Map.of()));
 
         SearchResultDto result = service.searchAllDocumentsByQuery(ownerId, query, pageNumber, pageSize);
 
@@ -97,7 +110,7 @@ public class SearchServiceTest {
         assertThat(result.documentSummaries().get(4).documentId())
                 .isEqualTo(all.get(9).documentId()); // id=10
 
-        verify(searchIndex).search(ownerId, query, pageable);
+        verify(searchIndex).search(ownerId, searchQuery, pageable);
         verifyNoMoreInteractions(searchIndex);
     }
 
@@ -105,6 +118,7 @@ public class SearchServiceTest {
     void searchAllDocumentsByQuery_shouldReturnClappedPage() {
         Long ownerId = 42L;
         String query = "java";
+        SearchQuery searchQuery = SearchQuery.of(query);
 
         List<DocumentSummary> all = generateSummaries(12);
 
@@ -128,8 +142,8 @@ public class SearchServiceTest {
                 all.size()
         );
 
-        when(searchIndex.search(ownerId, query, wrongPageable)).thenReturn(emptyPage);
-        when(searchIndex.search(ownerId, query, lastPageable)).thenReturn(lastPage);
+        when(searchIndex.search(ownerId, searchQuery, wrongPageable)).thenReturn(new SearchHits(emptyPage, Map.of()));
+        when(searchIndex.search(ownerId, searchQuery, lastPageable)).thenReturn(new SearchHits(lastPage, Map.of()));
 
         SearchResultDto result = service.searchAllDocumentsByQuery(ownerId, query, wrongPage, size);
 
@@ -159,8 +173,8 @@ public class SearchServiceTest {
         assertThat(result.documentSummaries().get(1).documentId())
                 .isEqualTo(all.get(11).documentId()); // id=12
 
-        verify(searchIndex).search(ownerId, query, wrongPageable);
-        verify(searchIndex).search(ownerId, query, lastPageable);
+        verify(searchIndex).search(ownerId, searchQuery, wrongPageable);
+        verify(searchIndex).search(ownerId, searchQuery, lastPageable);
         verifyNoMoreInteractions(searchIndex);
     }
 
@@ -168,12 +182,13 @@ public class SearchServiceTest {
     void searchAllDocumentsByQuery_whenWrongPageAndSize_shouldReturnDefaultValues() {
         Long ownerId = 42L;
         String query = "java";
+        SearchQuery searchQuery = SearchQuery.of(query);
 
         List<DocumentSummary> all = generateSummaries(3);
         Pageable pageable = PageRequest.of(0, 20);
         Page<DocumentSummary> page = new PageImpl<>(all, pageable, all.size());
 
-        when(searchIndex.search(ownerId, query, pageable)).thenReturn(page);
+        when(searchIndex.search(ownerId, searchQuery, pageable)).thenReturn(new SearchHits(page, Map.of()));
 
         Integer wrongPage = 0;
         Integer wrongSize = -10;
@@ -206,7 +221,7 @@ public class SearchServiceTest {
         assertThat(result.documentSummaries().get(2).documentId())
                 .isEqualTo(summary(3L).documentId());
 
-        verify(searchIndex).search(ownerId, query, pageable);
+        verify(searchIndex).search(ownerId, searchQuery, pageable);
         verifyNoMoreInteractions(searchIndex);
     }
 
@@ -215,6 +230,7 @@ public class SearchServiceTest {
     void searchAllDocumentsByQuery_whenEmptyElements_shouldReturnEmptyList() {
         Long ownerId = 42L;
         String query = "java";
+        SearchQuery searchQuery = SearchQuery.of(query);
 
         int defaultPage = 1;
         int defaultSize = 20;
@@ -222,7 +238,7 @@ public class SearchServiceTest {
         Pageable pageable = PageRequest.of(defaultPage - 1, defaultSize); // 0,20
         Page<DocumentSummary> emptyPage = Page.empty(pageable);
 
-        when(searchIndex.search(ownerId, query, pageable)).thenReturn(emptyPage);
+        when(searchIndex.search(ownerId, searchQuery, pageable)).thenReturn(new SearchHits(emptyPage, Map.of()));
 
         SearchResultDto result = service.searchAllDocumentsByQuery(ownerId, query, null, null);
 
@@ -248,7 +264,125 @@ public class SearchServiceTest {
 
         assertThat(result.documentSummaries()).isEmpty();
 
-        verify(searchIndex).search(ownerId, query, pageable);
+        verify(searchIndex).search(ownerId, searchQuery, pageable);
+        verifyNoMoreInteractions(searchIndex);
+    }
+
+    @Test
+    void searchAllDocumentsByQuery_withFacets_shouldReturnFacetCountsFromIndex() {
+        Long ownerId = 42L;
+        String query = "java";
+        Pageable pageable = PageRequest.of(0, 20);
+
+        Page<DocumentSummary> page = new PageImpl<>(generateSummaries(3), pageable, 3);
+        Map<String, Map<String, Long>> facets = Map.of("status", Map.of("READY", 2L, "INDEXING", 1L));
+
+        SearchQuery searchQuery = new SearchQuery(query, List.of(), Set.of("status"));
+
+        when(searchIndex.search(ownerId, searchQuery, pageable))
+                .thenReturn(new SearchHits(page, facets));
+
+        SearchResultDto result = service.searchAllDocumentsByQuery(ownerId, query, null, null, List.of(), List.of("status"), null, false);
+
+        assertThat(result.totalElements()).isEqualTo(3L);
+        assertThat(result.facets()).isEqualTo(facets);
+
+        verify(searchIndex).search(ownerId, searchQuery, pageable);
+        verifyNoMoreInteractions(searchIndex);
+    }
+
+    @Test
+    void searchAllDocumentsByQuery_withFilters_shouldPassParsedFiltersToIndex() {
+        Long ownerId = 42L;
+        Pageable pageable = PageRequest.of(0, 20);
+        SearchQuery searchQuery = new SearchQuery(
+                "java",
+                List.of(new SearchFilter("tag", SearchFilter.Operator.EQ, "spring"),
+                        new SearchFilter("size", SearchFilter.Operator.GE, "100")),
+                Set.of()
+        );
+
+        when(searchIndex.search(ownerId, searchQuery, pageable))
+                .thenReturn(new SearchHits(Page.empty(pageable), Map.of()));
+
+        service.searchAllDocumentsByQuery(ownerId, "java", null, null, List.of("tag=spring", "size >= 100"), List.of(), null, false);
+
+        verify(searchIndex).search(ownerId, searchQuery, pageable);
+        verifyNoMoreInteractions(searchIndex);
+    }
+
+    @Test
+    void searchAllDocumentsByQuery_withMalformedFilter_shouldThrow() {
+        assertThatThrownBy(() -> service.searchAllDocumentsByQuery(42L, "java", null, null, List.of("tag"), List.of(), null, false))
+                .isInstanceOf(InvalidSearchRequestException.class);
+
+        verifyNoInteractions(searchIndex);
+    }
+
+    @Test
+    void searchAllDocumentsByQuery_withRecentSort_shouldUseFullQuery() {
+        Long ownerId = 42L;
+        Pageable pageable = PageRequest.of(0, 20);
+        SearchQuery searchQuery = new SearchQuery("java", List.of(), Set.of(), SearchSort.RECENT);
+
+        when(searchIndex.search(ownerId, searchQuery, pageable))
+                .thenReturn(new SearchHits(Page.empty(pageable), Map.of()));
+
+        service.searchAllDocumentsByQuery(ownerId, "java", null, null, null, null, "recent", false);
+
+        verify(searchIndex).search(ownerId, searchQuery, pageable);
+        verifyNoMoreInteractions(searchIndex);
+    }
+
+    @Test
+    void searchAllDocumentsByQuery_withUnknownSort_shouldThrow() {
+        assertThatThrownBy(() -> service.searchAllDocumentsByQuery(42L, "java", null, null, null, null, "oldest", false))
+                .isInstanceOf(InvalidSearchRequestException.class)
+                .hasMessageContaining("oldest");
+    }
+
+    @Test
+    void searchAllDocumentsByQuery_withCollapse_shouldUseFullQuery() {
+        Long ownerId = 42L;
+        Pageable pageable = PageRequest.of(0, 20);
+        SearchQuery searchQuery = new SearchQuery("java", List.of(), Set.of(), SearchSort.RELEVANCE, true);
+
+        when(searchIndex.search(ownerId, searchQuery, pageable))
+                .thenReturn(new SearchHits(Page.empty(pageable), Map.of()));
+
+        service.searchAllDocumentsByQuery(ownerId, "java", null, null, null, null, null, true);
+
+        verify(searchIndex).search(ownerId, searchQuery, pageable);
         verifyNoMoreInteractions(searchIndex);
     }
+
+    @Test
+    void findDuplicateClusters_shouldWrapIndexClusters() {
+        when(searchIndex.duplicateClusters(42L)).thenReturn(List.of(List.of(1L, 3L), List.of(2L, 5L, 8L)));
+
+        DuplicateClustersDto result = service.findDuplicateClusters(42L);
+
+        assertThat(result.clusters()).containsExactly(List.of(1L, 3L), List.of(2L, 5L, 8L));
+    }
+
+    @Test
+    void suggest_shouldClampLimitAndReturnIndexSuggestions() {
+        when(searchIndex.suggest(42L, "sp", 10)).thenReturn(List.of("spring", "spark"));
+
+        SuggestResultDto result = service.suggest(42L, "sp", 500);
+
+        assertThat(result.prefix()).isEqualTo("sp");
+        assertThat(result.suggestions()).containsExactly("spring", "spark");
+    }
+
+    @Test
+    void similar_shouldUseDefaultLimitAndWrapIndexResult() {
+        List<DocumentSummary> summaries = generateSummaries(2);
+        when(searchIndex.similar(42L, 7L, 10)).thenReturn(summaries);
+
+        SimilarDocumentsDto result = service.similar(42L, 7L, null);
+
+        assertThat(result.documentId()).isEqualTo(7L);
+        assertThat(result.documentSummaries()).isEqualTo(summaries);
+    }
 }
@@ -0,0 +1,92 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link CompletionTrie}.
+ */
+class CompletionTrieTest {
+
+    private final CompletionTrie trie = new CompletionTrie();
+
+    @Test
+    void complete_shouldReturnHeaviestTermsWithPrefix() {
+        trie.update("spring", 5);
+        trie.update("spark", 7);
+        trie.update("sql", 9);
+        trie.update("java", 1);
+
+        assertThat(trie.complete("sp", 10)).containsExactly("spark", "spring");
+        assertThat(trie.complete("s", 2)).containsExactly("sql", "spark");
+        assertThat(trie.complete("spring", 10)).containsExactly("spring");
+        assertThat(trie.complete("kotlin", 10)).isEmpty();
+    }
+
+    @Test
+    void suggest_shouldCompleteLastWordAndKeepWordsBeforeIt() {
+        trie.update("spring", 5);
+        trie.update("spark", 7);
+
+        assertThat(trie.suggest("  Java SP", 10)).containsExactly("java spark", "java spring");
+        assertThat(trie.suggest("spr", 10)).containsExactly("spring");
+        // nothing to complete after a separator
+        assertThat(trie.suggest("java ", 10)).isEmpty();
+        assertThat(trie.suggest("", 10)).isEmpty();
+    }
+
+    @Test
+    void update_whenWeightDrops_shouldLetOtherTermsIn() {
+        for (int i = 0; i < CompletionTrie.TOP_K + 1; i++) {
+            trie.update("term" + (char) ('a' + i), 10 + i);
+        }
+        // the lightest term does not fit
+        assertThat(trie.complete("term", 20)).hasSize(CompletionTrie.TOP_K).doesNotContain("terma");
+
+        trie.update("termk", -20);
+
+        assertThat(trie.complete("term", 20)).hasSize(CompletionTrie.TOP_K).contains("terma").doesNotContain("termk");
+        assertThat(trie.complete("termk", 20)).isEmpty();
+    }
+
+    @Test
+    void update_randomChanges_shouldMatchBruteForce() {
+        Random random = new Random(42);
+        Map<String, Long> weights = new HashMap<>();
+        String[] vocabulary = new String[200];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = Integer.toString(random.nextInt(5000), 7);
+        }
+
+        for (int step = 0; step < 5000; step++) {
+            String term = vocabulary[random.nextInt(vocabulary.length)];
+            long delta = random.nextInt(10) - 4;
+            long current = weights.getOrDefault(term, 0L);
+            long next = Math.max(0, current + delta);
+
+            // the index never removes more weight than it added
+            trie.update(term, next - current);
+            weights.put(term, next);
+        }
+
+        for (String prefix : List.of("", "1", "2", "12", "345", "6")) {
+            List<String> expected = weights.entrySet()
+                                           .stream()
+                                           .filter(e -> e.getValue() > 0 && e.getKey().startsWith(prefix))
+                                           .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder())
+                                                           .thenComparing(Map.Entry.comparingByKey()))
+                                           .limit(CompletionTrie.TOP_K)
+                                           .map(Map.Entry::getKey)
+                                           .toList();
+
+            assertThat(trie.complete(prefix, CompletionTrie.TOP_K)).as(prefix).isEqualTo(expected);
+        }
+    }
+}
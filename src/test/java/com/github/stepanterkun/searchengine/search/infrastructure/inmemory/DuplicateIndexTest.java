@@ -0,0 +1,70 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Unit tests for {@link DuplicateIndex} and {@link MinHash}.
+ */
+class DuplicateIndexTest {
+
+    private final Random random = new Random(11);
+
+    @Test
+    void similarity_shouldEstimateShingleJaccard() {
+        List<String> original = randomWords(300);
+        List<String> edited = new ArrayList<>(original);
+        edited.set(150, "changed");
+
+        // one changed word breaks 3 of 298 shingles: jaccard = 295 / 301
+        assertThat(MinHash.similarity(MinHash.signature(original), MinHash.signature(edited)))
+                .isCloseTo(0.98, within(0.05));
+        assertThat(MinHash.similarity(MinHash.signature(original), MinHash.signature(randomWords(300))))
+                .isLessThan(0.1);
+        assertThat(MinHash.signature(original)).isEqualTo(MinHash.signature(new ArrayList<>(original)));
+        assertThat(MinHash.signature(List.of())).isEmpty();
+    }
+
+    @Test
+    void clusters_shouldGroupNearDuplicatesOnly() {
+        DuplicateIndex index = new DuplicateIndex(0.8);
+
+        List<String> report = randomWords(200);
+        List<String> edited = new ArrayList<>(report);
+        edited.set(10, "typo");
+        List<String> appended = new ArrayList<>(edited);
+        appended.add("signature");
+
+        index.add(1L, MinHash.signature(report));
+        index.add(2L, MinHash.signature(randomWords(200)));
+        index.add(3L, MinHash.signature(edited));
+        index.add(4L, MinHash.signature(appended));
+        index.add(5L, MinHash.signature(randomWords(200)));
+        index.add(6L, new int[0]); // no signature, ignored
+
+        assertThat(index.clusters()).containsExactly(List.of(1L, 3L, 4L));
+        assertThat(index.duplicatesOf(1L)).containsExactlyInAnyOrder(3L, 4L);
+        assertThat(index.duplicatesOf(2L)).isEmpty();
+
+        index.remove(3L);
+        index.add(4L, MinHash.signature(randomWords(200)));
+
+        assertThat(index.clusters()).isEmpty();
+        assertThat(index.duplicatesOf(1L)).isEmpty();
+    }
+
+    private List<String> randomWords(int count) {
+        String[] words = new String[count];
+        for (int i = 0; i < count; i++) {
+            words[i] = "w" + random.nextInt(5000);
+        }
+        return Arrays.asList(words);
+    }
+}
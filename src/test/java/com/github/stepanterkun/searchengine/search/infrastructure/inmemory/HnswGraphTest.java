@@ -0,0 +1,115 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+/**
+ * Unit tests for {@link HnswGraph}.
+ */
+class HnswGraphTest {
+
+    private static final int DIMENSIONS = 64;
+    private static final int DOCS = 2000;
+    private static final int QUERIES = 100;
+    private static final int K = 10;
+
+    private final Random random = new Random(7);
+
+    @Test
+    void search_shouldFindMostOfTheExactNearestNeighbours() {
+        HnswGraph graph = randomGraph(DOCS);
+
+        List<float[]> queries = randomVectors(QUERIES);
+
+        // recall against brute force must not drop below what each ef bought when it was tuned,
+        // latency per ef is measured by HnswSearchBenchmark
+        Map<Integer, Double> recallFloors = Map.of(10, 0.6, 32, 0.9, 64, 0.97, 128, 0.99);
+        recallFloors.forEach((ef, floor) ->
+                assertThat(recall(graph, queries, ef)).as("recall@%d at ef=%d", K, ef).isGreaterThanOrEqualTo(floor));
+    }
+
+    @Test
+    void remove_shouldNeverReturnDeletedDocumentsAndCompact() {
+        HnswGraph graph = randomGraph(DOCS);
+
+        // more than half: triggers a rebuild from the live nodes
+        Set<Long> removed = new HashSet<>();
+        for (long docId = 0; docId < DOCS * 3 / 4; docId++) {
+            graph.remove(docId);
+            removed.add(docId);
+        }
+
+        assertThat(graph.size()).isEqualTo(DOCS - removed.size());
+        for (float[] query : randomVectors(QUERIES)) {
+            assertThat(graph.search(query, K, 64))
+                    .hasSize(K)
+                    .allSatisfy(neighbour -> assertThat(removed).doesNotContain(neighbour.docId()));
+        }
+        assertThat(recall(graph, randomVectors(QUERIES), 64)).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void insert_shouldReplaceVectorOfTheSameDocument() {
+        HnswGraph graph = new HnswGraph(16, 100);
+        float[] first = randomVector();
+        float[] second = randomVector();
+
+        graph.insert(1L, first);
+        graph.insert(2L, randomVector());
+        graph.insert(1L, second);
+
+        assertThat(graph.size()).isEqualTo(2);
+        HnswGraph.Neighbor best = graph.search(second, 1, 10).get(0);
+        assertThat(best.docId()).isEqualTo(1L);
+        assertThat(best.similarity()).isCloseTo(1f, offset(1e-5f));
+    }
+
+    private double recall(HnswGraph graph, List<float[]> queries, int ef) {
+        int found = 0;
+        for (float[] query : queries) {
+            Set<Long> exact = new HashSet<>();
+            graph.exactSearch(query, K).forEach(neighbour -> exact.add(neighbour.docId()));
+
+            for (HnswGraph.Neighbor neighbour : graph.search(query, K, ef)) {
+                if (exact.contains(neighbour.docId())) {
+                    found++;
+                }
+            }
+        }
+        return (double) found / (queries.size() * K);
+    }
+
+    private HnswGraph randomGraph(int size) {
+        HnswGraph graph = new HnswGraph(16, 100);
+        for (long docId = 0; docId < size; docId++) {
+            graph.insert(docId, randomVector());
+        }
+        return graph;
+    }
+
+    private List<float[]> randomVectors(int count) {
+        return Stream.generate(this::randomVector).limit(count).toList();
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSIONS];
+        double norm = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link HybridSearch}.
+ */
+class HybridSearchTest {
+
+    private static final int READY = DocumentStatus.READY.ordinal();
+
+    private final HybridSearch hybridSearch = new HybridSearch(new SearchIndexProperties.Vector());
+    private final OwnerPartition partition = new OwnerPartition(42L);
+
+    @Test
+    void fuse_shouldRankDocumentsFoundByBothListsAboveKeywordOnlyOnes() {
+        List<IndexedDocument> docs = List.of(
+                doc(1L, "java", "spring"),
+                doc(2L, "java"),
+                doc(3L, "kotlin")
+        );
+        partition.apply(docs, List.of());
+        hybridSearch.update(42L, docs, List.of());
+
+        List<ScoredDoc> keyword = List.of(
+                new ScoredDoc(1L, 1.0, READY),
+                new ScoredDoc(3L, 4.0, READY),
+                new ScoredDoc(2L, 5.0, READY)
+        );
+        Hits hits = hybridSearch.fuse(partition.view(), hybridSearch.graph(42L), List.of("java", "spring"),
+                DocFilter.NONE, keyword);
+
+        // 3 is only a keyword hit, 1 is third by keyword score but the nearest vector
+        assertThat(hits.top()).extracting(ScoredDoc::docId).containsExactly(2L, 1L, 3L);
+        assertThat(hits.top().get(0).score())
+                .isEqualTo(1.0 / (HybridSearch.RRF_K + 1) + 1.0 / (HybridSearch.RRF_K + 2));
+    }
+
+    @Test
+    void remove_shouldDropTheGraphOfTheOwner() {
+        hybridSearch.update(42L, List.of(doc(1L, "java")), List.of());
+
+        hybridSearch.remove(42L);
+
+        assertThat(hybridSearch.graph(42L)).isNull();
+    }
+
+    private static IndexedDocument doc(long id, String... terms) {
+        Map<String, TermStats> stats = new HashMap<>();
+        for (String term : terms) {
+            stats.put(term, new TermStats(0, 1));
+        }
+        return new IndexedDocument(id, 42L, DocumentStatus.READY, stats);
+    }
+}
@@ -1,21 +1,43 @@
 package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
 
 import com.github.stepanterkun.searchengine.document.domain.model.Document;
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentMetadata;
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentNotFoundException;
 import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
 import com.github.stepanterkun.searchengine.document.domain.port.DocumentRepository;
 import com.github.stepanterkun.searchengine.search.domain.model.DocumentSummary;
+import com.github.stepanterkun.searchengine.search.domain.model.IndexCapacityExceededException;
+import com.github.stepanterkun.searchengine.search.domain.model.InvalidSearchRequestException;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchFilter;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchHits;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchQuery;
+import com.github.stepanterkun.searchengine.search.domain.model.SearchSort;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.util.unit.DataSize;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -30,9 +52,13 @@ class InMemorySearchIndexTest {
     @Mock
     private DocumentRepository repository;
 
-    @InjectMocks
     private InMemorySearchIndex searchIndex;
 
+    @BeforeEach
+    void setUp() {
+        searchIndex = new InMemorySearchIndex(repository, new SearchIndexProperties());
+    }
+
     @Test
     void index_shouldIndexDocumentWithoutChangingStatus() {
         Document doc = new Document(
@@ -197,4 +223,944 @@ class InMemorySearchIndexTest {
         assertThat(result).isEmpty();
         verifyNoInteractions(repository);
     }
+
+    @Test
+    void buildIndexOnStartup_whenPersistenceEnabled_shouldRestoreFromSnapshotAndWal(@TempDir Path dir) {
+        SearchIndexProperties properties = new SearchIndexProperties();
+        properties.getPersistence().setEnabled(true);
+        properties.getPersistence().setDirectory(dir);
+
+        Long ownerId = 42L;
+        Document doc1 = new Document(1L, "Java", "Java search engine", ownerId, DocumentStatus.READY);
+        Document doc2 = new Document(2L, "Java 2", "Another java text", ownerId, DocumentStatus.READY);
+
+        // first run: empty database -> empty snapshot, then mutations go to WAL only
+        InMemorySearchIndex firstRun = new InMemorySearchIndex(repository, properties);
+        firstRun.buildIndexOnStartup();
+        firstRun.index(doc1);
+        firstRun.index(doc2);
+        firstRun.remove(doc2.getId());
+
+        // "crash": firstRun is never closed, so no final snapshot is written
+        InMemorySearchIndex secondRun = new InMemorySearchIndex(repository, properties);
+        secondRun.buildIndexOnStartup();
+
+        when(repository.findByIdAndOwnerId(1L, ownerId)).thenReturn(Optional.of(doc1));
+
+        Page<DocumentSummary> page = secondRun.search(ownerId, "java", PageRequest.of(0, 10));
+
+        assertThat(page.getContent())
+                .extracting(DocumentSummary::documentId)
+                .containsExactly(1L);
+
+        // database was read only once, on the very first start
+        verify(repository, times(1)).findOwnerIds();
+    }
+
+    @Test
+    void takeSnapshot_shouldPurgeDeletionLogOlderThanRetentionBeforeSnapshot(@TempDir Path dir) throws IOException {
+        SearchIndexProperties properties = new SearchIndexProperties();
+        properties.getPersistence().setEnabled(true);
+        properties.getPersistence().setDirectory(dir);
+        properties.getPersistence().setDeletionLogRetention(Duration.ofHours(1));
+
+        InMemorySearchIndex persistent = new InMemorySearchIndex(repository, properties);
+        Instant before = Instant.now();
+        persistent.buildIndexOnStartup();
+        persistent.takeSnapshot();
+        Instant after = Instant.now();
+
+        // once for the snapshot taken on startup, once for the explicit one
+        verify(repository, times(2)).purgeDeletionLogBefore(argThat(purgeBefore ->
+                !purgeBefore.isBefore(before.minus(Duration.ofHours(1)))
+                && !purgeBefore.isAfter(after.minus(Duration.ofHours(1)))));
+        persistent.close();
+    }
+
+    @Test
+    void buildIndexOnStartup_whenPersistenceWasTurnedOff_shouldNotRestoreStaleSnapshot(@TempDir Path dir)
+            throws IOException {
+        SearchIndexProperties enabled = new SearchIndexProperties();
+        enabled.getPersistence().setEnabled(true);
+        enabled.getPersistence().setDirectory(dir);
+        SearchIndexProperties disabled = new SearchIndexProperties();
+        disabled.getPersistence().setDirectory(dir);
+
+        InMemorySearchIndex firstRun = new InMemorySearchIndex(repository, enabled);
+        firstRun.buildIndexOnStartup();
+        firstRun.close();
+
+        // deletions of this run are not logged, so the snapshot of the first one must not be used
+        new InMemorySearchIndex(repository, disabled).buildIndexOnStartup();
+
+        InMemorySearchIndex thirdRun = new InMemorySearchIndex(repository, enabled);
+        thirdRun.buildIndexOnStartup();
+
+        verify(repository, times(3)).findOwnerIds();
+        thirdRun.close();
+    }
+
+    @Test
+    void index_whenWriteAheadLogFails_shouldNotMakeChangeSearchable(@TempDir Path dir) throws IOException {
+        SearchIndexProperties properties = new SearchIndexProperties();
+        properties.getPersistence().setEnabled(true);
+        properties.getPersistence().setDirectory(dir);
+        properties.setRefreshInterval(Duration.ofHours(1));
+
+        Long ownerId = 42L;
+        Document doc = new Document(1L, "Java", "Java search engine", ownerId, DocumentStatus.READY);
+
+        InMemorySearchIndex failing = new InMemorySearchIndex(repository, properties);
+        failing.buildIndexOnStartup();
+        // a closed log rejects every record
+        failing.close();
+
+        assertThatThrownBy(() -> failing.index(doc)).isInstanceOf(UncheckedIOException.class);
+        failing.refresh();
+
+        assertThat(failing.search(ownerId, "java", PageRequest.of(0, 10))).isEmpty();
+    }
+
+    @Test
+    void buildIndexOnStartup_whenSnapshotExists_shouldCatchUpOnlyChangesSinceHighWaterMark(@TempDir Path dir)
+            throws IOException {
+        SearchIndexProperties properties = new SearchIndexProperties();
+        properties.getPersistence().setEnabled(true);
+        properties.getPersistence().setDirectory(dir);
+
+        Long ownerId = 42L;
+        Document kept = new Document(1L, "Java", "Java search engine", ownerId, DocumentStatus.READY);
+        Document deleted = new Document(2L, "Java 2", "Obsolete java text", ownerId, DocumentStatus.READY);
+        Document added = new Document(3L, "Kotlin", "Kotlin and java text", ownerId, DocumentStatus.READY);
+
+        when(repository.findOwnerIds()).thenReturn(List.of(ownerId));
+        when(repository.findAllByOwnerId(ownerId)).thenReturn(List.of(kept, deleted));
+
+        InMemorySearchIndex firstRun = new InMemorySearchIndex(repository, properties);
+        firstRun.buildIndexOnStartup();
+        firstRun.close();
+
+        // changes made in the database while the node was down
+        when(repository.findIdsDeletedSince(any())).thenReturn(List.of(2L));
+        when(repository.findAllModifiedSince(any())).thenReturn(List.of(added));
+
+        InMemorySearchIndex secondRun = new InMemorySearchIndex(repository, properties);
+        secondRun.buildIndexOnStartup();
+
+        when(repository.findByIdAndOwnerId(1L, ownerId)).thenReturn(Optional.of(kept));
+        when(repository.findByIdAndOwnerId(3L, ownerId)).thenReturn(Optional.of(added));
+
+        Page<DocumentSummary> page = secondRun.search(ownerId, "search kotlin obsolete", PageRequest.of(0, 10));
+
+        assertThat(page.getContent())
+                .extracting(DocumentSummary::documentId)
+                .containsExactlyInAnyOrder(1L, 3L);
+
+        // full scan only on the first start
+        verify(repository, times(1)).findOwnerIds();
+        secondRun.close();
+    }
+
+    @Test
+    void search_whenRefreshIntervalIsSet_shouldSeeChangesOnlyAfterRefresh() throws IOException {
+        SearchIndexProperties properties = new SearchIndexProperties();
+        // long enough for the scheduled refresh not to kick in during the test
+        properties.setRefreshInterval(Duration.ofHours(1));
+
+        Long ownerId = 42L;
+        Document doc = new Document(1L, "Java", "Java search engine", ownerId, DocumentStatus.READY);
+
+        InMemorySearchIndex nrtIndex = new InMemorySearchIndex(repository, properties);
+        nrtIndex.index(doc);
+
+        assertThat(nrtIndex.search(ownerId, "search", PageRequest.of(0, 10))).isEmpty();
+
+        when(repository.findByIdAndOwnerId(1L, ownerId)).thenReturn(Optional.of(doc));
+        nrtIndex.refresh();
+
+        assertThat(nrtIndex.search(ownerId, "search", PageRequest.of(0, 10)).getContent())
+                .extracting(DocumentSummary::documentId)
+                .containsExactly(1L);
+
+        // removal is buffered as well
+        nrtIndex.remove(1L);
+        assertThat(nrtIndex.search(ownerId, "search", PageRequest.of(0, 10))).hasSize(1);
+
+        nrtIndex.refresh();
+        assertThat(nrtIndex.search(ownerId, "search", PageRequest.of(0, 10))).isEmpty();
+
+        nrtIndex.close();
+    }
+
+    @Test
+    void index_whenBufferIsFull_shouldRefreshWithoutWaitingForInterval() throws IOException {
+        SearchIndexProperties properties = new SearchIndexProperties();
+        properties.setRefreshInterval(Duration.ofHours(1));
+        properties.setRefreshMaxBufferedChanges(2);
+
+        Long ownerId = 42L;
+        Document doc1 = new Document(1L, "Java", "Java search engine", ownerId, DocumentStatus.READY);
+        Document doc2 = new Document(2L, "Kotlin", "Kotlin search engine", ownerId, DocumentStatus.READY);
+
+        InMemorySearchIndex nrtIndex = new InMemorySearchIndex(repository, properties);
+        nrtIndex.index(doc1);
+        nrtIndex.index(doc2);
+
+        when(repository.findByIdAndOwnerId(1L, ownerId)).thenReturn(Optional.of(doc1));
+        when(repository.findByIdAndOwnerId(2L, ownerId)).thenReturn(Optional.of(doc2));
+
+        assertThat(nrtIndex.search(ownerId, "java kotlin", PageRequest.of(0, 10)).getContent())
+                .extracting(DocumentSummary::documentId)
+                .containsExactlyInAnyOrder(1L, 2L);
+
+        nrtIndex.close();
+    }
+
+    @Test
+    void index_whenNothingChanged_shouldSkipReindexing() throws IOException {
+        SearchIndexProperties properties = new SearchIndexProperties();
+        properties.setRefreshInterval(Duration.ofHours(1));
+        properties.setRefreshMaxBufferedChanges(2);
+
+        Long ownerId = 42L;
+        Document doc1 = new Document(1L, "Java", "Java search engine", ownerId, DocumentStatus.READY);
+        Document doc2 = new Document(2L, "Kotlin", "Kotlin search engine", ownerId, DocumentStatus.READY);
+
+        InMemorySearchIndex nrtIndex = new InMemorySearchIndex(repository, properties);
+        nrtIndex.index(doc1);
+        nrtIndex.refresh();
+
+        // the same document again is not buffered, so the buffer does not fill up and doc2 stays invisible
+        nrtIndex.index(new Document(1L, "Java", "Java search engine", ownerId, DocumentStatus.READY));
+        nrtIndex.index(doc2);
+
+        lenient().when(repository.findByIdAndOwnerId(1L, ownerId)).thenReturn(Optional.of(doc1));
+        lenient().when(repository.findByIdAndOwnerId(2L, ownerId)).thenReturn(Optional.of(doc2));
+
+        assertThat(nrtIndex.search(ownerId, "java kotlin", PageRequest.of(0, 10)).getContent())
+                .extracting(DocumentSummary::documentId)
+                .containsExactly(1L);
+
+        // same text with another status is re-indexed, it fills the buffer
+        nrtIndex.index(new Document(1L, "Java", "Java search engine", ownerId, DocumentStatus.INDEXING));
+
+        SearchQuery query = new SearchQuery("java kotlin", List.of(SearchFilter.parse("status=indexing")), Set.of());
+        assertThat(nrtIndex.search(ownerId, query, PageRequest.of(0, 10)).page().getContent())
+                .extracting(DocumentSummary::documentId)
+                .containsExactly(1L);
+
+        nrtIndex.close();
+    }
+
+    @Test
+    void update_shouldIndexTheSameAsAFreshIndexOfTheNewVersion() {
+        Long ownerId = 42L;
+        Document previous = new Document(1L, "Spring guide", """
+                Spring boot starter
+                Spring data jpa repositories
+                Testing with junit""", ownerId, DocumentStatus.READY);
+        Document updated = new Document(1L, "Kotlin guide", """
+                Spring boot starter
+                Testing with junit and mockito
+                Kotlin coroutines""", ownerId, DocumentStatus.READY);
+        Document other = new Document(2L, "Other", "Spring and kotlin testing", ownerId, DocumentStatus.READY);
+
+        searchIndex.index(previous);
+        searchIndex.index(other);
+        searchIndex.update(previous, updated);
+
+        InMemorySearchIndex fresh = new InMemorySearchIndex(repository, new SearchIndexProperties());
+        fresh.index(updated);
+        fresh.index(other);
+
+        lenient().when(repository.findByIdAndOwnerId(1L, ownerId)).thenReturn(Optional.of(updated));
+        lenient().when(repository.findByIdAndOwnerId(2L, ownerId)).thenReturn(Optional.of(other));
+
+        for (String query : List.of("spring", "kotlin", "data jpa", "junit mockito", "guide testing")) {
+            assertThat(searchIndex.search(ownerId, query, PageRequest.of(0, 10)).getContent())
+                    .as(query)
+                    .extracting(DocumentSummary::documentId, DocumentSummary::relevanceScore)
+                    .containsExactlyElementsOf(fresh.search(ownerId, query, PageRequest.of(0, 10)).getContent()
+                                                    .stream()
+                                                    .map(hit -> tuple(hit.documentId(), hit.relevanceScore()))
+                                                    .toList());
+        }
+        assertThat(searchIndex.search(ownerId, "repositories", PageRequest.of(0, 10))).isEmpty();
+    }
+
+    @Test
+    void search_withStatusFacet_shouldCountAllMatchesNotOnlyThePage() {
+        Long ownerId = 42L;
+        Document ready1 = new Document(1L, "Java", "Java search engine", ownerId, DocumentStatus.READY);
+        Document ready2 = new Document(2L, "Java 2", "Search in java", ownerId, DocumentStatus.READY);
+        Document indexing = new Document(3L, "Java 3", "Java search in progress", ownerId, DocumentStatus.INDEXING);
+        Document other = new Document(4L, "Kotlin", "Nothing to see", ownerId, DocumentStatus.READY);
+
+        List.of(ready1, ready2, indexing, other).forEach(searchIndex::index);
+
+        when(repository.findByIdAndOwnerId(anyLong(), eq(ownerId)))
+                .thenAnswer(inv -> Optional.of(List.of(ready1, ready2, indexing).get(inv.<Long>getArgument(0).intValue() - 1)));
+
+        SearchHits hits = searchIndex.search(ownerId, new SearchQuery("search", List.of(), Set.of("status")),
+                PageRequest.of(0, 1));
+
+        assertThat(hits.page().getTotalElements()).isEqualTo(3);
+        assertThat(hits.page().getContent()).hasSize(1);
+        assertThat(hits.facets().get("status"))
+                .containsEntry("READY", 2L)
+                .containsEntry("INDEXING", 1L)
+                .containsEntry("FAILED", 0L);
+    }
+
+    @Test
+    void search_withUnknownFacet_shouldThrow() {
+        assertThatThrownBy(() -> searchIndex.search(42L, new SearchQuery("java", List.of(), Set.of("color")),
+                PageRequest.of(0, 10)))
+                .isInstanceOf(InvalidSearchRequestException.class)
+                .hasMessageContaining("color");
+    }
+
+    @Test
+    void search_withFilters_shouldKeepOnlyMatchingDocuments() {
+        Long ownerId = 42L;
+        Document spring = new Document(1L, "Java", "Java search engine", ownerId, DocumentStatus.READY);
+        spring.setMetadata(new DocumentMetadata(Set.of("Spring", "web"), "blog", "en",
+                Map.of("size", 1500.0), Map.of("published", Instant.parse("2024-03-01T10:00:00Z"))));
+        Document jakarta = new Document(2L, "Java 2", "Java search in jakarta", ownerId, DocumentStatus.READY);
+        jakarta.setMetadata(new DocumentMetadata(Set.of("jakarta"), "blog", "de",
+                Map.of("size", 500.0), Map.of("published", Instant.parse("2023-12-31T23:00:00Z"))));
+        Document plain = new Document(3L, "Java 3", "Java search without metadata", ownerId, DocumentStatus.INDEXING);
+
+        // keeps idf of "java" above zero
+        Document other = new Document(4L, "Kotlin", "Kotlin search engine", ownerId, DocumentStatus.READY);
+
+        List.of(spring, jakarta, plain, other).forEach(searchIndex::index);
+
+        lenient().when(repository.findByIdAndOwnerId(anyLong(), eq(ownerId)))
+                 .thenAnswer(inv -> Optional.of(List.of(spring, jakarta, plain).get(inv.<Long>getArgument(0).intValue() - 1)));
+
+        assertThat(filteredIds(ownerId, "tag=spring")).containsExactly(1L);
+        assertThat(filteredIds(ownerId, "tag!=spring")).containsExactlyInAnyOrder(2L, 3L);
+        assertThat(filteredIds(ownerId, "source=blog", "language=DE")).containsExactly(2L);
+        assertThat(filteredIds(ownerId, "size>1000")).containsExactly(1L);
+        assertThat(filteredIds(ownerId, "size!=500")).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(filteredIds(ownerId, "published>=2024-01-01")).containsExactly(1L);
+        assertThat(filteredIds(ownerId, "published<2024-01-01T00:00:00Z")).containsExactly(2L);
+        assertThat(filteredIds(ownerId, "status=indexing")).containsExactly(3L);
+        assertThat(filteredIds(ownerId, "tag=kotlin")).isEmpty();
+    }
+
+    @Test
+    void search_withUnsupportedFilter_shouldThrow() {
+        assertThatThrownBy(() -> filteredIds(42L, "tag>java"))
+                .isInstanceOf(InvalidSearchRequestException.class);
+        assertThatThrownBy(() -> filteredIds(42L, "size>big"))
+                .isInstanceOf(InvalidSearchRequestException.class);
+        assertThatThrownBy(() -> filteredIds(42L, "status=done"))
+                .isInstanceOf(InvalidSearchRequestException.class);
+    }
+
+    @Test
+    void search_sortedByRecent_shouldPageByUpdateTimeAndCountAllMatches() {
+        Long ownerId = 42L;
+        Instant now = Instant.now();
+        List<Document> docs = List.of(
+                updatedAt(new Document(1L, "Java", "Java search engine", ownerId, DocumentStatus.READY), now.minus(Duration.ofDays(3))),
+                updatedAt(new Document(2L, "Java 2", "Search in java", ownerId, DocumentStatus.READY), now.minus(Duration.ofDays(1))),
+                updatedAt(new Document(3L, "Java 3", "Java java java", ownerId, DocumentStatus.READY), now.minus(Duration.ofDays(10))),
+                updatedAt(new Document(4L, "Java 4", "More java", ownerId, DocumentStatus.INDEXING), now.minus(Duration.ofHours(1))),
+                new Document(5L, "Kotlin", "Kotlin search engine", ownerId, DocumentStatus.READY)
+        );
+        docs.forEach(searchIndex::index);
+
+        when(repository.findByIdAndOwnerId(anyLong(), eq(ownerId)))
+                .thenAnswer(inv -> Optional.of(docs.get(inv.<Long>getArgument(0).intValue() - 1)));
+
+        SearchQuery query = new SearchQuery("java", List.of(), Set.of("status"), SearchSort.RECENT);
+
+        SearchHits first = searchIndex.search(ownerId, query, PageRequest.of(0, 2));
+        SearchHits second = searchIndex.search(ownerId, query, PageRequest.of(1, 2));
+
+        assertThat(first.page().getContent()).extracting(DocumentSummary::documentId).containsExactly(4L, 2L);
+        assertThat(second.page().getContent()).extracting(DocumentSummary::documentId).containsExactly(1L, 3L);
+        assertThat(first.page().getTotalElements()).isEqualTo(4);
+        assertThat(first.page().getContent()).allSatisfy(hit -> assertThat(hit.relevanceScore()).isPositive());
+        assertThat(first.facets().get("status"))
+                .containsEntry("READY", 3L)
+                .containsEntry("INDEXING", 1L);
+
+        SearchQuery lastWeek = new SearchQuery("java", List.of(SearchFilter.parse("updated>=now-7d")), Set.of(),
+                SearchSort.RECENT);
+        assertThat(searchIndex.search(ownerId, lastWeek, PageRequest.of(0, 10)).page().getContent())
+                .extracting(DocumentSummary::documentId)
+                .containsExactly(4L, 2L, 1L);
+    }
+
+    @Test
+    void suggest_shouldCompleteLastWordAndFollowRemovals() {
+        Long ownerId = 42L;
+        searchIndex.index(new Document(1L, "Spring Boot", "Spring search engine", ownerId, DocumentStatus.READY));
+        searchIndex.index(new Document(2L, "Java", "Spark and spring", ownerId, DocumentStatus.READY));
+        searchIndex.index(new Document(3L, "Spatial", "Other owner", 7L, DocumentStatus.READY));
+
+        // spring: 3 (title of 1) + 1 (content of 1) + 1 (content of 2)
+        assertThat(searchIndex.suggest(ownerId, "Sp", 10)).containsExactly("spring", "spark");
+        assertThat(searchIndex.suggest(ownerId, "java sp", 1)).containsExactly("java spring");
+        assertThat(searchIndex.suggest(ownerId, "java ", 10)).isEmpty();
+        assertThat(searchIndex.suggest(99L, "sp", 10)).isEmpty();
+
+        searchIndex.remove(1L);
+        searchIndex.remove(2L);
+
+        assertThat(searchIndex.suggest(ownerId, "sp", 10)).isEmpty();
+        assertThat(searchIndex.suggest(7L, "sp", 10)).containsExactly("spatial");
+    }
+
+    @Test
+    void removeOwner_shouldDropOnlyThatOwnerAndAllowIndexingAgain() {
+        Long ownerId = 42L;
+        searchIndex.index(new Document(1L, "Java", "Java search engine", ownerId, DocumentStatus.READY));
+        searchIndex.index(new Document(2L, "Java 2", "Another java text", ownerId, DocumentStatus.READY));
+        searchIndex.index(new Document(3L, "Java", "Java of other owner", 7L, DocumentStatus.READY));
+
+        searchIndex.removeOwner(ownerId);
+
+        assertThat(searchIndex.search(ownerId, "java", PageRequest.of(0, 10)).getContent()).isEmpty();
+        assertThat(searchIndex.suggest(ownerId, "ja", 10)).isEmpty();
+
+        Document recreated = new Document(4L, "Java", "Java again", ownerId, DocumentStatus.READY);
+        searchIndex.index(recreated);
+        when(repository.findByIdAndOwnerId(4L, ownerId)).thenReturn(Optional.of(recreated));
+
+        assertThat(searchIndex.search(ownerId, "java", PageRequest.of(0, 10)).getContent())
+                .extracting(DocumentSummary::documentId)
+                .containsExactly(4L);
+        assertThat(searchIndex.suggest(7L, "ja", 10)).containsExactly("java");
+    }
+
+    @Test
+    void removeOwner_whenChangesAreBuffered_shouldDropThemToo() throws IOException {
+        SearchIndexProperties properties = new SearchIndexProperties();
+        properties.setRefreshInterval(Duration.ofHours(1));
+        InMemorySearchIndex index = new InMemorySearchIndex(repository, properties);
+
+        index.index(new Document(1L, "Java", "Java search engine", 42L, DocumentStatus.READY));
+        index.removeOwner(42L);
+        index.refresh();
+
+        assertThat(index.search(42L, "java", PageRequest.of(0, 10)).getContent()).isEmpty();
+        index.close();
+    }
+
+    @Test
+    void buildIndexOnStartup_shouldReplayOwnerRemovalFromWal(@TempDir Path dir) {
+        SearchIndexProperties properties = new SearchIndexProperties();
+        properties.getPersistence().setEnabled(true);
+        properties.getPersistence().setDirectory(dir);
+
+        Document removed = new Document(1L, "Java", "Java search engine", 42L, DocumentStatus.READY);
+        Document kept = new Document(2L, "Java", "Java of other owner", 7L, DocumentStatus.READY);
+
+        InMemorySearchIndex firstRun = new InMemorySearchIndex(repository, properties);
+        firstRun.buildIndexOnStartup();
+        firstRun.index(removed);
+        firstRun.index(kept);
+        firstRun.removeOwner(42L);
+
+        // no close(): the removal is only in the WAL
+        InMemorySearchIndex secondRun = new InMemorySearchIndex(repository, properties);
+        secondRun.buildIndexOnStartup();
+
+        when(repository.findByIdAndOwnerId(2L, 7L)).thenReturn(Optional.of(kept));
+
+        assertThat(secondRun.search(42L, "java", PageRequest.of(0, 10)).getContent()).isEmpty();
+        assertThat(secondRun.search(7L, "java", PageRequest.of(0, 10)).getContent())
+                .extracting(DocumentSummary::documentId)
+                .containsExactly(2L);
+    }
+
+    @Test
+    void compact_shouldReclaimDeletedDocumentsWithoutChangingResults() {
+        Long ownerId = 42L;
+        String[] words = {"alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel"};
+        String query = String.join(" ", words);
+        for (long id = 1; id <= 8; id++) {
+            Document doc = new Document(id, "Title", "Java " + words[(int) id - 1], ownerId, DocumentStatus.READY);
+            searchIndex.index(doc);
+            if (id != 3 && id != 6) {
+                when(repository.findByIdAndOwnerId(id, ownerId)).thenReturn(Optional.of(doc));
+            }
+        }
+        searchIndex.remove(3L);
+        searchIndex.remove(6L);
+
+        List<Long> before = searchIndex.search(ownerId, query, PageRequest.of(0, 10)).getContent()
+                                       .stream().map(DocumentSummary::documentId).toList();
+
+        assertThat(searchIndex.compact()).isPositive();
+        assertThat(searchIndex.reclaimedBytes()).isPositive();
+        assertThat(searchIndex.search(ownerId, query, PageRequest.of(0, 10)).getContent())
+                .extracting(DocumentSummary::documentId)
+                .containsExactlyElementsOf(before)
+                .hasSize(6);
+    }
+
+    @Test
+    void index_whenMemoryBudgetIsExhausted_shouldRejectNewDocumentsButAcceptRemovals() {
+        SearchIndexProperties properties = new SearchIndexProperties();
+        properties.getMemory().setBudget(DataSize.ofKilobytes(4));
+        InMemorySearchIndex index = new InMemorySearchIndex(repository, properties);
+
+        Long ownerId = 42L;
+        long id = 0;
+        try {
+            while (id < 1_000) {
+                index.index(new Document(++id, "Title " + id, "Some words about topic" + id, ownerId,
+                        DocumentStatus.READY));
+            }
+            fail("budget was never reached");
+        } catch (IndexCapacityExceededException e) {
+            assertThat(e.getMessage()).contains("budget=4096");
+        }
+
+        long rejected = id;
+        assertThat(rejected).isGreaterThan(1);
+        assertThat(index.search(ownerId, "topic" + rejected, PageRequest.of(0, 10)).getContent()).isEmpty();
+
+        // removals always go through and make room again once compacted
+        for (long removed = 1; removed < rejected; removed++) {
+            index.remove(removed);
+        }
+        index.compact();
+        index.index(new Document(rejected, "Title", "Some words", ownerId, DocumentStatus.READY));
+    }
+
+    @Test
+    void buildIndexOnStartup_whenTieringEnabled_shouldBuildOwnersOnlyOnFirstUse(@TempDir Path dir) {
+        SearchIndexProperties properties = new SearchIndexProperties();
+        properties.getTiering().setEnabled(true);
+        properties.getTiering().setDirectory(dir);
+
+        Document first = new Document(1L, "Java", "Java search engine", 42L, DocumentStatus.READY);
+        Document second = new Document(2L, "Java", "Java of other owner", 7L, DocumentStatus.READY);
+        when(repository.findOwnerIds()).thenReturn(List.of(42L, 7L));
+        when(repository.findAllByOwnerId(42L)).thenReturn(List.of(first));
+        when(repository.findAllByOwnerId(7L)).thenReturn(List.of(second));
+        when(repository.findByIdAndOwnerId(1L, 42L)).thenReturn(Optional.of(first));
+
+        InMemorySearchIndex index = new InMemorySearchIndex(repository, properties);
+        index.buildIndexOnStartup();
+
+        assertThat(index.coldOwnerCount()).isEqualTo(2);
+
+        assertThat(index.search(42L, "java", PageRequest.of(0, 10)).getContent())
+                .extracting(DocumentSummary::documentId)
+                .containsExactly(1L);
+        assertThat(index.coldOwnerCount()).isEqualTo(1);
+
+        // a write to a cold owner loads it first, so its other documents are kept
+        index.index(new Document(3L, "Kotlin", "Kotlin text", 7L, DocumentStatus.READY));
+        assertThat(index.coldOwnerCount()).isZero();
+        assertThat(index.suggest(7L, "ja", 10)).containsExactly("java");
+    }
+
+    @Test
+    void takeSnapshot_whenColdOwnersExceedMemoryBudget_shouldStreamThemAndRestoreOnRestart(@TempDir Path dir)
+            throws IOException {
+        SearchIndexProperties properties = new SearchIndexProperties();
+        properties.getPersistence().setEnabled(true);
+        properties.getPersistence().setDirectory(dir.resolve("persistence"));
+        properties.getTiering().setEnabled(true);
+        properties.getTiering().setDirectory(dir.resolve("cold"));
+        properties.getMemory().setBudget(DataSize.ofKilobytes(16));
+
+        List<Long> ownerIds = LongStream.rangeClosed(1, 20).boxed().toList();
+        when(repository.findOwnerIds()).thenReturn(ownerIds);
+        when(repository.findAllByOwnerId(anyLong())).thenAnswer(invocation -> {
+            long ownerId = invocation.getArgument(0);
+            return LongStream.rangeClosed(1, 20)
+                             .mapToObj(i -> new Document(ownerId * 100 + i, "Title " + i,
+                                     "Words about topic" + i + " of owner" + ownerId, ownerId, DocumentStatus.READY))
+                             .toList();
+        });
+
+        // startup loads every owner straight into the cold tier, then snapshots it
+        InMemorySearchIndex firstRun = new InMemorySearchIndex(repository, properties);
+        firstRun.buildIndexOnStartup();
+        assertThat(firstRun.coldOwnerCount()).isEqualTo(ownerIds.size());
+        assertThat(sizeOf(dir.resolve("cold"))).isGreaterThan(DataSize.ofKilobytes(16).toBytes());
+
+        // one owner resident with a change, the rest cold: close() snapshots both kinds
+        assertThat(firstRun.suggest(3L, "own", 10)).containsExactly("owner3");
+        firstRun.index(new Document(9_999L, "Kotlin", "Kotlin text", 3L, DocumentStatus.READY));
+        firstRun.close();
+
+        InMemorySearchIndex secondRun = new InMemorySearchIndex(repository, properties);
+        secondRun.buildIndexOnStartup();
+
+        // restored from the snapshot, again one owner at a time into the cold tier
+        verify(repository, times(1)).findOwnerIds();
+        assertThat(secondRun.coldOwnerCount()).isEqualTo(ownerIds.size());
+        assertThat(secondRun.suggest(3L, "kot", 10)).containsExactly("kotlin");
+        assertThat(secondRun.suggest(17L, "own", 10)).containsExactly("owner17");
+        secondRun.close();
+    }
+
+    private static long sizeOf(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    @Test
+    void index_whenTieredIndexNearsMemoryBudget_shouldEvictLeastRecentlyUsedOwners(@TempDir Path dir)
+            throws InterruptedException {
+        SearchIndexProperties properties = new SearchIndexProperties();
+        properties.getTiering().setEnabled(true);
+        properties.getTiering().setDirectory(dir);
+        properties.getMemory().setBudget(DataSize.ofKilobytes(64));
+        InMemorySearchIndex index = new InMemorySearchIndex(repository, properties);
+
+        long id = 0;
+        for (long owner = 1; owner <= 40 && index.coldOwnerCount() == 0; owner++) {
+            for (int i = 0; i < 10; i++) {
+                id++;
+                index.index(new Document(id, "Title " + id, "Words about topic" + id + " and owner" + owner, owner,
+                        DocumentStatus.READY));
+            }
+            index.suggest(owner, "wo", 1); // marks the owner as recently used
+            Thread.sleep(1);
+        }
+
+        // eviction runs in the background
+        for (int i = 0; i < 100 && index.coldOwnerCount() == 0; i++) {
+            Thread.sleep(20);
+        }
+        assertThat(index.coldOwnerCount()).isPositive();
+
+        // the first owner is the least recently used one, it is evicted and comes back on use
+        assertThat(index.suggest(1L, "own", 10)).containsExactly("owner1");
+    }
+
+    @Test
+    void search_whenDocumentIsLarge_shouldRankByBestPassageAndReturnIt() {
+        Long ownerId = 42L;
+        Pageable pageable = PageRequest.of(0, 10);
+
+        // "kafka" 7 times in 1000 words, never twice within one passage
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append(i % 150 == 75 ? "kafka. " : "filler" + i + " ");
+        }
+
+        Document large = new Document(1L, "Handbook", content.toString(), ownerId, DocumentStatus.READY);
+        Document focused = new Document(2L, "Brokers", "Kafka brokers and kafka topics", ownerId, DocumentStatus.READY);
+        Document other = new Document(3L, "Spring", "Spring boot", ownerId, DocumentStatus.READY);
+        List.of(large, focused, other).forEach(searchIndex::index);
+
+        when(repository.findByIdAndOwnerId(1L, ownerId)).thenReturn(Optional.of(large));
+        when(repository.findByIdAndOwnerId(2L, ownerId)).thenReturn(Optional.of(focused));
+
+        List<DocumentSummary> results = searchIndex.search(ownerId, "kafka", pageable).getContent();
+
+        // by whole-document term counts the large one would win 7 to 2
+        assertThat(results).extracting(DocumentSummary::documentId).containsExactly(2L, 1L);
+        assertThat(results.get(0).bestPassage()).isNull();
+
+        DocumentSummary summary = results.get(1);
+        assertThat(summary.bestPassage()).contains("kafka").hasSizeLessThan(2 * Passages.BLOCK_WORDS * 12);
+        assertThat(summary.wordSnippets()).singleElement()
+                .satisfies(snippet -> assertThat(snippet.snippets()).hasSize(1));
+    }
+
+    @Test
+    void search_whenShardedOrVectorized_shouldReturnSameResultsAsSequentialScalarScoring() {
+        Long ownerId = 42L;
+        SearchIndexProperties parallel = new SearchIndexProperties();
+        parallel.getParallel().setShards(4);
+        parallel.getParallel().setMinPostings(1);
+        SearchIndexProperties sequential = new SearchIndexProperties();
+        sequential.getParallel().setShards(1);
+        // falls back to the scalar loop unless built and run with the vector profile
+        SearchIndexProperties vectorized = new SearchIndexProperties();
+        vectorized.getParallel().setShards(1);
+        vectorized.setVectorizedScoring(true);
+
+        InMemorySearchIndex sharded = new InMemorySearchIndex(repository, parallel);
+        InMemorySearchIndex plain = new InMemorySearchIndex(repository, sequential);
+        InMemorySearchIndex simd = new InMemorySearchIndex(repository, vectorized);
+
+        List<Document> docs = LongStream.rangeClosed(1, 60)
+                .mapToObj(id -> new Document(id, "Doc " + id,
+                        (id % 3 == 0 ? "spring ".repeat((int) (id % 5) + 1) : "streams ") + "kafka",
+                        ownerId, DocumentStatus.READY))
+                .toList();
+        // one document per refresh -> several segments, shards cut across them
+        docs.forEach(sharded::index);
+        docs.forEach(plain::index);
+        docs.forEach(simd::index);
+
+        when(repository.findByIdAndOwnerId(anyLong(), eq(ownerId)))
+                .thenAnswer(inv -> Optional.of(docs.get(inv.<Long>getArgument(0).intValue() - 1)));
+
+        for (Pageable pageable : List.of(PageRequest.of(0, 10), PageRequest.of(2, 10))) {
+            Page<DocumentSummary> expected = plain.search(ownerId, "spring streams", pageable);
+
+            for (InMemorySearchIndex index : List.of(sharded, simd)) {
+                Page<DocumentSummary> actual = index.search(ownerId, "spring streams", pageable);
+
+                assertThat(actual.getTotalElements()).isEqualTo(expected.getTotalElements()).isEqualTo(60);
+                assertThat(actual.getContent()).extracting(DocumentSummary::documentId)
+                        .containsExactlyElementsOf(expected.getContent().stream().map(DocumentSummary::documentId).toList());
+                assertThat(actual.getContent()).extracting(DocumentSummary::relevanceScore)
+                        .containsExactlyElementsOf(expected.getContent().stream().map(DocumentSummary::relevanceScore).toList());
+            }
+        }
+    }
+
+    @Test
+    void search_whenImpactScoring_shouldStayCloseToExactRankingAndStopEarly() throws IOException {
+        Long ownerId = 42L;
+        SearchIndexProperties exactProperties = new SearchIndexProperties();
+        exactProperties.setRefreshInterval(Duration.ofHours(1));
+        exactProperties.getParallel().setShards(1);
+        SearchIndexProperties impactProperties = new SearchIndexProperties();
+        impactProperties.setRefreshInterval(Duration.ofHours(1));
+        impactProperties.getParallel().setShards(1);
+        impactProperties.getImpacts().setEnabled(true);
+        // slices cut through the segment -> impacts are summed by doc id, without early termination
+        SearchIndexProperties shardedProperties = new SearchIndexProperties();
+        shardedProperties.setRefreshInterval(Duration.ofHours(1));
+        shardedProperties.getParallel().setShards(4);
+        shardedProperties.getParallel().setMinPostings(1);
+        shardedProperties.getImpacts().setEnabled(true);
+
+        InMemorySearchIndex exact = new InMemorySearchIndex(repository, exactProperties);
+        InMemorySearchIndex impact = new InMemorySearchIndex(repository, impactProperties);
+        InMemorySearchIndex sharded = new InMemorySearchIndex(repository, shardedProperties);
+
+        List<Document> docs = skewedDocuments(ownerId, 5000);
+        for (InMemorySearchIndex index : List.of(exact, impact, sharded)) {
+            docs.forEach(index::index);
+            index.refresh();
+        }
+
+        when(repository.findByIdAndOwnerId(anyLong(), eq(ownerId)))
+                .thenAnswer(inv -> Optional.of(docs.get(inv.<Long>getArgument(0).intValue() - 1)));
+
+        // ranking quality loss: share of the exact top 10 the quantized scores also put in their top 10
+        List<String> queries = List.of("w1 w30", "w2 w17", "w3 w25", "w5 w60", "w8 w11", "w0 w99", "w4 w9 w44");
+        double overlap = 0;
+        for (String query : queries) {
+            Page<DocumentSummary> expected = exact.search(ownerId, query, PageRequest.of(0, 10));
+            Page<DocumentSummary> actual = impact.search(ownerId, query, PageRequest.of(0, 10));
+
+            assertThat(actual.getTotalElements()).isEqualTo(expected.getTotalElements());
+            List<Long> expectedIds = expected.getContent().stream().map(DocumentSummary::documentId).toList();
+            overlap += actual.getContent().stream().filter(hit -> expectedIds.contains(hit.documentId())).count() / 10.0;
+
+            // stopping early does not change the quantized ranking
+            Page<DocumentSummary> full = sharded.search(ownerId, query, PageRequest.of(0, 10));
+            assertThat(actual.getTotalElements()).isEqualTo(full.getTotalElements());
+            assertThat(actual.getContent()).extracting(DocumentSummary::documentId)
+                    .containsExactlyElementsOf(full.getContent().stream().map(DocumentSummary::documentId).toList());
+            assertThat(actual.getContent()).extracting(DocumentSummary::relevanceScore)
+                    .containsExactlyElementsOf(full.getContent().stream().map(DocumentSummary::relevanceScore).toList());
+        }
+        assertThat(overlap / queries.size()).isGreaterThanOrEqualTo(0.9);
+        assertThat(impact.earlyTerminatedSegments()).isPositive();
+        assertThat(sharded.earlyTerminatedSegments()).isZero();
+
+        exact.close();
+        impact.close();
+        sharded.close();
+    }
+
+    @Test
+    void search_whenTermIsFrequent_shouldFindSameTopHitsInChampionLists() throws IOException {
+        Long ownerId = 42L;
+        SearchIndexProperties championProperties = new SearchIndexProperties();
+        championProperties.setRefreshInterval(Duration.ofHours(1));
+        championProperties.getParallel().setShards(1);
+        championProperties.getImpacts().setEnabled(true);
+        championProperties.getImpacts().setChampionMinDocFreq(500);
+        championProperties.getImpacts().setChampionListSize(100);
+        // the default threshold is above the corpus size -> no champion lists
+        SearchIndexProperties fullProperties = new SearchIndexProperties();
+        fullProperties.setRefreshInterval(Duration.ofHours(1));
+        fullProperties.getParallel().setShards(1);
+        fullProperties.getImpacts().setEnabled(true);
+
+        InMemorySearchIndex champion = new InMemorySearchIndex(repository, championProperties);
+        InMemorySearchIndex full = new InMemorySearchIndex(repository, fullProperties);
+
+        List<Document> docs = skewedDocuments(ownerId, 5000);
+        for (InMemorySearchIndex index : List.of(champion, full)) {
+            docs.forEach(index::index);
+            index.refresh();
+        }
+
+        when(repository.findByIdAndOwnerId(anyLong(), eq(ownerId)))
+                .thenAnswer(inv -> Optional.of(docs.get(inv.<Long>getArgument(0).intValue() - 1)));
+
+        // frequent terms alone and together with a rare one, and more hits than a champion list holds
+        List<String> queries = List.of("w2", "w3", "w2 w4", "w2 w50", "w3 w120");
+        for (Pageable pageable : List.of(PageRequest.of(0, 10), PageRequest.of(1, 10), PageRequest.of(0, 150))) {
+            for (String query : queries) {
+                Page<DocumentSummary> expected = full.search(ownerId, query, pageable);
+                Page<DocumentSummary> actual = champion.search(ownerId, query, pageable);
+
+                assertThat(actual.getTotalElements()).isEqualTo(expected.getTotalElements());
+                assertThat(actual.getContent()).extracting(DocumentSummary::documentId)
+                        .containsExactlyElementsOf(expected.getContent().stream().map(DocumentSummary::documentId).toList());
+                assertThat(actual.getContent()).extracting(DocumentSummary::relevanceScore)
+                        .containsExactlyElementsOf(expected.getContent().stream().map(DocumentSummary::relevanceScore).toList());
+            }
+        }
+        assertThat(champion.championSegments()).isPositive();
+        assertThat(full.championSegments()).isZero();
+
+        champion.close();
+        full.close();
+    }
+
+    @Test
+    void similar_shouldRankByStoredTermVectorAndSkipSource() {
+        Long ownerId = 42L;
+        List<Document> docs = List.of(
+                new Document(1L, "Spring Boot", "Spring boot starter with spring data and jpa", ownerId, DocumentStatus.READY),
+                new Document(2L, "Spring Data", "Spring data jpa repositories", ownerId, DocumentStatus.READY),
+                new Document(3L, "Actuator", "Spring actuator endpoints", ownerId, DocumentStatus.READY),
+                new Document(4L, "Kotlin", "Coroutines and flows", ownerId, DocumentStatus.READY),
+                new Document(5L, "Go", "Goroutines and channels", ownerId, DocumentStatus.READY)
+        );
+        docs.forEach(searchIndex::index);
+
+        when(repository.findByIdAndOwnerId(anyLong(), eq(ownerId)))
+                .thenAnswer(inv -> Optional.of(docs.get(inv.<Long>getArgument(0).intValue() - 1)));
+
+        List<DocumentSummary> similar = searchIndex.similar(ownerId, 1L, 10);
+
+        assertThat(similar).extracting(DocumentSummary::documentId).containsExactly(2L, 3L);
+        assertThat(searchIndex.similar(ownerId, 1L, 1)).extracting(DocumentSummary::documentId).containsExactly(2L);
+        // only the result documents are loaded, the source comes from the index
+        verify(repository, never()).findByIdAndOwnerId(1L, ownerId);
+    }
+
+    @Test
+    void similar_whenDocumentIsNotIndexedForOwner_shouldThrow() {
+        searchIndex.index(new Document(1L, "Java", "Java search engine", 42L, DocumentStatus.READY));
+
+        assertThatThrownBy(() -> searchIndex.similar(7L, 1L, 10)).isInstanceOf(DocumentNotFoundException.class);
+        assertThatThrownBy(() -> searchIndex.similar(42L, 2L, 10)).isInstanceOf(DocumentNotFoundException.class);
+    }
+
+    @Test
+    void search_whenVectorsEnabled_shouldAlsoFindDocumentsWithoutExactTermMatch() {
+        SearchIndexProperties properties = new SearchIndexProperties();
+        properties.getVector().setEnabled(true);
+        searchIndex = new InMemorySearchIndex(repository, properties);
+
+        Long ownerId = 42L;
+        List<Document> docs = List.of(
+                new Document(1L, "Elasticsearch", "Elasticsearch shards and replicas", ownerId, DocumentStatus.READY),
+                new Document(2L, "Cooking", "Pasta with tomato sauce", ownerId, DocumentStatus.READY),
+                new Document(3L, "Search", "Elasticsearch search engine", ownerId, DocumentStatus.INDEXING)
+        );
+        docs.forEach(searchIndex::index);
+
+        lenient().when(repository.findByIdAndOwnerId(anyLong(), eq(ownerId)))
+                 .thenAnswer(inv -> Optional.of(docs.get(inv.<Long>getArgument(0).intValue() - 1)));
+
+        // misspelled: no keyword match, but most trigrams are shared
+        assertThat(searchIndex.search(ownerId, "elasticsaerch", PageRequest.of(0, 10)).getContent())
+                .extracting(DocumentSummary::documentId)
+                .containsExactlyInAnyOrder(1L, 3L);
+
+        // fused with keyword hits and still filtered
+        SearchQuery query = new SearchQuery("elasticsaerch", List.of(SearchFilter.parse("status=ready")), Set.of());
+        assertThat(searchIndex.search(ownerId, query, PageRequest.of(0, 10)).page().getContent())
+                .extracting(DocumentSummary::documentId)
+                .containsExactly(1L);
+
+        searchIndex.remove(1L);
+        assertThat(searchIndex.search(ownerId, "elasticsaerch", PageRequest.of(0, 10)).getContent())
+                .extracting(DocumentSummary::documentId)
+                .containsExactly(3L);
+    }
+
+    @Test
+    void search_withCollapse_shouldHideNearDuplicatesOfBetterHits() {
+        Long ownerId = 42L;
+        String text = "The quarterly report covers revenue growth in the search engine business, "
+                      + "new customers in europe, hiring plans for the platform team and the roadmap for next year";
+        List<Document> docs = List.of(
+                new Document(1L, "Report", text, ownerId, DocumentStatus.READY),
+                new Document(2L, "Copy of report", text + " draft", ownerId, DocumentStatus.READY),
+                new Document(3L, "Report v2", text.replace("next year", "the next two years"), ownerId, DocumentStatus.NEW),
+                new Document(4L, "Search engine", "Search engine internals and revenue of search ads", ownerId, DocumentStatus.READY),
+                new Document(5L, "Other", "Unrelated text about cooking", ownerId, DocumentStatus.READY)
+        );
+        docs.forEach(searchIndex::index);
+
+        lenient().when(repository.findByIdAndOwnerId(anyLong(), eq(ownerId)))
+                 .thenAnswer(inv -> Optional.of(docs.get(inv.<Long>getArgument(0).intValue() - 1)));
+
+        assertThat(searchIndex.duplicateClusters(ownerId)).containsExactly(List.of(1L, 2L, 3L));
+        assertThat(searchIndex.duplicateClusters(7L)).isEmpty();
+
+        SearchQuery all = new SearchQuery("search revenue", List.of(), Set.of("status"));
+        assertThat(searchIndex.search(ownerId, all, PageRequest.of(0, 10)).page().getTotalElements()).isEqualTo(4);
+
+        SearchQuery collapsed = new SearchQuery("search revenue", List.of(), Set.of("status"), SearchSort.RELEVANCE, true);
+        SearchHits hits = searchIndex.search(ownerId, collapsed, PageRequest.of(0, 10));
+        assertThat(hits.page().getContent()).extracting(DocumentSummary::documentId).hasSize(2).contains(4L);
+        assertThat(hits.page().getTotalElements()).isEqualTo(2);
+        assertThat(hits.facets().get("status")).containsEntry("READY", 2L);
+
+        // the best of the remaining copies takes over
+        searchIndex.remove(1L);
+        searchIndex.remove(2L);
+        assertThat(searchIndex.duplicateClusters(ownerId)).isEmpty();
+        assertThat(searchIndex.search(ownerId, collapsed, PageRequest.of(0, 10)).page().getContent())
+                .extracting(DocumentSummary::documentId)
+                .containsExactlyInAnyOrder(3L, 4L);
+    }
+
+    // 30 words each with zipf-like frequencies, so term and document frequencies are skewed
+    private static List<Document> skewedDocuments(Long ownerId, int count) {
+        Random random = new Random(7);
+        double[] cumulative = new double[200];
+        for (int rank = 0; rank < cumulative.length; rank++) {
+            cumulative[rank] = (rank == 0 ? 0 : cumulative[rank - 1]) + 1.0 / (rank + 1);
+        }
+
+        return LongStream.rangeClosed(1, count)
+                .mapToObj(id -> {
+                    StringBuilder content = new StringBuilder();
+                    for (int i = 0; i < 30; i++) {
+                        double r = random.nextDouble() * cumulative[cumulative.length - 1];
+                        int rank = 0;
+                        while (cumulative[rank] < r) rank++;
+                        content.append('w').append(rank).append(' ');
+                    }
+                    return new Document(id, "Doc " + id, content.toString(), ownerId, DocumentStatus.READY);
+                })
+                .toList();
+    }
+
+    private static Document updatedAt(Document document, Instant updatedAt) {
+        document.setCreatedAt(updatedAt);
+        document.setUpdatedAt(updatedAt);
+        return document;
+    }
+
+    private List<Long> filteredIds(Long ownerId, String... filters) {
+        SearchQuery query = new SearchQuery("java", Arrays.stream(filters).map(SearchFilter::parse).toList(), Set.of());
+
+        return searchIndex.search(ownerId, query, PageRequest.of(0, 10))
+                          .page()
+                          .map(DocumentSummary::documentId)
+                          .getContent();
+    }
 }
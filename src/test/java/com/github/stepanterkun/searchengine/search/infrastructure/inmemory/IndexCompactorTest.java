@@ -0,0 +1,76 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link IndexCompactor}.
+ */
+class IndexCompactorTest {
+
+    private final Map<Long, OwnerPartition> partitions = new ConcurrentHashMap<>();
+    private final IndexMemory memory = new IndexMemory(new SearchIndexProperties.Memory());
+    private final AtomicInteger runs = new AtomicInteger();
+    private final SearchIndexProperties.Compaction settings = new SearchIndexProperties.Compaction();
+    private IndexCompactor compactor;
+
+    @AfterEach
+    void tearDown() {
+        if (compactor != null) {
+            compactor.close();
+        }
+    }
+
+    @Test
+    void compact_shouldRewriteFragmentedPartitionsAndAccountForFreedMemory() {
+        OwnerPartition partition = partition(42L, 4);
+        partition.apply(List.of(), List.of(1L, 2L));
+        memory.add(partition.view().sizeInBytes());
+        long before = memory.resident();
+
+        compactor = compactor();
+        long reclaimed = compactor.compact();
+
+        assertThat(reclaimed).isPositive();
+        assertThat(compactor.reclaimedBytes()).isEqualTo(reclaimed);
+        assertThat(memory.resident()).isLessThan(before);
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void compact_whenNothingIsLeftToRewrite_shouldReclaimNothingButStillRunHousekeeping() {
+        partition(42L, 4);
+        compactor = compactor();
+        long reclaimed = compactor.compact();
+
+        assertThat(compactor.compact()).isZero();
+        assertThat(compactor.reclaimedBytes()).isEqualTo(reclaimed);
+        assertThat(runs).hasValue(2);
+    }
+
+    private IndexCompactor compactor() {
+        settings.setInterval(Duration.ZERO);
+        return new IndexCompactor(settings, partitions, new ReentrantLock(), memory, runs::incrementAndGet);
+    }
+
+    // one segment per document, so compaction has something to merge
+    private OwnerPartition partition(long ownerId, int documents) {
+        OwnerPartition partition = new OwnerPartition(ownerId);
+        for (int i = 1; i <= documents; i++) {
+            partition.apply(List.of(new IndexedDocument((long) i, ownerId, DocumentStatus.READY,
+                    Map.of("java", new TermStats(0, 1)))), List.of());
+        }
+        partitions.put(ownerId, partition);
+        return partition;
+    }
+}
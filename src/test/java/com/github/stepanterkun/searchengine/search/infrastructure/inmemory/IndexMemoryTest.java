@@ -0,0 +1,65 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
+import com.github.stepanterkun.searchengine.search.domain.model.IndexCapacityExceededException;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for {@link IndexMemory}.
+ */
+class IndexMemoryTest {
+
+    private final IndexedDocument doc = new IndexedDocument(1L, 42L, DocumentStatus.READY,
+            Map.of("java", new TermStats(0, 1)));
+
+    @Test
+    void admit_whenDocumentDoesNotFit_shouldThrow() {
+        IndexMemory memory = memory(doc.estimatedBytes() * 3);
+        memory.add(doc.estimatedBytes() * 2);
+
+        assertThatThrownBy(() -> memory.admit(doc, null, doc.estimatedBytes()))
+                .isInstanceOf(IndexCapacityExceededException.class);
+        assertThatCode(() -> memory.admit(doc, null, 0)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void admit_whenDocumentReplacesOneAsLarge_shouldAcceptItOnFullIndex() {
+        IndexMemory memory = memory(doc.estimatedBytes());
+        memory.add(doc.estimatedBytes() * 2);
+
+        assertThatCode(() -> memory.admit(doc, doc, 0)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void admit_withoutBudget_shouldAcceptEverything() {
+        IndexMemory memory = memory(0);
+        memory.add(Long.MAX_VALUE / 2);
+
+        assertThatCode(() -> memory.admit(doc, null, 0)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void add_shouldTrackResidentBytesUntilCleared() {
+        IndexMemory memory = memory(0);
+
+        memory.add(300);
+        memory.add(-100);
+        assertThat(memory.resident()).isEqualTo(200);
+
+        memory.clear();
+        assertThat(memory.resident()).isZero();
+    }
+
+    private static IndexMemory memory(long budget) {
+        SearchIndexProperties.Memory settings = new SearchIndexProperties.Memory();
+        settings.setBudget(DataSize.ofBytes(budget));
+        return new IndexMemory(settings);
+    }
+}
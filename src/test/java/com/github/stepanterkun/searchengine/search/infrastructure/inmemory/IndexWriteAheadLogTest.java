@@ -0,0 +1,257 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for {@link IndexWriteAheadLog}.
+ */
+class IndexWriteAheadLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void append_fromManyThreads_shouldMakeAllRecordsDurableAndReplayable() throws Exception {
+        IndexWriteAheadLog wal = new IndexWriteAheadLog(dir);
+        wal.start();
+
+        ExecutorService writers = Executors.newFixedThreadPool(8);
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (long id = 1; id <= 200; id++) {
+            long docId = id;
+            pending.add(CompletableFuture.supplyAsync(() -> wal.appendIndex(doc(docId)), writers)
+                                .thenCompose(durable -> durable));
+        }
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+        writers.shutdown();
+        wal.close();
+
+        List<Long> replayed = new ArrayList<>();
+        new IndexWriteAheadLog(dir).replay(0, doc -> replayed.add(doc.id()), replayed::add, owner -> { });
+
+        assertThat(replayed)
+                .hasSize(200)
+                .containsExactlyInAnyOrderElementsOf(IntStream.rangeClosed(1, 200).mapToObj(Long::valueOf).toList());
+    }
+
+    @Test
+    void replay_shouldSkipRecordsCoveredBySnapshotAndIgnoreTornTail() throws Exception {
+        IndexWriteAheadLog wal = new IndexWriteAheadLog(dir);
+        wal.start();
+        IndexWriteAheadLog.awaitDurable(wal.appendIndex(doc(1L)));
+        IndexWriteAheadLog.awaitDurable(wal.appendIndex(doc(2L)));
+        IndexWriteAheadLog.awaitDurable(wal.appendRemove(1L));
+        wal.close();
+
+        // simulate a crash in the middle of the next write
+        Files.write(singleSegment(), new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+        List<Long> indexed = new ArrayList<>();
+        List<Long> removed = new ArrayList<>();
+        IndexWriteAheadLog restored = new IndexWriteAheadLog(dir);
+        restored.replay(1, doc -> indexed.add(doc.id()), removed::add, owner -> { });
+
+        assertThat(indexed).containsExactly(2L);
+        assertThat(removed).containsExactly(1L);
+        assertThat(restored.lastLsn()).isEqualTo(3);
+    }
+
+    @Test
+    void append_afterFailedFlush_shouldKeepLaterRecordsReplayable() throws Exception {
+        List<FailingChannel> channels = new ArrayList<>();
+        IndexWriteAheadLog wal = new IndexWriteAheadLog(dir, segment -> {
+            FailingChannel channel = new FailingChannel(FileChannel.open(segment, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), false);
+            channels.add(channel);
+            return channel;
+        });
+        wal.start();
+        IndexWriteAheadLog.awaitDurable(wal.appendIndex(doc(1L)));
+
+        // half of the record reaches the file, then the disk fails
+        channels.get(0).failNextWrite = true;
+        assertThatThrownBy(() -> IndexWriteAheadLog.awaitDurable(wal.appendIndex(doc(2L))))
+                .isInstanceOf(UncheckedIOException.class);
+
+        IndexWriteAheadLog.awaitDurable(wal.appendIndex(doc(3L)));
+        wal.close();
+
+        assertThat(channels).hasSize(1);
+        assertThat(replayedIds()).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void append_whenFailedBatchCannotBeCut_shouldContinueInNewSegment() throws Exception {
+        List<FailingChannel> channels = new ArrayList<>();
+        IndexWriteAheadLog wal = new IndexWriteAheadLog(dir, segment -> {
+            FailingChannel channel = new FailingChannel(FileChannel.open(segment, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), channels.isEmpty());
+            channels.add(channel);
+            return channel;
+        });
+        wal.start();
+        IndexWriteAheadLog.awaitDurable(wal.appendIndex(doc(1L)));
+
+        channels.get(0).failNextWrite = true;
+        assertThatThrownBy(() -> IndexWriteAheadLog.awaitDurable(wal.appendIndex(doc(2L))))
+                .isInstanceOf(UncheckedIOException.class);
+
+        IndexWriteAheadLog.awaitDurable(wal.appendIndex(doc(3L)));
+        wal.close();
+
+        // the torn record stays at the end of the first segment, the next one starts after it
+        assertThat(channels).hasSize(2);
+        assertThat(replayedIds()).containsExactly(1L, 3L);
+    }
+
+    private List<Long> replayedIds() throws IOException {
+        List<Long> replayed = new ArrayList<>();
+        new IndexWriteAheadLog(dir).replay(0, doc -> replayed.add(doc.id()), replayed::add, owner -> { });
+        return replayed;
+    }
+
+    private Path singleSegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.findFirst().orElseThrow();
+        }
+    }
+
+    private static IndexedDocument doc(long id) {
+        return new IndexedDocument(id, 42L, DocumentStatus.READY, Map.of("java", new TermStats(1, 2)));
+    }
+
+    /**
+     * Segment file that can fail a write after writing part of it, and refuse to truncate.
+     */
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel file;
+        private final boolean failTruncate;
+        private volatile boolean failNextWrite;
+
+        private FailingChannel(FileChannel file, boolean failTruncate) {
+            this.file = file;
+            this.failTruncate = failTruncate;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            if (failNextWrite) {
+                failNextWrite = false;
+                ByteBuffer first = srcs[offset];
+                file.write(first.slice().limit(first.remaining() / 2));
+                throw new IOException("Disk failure");
+            }
+            return file.write(srcs, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return file.write(src);
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            if (failTruncate) {
+                throw new IOException("Cannot truncate");
+            }
+            file.truncate(size);
+            return this;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return file.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return file.read(dsts, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return file.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            file.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return file.size();
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            file.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return file.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return file.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return file.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return file.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return file.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return file.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return file.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Unit tests for {@link MoreLikeThis}.
+ */
+class MoreLikeThisTest {
+
+    private final OwnerPartition partition = new OwnerPartition(42L);
+
+    @Test
+    void terms_shouldBoostSharedTermsRelativeToTheStrongestOne() {
+        IndexedDocument source = doc(1L, Map.of(
+                "java", new TermStats(0, 3),
+                "spring", new TermStats(0, 1),
+                "tag:java", new TermStats(0, 0),
+                "unique", new TermStats(0, 5)
+        ));
+        partition.apply(List.of(
+                source,
+                doc(2L, Map.of("java", new TermStats(0, 1), "kotlin", new TermStats(0, 1))),
+                doc(3L, Map.of("spring", new TermStats(0, 1), "kotlin", new TermStats(0, 1))),
+                doc(4L, Map.of("scala", new TermStats(0, 1)))
+        ), List.of());
+
+        Map<String, Double> terms = MoreLikeThis.terms(partition.view(), source);
+
+        // "unique" matches no other document, keyword terms have no frequencies
+        assertThat(terms).containsExactly(entry("java", 1.0), entry("spring", 1.0 / 3));
+    }
+
+    @Test
+    void terms_shouldKeepAtMostMaxTerms() {
+        Map<String, TermStats> shared = new HashMap<>();
+        for (int i = 0; i < MoreLikeThis.MAX_TERMS + 10; i++) {
+            shared.put("term" + i, new TermStats(0, 1 + i));
+        }
+        IndexedDocument source = doc(1L, shared);
+        partition.apply(List.of(source, doc(2L, shared), doc(3L, Map.of("other", new TermStats(0, 1)))), List.of());
+
+        Map<String, Double> terms = MoreLikeThis.terms(partition.view(), source);
+
+        assertThat(terms).hasSize(MoreLikeThis.MAX_TERMS);
+        // the most frequent terms of the source
+        assertThat(terms.keySet()).first().isEqualTo("term" + (MoreLikeThis.MAX_TERMS + 9));
+    }
+
+    private static IndexedDocument doc(long id, Map<String, TermStats> terms) {
+        return new IndexedDocument(id, 42L, DocumentStatus.READY, terms);
+    }
+}
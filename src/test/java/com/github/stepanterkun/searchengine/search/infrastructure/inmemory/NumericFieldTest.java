@@ -0,0 +1,45 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link NumericField}.
+ */
+class NumericFieldTest {
+
+    // local id -> value, doc 2 has no value
+    private final NumericField field = NumericField.of(new double[]{30.0, 10.0, Double.NaN, 20.0, 10.0});
+
+    @Test
+    void get_shouldReturnDocValue() {
+        assertThat(field.get(0)).isEqualTo(30.0);
+        assertThat(field.get(2)).isNaN();
+    }
+
+    @Test
+    void collectRange_shouldRespectBoundsAndSkipMissingValues() {
+        assertThat(range(10.0, true, 20.0, true)).containsExactly(1, 3, 4);
+        assertThat(range(10.0, false, 20.0, true)).containsExactly(3);
+        assertThat(range(10.0, true, 20.0, false)).containsExactly(1, 4);
+        assertThat(range(Double.NEGATIVE_INFINITY, true, Double.POSITIVE_INFINITY, true)).containsExactly(0, 1, 3, 4);
+        assertThat(range(20.0, true, 20.0, true)).containsExactly(3);
+        assertThat(range(21.0, true, 29.0, true)).isEmpty();
+        assertThat(range(40.0, true, Double.POSITIVE_INFINITY, true)).isEmpty();
+    }
+
+    private List<Integer> range(double lower, boolean lowerInclusive, double upper, boolean upperInclusive) {
+        DocBitSet docs = new DocBitSet(5);
+        field.collectRange(lower, lowerInclusive, upper, upperInclusive, docs);
+
+        List<Integer> result = new ArrayList<>();
+        for (int doc = docs.nextSetBit(0); doc >= 0; doc = docs.nextSetBit(doc + 1)) {
+            result.add(doc);
+        }
+        return result;
+    }
+}
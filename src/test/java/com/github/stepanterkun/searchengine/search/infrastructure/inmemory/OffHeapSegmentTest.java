@@ -0,0 +1,103 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link OffHeapSegment} and {@link PostingsArena}.
+ */
+class OffHeapSegmentTest {
+
+    private final PostingsArena arena = new PostingsArena(16L * 1024 * 1024);
+
+    @Test
+    void build_shouldMatchHeapSegment() {
+        List<IndexedDocument> docs = List.of(
+                doc(3L, Map.of("java", new TermStats(1, 2), "zürich", new TermStats(0, 1))),
+                doc(1L, Map.of("java", new TermStats(0, 5), "kotlin", new TermStats(2, 0))),
+                doc(2L, Map.of("ünicode", new TermStats(0, 3)))
+        );
+
+        Segment heap = Segment.build(docs);
+        Segment offHeap = OffHeapSegment.build(docs, arena);
+
+        assertThat(offHeap).isNotNull();
+        assertThat(offHeap.size()).isEqualTo(heap.size());
+
+        for (String term : List.of("java", "kotlin", "zürich", "ünicode")) {
+            Postings expected = heap.postings(term);
+            Postings actual = offHeap.postings(term);
+
+            assertThat(actual.size()).as(term).isEqualTo(expected.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(actual.doc(i)).isEqualTo(expected.doc(i));
+                assertThat(actual.tf(i, 3.0)).isEqualTo(expected.tf(i, 3.0));
+            }
+        }
+        assertThat(offHeap.postings("scala")).isNull();
+        assertThat(offHeap.postings("")).isNull();
+
+        for (int localId = 0; localId < heap.size(); localId++) {
+            assertThat(offHeap.docId(localId)).isEqualTo(heap.docId(localId));
+            assertThat(offHeap.document(localId)).isEqualTo(heap.document(localId));
+        }
+    }
+
+    @Test
+    void release_shouldReturnSlabForReuse() {
+        List<IndexedDocument> docs = List.of(doc(1L, Map.of("java", new TermStats(1, 1))));
+
+        Segment first = OffHeapSegment.build(docs, arena);
+        long reserved = arena.reservedBytes();
+        assertThat(arena.usedBytes()).isPositive();
+
+        first.release();
+        assertThat(arena.usedBytes()).isZero();
+
+        Segment second = OffHeapSegment.build(docs, arena);
+
+        assertThat(arena.reservedBytes()).isEqualTo(reserved);
+        assertThat(second.postings("java").size()).isEqualTo(1);
+    }
+
+    @Test
+    void build_whenArenaIsFull_shouldReturnNull() {
+        PostingsArena tiny = new PostingsArena(64 * 1024);
+        List<IndexedDocument> docs = List.of(doc(1L, Map.of("java", new TermStats(1, 1))));
+
+        assertThat(OffHeapSegment.build(docs, tiny)).isNotNull();
+        assertThat(OffHeapSegment.build(docs, tiny)).isNull();
+    }
+
+    @Test
+    void ownerPartition_shouldFreeSegmentsDroppedFromAllViews() {
+        OwnerPartition partition = new OwnerPartition(42L, docs -> OffHeapSegment.build(docs, arena));
+
+        for (long id = 1; id <= 100; id++) {
+            partition.apply(List.of(doc(id, Map.of("java", new TermStats(0, 1)))), List.of());
+        }
+
+        PartitionView reader = partition.acquire();
+        long usedWhileReading = arena.usedBytes();
+
+        partition.apply(List.of(), List.of(1L, 2L, 3L));
+
+        // the reader still sees all documents, so nothing it uses may be freed
+        assertThat(reader.docFreq("java")).isEqualTo(100);
+        assertThat(arena.usedBytes()).isGreaterThanOrEqualTo(usedWhileReading);
+
+        reader.release();
+        partition.close();
+
+        assertThat(arena.usedBytes()).isZero();
+    }
+
+    private static IndexedDocument doc(long id, Map<String, TermStats> terms) {
+        return new IndexedDocument(id, 42L, DocumentStatus.READY, terms);
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link OwnerPartition}.
+ */
+class OwnerPartitionTest {
+
+    private final OwnerPartition partition = new OwnerPartition(42L);
+
+    @Test
+    void apply_whenDocumentReindexed_shouldKeepOnlyNewVersion() {
+        partition.apply(List.of(doc(1L, "java")), List.of());
+        partition.apply(List.of(doc(1L, "kotlin")), List.of());
+
+        PartitionView view = partition.view();
+
+        assertThat(view.docCount()).isEqualTo(1);
+        assertThat(view.docFreq("java")).isZero();
+        assertThat(view.docFreq("kotlin")).isEqualTo(1);
+    }
+
+    @Test
+    void apply_shouldNotChangePublishedView() {
+        partition.apply(List.of(doc(1L, "java"), doc(2L, "java")), List.of());
+        PartitionView before = partition.view();
+
+        partition.apply(List.of(), List.of(1L));
+
+        assertThat(before.docCount()).isEqualTo(2);
+        assertThat(before.docFreq("java")).isEqualTo(2);
+        assertThat(partition.view().docCount()).isEqualTo(1);
+        assertThat(partition.view().version()).isGreaterThan(before.version());
+    }
+
+    @Test
+    void apply_manySingleDocumentWrites_shouldMergeSegments() {
+        for (long id = 1; id <= 1_000; id++) {
+            partition.apply(List.of(doc(id, "java")), List.of());
+        }
+
+        PartitionView view = partition.view();
+
+        assertThat(view.docCount()).isEqualTo(1_000);
+        assertThat(view.docFreq("java")).isEqualTo(1_000);
+        // at most MERGE_FACTOR - 1 segments per size level
+        assertThat(view.segments()).hasSizeLessThan(OwnerPartition.MERGE_FACTOR * 4);
+    }
+
+    @Test
+    void compact_shouldRewriteFragmentedSegmentsAndDropTermsOfDeletedDocuments() {
+        partition.apply(List.of(doc(1L, "java"), doc(2L, "java"), doc(3L, "kotlin"), doc(4L, "scala")), List.of());
+        partition.apply(List.of(doc(5L, "java")), List.of());
+        // 1 of 4 deleted: below the write-time threshold, so the segment stays as it is
+        partition.apply(List.of(), List.of(4L));
+        assertThat(partition.view().segments()).hasSize(2);
+
+        OwnerPartition.Compaction compaction = partition.compact(0.2, Integer.MAX_VALUE);
+
+        PartitionView view = partition.view();
+        assertThat(compaction.segments()).isEqualTo(2);
+        assertThat(compaction.documents()).isEqualTo(4);
+        assertThat(compaction.reclaimedBytes()).isPositive();
+        assertThat(view.segments()).hasSize(1);
+        assertThat(view.segments().get(0).segment().postings("scala")).isNull();
+        assertThat(view.docCount()).isEqualTo(4);
+        assertThat(view.docFreq("java")).isEqualTo(3);
+
+        // nothing left to do
+        assertThat(partition.compact(0.2, Integer.MAX_VALUE)).isEqualTo(OwnerPartition.Compaction.NONE);
+    }
+
+    @Test
+    void compact_shouldStopChoosingSegmentsOnceTheDocumentBudgetIsUsed() {
+        // two level-1 segments: 5 of 20 deleted in the first, 8 of 20 in the second
+        partition.apply(LongStream.rangeClosed(1, 20).mapToObj(id -> doc(id, "java")).toList(), List.of());
+        partition.apply(LongStream.rangeClosed(21, 40).mapToObj(id -> doc(id, "java")).toList(), List.of());
+        partition.apply(List.of(), LongStream.rangeClosed(1, 5).boxed().toList());
+        partition.apply(List.of(), LongStream.rangeClosed(21, 28).boxed().toList());
+        assertThat(partition.view().segments()).hasSize(2);
+
+        // the more fragmented one (12 live) fits, the other (15 live) would overshoot
+        OwnerPartition.Compaction compaction = partition.compact(0.2, 15);
+
+        assertThat(compaction.segments()).isEqualTo(1);
+        assertThat(compaction.documents()).isEqualTo(12);
+        assertThat(partition.view().docCount()).isEqualTo(27);
+
+        // the rest waits for the next run
+        assertThat(partition.compact(0.2, 15).documents()).isEqualTo(15);
+        assertThat(partition.compact(0.2, 15)).isEqualTo(OwnerPartition.Compaction.NONE);
+    }
+
+    @Test
+    void view_whileDocumentsAreReindexed_shouldAlwaysBeConsistent() throws InterruptedException {
+        partition.apply(List.of(doc(1L, "java"), doc(2L, "kotlin")), List.of());
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> inconsistency = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                PartitionView view = partition.view();
+                int total = view.docFreq("java") + view.docFreq("kotlin");
+                if (view.docCount() != 2 || total != 2) {
+                    inconsistency.set("docCount=" + view.docCount() + ", df sum=" + total);
+                }
+            }
+        });
+        reader.start();
+
+        for (int i = 0; i < 5_000; i++) {
+            // doc 1 switches between terms, a reader must never see it in both or neither
+            partition.apply(List.of(doc(1L, i % 2 == 0 ? "kotlin" : "java")), List.of());
+        }
+
+        running.set(false);
+        reader.join();
+
+        assertThat(inconsistency.get()).isNull();
+    }
+
+    private static IndexedDocument doc(long id, String term) {
+        return new IndexedDocument(id, 42L, DocumentStatus.READY, Map.of(term, new TermStats(0, 1)));
+    }
+}
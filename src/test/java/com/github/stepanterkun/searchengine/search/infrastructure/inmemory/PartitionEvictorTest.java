@@ -0,0 +1,84 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link PartitionEvictor}.
+ */
+class PartitionEvictorTest {
+
+    private final Map<Long, OwnerPartition> partitions = new ConcurrentHashMap<>();
+    private final List<Long> dropped = new ArrayList<>();
+
+    @Test
+    void evictIfNeeded_shouldEvictLeastRecentlyUsedPartitionsUntilBelowTarget(@TempDir Path dir) throws Exception {
+        OwnerPartition first = partition(1L);
+        OwnerPartition second = partition(2L);
+        partition(3L);
+        long partitionBytes = first.view().sizeInBytes();
+
+        second.touch();
+        first.touch();
+
+        // default ratios: evict above 2.5 partitions, down to below 1.875
+        IndexMemory memory = memory(partitionBytes * 25 / 8);
+        memory.add(partitionBytes * 3);
+        ColdTier coldTier = new ColdTier(dir);
+
+        evictor(coldTier, memory).evictIfNeeded();
+
+        // third was used least recently, then second
+        assertThat(dropped).containsExactly(3L, 2L);
+        assertThat(coldTier.contains(3L)).isTrue();
+        assertThat(coldTier.contains(2L)).isTrue();
+        assertThat(coldTier.contains(1L)).isFalse();
+        assertThat(coldTier.load(3L)).extracting(IndexedDocument::id).containsExactly(3L);
+    }
+
+    @Test
+    void evictIfNeeded_withoutBudget_shouldNeverEvict(@TempDir Path dir) {
+        partition(1L);
+        IndexMemory memory = memory(0);
+        memory.add(Long.MAX_VALUE / 2);
+
+        evictor(new ColdTier(dir), memory).evictIfNeeded();
+
+        assertThat(dropped).isEmpty();
+    }
+
+    private PartitionEvictor evictor(ColdTier coldTier, IndexMemory memory) {
+        // runs evictions on the calling thread
+        return new PartitionEvictor(coldTier, new SearchIndexProperties.Tiering(), memory, partitions,
+                new ReentrantLock(), Runnable::run, ownerId -> {
+                    dropped.add(ownerId);
+                    memory.add(-partitions.remove(ownerId).view().sizeInBytes());
+                });
+    }
+
+    private static IndexMemory memory(long budget) {
+        SearchIndexProperties.Memory settings = new SearchIndexProperties.Memory();
+        settings.setBudget(DataSize.ofBytes(budget));
+        return new IndexMemory(settings);
+    }
+
+    private OwnerPartition partition(long ownerId) {
+        OwnerPartition partition = new OwnerPartition(ownerId);
+        partition.apply(List.of(new IndexedDocument(ownerId, ownerId, DocumentStatus.READY,
+                Map.of("java", new TermStats(0, 1)))), List.of());
+        partition.touch();
+        partitions.put(ownerId, partition);
+        return partition;
+    }
+}
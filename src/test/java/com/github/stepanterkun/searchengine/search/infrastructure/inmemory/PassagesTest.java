@@ -0,0 +1,46 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link Passages}.
+ */
+class PassagesTest {
+
+    @Test
+    void of_whenContentFitsIntoOnePassage_shouldReturnNone() {
+        assertThat(Passages.of(words(0, 2 * Passages.BLOCK_WORDS))).isSameAs(Passages.NONE);
+        assertThat(Passages.NONE.best(Map.of("w1", 1.0))).isNull();
+    }
+
+    @Test
+    void best_shouldReturnOverlappingPassageWithMostWeightedOccurrences() {
+        // blocks: [w0..w63] [w64..w127 kafka] [kafka w128..] [w..] -> passage 1 covers both occurrences
+        int block = Passages.BLOCK_WORDS;
+        String content = words(0, 2 * block - 1) + " Kafka, kafka " + words(2 * block, 4 * block - 1);
+        Passages passages = Passages.of(content);
+
+        assertThat(passages.blockCount()).isEqualTo(4);
+
+        Passages.Span best = passages.best(Map.of("kafka", 2.0));
+        assertThat(best.score()).isEqualTo(4.0);
+        assertThat(best.start()).isEqualTo(content.indexOf("w" + block + " "));
+        assertThat(content.substring(best.start(), best.end())).contains("Kafka, kafka").endsWith(" ");
+
+        // no occurrences -> the first passage
+        assertThat(passages.best(Map.of("spring", 1.0)).start()).isZero();
+    }
+
+    // "w<from> w<from+1> ... w<to-1>"
+    private static String words(int from, int to) {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            text.append('w').append(i).append(' ');
+        }
+        return text.toString().trim();
+    }
+}
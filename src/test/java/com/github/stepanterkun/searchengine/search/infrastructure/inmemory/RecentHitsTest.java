@@ -0,0 +1,52 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import com.github.stepanterkun.searchengine.document.domain.model.DocumentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link RecentHits}.
+ */
+class RecentHitsTest {
+
+    private final OwnerPartition partition = new OwnerPartition(42L);
+
+    @Test
+    void collect_shouldKeepMostRecentlyUpdatedMatchesAndCountAll() {
+        partition.apply(List.of(
+                doc(1L, "java", 100.0),
+                doc(2L, "java", 300.0),
+                doc(3L, "java", 200.0),
+                doc(4L, "kotlin", 400.0),
+                doc(5L, "java", null)
+        ), List.of());
+
+        Hits hits = RecentHits.collect(partition.view(), Map.of("java", 1.0), DocFilter.NONE, 2);
+
+        assertThat(hits.top()).extracting(ScoredDoc::docId).containsExactly(2L, 3L);
+        assertThat(hits.top()).allSatisfy(hit -> assertThat(hit.score()).isPositive());
+        assertThat(hits.total()).isEqualTo(4);
+    }
+
+    @Test
+    void collect_shouldPutDocumentsWithoutTimestampLast() {
+        partition.apply(List.of(
+                doc(1L, "java", null),
+                doc(2L, "java", 100.0)
+        ), List.of());
+
+        Hits hits = RecentHits.collect(partition.view(), Map.of("java", 1.0), DocFilter.NONE, 10);
+
+        assertThat(hits.top()).extracting(ScoredDoc::docId).containsExactly(2L, 1L);
+    }
+
+    private static IndexedDocument doc(long id, String term, Double updated) {
+        Map<String, Double> numbers = updated == null ? Map.of() : Map.of(InMemorySearchIndex.UPDATED_FIELD, updated);
+        return new IndexedDocument(id, 42L, DocumentStatus.READY, Map.of(term, new TermStats(0, 1)),
+                numbers, new int[0], "", Passages.NONE);
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link RoaringDocIdSet} and {@link DocBitSet}.
+ */
+class RoaringDocIdSetTest {
+
+    @Test
+    void with_shouldKeepOriginalSetUnchanged() {
+        RoaringDocIdSet original = RoaringDocIdSet.of(1, 5, 70_000);
+        RoaringDocIdSet extended = original.with(5, 6, 200_000);
+
+        assertThat(original.cardinality()).isEqualTo(3);
+        assertThat(original.contains(6)).isFalse();
+
+        assertThat(extended.cardinality()).isEqualTo(5);
+        assertThat(extended.contains(1)).isTrue();
+        assertThat(extended.contains(6)).isTrue();
+        assertThat(extended.contains(70_000)).isTrue();
+        assertThat(extended.contains(200_000)).isTrue();
+        assertThat(extended.contains(7)).isFalse();
+    }
+
+    @Test
+    void sparseAndDenseChunks_shouldBehaveLikeBitSet() {
+        Random random = new Random(42);
+        int size = 200_000;
+        BitSet expected = new BitSet(size);
+        RoaringDocIdSet set = RoaringDocIdSet.EMPTY;
+
+        // chunk 0 becomes dense (bitmap container), the others stay sparse (array containers)
+        for (int batch = 0; batch < 20; batch++) {
+            int[] docs = new int[1_000];
+            for (int i = 0; i < docs.length; i++) {
+                docs[i] = i % 2 == 0 ? random.nextInt(1 << 16) : random.nextInt(size);
+                expected.set(docs[i]);
+            }
+            set = set.with(docs);
+        }
+
+        assertThat(set.cardinality()).isEqualTo(expected.cardinality());
+
+        List<Integer> iterated = new ArrayList<>();
+        set.forEach(iterated::add);
+        assertThat(iterated).isEqualTo(expected.stream().boxed().toList());
+
+        for (int doc = 0; doc < size; doc += 7) {
+            assertThat(set.contains(doc)).isEqualTo(expected.get(doc));
+        }
+    }
+
+    @Test
+    void andAndAndNot_shouldWorkOnDenseBitSet() {
+        int size = 150_000;
+        RoaringDocIdSet filter = RoaringDocIdSet.of(3, 64, 65, 100_000, 149_999);
+        RoaringDocIdSet deleted = RoaringDocIdSet.of(65, 149_999);
+
+        DocBitSet candidates = new DocBitSet(size);
+        for (int doc : new int[]{2, 3, 64, 65, 70_000, 100_000, 149_999}) {
+            candidates.set(doc);
+        }
+
+        candidates.and(filter);
+        candidates.andNot(deleted);
+
+        List<Integer> result = new ArrayList<>();
+        for (int doc = candidates.nextSetBit(0); doc >= 0; doc = candidates.nextSetBit(doc + 1)) {
+            result.add(doc);
+        }
+
+        assertThat(result).containsExactly(3, 64, 100_000);
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link SharedTextCache}.
+ */
+class SharedTextCacheTest {
+
+    private final SharedTextCache cache = new SharedTextCache();
+
+    @Test
+    void share_shouldReturnTheTextAlreadyCachedUnderTheHash() {
+        SharedTextCache.AnalyzedText first = text();
+        SharedTextCache.AnalyzedText second = text();
+
+        assertThat(cache.share("hash", first).terms()).isSameAs(first.terms());
+        assertThat(cache.share("hash", second).terms()).isSameAs(first.terms());
+        assertThat(cache.get("hash").minHash()).isSameAs(first.minHash());
+        assertThat(cache.get("other")).isNull();
+        assertThat(cache.size()).isEqualTo(1);
+
+        cache.clear();
+        assertThat(cache.get("hash")).isNull();
+    }
+
+    private static SharedTextCache.AnalyzedText text() {
+        return new SharedTextCache.AnalyzedText(Map.of("java", new TermStats(1, 2)), new int[]{1, 2, 3});
+    }
+}
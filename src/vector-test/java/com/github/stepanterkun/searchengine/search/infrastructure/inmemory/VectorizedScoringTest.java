@@ -0,0 +1,51 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.IntBuffer;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Unit tests for {@link VectorizedScoring}, run with the {@code vector} Maven profile.
+ */
+class VectorizedScoringTest {
+
+    private static final double TITLE_BOOST = 3.0;
+
+    @BeforeEach
+    void requireVectorModule() {
+        assumeTrue(ModuleLayer.boot().findModule(ScoreAccumulator.VECTOR_MODULE).isPresent());
+    }
+
+    @Test
+    void vectorized_shouldLoadThisImplementation() {
+        assertThat(ScoreAccumulator.vectorized()).containsInstanceOf(VectorizedScoring.class);
+    }
+
+    @Test
+    void accumulate_shouldMatchScalarLoopIncludingTail() {
+        Random random = new Random(42);
+        // every other local id, so doc ids and positions differ
+        Postings.Builder builder = new Postings.Builder();
+        for (int doc = 0; doc < 2 * 1003; doc += 2) {
+            builder.add(doc, new TermStats(random.nextInt(3), random.nextInt(50)));
+        }
+        Postings postings = new Postings(IntBuffer.wrap(builder.toArray()));
+
+        // postings [5, 1000) of a slice starting at local id 7
+        int base = 7;
+        double[] expected = new double[2 * 1003];
+        double[] actual = new double[2 * 1003];
+        for (int i = 5; i < 1000; i++) {
+            expected[postings.doc(i) - base] += postings.tf(i, TITLE_BOOST) * 1.7;
+        }
+
+        new VectorizedScoring().accumulate(postings, 5, 1000, actual, base, TITLE_BOOST, 1.7);
+
+        assertThat(actual).containsExactly(expected);
+    }
+}
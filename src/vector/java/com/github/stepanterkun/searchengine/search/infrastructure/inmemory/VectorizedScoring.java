@@ -0,0 +1,61 @@
+package com.github.stepanterkun.searchengine.search.infrastructure.inmemory;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Score accumulation over heap postings with the {@code jdk.incubator.vector} API:
+ * a block of postings is decoded into doubles, weighted and added to the scores of its
+ * documents lane by lane, the tail that does not fill a vector is done one by one.
+ * <p>
+ * Only compiled with the {@code vector} Maven profile. The incubator module is only there if
+ * the JVM was started with {@code --add-modules jdk.incubator.vector}; without it this class
+ * fails to load, so it is only reached through {@link ScoreAccumulator#vectorized()}.
+ */
+final class VectorizedScoring implements ScoreAccumulator {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    // as many int lanes as double lanes, so a block converts lane by lane
+    private static final VectorSpecies<Integer> INTS =
+            IntVector.SPECIES_PREFERRED.withShape(VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+
+    @Override
+    public void accumulate(Postings postings, int from, int to, double[] scores, int base,
+                           double titleBoost, double idf) {
+        int[] data = postings.array();
+        int docs = postings.arrayOffset();
+        int titleFreqs = docs + postings.size();
+        int contentFreqs = titleFreqs + postings.size();
+
+        VectorSpecies<Double> doubles = DOUBLES;
+        VectorSpecies<Integer> ints = INTS;
+        int lanes = doubles.length();
+
+        // doc ids of one block, relative to base: the gather/scatter index map
+        int[] indexes = new int[lanes];
+
+        int i = from;
+        for (int upper = from + doubles.loopBound(to - from); i < upper; i += lanes) {
+            DoubleVector titleFreq = (DoubleVector) IntVector.fromArray(ints, data, titleFreqs + i)
+                                                            .convertShape(VectorOperators.I2D, doubles, 0);
+            DoubleVector contentFreq = (DoubleVector) IntVector.fromArray(ints, data, contentFreqs + i)
+                                                              .convertShape(VectorOperators.I2D, doubles, 0);
+            // same operation order as the scalar loop, so the sums are the same to the last bit
+            DoubleVector weight = titleFreq.mul(titleBoost).add(contentFreq).mul(idf);
+
+            IntVector.fromArray(ints, data, docs + i).sub(base).intoArray(indexes, 0);
+
+            // docs of one term are distinct, so no two lanes hit the same score
+            DoubleVector.fromArray(doubles, scores, 0, indexes, 0)
+                        .add(weight)
+                        .intoArray(scores, 0, indexes, 0);
+        }
+
+        for (; i < to; i++) {
+            scores[data[docs + i] - base] += (data[contentFreqs + i] + titleBoost * data[titleFreqs + i]) * idf;
+        }
+    }
+}